@@ -0,0 +1,72 @@
+package org.hypertrace.gateway.service;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.function.Consumer;
+
+/**
+ * Sends the responses of a server streaming call only when the call is ready for them, so that a
+ * slow client holds up the request producing the responses instead of having them pile up in the
+ * outbound buffers. Sending blocks until the call is ready, and fails once the client cancels it,
+ * which includes its deadline passing.
+ *
+ * <p>Has to be created before the call handler returns, for the handlers to be registered.
+ */
+class FlowControlledResponseSender<T> implements Consumer<T> {
+  private final StreamObserver<T> responseObserver;
+  private final ServerCallStreamObserver<T> serverCallStreamObserver;
+  private final Object lock = new Object();
+  private boolean cancelled;
+
+  @SuppressWarnings("unchecked")
+  FlowControlledResponseSender(StreamObserver<T> responseObserver) {
+    this.responseObserver = responseObserver;
+    this.serverCallStreamObserver =
+        responseObserver instanceof ServerCallStreamObserver
+            ? (ServerCallStreamObserver<T>) responseObserver
+            : null;
+    if (serverCallStreamObserver != null) {
+      serverCallStreamObserver.setOnReadyHandler(this::signal);
+      serverCallStreamObserver.setOnCancelHandler(
+          () -> {
+            synchronized (lock) {
+              cancelled = true;
+              lock.notifyAll();
+            }
+          });
+    }
+  }
+
+  @Override
+  public void accept(T response) {
+    if (serverCallStreamObserver != null) {
+      awaitReady();
+    }
+    responseObserver.onNext(response);
+  }
+
+  private void awaitReady() {
+    synchronized (lock) {
+      while (!cancelled && !serverCallStreamObserver.isReady()) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw Status.CANCELLED
+              .withDescription("Interrupted while waiting to send a response")
+              .asRuntimeException();
+        }
+      }
+      if (cancelled) {
+        throw Status.CANCELLED.withDescription("The call was cancelled").asRuntimeException();
+      }
+    }
+  }
+
+  private void signal() {
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+  }
+}
@@ -3,10 +3,16 @@ package org.hypertrace.gateway.service;
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ServiceException;
 import com.typesafe.config.Config;
+import io.grpc.Context;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.stub.StreamObserver;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.client.AttributeServiceClient;
 import org.hypertrace.core.attribute.service.client.config.AttributeServiceClientConfig;
@@ -20,11 +26,23 @@ import org.hypertrace.gateway.service.baseline.BaselineServiceQueryExecutor;
 import org.hypertrace.gateway.service.baseline.BaselineServiceQueryParser;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.config.AttributeMetadataCacheConfig;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.common.config.RequestCoalescingConfig;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.config.TimeSeriesCacheConfig;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.entity.EntityService;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.entity.config.LogConfig;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
+import org.hypertrace.gateway.service.entity.config.TotalCacheConfig;
 import org.hypertrace.gateway.service.explore.ExploreService;
+import org.hypertrace.gateway.service.explore.config.PipeliningConfig;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.logevent.LogEventsService;
 import org.hypertrace.gateway.service.span.SpanService;
 import org.hypertrace.gateway.service.trace.TracesService;
@@ -64,6 +82,7 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
   private final ExploreService exploreService;
   private final BaselineService baselineService;
   private final LogEventsService logEventsService;
+  private final Executor requestExecutor;
 
   public GatewayServiceImpl(Config appConfig) {
     AttributeServiceClientConfig asConfig = AttributeServiceClientConfig.from(appConfig);
@@ -72,7 +91,8 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
             .usePlaintext()
             .build();
     AttributeServiceClient asClient = new AttributeServiceClient(attributeServiceChannel);
-    AttributeMetadataProvider attributeMetadataProvider = new AttributeMetadataProvider(asClient);
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(asClient, new AttributeMetadataCacheConfig(appConfig));
     EntityIdColumnsConfigs entityIdColumnsConfigs = EntityIdColumnsConfigs.fromConfig(appConfig);
 
     Config qsConfig = appConfig.getConfig(QUERY_SERVICE_CONFIG_KEY);
@@ -89,6 +109,11 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
 
     ScopeFilterConfigs scopeFilterConfigs = new ScopeFilterConfigs(appConfig);
     LogConfig logConfig = new LogConfig(appConfig);
+    ExecutionPools executionPools = new ExecutionPools(new ExecutionPoolConfigs(appConfig));
+    RequestCoalescingConfig requestCoalescingConfig = new RequestCoalescingConfig(appConfig);
+    ResultCacheConfig resultCacheConfig = new ResultCacheConfig(appConfig);
+    QueryLimitConfig queryLimitConfig = new QueryLimitConfig(appConfig);
+    this.requestExecutor = executionPools.getRequestExecutor();
     this.traceService =
         new TracesService(
             queryServiceClient, qsRequestTimeout, attributeMetadataProvider, scopeFilterConfigs);
@@ -102,10 +127,27 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
-            logConfig);
+            logConfig,
+            executionPools,
+            new SelectionConfig(appConfig),
+            new TotalCacheConfig(appConfig),
+            new PlannerConfig(appConfig),
+            requestCoalescingConfig,
+            resultCacheConfig,
+            queryLimitConfig);
     this.exploreService =
         new ExploreService(
-            queryServiceClient, qsRequestTimeout, attributeMetadataProvider, scopeFilterConfigs);
+            queryServiceClient,
+            qsRequestTimeout,
+            attributeMetadataProvider,
+            scopeFilterConfigs,
+            requestCoalescingConfig,
+            resultCacheConfig,
+            new TimeSeriesCacheConfig(appConfig),
+            executionPools,
+            new RestGroupConfig(appConfig),
+            new PipeliningConfig(appConfig),
+            queryLimitConfig);
     BaselineServiceQueryParser baselineServiceQueryParser =
         new BaselineServiceQueryParser(attributeMetadataProvider);
     BaselineServiceQueryExecutor baselineServiceQueryExecutor =
@@ -140,21 +182,18 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      RequestContext requestContext =
-          new RequestContext(
-              tenantId.get(),
-              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-                  .get()
-                  .getRequestHeaders());
-
-      TracesResponse response = traceService.getTracesByFilter(requestContext, request);
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling traces request: {}", request, e);
-      responseObserver.onError(e);
-    }
+    handleRequest(
+        () -> {
+          RequestContext requestContext =
+              new RequestContext(
+                  tenantId.get(),
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+          return traceService.getTracesByFilter(requestContext, request);
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling traces request: {}", request, e));
   }
 
   @Override
@@ -169,20 +208,18 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      RequestContext context =
-          new RequestContext(
-              tenantId.get(),
-              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-                  .get()
-                  .getRequestHeaders());
-      SpansResponse response = spanService.getSpansByFilter(context, request);
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling spans request: {}", request, e);
-      responseObserver.onError(e);
-    }
+    handleRequest(
+        () -> {
+          RequestContext context =
+              new RequestContext(
+                  tenantId.get(),
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+          return spanService.getSpansByFilter(context, request);
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling spans request: {}", request, e));
   }
 
   @Override
@@ -199,36 +236,69 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      Preconditions.checkArgument(
-          StringUtils.isNotBlank(request.getEntityType()),
-          "EntityType is mandatory in the request.");
+    handleRequest(
+        () -> {
+          validateEntitiesRequest(request);
+
+          EntitiesResponse response =
+              entityService.getEntities(
+                  tenantId.get(),
+                  request,
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+
+          LOG.debug("Received response: {}", response);
+          return response;
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling entities request: {}.", request, e));
+  }
+
+  @Override
+  public void getEntitiesStream(
+      org.hypertrace.gateway.service.v1.entity.EntitiesRequest request,
+      StreamObserver<org.hypertrace.gateway.service.v1.entity.EntitiesResponse> responseObserver) {
 
-      Preconditions.checkArgument(
-          request.getSelectionCount() > 0, "Selection list can't be empty in the request.");
+    LOG.debug("Received request: {}", request);
 
-      Preconditions.checkArgument(
-          request.getStartTimeMillis() > 0
-              && request.getEndTimeMillis() > 0
-              && request.getStartTimeMillis() < request.getEndTimeMillis(),
-          "Invalid time range. Both start and end times have to be valid timestamps.");
+    Optional<String> tenantId =
+        org.hypertrace.core.grpcutils.context.RequestContext.CURRENT.get().getTenantId();
+    if (tenantId.isEmpty()) {
+      responseObserver.onError(new ServiceException("Tenant id is missing in the request."));
+      return;
+    }
 
-      EntitiesResponse response =
-          entityService.getEntities(
+    handleStreamingRequest(
+        responseConsumer -> {
+          validateEntitiesRequest(request);
+
+          entityService.getEntitiesStream(
               tenantId.get(),
               request,
               org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
                   .get()
-                  .getRequestHeaders());
+                  .getRequestHeaders(),
+              responseConsumer);
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling entities stream request: {}.", request, e));
+  }
 
-      LOG.debug("Received response: {}", response);
+  private static void validateEntitiesRequest(
+      org.hypertrace.gateway.service.v1.entity.EntitiesRequest request) {
+    Preconditions.checkArgument(
+        StringUtils.isNotBlank(request.getEntityType()),
+        "EntityType is mandatory in the request.");
 
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling entities request: {}.", request, e);
-      responseObserver.onError(e);
-    }
+    Preconditions.checkArgument(
+        request.getSelectionCount() > 0, "Selection list can't be empty in the request.");
+
+    Preconditions.checkArgument(
+        request.getStartTimeMillis() > 0
+            && request.getEndTimeMillis() > 0
+            && request.getStartTimeMillis() < request.getEndTimeMillis(),
+        "Invalid time range. Both start and end times have to be valid timestamps.");
   }
 
   @Override
@@ -245,24 +315,23 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      UpdateEntityResponse response =
-          entityService.updateEntity(
-              tenantId.get(),
-              request,
-              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-                  .get()
-                  .getRequestHeaders());
-
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Received response: {}", response);
-      }
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling UpdateEntityRequest: {}.", request, e);
-      responseObserver.onError(e);
-    }
+    handleRequest(
+        () -> {
+          UpdateEntityResponse response =
+              entityService.updateEntity(
+                  tenantId.get(),
+                  request,
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Received response: {}", response);
+          }
+          return response;
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling UpdateEntityRequest: {}.", request, e));
   }
 
   @Override
@@ -271,28 +340,27 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       StreamObserver<BulkUpdateEntitiesResponse> responseObserver) {
     LOG.debug("Received request: {}", request);
 
-    try {
-      String tenantId =
-          org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-              .get()
-              .getTenantId()
-              .orElseThrow(() -> new ServiceException("Tenant id is missing in the request."));
-
-      BulkUpdateEntitiesResponse response =
-          entityService.bulkUpdateEntities(
-              tenantId,
-              request,
+    handleRequest(
+        () -> {
+          String tenantId =
               org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
                   .get()
-                  .getRequestHeaders());
-
-      LOG.debug("Received response: {}", response);
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling bulkUpdateEntities: {}.", request, e);
-      responseObserver.onError(e);
-    }
+                  .getTenantId()
+                  .orElseThrow(() -> new ServiceException("Tenant id is missing in the request."));
+
+          BulkUpdateEntitiesResponse response =
+              entityService.bulkUpdateEntities(
+                  tenantId,
+                  request,
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+
+          LOG.debug("Received response: {}", response);
+          return response;
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling bulkUpdateEntities: {}.", request, e));
   }
 
   @Override
@@ -305,23 +373,21 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      BaselineEntitiesResponse response =
-          baselineService.getBaselineForEntities(
-              tenantId.get(),
-              request,
-              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-                  .get()
-                  .getRequestHeaders());
-
-      LOG.debug("Received response: {}", response);
-
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling entities request: {}.", request, e);
-      responseObserver.onError(e);
-    }
+    handleRequest(
+        () -> {
+          BaselineEntitiesResponse response =
+              baselineService.getBaselineForEntities(
+                  tenantId.get(),
+                  request,
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+
+          LOG.debug("Received response: {}", response);
+          return response;
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling entities request: {}.", request, e));
   }
 
   @Override
@@ -333,20 +399,16 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      ExploreResponse response =
-          exploreService.explore(
-              tenantId.get(),
-              request,
-              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-                  .get()
-                  .getRequestHeaders());
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling explore request: {}", request, e);
-      responseObserver.onError(e);
-    }
+    handleRequest(
+        () ->
+            exploreService.explore(
+                tenantId.get(),
+                request,
+                org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                    .get()
+                    .getRequestHeaders()),
+        responseObserver,
+        e -> LOG.error("Error while handling explore request: {}", request, e));
   }
 
   @Override
@@ -359,19 +421,83 @@ public class GatewayServiceImpl extends GatewayServiceGrpc.GatewayServiceImplBas
       return;
     }
 
-    try {
-      RequestContext context =
-          new RequestContext(
-              tenantId.get(),
-              org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
-                  .get()
-                  .getRequestHeaders());
-      LogEventsResponse response = logEventsService.getLogEventsByFilter(context, request);
-      responseObserver.onNext(response);
-      responseObserver.onCompleted();
-    } catch (Exception e) {
-      LOG.error("Error while handling logEvents request: {}", request, e);
-      responseObserver.onError(e);
-    }
+    handleRequest(
+        () -> {
+          RequestContext context =
+              new RequestContext(
+                  tenantId.get(),
+                  org.hypertrace.core.grpcutils.context.RequestContext.CURRENT
+                      .get()
+                      .getRequestHeaders());
+          return logEventsService.getLogEventsByFilter(context, request);
+        },
+        responseObserver,
+        e -> LOG.error("Error while handling logEvents request: {}", request, e));
+  }
+
+  /**
+   * Runs the request handler on the request executor and completes the response observer once the
+   * response is ready. With async request handling enabled, the gRPC server thread is released as
+   * soon as the request is handed over. The gRPC context, which carries the tenant id and request
+   * headers, is propagated to the thread handling the request.
+   */
+  private <T> void handleRequest(
+      Callable<T> requestHandler,
+      StreamObserver<T> responseObserver,
+      Consumer<Throwable> errorLogger) {
+    CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return requestHandler.call();
+              } catch (RuntimeException e) {
+                throw e;
+              } catch (Exception e) {
+                throw new CompletionException(e);
+              }
+            },
+            Context.currentContextExecutor(requestExecutor))
+        .whenComplete(
+            (response, throwable) -> {
+              if (throwable != null) {
+                Throwable cause = unwrapCompletionException(throwable);
+                errorLogger.accept(cause);
+                responseObserver.onError(cause);
+                return;
+              }
+              responseObserver.onNext(response);
+              responseObserver.onCompleted();
+            });
+  }
+
+  /**
+   * Streaming counterpart of {@link #handleRequest}. The request handler emits each response to the
+   * given consumer, and the response observer is completed once the handler returns. The consumer
+   * waits for the call to be ready before sending each response.
+   */
+  private <T> void handleStreamingRequest(
+      Consumer<Consumer<T>> requestHandler,
+      StreamObserver<T> responseObserver,
+      Consumer<Throwable> errorLogger) {
+    FlowControlledResponseSender<T> responseSender =
+        new FlowControlledResponseSender<>(responseObserver);
+    CompletableFuture.runAsync(
+            () -> requestHandler.accept(responseSender),
+            Context.currentContextExecutor(requestExecutor))
+        .whenComplete(
+            (ignored, throwable) -> {
+              if (throwable != null) {
+                Throwable cause = unwrapCompletionException(throwable);
+                errorLogger.accept(cause);
+                responseObserver.onError(cause);
+                return;
+              }
+              responseObserver.onCompleted();
+            });
+  }
+
+  private static Throwable unwrapCompletionException(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
   }
 }
@@ -1,108 +1,158 @@
 package org.hypertrace.gateway.service.common;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import java.util.AbstractMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.hypertrace.core.attribute.service.client.AttributeServiceClient;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadataFilter;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshotStore.ScopeSnapshot;
+import org.hypertrace.gateway.service.common.config.AttributeMetadataCacheConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Caches the attribute metadata locally to avoid fetching it over and over. The cache is keyed on
- * the tenantId in the requestContext and the AttributeMetadata field(s) we are concerned with.
+ * the tenantId in the requestContext and the attribute scope, and holds the metadata of the scope
+ * indexed both by attribute id and by attribute key, so that both kinds of lookups are served by
+ * the same single call to attribute service.
+ *
+ * <p>When preloading is enabled, the first miss of a tenant loads the metadata of all of its scopes
+ * in one call, instead of one call per scope as the scopes get used.
+ *
+ * <p>When refresh is enabled, metadata older than the (jittered) refresh period is reloaded on a
+ * dedicated executor while the cached metadata keeps being served. A failed refresh is retried a
+ * bit later, so that metadata only goes away once it expires, and requests keep being served while
+ * attribute service is down.
+ *
+ * <p>When the snapshot is enabled, the cached metadata is periodically written to a local file and
+ * loaded back on startup, so that a restarted gateway does not have to go to attribute service for
+ * every tenant and scope at once.
  */
 public class AttributeMetadataProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(AttributeMetadataProvider.class);
+  private static final String REFRESH_LATENCY_METRIC = "hypertrace.attribute.metadata.refresh";
+  private static final String REFRESH_FAILURE_METRIC =
+      "hypertrace.attribute.metadata.refresh.failures";
+  private static final long REFRESH_RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
 
-  private static final int DEFAULT_CACHE_SIZE = 4096;
-  private static final int DEFAULT_EXPIRE_DURATION_MIN = 60; // 60 min
-  // AttributeScope to Map<id, AttributeMetadata>
-  private final LoadingCache<AttributeCacheKey<String>, Map<String, AttributeMetadata>>
-      scopeToMapOfIdAndAttributeMetadataCache;
-  // Pair<AttributeScope, key> to AttributeMetadata
-  private final LoadingCache<AttributeCacheKey<Map.Entry<String, String>>, AttributeMetadata>
-      scopeAndKeyToAttrMetadataCache;
-
-  public AttributeMetadataProvider(AttributeServiceClient attributesServiceClient) {
-    CacheLoader<AttributeCacheKey<String>, Map<String, AttributeMetadata>> cacheLoader =
+  private final AttributeServiceClient attributesServiceClient;
+  private final AttributeMetadataCacheConfig cacheConfig;
+  private final Executor refreshExecutor;
+  private final Ticker ticker;
+  private final Timer refreshTimer;
+  private final Counter refreshFailureCounter;
+  // AttributeScope to the metadata of the scope
+  private final LoadingCache<AttributeCacheKey<String>, ScopeAttributeMetadata>
+      scopeToAttributeMetadataCache;
+  // tenantIds whose metadata has been preloaded, failed preloads are removed right away
+  private final Cache<String, Boolean> preloadedTenants;
+
+  public AttributeMetadataProvider(
+      AttributeServiceClient attributesServiceClient, AttributeMetadataCacheConfig cacheConfig) {
+    this(
+        attributesServiceClient,
+        cacheConfig,
+        Executors.newFixedThreadPool(
+            cacheConfig.getRefreshThreads(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("attribute-metadata-refresh-%d")
+                .setDaemon(true)
+                .build()),
+        Ticker.systemTicker());
+    if (cacheConfig.isSnapshotEnabled()) {
+      AttributeMetadataSnapshotStore snapshotStore =
+          new AttributeMetadataSnapshotStore(Path.of(cacheConfig.getSnapshotPath()));
+      restoreSnapshot(snapshotStore);
+      Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("attribute-metadata-snapshot-%d")
+                  .setDaemon(true)
+                  .build())
+          .scheduleWithFixedDelay(
+              () -> writeSnapshot(snapshotStore),
+              cacheConfig.getSnapshotIntervalMinutes(),
+              cacheConfig.getSnapshotIntervalMinutes(),
+              TimeUnit.MINUTES);
+    }
+  }
+
+  @VisibleForTesting
+  AttributeMetadataProvider(
+      AttributeServiceClient attributesServiceClient,
+      AttributeMetadataCacheConfig cacheConfig,
+      Executor refreshExecutor,
+      Ticker ticker) {
+    this.attributesServiceClient = attributesServiceClient;
+    this.cacheConfig = cacheConfig;
+    this.refreshExecutor = refreshExecutor;
+    this.ticker = ticker;
+    this.refreshTimer =
+        PlatformMetricsRegistry.registerTimer(REFRESH_LATENCY_METRIC, ImmutableMap.of());
+    this.refreshFailureCounter =
+        PlatformMetricsRegistry.registerCounter(REFRESH_FAILURE_METRIC, ImmutableMap.of());
+    CacheLoader<AttributeCacheKey<String>, ScopeAttributeMetadata> cacheLoader =
         new CacheLoader<>() {
           @Override
-          public Map<String, AttributeMetadata> load(AttributeCacheKey<String> scopeBasedCacheKey) {
-            Iterator<AttributeMetadata> attributeMetadataIterator =
-                attributesServiceClient.findAttributes(
-                    scopeBasedCacheKey.getHeaders(),
-                    AttributeMetadataFilter.newBuilder()
-                        .addScopeString(scopeBasedCacheKey.getDataKey())
-                        .build());
-
-            Map<String, AttributeMetadata> attributeMetadataMap = new HashMap<>();
-            attributeMetadataIterator.forEachRemaining(
-                metadata -> attributeMetadataMap.put(metadata.getId(), metadata));
-
-            return Collections.unmodifiableMap(attributeMetadataMap);
+          public ScopeAttributeMetadata load(AttributeCacheKey<String> scopeBasedCacheKey) {
+            return loadScope(scopeBasedCacheKey);
+          }
+
+          @Override
+          public ListenableFuture<ScopeAttributeMetadata> reload(
+              AttributeCacheKey<String> scopeBasedCacheKey, ScopeAttributeMetadata oldValue) {
+            // The old value is served until the task completes
+            ListenableFutureTask<ScopeAttributeMetadata> refreshTask =
+                ListenableFutureTask.create(() -> refresh(scopeBasedCacheKey, oldValue));
+            refreshExecutor.execute(refreshTask);
+            return refreshTask;
           }
         };
 
-    CacheLoader<AttributeCacheKey<Map.Entry<String, String>>, AttributeMetadata>
-        scopeAndAliasToAttrMetadataCacheLoader =
-            new CacheLoader<>() {
-              @Override
-              public AttributeMetadata load(
-                  AttributeCacheKey<Map.Entry<String, String>> scopeAndKeyPairBasedCacheKey) {
-                Iterator<AttributeMetadata> attributeMetadataIterator =
-                    attributesServiceClient.findAttributes(
-                        scopeAndKeyPairBasedCacheKey.getHeaders(),
-                        AttributeMetadataFilter.newBuilder()
-                            .addScopeString(scopeAndKeyPairBasedCacheKey.getDataKey().getKey())
-                            .build());
-
-                AttributeMetadata result = null;
-                while (attributeMetadataIterator.hasNext()) {
-                  AttributeMetadata metadata = attributeMetadataIterator.next();
-                  // metadata already found
-                  if (result != null) {
-                    continue;
-                  }
-                  // DON'T short-circuit the iterator.
-                  // Continue to iterate fully to avoid netty leak
-                  if (metadata
-                      .getKey()
-                      .equals(scopeAndKeyPairBasedCacheKey.getDataKey().getValue())) {
-                    result = metadata;
-                  }
-                }
-                return result;
-              }
-            };
-
-    scopeToMapOfIdAndAttributeMetadataCache =
+    scopeToAttributeMetadataCache =
         CacheBuilder.newBuilder()
-            .maximumSize(DEFAULT_CACHE_SIZE)
-            .expireAfterWrite(DEFAULT_EXPIRE_DURATION_MIN, TimeUnit.MINUTES)
+            .maximumSize(cacheConfig.getMaxSize())
+            .expireAfterWrite(cacheConfig.getExpiryMinutes(), TimeUnit.MINUTES)
+            .ticker(ticker)
             .build(cacheLoader);
-    scopeAndKeyToAttrMetadataCache =
+    preloadedTenants =
         CacheBuilder.newBuilder()
-            .maximumSize(DEFAULT_CACHE_SIZE)
-            .expireAfterWrite(DEFAULT_EXPIRE_DURATION_MIN, TimeUnit.MINUTES)
-            .build(scopeAndAliasToAttrMetadataCacheLoader);
+            .maximumSize(cacheConfig.getMaxSize())
+            .expireAfterWrite(cacheConfig.getExpiryMinutes(), TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
   }
 
   public Map<String, AttributeMetadata> getAttributesMetadata(
       RequestContext requestContext, String attributeScope) {
     try {
-      AttributeCacheKey<String> cacheKey = new AttributeCacheKey<>(requestContext, attributeScope);
-      return scopeToMapOfIdAndAttributeMetadataCache.get(cacheKey);
+      return getScopeAttributeMetadata(requestContext, attributeScope).getMetadataById();
     } catch (ExecutionException e) {
       LOG.error(String.format("Error retrieving attribute metadata for %s", attributeScope), e);
       throw new RuntimeException(e);
@@ -112,13 +162,198 @@ public class AttributeMetadataProvider {
   public Optional<AttributeMetadata> getAttributeMetadata(
       RequestContext requestContext, String scope, String key) {
     try {
-      AttributeCacheKey<Map.Entry<String, String>> cacheKey =
-          new AttributeCacheKey<>(requestContext, new AbstractMap.SimpleEntry<>(scope, key));
-      return Optional.ofNullable(scopeAndKeyToAttrMetadataCache.get(cacheKey));
+      return Optional.ofNullable(
+          getScopeAttributeMetadata(requestContext, scope).getMetadataByKey().get(key));
     } catch (ExecutionException e) {
       LOG.error("Error retrieving AttributeMetadata for scope:{}, key:{}", scope, key);
       throw new RuntimeException(
           String.format("Error retrieving AttributeMetadata for scope:%s, key:%s", scope, key));
     }
   }
+
+  private ScopeAttributeMetadata getScopeAttributeMetadata(
+      RequestContext requestContext, String attributeScope) throws ExecutionException {
+    AttributeCacheKey<String> cacheKey = new AttributeCacheKey<>(requestContext, attributeScope);
+    ScopeAttributeMetadata scopeAttributeMetadata =
+        scopeToAttributeMetadataCache.getIfPresent(cacheKey);
+    if (scopeAttributeMetadata != null) {
+      if (cacheConfig.isRefreshEnabled() && scopeAttributeMetadata.startRefresh(ticker.read())) {
+        scopeToAttributeMetadataCache.refresh(cacheKey);
+      }
+      return scopeAttributeMetadata;
+    }
+    if (cacheConfig.isPreloadEnabled()) {
+      String tenantId = requestContext.getTenantId();
+      // Concurrent first requests of the tenant wait for the same preload
+      if (!preloadedTenants.get(tenantId, () -> preload(requestContext))) {
+        // A failed preload is not cached, so that a later request of the tenant tries it again
+        preloadedTenants.asMap().remove(tenantId, false);
+      }
+    }
+    // Scopes without any attributes are not part of the preload
+    return scopeToAttributeMetadataCache.get(cacheKey);
+  }
+
+  /** Loads the metadata of all the scopes of the tenant with a single call to attribute service */
+  private boolean preload(RequestContext requestContext) {
+    Map<String, ScopeAttributeMetadata.Builder> builders = new HashMap<>();
+    try {
+      Iterator<AttributeMetadata> attributeMetadataIterator =
+          attributesServiceClient.findAttributes(
+              requestContext.getHeaders(), AttributeMetadataFilter.getDefaultInstance());
+      attributeMetadataIterator.forEachRemaining(
+          metadata ->
+              builders
+                  .computeIfAbsent(
+                      metadata.getScopeString(), unused -> new ScopeAttributeMetadata.Builder())
+                  .add(metadata));
+    } catch (RuntimeException e) {
+      // The scopes are loaded one by one instead
+      LOG.warn(
+          "Error preloading attribute metadata for tenant {}", requestContext.getTenantId(), e);
+      return false;
+    }
+    builders.forEach(
+        (scope, builder) ->
+            scopeToAttributeMetadataCache.put(
+                new AttributeCacheKey<>(requestContext, scope), builder.build(nextRefreshNanos())));
+    LOG.debug(
+        "Preloaded attribute metadata of {} scopes for tenant {}",
+        builders.size(),
+        requestContext.getTenantId());
+    return true;
+  }
+
+  /**
+   * Seeds the cache with the metadata of the snapshot. The restored metadata is served right away
+   * and, since the snapshot has no request headers to call attribute service with, revalidated in
+   * the background the first time it is served.
+   */
+  @VisibleForTesting
+  void restoreSnapshot(AttributeMetadataSnapshotStore snapshotStore) {
+    try {
+      List<ScopeSnapshot> scopeSnapshots = snapshotStore.read();
+      for (ScopeSnapshot scopeSnapshot : scopeSnapshots) {
+        ScopeAttributeMetadata.Builder builder = new ScopeAttributeMetadata.Builder();
+        scopeSnapshot.getAttributes().forEach(builder::add);
+        scopeToAttributeMetadataCache.put(
+            new AttributeCacheKey<>(
+                new RequestContext(scopeSnapshot.getTenantId(), Map.of()),
+                scopeSnapshot.getScope()),
+            builder.build(ticker.read()));
+      }
+      LOG.info("Restored attribute metadata of {} scopes from snapshot", scopeSnapshots.size());
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Error restoring attribute metadata snapshot, starting with an empty cache", e);
+    }
+  }
+
+  @VisibleForTesting
+  void writeSnapshot(AttributeMetadataSnapshotStore snapshotStore) {
+    List<ScopeSnapshot> scopeSnapshots = new ArrayList<>();
+    scopeToAttributeMetadataCache
+        .asMap()
+        .forEach(
+            (cacheKey, scopeAttributeMetadata) ->
+                scopeSnapshots.add(
+                    new ScopeSnapshot(
+                        cacheKey.getTenantId(),
+                        cacheKey.getDataKey(),
+                        scopeAttributeMetadata.getMetadataById().values())));
+    try {
+      snapshotStore.write(scopeSnapshots);
+      LOG.debug("Wrote attribute metadata of {} scopes to snapshot", scopeSnapshots.size());
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Error writing attribute metadata snapshot", e);
+    }
+  }
+
+  private ScopeAttributeMetadata loadScope(AttributeCacheKey<String> scopeBasedCacheKey) {
+    Iterator<AttributeMetadata> attributeMetadataIterator =
+        attributesServiceClient.findAttributes(
+            scopeBasedCacheKey.getHeaders(),
+            AttributeMetadataFilter.newBuilder()
+                .addScopeString(scopeBasedCacheKey.getDataKey())
+                .build());
+
+    ScopeAttributeMetadata.Builder builder = new ScopeAttributeMetadata.Builder();
+    // Iterate fully to avoid netty leak
+    attributeMetadataIterator.forEachRemaining(builder::add);
+    return builder.build(nextRefreshNanos());
+  }
+
+  private ScopeAttributeMetadata refresh(
+      AttributeCacheKey<String> scopeBasedCacheKey, ScopeAttributeMetadata oldValue) {
+    long startNanos = ticker.read();
+    try {
+      ScopeAttributeMetadata newValue = loadScope(scopeBasedCacheKey);
+      refreshTimer.record(ticker.read() - startNanos, TimeUnit.NANOSECONDS);
+      return newValue;
+    } catch (RuntimeException e) {
+      refreshFailureCounter.increment();
+      LOG.warn("Error refreshing attribute metadata for {}", scopeBasedCacheKey, e);
+      // keep serving the old value and try again later
+      oldValue.refreshFailed(ticker.read() + REFRESH_RETRY_NANOS);
+      throw e;
+    }
+  }
+
+  private long nextRefreshNanos() {
+    long refreshNanos = TimeUnit.MINUTES.toNanos(cacheConfig.getRefreshMinutes());
+    double jitter = cacheConfig.getRefreshJitter() * ThreadLocalRandom.current().nextDouble();
+    return ticker.read() + (long) (refreshNanos * (1 - jitter));
+  }
+
+  /** The attribute metadata of a scope, indexed by attribute id and by attribute key */
+  private static class ScopeAttributeMetadata {
+    private final Map<String, AttributeMetadata> metadataById;
+    private final Map<String, AttributeMetadata> metadataByKey;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long refreshNanos;
+
+    private ScopeAttributeMetadata(
+        Map<String, AttributeMetadata> metadataById,
+        Map<String, AttributeMetadata> metadataByKey,
+        long refreshNanos) {
+      this.metadataById = metadataById;
+      this.metadataByKey = metadataByKey;
+      this.refreshNanos = refreshNanos;
+    }
+
+    /** Returns true for the one caller that should refresh the metadata once it is due */
+    boolean startRefresh(long nowNanos) {
+      return nowNanos - refreshNanos >= 0 && refreshing.compareAndSet(false, true);
+    }
+
+    void refreshFailed(long retryNanos) {
+      this.refreshNanos = retryNanos;
+      refreshing.set(false);
+    }
+
+    Map<String, AttributeMetadata> getMetadataById() {
+      return metadataById;
+    }
+
+    Map<String, AttributeMetadata> getMetadataByKey() {
+      return metadataByKey;
+    }
+
+    private static class Builder {
+      private final Map<String, AttributeMetadata> metadataById = new HashMap<>();
+      private final Map<String, AttributeMetadata> metadataByKey = new HashMap<>();
+
+      void add(AttributeMetadata metadata) {
+        metadataById.put(metadata.getId(), metadata);
+        // the first attribute with a key wins
+        metadataByKey.putIfAbsent(metadata.getKey(), metadata);
+      }
+
+      ScopeAttributeMetadata build(long refreshNanos) {
+        return new ScopeAttributeMetadata(
+            Collections.unmodifiableMap(metadataById),
+            Collections.unmodifiableMap(metadataByKey),
+            refreshNanos);
+      }
+    }
+  }
 }
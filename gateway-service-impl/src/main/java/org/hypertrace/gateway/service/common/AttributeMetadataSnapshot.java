@@ -0,0 +1,98 @@
+package org.hypertrace.gateway.service.common;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
+import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.v1.common.Expression;
+
+/**
+ * Request scoped view of the attribute metadata of the tenant. Each piece of metadata, and the
+ * attribute ids derived from it, is looked up in the {@link AttributeMetadataProvider} the first
+ * time it is needed and then kept for the rest of the request, so that the fetches and validations
+ * of a request do not go through the provider caches over and over. A snapshot is shared by the
+ * concurrent fetches of a request.
+ */
+public class AttributeMetadataSnapshot {
+  private final AttributeMetadataProvider attributeMetadataProvider;
+  private final EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private final RequestContext requestContext;
+
+  private final Map<String, Map<String, AttributeMetadata>> attributesMetadataByScope =
+      new ConcurrentHashMap<>();
+  private final Map<String, List<String>> idAttributeIdsByEntityType = new ConcurrentHashMap<>();
+  private final Map<String, String> timestampAttributeIdByScope = new ConcurrentHashMap<>();
+  private final Map<String, String> spaceAttributeIdByScope = new ConcurrentHashMap<>();
+  private final Map<List<Object>, Map<String, AttributeMetadata>> attributeMetadataByResultKey =
+      new ConcurrentHashMap<>();
+  private final Set<Object> validatedRequests = ConcurrentHashMap.newKeySet();
+
+  public AttributeMetadataSnapshot(
+      AttributeMetadataProvider attributeMetadataProvider,
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      RequestContext requestContext) {
+    this.attributeMetadataProvider = attributeMetadataProvider;
+    this.entityIdColumnsConfigs = entityIdColumnsConfigs;
+    this.requestContext = requestContext;
+  }
+
+  public Map<String, AttributeMetadata> getAttributesMetadata(String attributeScope) {
+    return attributesMetadataByScope.computeIfAbsent(
+        attributeScope,
+        scope -> attributeMetadataProvider.getAttributesMetadata(requestContext, scope));
+  }
+
+  public List<String> getIdAttributeIds(String entityType) {
+    return idAttributeIdsByEntityType.computeIfAbsent(
+        entityType,
+        type ->
+            List.copyOf(
+                AttributeMetadataUtil.getIdAttributeIds(
+                    attributeMetadataProvider, entityIdColumnsConfigs, requestContext, type)));
+  }
+
+  public String getTimestampAttributeId(String attributeScope) {
+    return timestampAttributeIdByScope.computeIfAbsent(
+        attributeScope,
+        scope ->
+            AttributeMetadataUtil.getTimestampAttributeId(
+                attributeMetadataProvider, requestContext, scope));
+  }
+
+  public String getSpaceAttributeId(String attributeScope) {
+    return spaceAttributeIdByScope.computeIfAbsent(
+        attributeScope,
+        scope ->
+            AttributeMetadataUtil.getSpaceAttributeId(
+                attributeMetadataProvider, requestContext, scope));
+  }
+
+  /**
+   * Same as {@link AttributeMetadataUtil#remapAttributeMetadataByResultKey} for the metadata of the
+   * scope. The fetches of a request mostly share their selections, so the remapping is memoized.
+   */
+  public Map<String, AttributeMetadata> remapAttributeMetadataByResultKey(
+      String attributeScope, Collection<Expression> selections) {
+    return attributeMetadataByResultKey.computeIfAbsent(
+        List.of(attributeScope, List.copyOf(selections)),
+        key ->
+            AttributeMetadataUtil.remapAttributeMetadataByResultKey(
+                selections, getAttributesMetadata(attributeScope)));
+  }
+
+  /**
+   * Runs the validation unless one with the same key already passed during the request. The key
+   * has to cover everything the validation looks at. Failed validations are not remembered.
+   */
+  public void validateOnce(Object validationKey, Runnable validation) {
+    if (validatedRequests.contains(validationKey)) {
+      return;
+    }
+    validation.run();
+    validatedRequests.add(validationKey);
+  }
+}
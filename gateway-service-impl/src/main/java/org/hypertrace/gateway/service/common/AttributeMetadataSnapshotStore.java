@@ -0,0 +1,129 @@
+package org.hypertrace.gateway.service.common;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+
+/**
+ * Reads and writes the attribute metadata cached by {@link AttributeMetadataProvider} from and to
+ * a local file, so that a restarted gateway does not start with an empty cache. The file is a
+ * sequence of protobuf varints, strings and length delimited {@link AttributeMetadata} messages:
+ *
+ * <pre>
+ * magic version scopeCount (tenantId scope attributeCount attribute*)*
+ * </pre>
+ *
+ * The file is written to a temporary file first and then moved over the previous snapshot, so a
+ * reader never sees a partially written snapshot. Request headers are never written.
+ */
+class AttributeMetadataSnapshotStore {
+  private static final int MAGIC = 0x48544d44;
+  private static final int VERSION = 1;
+
+  private final Path path;
+
+  AttributeMetadataSnapshotStore(Path path) {
+    this.path = path;
+  }
+
+  void write(Collection<ScopeSnapshot> scopeSnapshots) throws IOException {
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+      CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(outputStream);
+      codedOutputStream.writeFixed32NoTag(MAGIC);
+      codedOutputStream.writeUInt32NoTag(VERSION);
+      codedOutputStream.writeUInt32NoTag(scopeSnapshots.size());
+      for (ScopeSnapshot scopeSnapshot : scopeSnapshots) {
+        codedOutputStream.writeStringNoTag(scopeSnapshot.getTenantId());
+        codedOutputStream.writeStringNoTag(scopeSnapshot.getScope());
+        codedOutputStream.writeUInt32NoTag(scopeSnapshot.getAttributes().size());
+        for (AttributeMetadata attributeMetadata : scopeSnapshot.getAttributes()) {
+          codedOutputStream.writeMessageNoTag(attributeMetadata);
+        }
+      }
+      codedOutputStream.flush();
+    }
+    Files.move(
+        tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Returns the scopes of the snapshot, or nothing when there is no snapshot yet
+   *
+   * @throws IOException if the snapshot cannot be read or is not a snapshot of this version
+   */
+  List<ScopeSnapshot> read() throws IOException {
+    if (!Files.exists(path)) {
+      return List.of();
+    }
+    try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer =
+          fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+      CodedInputStream codedInputStream = CodedInputStream.newInstance(buffer);
+      if (codedInputStream.readFixed32() != MAGIC) {
+        throw new IOException("Not an attribute metadata snapshot: " + path);
+      }
+      int version = codedInputStream.readUInt32();
+      if (version != VERSION) {
+        throw new IOException("Unsupported attribute metadata snapshot version: " + version);
+      }
+      int scopeCount = codedInputStream.readUInt32();
+      List<ScopeSnapshot> scopeSnapshots = new ArrayList<>(scopeCount);
+      for (int i = 0; i < scopeCount; i++) {
+        String tenantId = codedInputStream.readString();
+        String scope = codedInputStream.readString();
+        int attributeCount = codedInputStream.readUInt32();
+        List<AttributeMetadata> attributes = new ArrayList<>(attributeCount);
+        for (int j = 0; j < attributeCount; j++) {
+          attributes.add(
+              codedInputStream.readMessage(
+                  AttributeMetadata.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+        }
+        scopeSnapshots.add(new ScopeSnapshot(tenantId, scope, attributes));
+      }
+      return scopeSnapshots;
+    }
+  }
+
+  /** The attribute metadata of one scope of a tenant */
+  static class ScopeSnapshot {
+    private final String tenantId;
+    private final String scope;
+    private final Collection<AttributeMetadata> attributes;
+
+    ScopeSnapshot(String tenantId, String scope, Collection<AttributeMetadata> attributes) {
+      this.tenantId = tenantId;
+      this.scope = scope;
+      this.attributes = attributes;
+    }
+
+    String getTenantId() {
+      return tenantId;
+    }
+
+    String getScope() {
+      return scope;
+    }
+
+    Collection<AttributeMetadata> getAttributes() {
+      return attributes;
+    }
+  }
+}
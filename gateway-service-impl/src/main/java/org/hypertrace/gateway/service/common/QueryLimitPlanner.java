@@ -0,0 +1,101 @@
+package org.hypertrace.gateway.service.common;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the limits of group by queries to the query service from the rows the response needs,
+ * instead of the fixed default limit, which makes Pinot and the gateway process far more rows than
+ * needed. A group by query needs a row per group and time bucket, and the planned limit is one more
+ * than that. So, a query returning as many rows as its planned limit may have been truncated, and
+ * it is executed again with the default limit. The rows are then the same as with the default
+ * limit in either case.
+ */
+public class QueryLimitPlanner {
+  private static final Logger LOG = LoggerFactory.getLogger(QueryLimitPlanner.class);
+
+  private final QueryLimitConfig queryLimitConfig;
+  private final Counter requeryCounter;
+
+  public QueryLimitPlanner(QueryLimitConfig queryLimitConfig) {
+    this.queryLimitConfig = queryLimitConfig;
+    this.requeryCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.query.service.limit.requery", ImmutableMap.of());
+  }
+
+  /**
+   * Returns the limit for a query returning a row per group and time bucket, which is never more
+   * than the default limit. The default limit is returned if the number of groups is not known.
+   *
+   * @param groupCount number of groups the response needs, or 0 if not known
+   * @param bucketCount number of time buckets of each group, 1 without time aggregations
+   * @param groupByColumnCount number of group by columns apart from the time bucket
+   * @param defaultLimit the limit to use when the limit cannot be planned or was hit
+   */
+  public int planLimit(
+      long groupCount, long bucketCount, int groupByColumnCount, int defaultLimit) {
+    if (!queryLimitConfig.isAdaptiveEnabled() || groupCount <= 0 || bucketCount <= 0) {
+      return defaultLimit;
+    }
+    int extraGroupByColumnCount = Math.max(groupByColumnCount - 1, 0);
+    double rowCount =
+        groupCount
+            * (double) bucketCount
+            * Math.pow(queryLimitConfig.getGroupByColumnFactor(), extraGroupByColumnCount);
+    return (int) Math.min(defaultLimit, rowCount + 1);
+  }
+
+  /**
+   * Executes the query, and executes it again with the default limit if it returned as many rows
+   * as its planned limit. The chunks of a query with a planned limit are read before returning
+   * them, which holds at most that many rows.
+   */
+  public Iterator<ResultSetChunk> execute(
+      QueryRequest queryRequest,
+      int defaultLimit,
+      Function<QueryRequest, Iterator<ResultSetChunk>> executor) {
+    if (queryRequest.getLimit() <= 0 || queryRequest.getLimit() >= defaultLimit) {
+      return executor.apply(queryRequest);
+    }
+
+    List<ResultSetChunk> chunks = new ArrayList<>();
+    long rowCount = 0;
+    Iterator<ResultSetChunk> resultSetChunkIterator = executor.apply(queryRequest);
+    while (resultSetChunkIterator.hasNext()) {
+      ResultSetChunk chunk = resultSetChunkIterator.next();
+      chunks.add(chunk);
+      rowCount += chunk.getRowCount();
+    }
+    if (rowCount < queryRequest.getLimit()) {
+      return chunks.iterator();
+    }
+
+    requeryCounter.increment();
+    LOG.debug(
+        "Query returned {} rows, which is its planned limit. Querying again with limit {}",
+        rowCount,
+        defaultLimit);
+    return executor.apply(queryRequest.toBuilder().setLimit(defaultLimit).build());
+  }
+
+  /** Returns the number of time buckets of the period in the time range */
+  public static long getBucketCount(long startTimeMillis, long endTimeMillis, long periodSecs) {
+    long periodMillis = TimeUnit.SECONDS.toMillis(periodSecs);
+    if (periodMillis <= 0 || endTimeMillis <= startTimeMillis) {
+      return 0;
+    }
+    return (endTimeMillis - startTimeMillis + periodMillis - 1) / periodMillis;
+  }
+}
@@ -0,0 +1,118 @@
+package org.hypertrace.gateway.service.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
+
+/**
+ * Lets concurrent identical requests share one execution. The first request for a key runs the
+ * computation on its own thread, and the requests for the same key that arrive while it runs wait
+ * for it and get its result, or its exception. Once the computation has completed, the next
+ * request for the key runs it again, so nothing is cached beyond the in-flight execution.
+ *
+ * <p>Requests are keyed by tenant, request headers and request message, so that a response is only
+ * shared between callers with the same identity and authorization. Protobuf messages compare by
+ * their field values, so two requests built independently with the same fields share an execution.
+ *
+ * <p>A waiting request gives up when its own call is cancelled or its deadline passes, without
+ * affecting the execution. When the execution fails because the call that runs it was cancelled,
+ * the waiting requests run it again instead of failing with it.
+ */
+public class RequestCoalescer<R, V> {
+  private static final String REQUEST_TAG = "request";
+
+  private final boolean enabled;
+  private final Map<List<Object>, CompletableFuture<V>> inFlightRequests =
+      new ConcurrentHashMap<>();
+  private final Counter executedCounter;
+  private final Counter coalescedCounter;
+
+  /**
+   * @param requestName tags the metrics of this coalescer, the ratio of coalesced to executed
+   *     requests tells how much duplicate work is saved
+   */
+  public RequestCoalescer(String requestName, boolean enabled) {
+    this.enabled = enabled;
+    this.executedCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.request.coalescing.executed", ImmutableMap.of(REQUEST_TAG, requestName));
+    this.coalescedCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.request.coalescing.coalesced", ImmutableMap.of(REQUEST_TAG, requestName));
+  }
+
+  public V execute(
+      String tenantId, Map<String, String> requestHeaders, R request, Supplier<V> computation) {
+    if (!enabled) {
+      return computation.get();
+    }
+    List<Object> key = List.of(tenantId, requestHeaders, request);
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> inFlightFuture = inFlightRequests.putIfAbsent(key, future);
+    if (inFlightFuture != null) {
+      coalescedCounter.increment();
+      return awaitInFlight(inFlightFuture, tenantId, requestHeaders, request, computation);
+    }
+
+    executedCounter.increment();
+    try {
+      V value = computation.get();
+      future.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      if (Context.current().isCancelled()) {
+        // The failure belongs to this call only, the waiting requests run the computation again
+        future.cancel(false);
+      } else {
+        future.completeExceptionally(e);
+      }
+      throw e;
+    } finally {
+      inFlightRequests.remove(key, future);
+    }
+  }
+
+  private V awaitInFlight(
+      CompletableFuture<V> inFlightFuture,
+      String tenantId,
+      Map<String, String> requestHeaders,
+      R request,
+      Supplier<V> computation) {
+    // Waits on a copy, so that giving up on it leaves the execution to the other requests
+    CompletableFuture<V> waitFuture = inFlightFuture.copy();
+    Context context = Context.current();
+    Context.CancellationListener cancellationListener =
+        cancelledContext -> waitFuture.cancel(false);
+    context.addListener(cancellationListener, MoreExecutors.directExecutor());
+    try {
+      // Rethrows what the computation threw, so that waiting requests fail the same way
+      return FutureUtil.await(waitFuture);
+    } catch (CancellationException e) {
+      if (context.isCancelled()) {
+        throw Optional.ofNullable(Context.statusFromCancelled(context))
+            .orElse(Status.CANCELLED)
+            .asRuntimeException();
+      }
+      return execute(tenantId, requestHeaders, request, computation);
+    } finally {
+      context.removeListener(cancellationListener);
+    }
+  }
+
+  @VisibleForTesting
+  int getInFlightRequestCount() {
+    return inFlightRequests.size();
+  }
+}
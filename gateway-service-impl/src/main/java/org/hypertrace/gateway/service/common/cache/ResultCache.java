@@ -0,0 +1,181 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
+
+/**
+ * Caches the responses of requests of a type. The start and end times of a request are rounded
+ * down to the time granularity, and the request with the rounded times is both the cache key and
+ * the request that gets executed, so that requests whose time ranges differ by less than the
+ * granularity share one cached response and every one of them gets the same response. Requests
+ * are keyed by tenant, request headers and request message, so that a response is only shared
+ * between callers with the same identity and authorization. Protobuf messages compare by their
+ * field values.
+ *
+ * <p>Responses for time ranges ending close to the current time may still change as data arrives,
+ * so they are cached for a shorter TTL than those for time ranges that ended longer ago. The cache
+ * is bounded by the serialized size of its requests and responses, in total and per tenant. A
+ * response that would take a tenant over its quota is not cached, so one tenant cannot evict the
+ * responses of all the others.
+ */
+public class ResultCache<R extends Message, V extends Message> {
+  private static final String REQUEST_TAG = "request";
+
+  private final ResultCacheConfig resultCacheConfig;
+  private final ToLongFunction<R> startTimeGetter;
+  private final ToLongFunction<R> endTimeGetter;
+  private final TimeRangeSetter<R> timeRangeSetter;
+  private final Clock clock;
+  private final Cache<List<Object>, CachedResult<V>> cache;
+  private final Map<String, AtomicLong> tenantWeights = new ConcurrentHashMap<>();
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter rejectedCounter;
+
+  public ResultCache(
+      String requestName,
+      ResultCacheConfig resultCacheConfig,
+      ToLongFunction<R> startTimeGetter,
+      ToLongFunction<R> endTimeGetter,
+      TimeRangeSetter<R> timeRangeSetter) {
+    this(
+        requestName,
+        resultCacheConfig,
+        startTimeGetter,
+        endTimeGetter,
+        timeRangeSetter,
+        Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  ResultCache(
+      String requestName,
+      ResultCacheConfig resultCacheConfig,
+      ToLongFunction<R> startTimeGetter,
+      ToLongFunction<R> endTimeGetter,
+      TimeRangeSetter<R> timeRangeSetter,
+      Clock clock) {
+    this.resultCacheConfig = resultCacheConfig;
+    this.startTimeGetter = startTimeGetter;
+    this.endTimeGetter = endTimeGetter;
+    this.timeRangeSetter = timeRangeSetter;
+    this.clock = clock;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(resultCacheConfig.getMaxWeightBytes())
+            .<List<Object>, CachedResult<V>>weigher((key, cachedResult) -> cachedResult.weight)
+            .expireAfterWrite(
+                Math.max(resultCacheConfig.getTtlMillis(), resultCacheConfig.getRecentTtlMillis()),
+                TimeUnit.MILLISECONDS)
+            .removalListener(this::onRemoval)
+            .build();
+    Map<String, String> tags = ImmutableMap.of(REQUEST_TAG, requestName);
+    this.hitCounter = PlatformMetricsRegistry.registerCounter("hypertrace.result.cache.hit", tags);
+    this.missCounter =
+        PlatformMetricsRegistry.registerCounter("hypertrace.result.cache.miss", tags);
+    this.rejectedCounter =
+        PlatformMetricsRegistry.registerCounter("hypertrace.result.cache.rejected", tags);
+  }
+
+  /**
+   * Returns the cached response for the request with its time range rounded to the granularity,
+   * otherwise executes that request and caches its response. Requests whose time range is shorter
+   * than the granularity are executed as they are, without caching.
+   */
+  public V get(
+      String tenantId, Map<String, String> requestHeaders, R request, Function<R, V> executor) {
+    if (!resultCacheConfig.isEnabled()) {
+      return executor.apply(request);
+    }
+    long granularityMillis = Math.max(resultCacheConfig.getTimeGranularityMillis(), 1L);
+    long startTimeMillis = roundDown(startTimeGetter.applyAsLong(request), granularityMillis);
+    long endTimeMillis = roundDown(endTimeGetter.applyAsLong(request), granularityMillis);
+    if (startTimeMillis >= endTimeMillis) {
+      return executor.apply(request);
+    }
+
+    R roundedRequest = timeRangeSetter.setTimeRange(request, startTimeMillis, endTimeMillis);
+    List<Object> key = List.of(tenantId, requestHeaders, roundedRequest);
+    long nowMillis = clock.millis();
+    CachedResult<V> cachedResult = cache.getIfPresent(key);
+    if (cachedResult != null && nowMillis < cachedResult.expiresAtMillis) {
+      hitCounter.increment();
+      return cachedResult.value;
+    }
+    missCounter.increment();
+
+    V value = executor.apply(roundedRequest);
+    put(key, tenantId, roundedRequest, value, endTimeMillis, nowMillis);
+    return value;
+  }
+
+  private void put(
+      List<Object> key, String tenantId, R request, V value, long endTimeMillis, long nowMillis) {
+    long weight = (long) request.getSerializedSize() + value.getSerializedSize();
+    AtomicLong tenantWeight = tenantWeights.computeIfAbsent(tenantId, unused -> new AtomicLong());
+    if (weight > Integer.MAX_VALUE
+        || tenantWeight.get() + weight > resultCacheConfig.getTenantMaxWeightBytes()) {
+      rejectedCounter.increment();
+      return;
+    }
+    long ttlMillis =
+        nowMillis - endTimeMillis < resultCacheConfig.getRecentWindowMillis()
+            ? resultCacheConfig.getRecentTtlMillis()
+            : resultCacheConfig.getTtlMillis();
+    // The weight is added before the entry, so that its removal never takes the total below zero
+    tenantWeight.addAndGet(weight);
+    cache.put(key, new CachedResult<>(tenantId, value, (int) weight, nowMillis + ttlMillis));
+  }
+
+  private void onRemoval(RemovalNotification<List<Object>, CachedResult<V>> notification) {
+    CachedResult<V> cachedResult = notification.getValue();
+    if (cachedResult != null) {
+      tenantWeights.get(cachedResult.tenantId).addAndGet(-cachedResult.weight);
+    }
+  }
+
+  @VisibleForTesting
+  long getTenantWeight(String tenantId) {
+    AtomicLong tenantWeight = tenantWeights.get(tenantId);
+    return tenantWeight == null ? 0L : tenantWeight.get();
+  }
+
+  private static long roundDown(long timeMillis, long granularityMillis) {
+    return timeMillis - Math.floorMod(timeMillis, granularityMillis);
+  }
+
+  /** Returns a copy of a request with the given time range */
+  @FunctionalInterface
+  public interface TimeRangeSetter<R> {
+    R setTimeRange(R request, long startTimeMillis, long endTimeMillis);
+  }
+
+  private static class CachedResult<V> {
+    private final String tenantId;
+    private final V value;
+    private final int weight;
+    private final long expiresAtMillis;
+
+    private CachedResult(String tenantId, V value, int weight, long expiresAtMillis) {
+      this.tenantId = tenantId;
+      this.value = value;
+      this.weight = weight;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+}
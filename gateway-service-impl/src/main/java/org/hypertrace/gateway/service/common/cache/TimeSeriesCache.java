@@ -0,0 +1,157 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.common.config.TimeSeriesCacheConfig;
+
+/**
+ * Caches the rows of time series by time bucket, so that a series requested again over a slightly
+ * later time range only fetches the buckets it does not have yet. Only the buckets that ended
+ * before the mutable window are cached, as the later ones may still get late data. So, a series
+ * polled every period over the last hour only fetches its trailing buckets on each refresh, and
+ * the rows of the earlier buckets are stitched in from the cache.
+ *
+ * <p>A cached series covers a contiguous range of buckets, starting at the start of the time range
+ * it was last requested for. Buckets before the requested time range are dropped as the range
+ * slides forward. The key must identify everything that decides the rows of the series apart from
+ * its time range, including the tenant and the period.
+ */
+public class TimeSeriesCache<T> {
+  private static final String REQUEST_TAG = "request";
+
+  private final TimeSeriesCacheConfig timeSeriesCacheConfig;
+  private final Clock clock;
+  private final Cache<List<Object>, CachedSeries<T>> cache;
+  private final Counter hitCounter;
+  private final Counter partialHitCounter;
+  private final Counter missCounter;
+
+  public TimeSeriesCache(String requestName, TimeSeriesCacheConfig timeSeriesCacheConfig) {
+    this(requestName, timeSeriesCacheConfig, Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  TimeSeriesCache(String requestName, TimeSeriesCacheConfig timeSeriesCacheConfig, Clock clock) {
+    this.timeSeriesCacheConfig = timeSeriesCacheConfig;
+    this.clock = clock;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(timeSeriesCacheConfig.getMaxSize())
+            .expireAfterAccess(timeSeriesCacheConfig.getExpiryMinutes(), TimeUnit.MINUTES)
+            .build();
+    Map<String, String> tags = ImmutableMap.of(REQUEST_TAG, requestName);
+    this.hitCounter =
+        PlatformMetricsRegistry.registerCounter("hypertrace.time.series.cache.hit", tags);
+    this.partialHitCounter =
+        PlatformMetricsRegistry.registerCounter("hypertrace.time.series.cache.partial.hit", tags);
+    this.missCounter =
+        PlatformMetricsRegistry.registerCounter("hypertrace.time.series.cache.miss", tags);
+  }
+
+  public boolean isEnabled() {
+    return timeSeriesCacheConfig.isEnabled();
+  }
+
+  /**
+   * Returns the rows of the series in the time range, fetching the buckets that are not cached
+   *
+   * @param startTimeMillis start of the time range, aligned to the period
+   * @param endTimeMillis end of the time range, aligned to the period
+   * @param intervalStartGetter returns the start time of the bucket of a row
+   * @param fetcher fetches the rows of a part of the time range
+   */
+  public List<T> getSeries(
+      List<Object> key,
+      long startTimeMillis,
+      long endTimeMillis,
+      long periodMillis,
+      ToLongFunction<T> intervalStartGetter,
+      SeriesFetcher<T> fetcher) {
+    if (!isEnabled() || periodMillis <= 0 || startTimeMillis >= endTimeMillis) {
+      return fetcher.fetch(startTimeMillis, endTimeMillis);
+    }
+
+    long mutableStartMillis = clock.millis() - timeSeriesCacheConfig.getMutableWindowMillis();
+    // Buckets starting before this ended before the mutable window
+    long immutableEndMillis =
+        Math.min(
+            endTimeMillis, mutableStartMillis - Math.floorMod(mutableStartMillis, periodMillis));
+
+    CachedSeries<T> cachedSeries = cache.getIfPresent(key);
+    long cachedEndMillis = startTimeMillis;
+    NavigableMap<Long, List<T>> buckets = new TreeMap<>();
+    if (cachedSeries != null
+        && cachedSeries.startTimeMillis <= startTimeMillis
+        && cachedSeries.endTimeMillis > startTimeMillis) {
+      cachedEndMillis = Math.min(cachedSeries.endTimeMillis, endTimeMillis);
+      buckets.putAll(cachedSeries.buckets.subMap(startTimeMillis, true, cachedEndMillis, false));
+    }
+
+    if (cachedEndMillis >= endTimeMillis) {
+      hitCounter.increment();
+    } else {
+      if (cachedEndMillis > startTimeMillis) {
+        partialHitCounter.increment();
+      } else {
+        missCounter.increment();
+      }
+      for (T row : fetcher.fetch(cachedEndMillis, endTimeMillis)) {
+        buckets
+            .computeIfAbsent(intervalStartGetter.applyAsLong(row), unused -> new ArrayList<>())
+            .add(row);
+      }
+    }
+
+    // Nothing is fetched when the series is fully cached, so the cached series stays as it is
+    long newCachedEndMillis = Math.max(cachedEndMillis, immutableEndMillis);
+    if (cachedEndMillis < endTimeMillis && newCachedEndMillis > startTimeMillis) {
+      NavigableMap<Long, List<T>> immutableBuckets = new TreeMap<>();
+      buckets
+          .headMap(newCachedEndMillis, false)
+          .forEach(
+              (intervalStart, bucket) -> immutableBuckets.put(intervalStart, List.copyOf(bucket)));
+      cache.put(
+          key,
+          new CachedSeries<>(
+              startTimeMillis,
+              newCachedEndMillis,
+              Collections.unmodifiableNavigableMap(immutableBuckets)));
+    }
+
+    List<T> rows = new ArrayList<>();
+    buckets.values().forEach(rows::addAll);
+    return rows;
+  }
+
+  /** Fetches the rows of a series in a time range */
+  @FunctionalInterface
+  public interface SeriesFetcher<T> {
+    List<T> fetch(long startTimeMillis, long endTimeMillis);
+  }
+
+  private static class CachedSeries<T> {
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+    private final NavigableMap<Long, List<T>> buckets;
+
+    private CachedSeries(
+        long startTimeMillis, long endTimeMillis, NavigableMap<Long, List<T>> buckets) {
+      this.startTimeMillis = startTimeMillis;
+      this.endTimeMillis = endTimeMillis;
+      this.buckets = buckets;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package org.hypertrace.gateway.service.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for caching the attribute metadata of the tenants */
+public class AttributeMetadataCacheConfig {
+  private static final String ATTRIBUTE_METADATA_CACHE_CONFIG = "attribute.metadata.cache.config";
+  private static final String MAX_SIZE = "max.size";
+  private static final String EXPIRY_MINUTES = "expiry.minutes";
+  private static final String PRELOAD_ENABLED = "preload.enabled";
+  private static final String REFRESH_ENABLED = "refresh.enabled";
+  private static final String REFRESH_MINUTES = "refresh.minutes";
+  private static final String REFRESH_JITTER = "refresh.jitter";
+  private static final String REFRESH_THREADS = "refresh.threads";
+  private static final String SNAPSHOT_ENABLED = "snapshot.enabled";
+  private static final String SNAPSHOT_PATH = "snapshot.path";
+  private static final String SNAPSHOT_INTERVAL_MINUTES = "snapshot.interval.minutes";
+  private static final long DEFAULT_MAX_SIZE = 4096L;
+  private static final long DEFAULT_EXPIRY_MINUTES = 1440L;
+  private static final boolean DEFAULT_PRELOAD_ENABLED = true;
+  private static final boolean DEFAULT_REFRESH_ENABLED = true;
+  private static final long DEFAULT_REFRESH_MINUTES = 60L;
+  private static final double DEFAULT_REFRESH_JITTER = 0.1d;
+  private static final int DEFAULT_REFRESH_THREADS = 1;
+  private static final boolean DEFAULT_SNAPSHOT_ENABLED = false;
+  private static final String DEFAULT_SNAPSHOT_PATH =
+      "/tmp/gateway-service/attribute-metadata.snapshot";
+  private static final long DEFAULT_SNAPSHOT_INTERVAL_MINUTES = 5L;
+  private final long maxSize;
+  private final long expiryMinutes;
+  private final boolean preloadEnabled;
+  private final boolean refreshEnabled;
+  private final long refreshMinutes;
+  private final double refreshJitter;
+  private final int refreshThreads;
+  private final boolean snapshotEnabled;
+  private final String snapshotPath;
+  private final long snapshotIntervalMinutes;
+
+  public AttributeMetadataCacheConfig(Config appConfig) {
+    Config cacheConfig =
+        appConfig.hasPath(ATTRIBUTE_METADATA_CACHE_CONFIG)
+            ? appConfig.getConfig(ATTRIBUTE_METADATA_CACHE_CONFIG)
+            : ConfigFactory.empty();
+
+    this.maxSize = cacheConfig.hasPath(MAX_SIZE) ? cacheConfig.getLong(MAX_SIZE) : DEFAULT_MAX_SIZE;
+    this.expiryMinutes =
+        cacheConfig.hasPath(EXPIRY_MINUTES)
+            ? cacheConfig.getLong(EXPIRY_MINUTES)
+            : DEFAULT_EXPIRY_MINUTES;
+    this.preloadEnabled =
+        cacheConfig.hasPath(PRELOAD_ENABLED)
+            ? cacheConfig.getBoolean(PRELOAD_ENABLED)
+            : DEFAULT_PRELOAD_ENABLED;
+    this.refreshEnabled =
+        cacheConfig.hasPath(REFRESH_ENABLED)
+            ? cacheConfig.getBoolean(REFRESH_ENABLED)
+            : DEFAULT_REFRESH_ENABLED;
+    this.refreshMinutes =
+        cacheConfig.hasPath(REFRESH_MINUTES)
+            ? cacheConfig.getLong(REFRESH_MINUTES)
+            : DEFAULT_REFRESH_MINUTES;
+    this.refreshJitter =
+        cacheConfig.hasPath(REFRESH_JITTER)
+            ? cacheConfig.getDouble(REFRESH_JITTER)
+            : DEFAULT_REFRESH_JITTER;
+    this.refreshThreads =
+        cacheConfig.hasPath(REFRESH_THREADS)
+            ? cacheConfig.getInt(REFRESH_THREADS)
+            : DEFAULT_REFRESH_THREADS;
+    this.snapshotEnabled =
+        cacheConfig.hasPath(SNAPSHOT_ENABLED)
+            ? cacheConfig.getBoolean(SNAPSHOT_ENABLED)
+            : DEFAULT_SNAPSHOT_ENABLED;
+    this.snapshotPath =
+        cacheConfig.hasPath(SNAPSHOT_PATH)
+            ? cacheConfig.getString(SNAPSHOT_PATH)
+            : DEFAULT_SNAPSHOT_PATH;
+    this.snapshotIntervalMinutes =
+        cacheConfig.hasPath(SNAPSHOT_INTERVAL_MINUTES)
+            ? cacheConfig.getLong(SNAPSHOT_INTERVAL_MINUTES)
+            : DEFAULT_SNAPSHOT_INTERVAL_MINUTES;
+  }
+
+  /** Maximum number of (tenant, scope) entries kept in the cache */
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+
+  /**
+   * How long metadata is kept after it was loaded. With refresh enabled, this is how long stale
+   * metadata keeps being served while attribute service cannot be reached.
+   */
+  public long getExpiryMinutes() {
+    return this.expiryMinutes;
+  }
+
+  /** Whether the metadata of all the scopes of a tenant is loaded in one call on first contact */
+  public boolean isPreloadEnabled() {
+    return this.preloadEnabled;
+  }
+
+  /** Whether metadata is refreshed in the background while the cached one keeps being served */
+  public boolean isRefreshEnabled() {
+    return this.refreshEnabled;
+  }
+
+  public long getRefreshMinutes() {
+    return this.refreshMinutes;
+  }
+
+  /**
+   * Fraction of the refresh period by which the refresh of each entry is randomly brought forward,
+   * so that the entries loaded together are not all refreshed at the same time
+   */
+  public double getRefreshJitter() {
+    return this.refreshJitter;
+  }
+
+  public int getRefreshThreads() {
+    return this.refreshThreads;
+  }
+
+  /**
+   * Whether the cached metadata is periodically written to a local snapshot file, and loaded from
+   * it on startup
+   */
+  public boolean isSnapshotEnabled() {
+    return this.snapshotEnabled;
+  }
+
+  public String getSnapshotPath() {
+    return this.snapshotPath;
+  }
+
+  public long getSnapshotIntervalMinutes() {
+    return this.snapshotIntervalMinutes;
+  }
+}
@@ -0,0 +1,26 @@
+package org.hypertrace.gateway.service.common.config;
+
+/** Sizing of the execution pool used to call a single downstream data source. */
+public class ExecutionPoolConfig {
+  private final String name;
+  private final int maxConcurrency;
+  private final int queueSize;
+
+  public ExecutionPoolConfig(String name, int maxConcurrency, int queueSize) {
+    this.name = name;
+    this.maxConcurrency = maxConcurrency;
+    this.queueSize = queueSize;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public int getQueueSize() {
+    return queueSize;
+  }
+}
@@ -0,0 +1,89 @@
+package org.hypertrace.gateway.service.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.hypertrace.core.attribute.service.v1.AttributeSource;
+
+/**
+ * Configuration of the bounded execution pools used to fan out calls to downstream data sources.
+ * One pool is created for each of QS and EDS, using the defaults below when a source is not
+ * configured.
+ *
+ * <p>When async request handling is enabled, the RPCs are handled on the REQUEST pool instead of
+ * the gRPC server threads.
+ *
+ * <pre>
+ * execution.pools.config = {
+ *   virtual.threads.enabled = false
+ *   async.requests.enabled = false
+ *   REQUEST = { max.concurrency = 20, queue.size = 1000 }
+ *   QS = { max.concurrency = 20, queue.size = 1000 }
+ *   EDS = { max.concurrency = 20, queue.size = 1000 }
+ * }
+ * </pre>
+ */
+public class ExecutionPoolConfigs {
+  private static final String EXECUTION_POOLS_CONFIG = "execution.pools.config";
+  private static final String VIRTUAL_THREADS_ENABLED = "virtual.threads.enabled";
+  private static final String ASYNC_REQUESTS_ENABLED = "async.requests.enabled";
+  public static final String REQUEST_POOL = "REQUEST";
+  private static final String MAX_CONCURRENCY = "max.concurrency";
+  private static final String QUEUE_SIZE = "queue.size";
+  private static final int DEFAULT_MAX_CONCURRENCY = 20;
+  private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+  private final boolean virtualThreadsEnabled;
+  private final boolean asyncRequestsEnabled;
+  private final Map<String, ExecutionPoolConfig> poolConfigMap;
+
+  public ExecutionPoolConfigs(Config appConfig) {
+    Config poolsConfig =
+        appConfig.hasPath(EXECUTION_POOLS_CONFIG)
+            ? appConfig.getConfig(EXECUTION_POOLS_CONFIG)
+            : ConfigFactory.empty();
+
+    this.virtualThreadsEnabled =
+        poolsConfig.hasPath(VIRTUAL_THREADS_ENABLED)
+            && poolsConfig.getBoolean(VIRTUAL_THREADS_ENABLED);
+    this.asyncRequestsEnabled =
+        poolsConfig.hasPath(ASYNC_REQUESTS_ENABLED)
+            && poolsConfig.getBoolean(ASYNC_REQUESTS_ENABLED);
+
+    Map<String, ExecutionPoolConfig> configMap = new LinkedHashMap<>();
+    if (asyncRequestsEnabled) {
+      configMap.put(REQUEST_POOL, buildPoolConfig(poolsConfig, REQUEST_POOL));
+    }
+    configMap.put(
+        AttributeSource.QS.name(), buildPoolConfig(poolsConfig, AttributeSource.QS.name()));
+    configMap.put(
+        AttributeSource.EDS.name(), buildPoolConfig(poolsConfig, AttributeSource.EDS.name()));
+    this.poolConfigMap = Collections.unmodifiableMap(configMap);
+  }
+
+  private static ExecutionPoolConfig buildPoolConfig(Config poolsConfig, String name) {
+    Config poolConfig =
+        poolsConfig.hasPath(name) ? poolsConfig.getConfig(name) : ConfigFactory.empty();
+    int maxConcurrency =
+        poolConfig.hasPath(MAX_CONCURRENCY)
+            ? poolConfig.getInt(MAX_CONCURRENCY)
+            : DEFAULT_MAX_CONCURRENCY;
+    int queueSize =
+        poolConfig.hasPath(QUEUE_SIZE) ? poolConfig.getInt(QUEUE_SIZE) : DEFAULT_QUEUE_SIZE;
+    return new ExecutionPoolConfig(name, maxConcurrency, queueSize);
+  }
+
+  public boolean isVirtualThreadsEnabled() {
+    return virtualThreadsEnabled;
+  }
+
+  public boolean isAsyncRequestsEnabled() {
+    return asyncRequestsEnabled;
+  }
+
+  public Map<String, ExecutionPoolConfig> getPoolConfigMap() {
+    return poolConfigMap;
+  }
+}
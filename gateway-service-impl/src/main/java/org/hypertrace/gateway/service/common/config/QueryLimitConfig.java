@@ -0,0 +1,47 @@
+package org.hypertrace.gateway.service.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for computing the limits of group by queries to the query service */
+public class QueryLimitConfig {
+  private static final String QUERY_LIMIT_CONFIG = "query.service.limit.config";
+  private static final String ADAPTIVE_ENABLED = "adaptive.enabled";
+  private static final String GROUP_BY_COLUMN_FACTOR = "group.by.column.factor";
+  private static final boolean DEFAULT_ADAPTIVE_ENABLED = false;
+  private static final int DEFAULT_GROUP_BY_COLUMN_FACTOR = 2;
+  private final boolean adaptiveEnabled;
+  private final int groupByColumnFactor;
+
+  public QueryLimitConfig(Config appConfig) {
+    Config queryLimitConfig =
+        appConfig.hasPath(QUERY_LIMIT_CONFIG)
+            ? appConfig.getConfig(QUERY_LIMIT_CONFIG)
+            : ConfigFactory.empty();
+
+    this.adaptiveEnabled =
+        queryLimitConfig.hasPath(ADAPTIVE_ENABLED)
+            ? queryLimitConfig.getBoolean(ADAPTIVE_ENABLED)
+            : DEFAULT_ADAPTIVE_ENABLED;
+    this.groupByColumnFactor =
+        queryLimitConfig.hasPath(GROUP_BY_COLUMN_FACTOR)
+            ? queryLimitConfig.getInt(GROUP_BY_COLUMN_FACTOR)
+            : DEFAULT_GROUP_BY_COLUMN_FACTOR;
+  }
+
+  /**
+   * Whether group by queries are limited to the rows the response needs, instead of the fixed
+   * default limit, and queried again with the default limit when they return that many rows
+   */
+  public boolean isAdaptiveEnabled() {
+    return this.adaptiveEnabled;
+  }
+
+  /**
+   * How many more rows to expect for each group by column after the first one, as a group may then
+   * have more than one row, for instance when the name of an entity changed
+   */
+  public int getGroupByColumnFactor() {
+    return this.groupByColumnFactor;
+  }
+}
@@ -0,0 +1,39 @@
+package org.hypertrace.gateway.service.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for sharing one execution between concurrent identical requests of a tenant */
+public class RequestCoalescingConfig {
+  private static final String REQUEST_COALESCING_CONFIG = "request.coalescing.config";
+  private static final String ENTITIES_ENABLED = "entities.enabled";
+  private static final String EXPLORE_ENABLED = "explore.enabled";
+  private static final boolean DEFAULT_ENTITIES_ENABLED = false;
+  private static final boolean DEFAULT_EXPLORE_ENABLED = false;
+  private final boolean entitiesEnabled;
+  private final boolean exploreEnabled;
+
+  public RequestCoalescingConfig(Config appConfig) {
+    Config coalescingConfig =
+        appConfig.hasPath(REQUEST_COALESCING_CONFIG)
+            ? appConfig.getConfig(REQUEST_COALESCING_CONFIG)
+            : ConfigFactory.empty();
+
+    this.entitiesEnabled =
+        coalescingConfig.hasPath(ENTITIES_ENABLED)
+            ? coalescingConfig.getBoolean(ENTITIES_ENABLED)
+            : DEFAULT_ENTITIES_ENABLED;
+    this.exploreEnabled =
+        coalescingConfig.hasPath(EXPLORE_ENABLED)
+            ? coalescingConfig.getBoolean(EXPLORE_ENABLED)
+            : DEFAULT_EXPLORE_ENABLED;
+  }
+
+  public boolean isEntitiesEnabled() {
+    return this.entitiesEnabled;
+  }
+
+  public boolean isExploreEnabled() {
+    return this.exploreEnabled;
+  }
+}
@@ -0,0 +1,106 @@
+package org.hypertrace.gateway.service.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for caching the responses of entities and explore requests */
+public class ResultCacheConfig {
+  private static final String RESULT_CACHE_CONFIG = "result.cache.config";
+  private static final String ENABLED = "enabled";
+  private static final String TIME_GRANULARITY_MILLIS = "time.granularity.millis";
+  private static final String MAX_WEIGHT_BYTES = "max.weight.bytes";
+  private static final String TENANT_MAX_WEIGHT_BYTES = "tenant.max.weight.bytes";
+  private static final String TTL_MILLIS = "ttl.millis";
+  private static final String RECENT_TTL_MILLIS = "recent.ttl.millis";
+  private static final String RECENT_WINDOW_MILLIS = "recent.window.millis";
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final long DEFAULT_TIME_GRANULARITY_MILLIS = 60000L;
+  private static final long DEFAULT_MAX_WEIGHT_BYTES = 64L * 1024 * 1024;
+  private static final long DEFAULT_TENANT_MAX_WEIGHT_BYTES = 16L * 1024 * 1024;
+  private static final long DEFAULT_TTL_MILLIS = 600000L;
+  private static final long DEFAULT_RECENT_TTL_MILLIS = 30000L;
+  private static final long DEFAULT_RECENT_WINDOW_MILLIS = 300000L;
+  private final boolean enabled;
+  private final long timeGranularityMillis;
+  private final long maxWeightBytes;
+  private final long tenantMaxWeightBytes;
+  private final long ttlMillis;
+  private final long recentTtlMillis;
+  private final long recentWindowMillis;
+
+  public ResultCacheConfig(Config appConfig) {
+    Config resultCacheConfig =
+        appConfig.hasPath(RESULT_CACHE_CONFIG)
+            ? appConfig.getConfig(RESULT_CACHE_CONFIG)
+            : ConfigFactory.empty();
+
+    this.enabled =
+        resultCacheConfig.hasPath(ENABLED)
+            ? resultCacheConfig.getBoolean(ENABLED)
+            : DEFAULT_ENABLED;
+    this.timeGranularityMillis =
+        resultCacheConfig.hasPath(TIME_GRANULARITY_MILLIS)
+            ? resultCacheConfig.getLong(TIME_GRANULARITY_MILLIS)
+            : DEFAULT_TIME_GRANULARITY_MILLIS;
+    this.maxWeightBytes =
+        resultCacheConfig.hasPath(MAX_WEIGHT_BYTES)
+            ? resultCacheConfig.getLong(MAX_WEIGHT_BYTES)
+            : DEFAULT_MAX_WEIGHT_BYTES;
+    this.tenantMaxWeightBytes =
+        resultCacheConfig.hasPath(TENANT_MAX_WEIGHT_BYTES)
+            ? resultCacheConfig.getLong(TENANT_MAX_WEIGHT_BYTES)
+            : DEFAULT_TENANT_MAX_WEIGHT_BYTES;
+    this.ttlMillis =
+        resultCacheConfig.hasPath(TTL_MILLIS)
+            ? resultCacheConfig.getLong(TTL_MILLIS)
+            : DEFAULT_TTL_MILLIS;
+    this.recentTtlMillis =
+        resultCacheConfig.hasPath(RECENT_TTL_MILLIS)
+            ? resultCacheConfig.getLong(RECENT_TTL_MILLIS)
+            : DEFAULT_RECENT_TTL_MILLIS;
+    this.recentWindowMillis =
+        resultCacheConfig.hasPath(RECENT_WINDOW_MILLIS)
+            ? resultCacheConfig.getLong(RECENT_WINDOW_MILLIS)
+            : DEFAULT_RECENT_WINDOW_MILLIS;
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * The start and end times of cached requests are rounded down to a multiple of this, so that
+   * requests whose time ranges differ by less than this share the cached response
+   */
+  public long getTimeGranularityMillis() {
+    return this.timeGranularityMillis;
+  }
+
+  /** Maximum total serialized size of the cached requests and responses */
+  public long getMaxWeightBytes() {
+    return this.maxWeightBytes;
+  }
+
+  /** Maximum total serialized size of the cached requests and responses of one tenant */
+  public long getTenantMaxWeightBytes() {
+    return this.tenantMaxWeightBytes;
+  }
+
+  /** How long responses for time ranges ending before the recent window are cached */
+  public long getTtlMillis() {
+    return this.ttlMillis;
+  }
+
+  /** How long responses for time ranges ending within the recent window are cached */
+  public long getRecentTtlMillis() {
+    return this.recentTtlMillis;
+  }
+
+  /**
+   * Time ranges ending within this of the current time may still get data, so their responses are
+   * cached for the shorter recent TTL
+   */
+  public long getRecentWindowMillis() {
+    return this.recentWindowMillis;
+  }
+}
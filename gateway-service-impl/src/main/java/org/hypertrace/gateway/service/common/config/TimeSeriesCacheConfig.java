@@ -0,0 +1,67 @@
+package org.hypertrace.gateway.service.common.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for caching the time buckets of time series that can no longer change */
+public class TimeSeriesCacheConfig {
+  private static final String TIME_SERIES_CACHE_CONFIG = "time.series.cache.config";
+  private static final String ENABLED = "enabled";
+  private static final String MAX_SIZE = "max.size";
+  private static final String EXPIRY_MINUTES = "expiry.minutes";
+  private static final String MUTABLE_WINDOW_MILLIS = "mutable.window.millis";
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final long DEFAULT_MAX_SIZE = 10000L;
+  private static final long DEFAULT_EXPIRY_MINUTES = 60L;
+  private static final long DEFAULT_MUTABLE_WINDOW_MILLIS = 300000L;
+  private final boolean enabled;
+  private final long maxSize;
+  private final long expiryMinutes;
+  private final long mutableWindowMillis;
+
+  public TimeSeriesCacheConfig(Config appConfig) {
+    Config timeSeriesCacheConfig =
+        appConfig.hasPath(TIME_SERIES_CACHE_CONFIG)
+            ? appConfig.getConfig(TIME_SERIES_CACHE_CONFIG)
+            : ConfigFactory.empty();
+
+    this.enabled =
+        timeSeriesCacheConfig.hasPath(ENABLED)
+            ? timeSeriesCacheConfig.getBoolean(ENABLED)
+            : DEFAULT_ENABLED;
+    this.maxSize =
+        timeSeriesCacheConfig.hasPath(MAX_SIZE)
+            ? timeSeriesCacheConfig.getLong(MAX_SIZE)
+            : DEFAULT_MAX_SIZE;
+    this.expiryMinutes =
+        timeSeriesCacheConfig.hasPath(EXPIRY_MINUTES)
+            ? timeSeriesCacheConfig.getLong(EXPIRY_MINUTES)
+            : DEFAULT_EXPIRY_MINUTES;
+    this.mutableWindowMillis =
+        timeSeriesCacheConfig.hasPath(MUTABLE_WINDOW_MILLIS)
+            ? timeSeriesCacheConfig.getLong(MUTABLE_WINDOW_MILLIS)
+            : DEFAULT_MUTABLE_WINDOW_MILLIS;
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /** Maximum number of cached series */
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+
+  /** How long a series is kept after it was last requested */
+  public long getExpiryMinutes() {
+    return this.expiryMinutes;
+  }
+
+  /**
+   * Time buckets ending within this of the current time may still get late data, so they are
+   * fetched on every request and never cached
+   */
+  public long getMutableWindowMillis() {
+    return this.mutableWindowMillis;
+  }
+}
@@ -0,0 +1,189 @@
+package org.hypertrace.gateway.service.common.converters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming parser for the flat JSON shapes that string arrays and string maps are encoded in: an
+ * array of strings and an object whose values are strings. It does not allocate anything but the
+ * result and never throws; anything outside of these shapes (nested values, numbers, nulls,
+ * malformed input) makes it return null so that the caller can fall back to a full JSON parser.
+ */
+class FlatJsonParser {
+  private final String json;
+  private int position;
+
+  private FlatJsonParser(String json) {
+    this.json = json;
+  }
+
+  /** Returns the strings of a JSON array of strings, or null when the input is anything else */
+  static List<String> parseStringArray(String json) {
+    FlatJsonParser parser = new FlatJsonParser(json);
+    if (!parser.consume('[')) {
+      return null;
+    }
+    if (parser.consume(']')) {
+      return parser.atEnd() ? Collections.emptyList() : null;
+    }
+    List<String> values = new ArrayList<>();
+    do {
+      String value = parser.readString();
+      if (value == null) {
+        return null;
+      }
+      values.add(value);
+    } while (parser.consume(','));
+    return parser.consume(']') && parser.atEnd() ? values : null;
+  }
+
+  /** Returns the entries of a JSON object of strings, or null when the input is anything else */
+  static Map<String, String> parseStringMap(String json) {
+    FlatJsonParser parser = new FlatJsonParser(json);
+    if (!parser.consume('{')) {
+      return null;
+    }
+    if (parser.consume('}')) {
+      return parser.atEnd() ? new HashMap<>() : null;
+    }
+    Map<String, String> values = new HashMap<>();
+    do {
+      String key = parser.readString();
+      if (key == null || !parser.consume(':')) {
+        return null;
+      }
+      String value = parser.readString();
+      if (value == null) {
+        return null;
+      }
+      values.put(key, value);
+    } while (parser.consume(','));
+    return parser.consume('}') && parser.atEnd() ? values : null;
+  }
+
+  /** Skips whitespace and consumes the character if it is the next one */
+  private boolean consume(char c) {
+    skipWhitespace();
+    if (position < json.length() && json.charAt(position) == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean atEnd() {
+    skipWhitespace();
+    return position == json.length();
+  }
+
+  private void skipWhitespace() {
+    while (position < json.length()) {
+      char c = json.charAt(position);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return;
+      }
+      position++;
+    }
+  }
+
+  private String readString() {
+    if (!consume('"')) {
+      return null;
+    }
+    int start = position;
+    // strings without escapes, the common case, are a substring of the input
+    while (position < json.length()) {
+      char c = json.charAt(position);
+      if (c == '"') {
+        return json.substring(start, position++);
+      }
+      if (c == '\\') {
+        return readEscapedString(start);
+      }
+      if (c < 0x20) {
+        return null;
+      }
+      position++;
+    }
+    return null;
+  }
+
+  private String readEscapedString(int start) {
+    StringBuilder builder = new StringBuilder(json.length() - start);
+    builder.append(json, start, position);
+    while (position < json.length()) {
+      char c = json.charAt(position++);
+      if (c == '"') {
+        return builder.toString();
+      }
+      if (c < 0x20) {
+        return null;
+      }
+      if (c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      if (position >= json.length()) {
+        return null;
+      }
+      char escaped = json.charAt(position++);
+      switch (escaped) {
+        case '"':
+        case '\\':
+        case '/':
+          builder.append(escaped);
+          break;
+        case 'b':
+          builder.append('\b');
+          break;
+        case 'f':
+          builder.append('\f');
+          break;
+        case 'n':
+          builder.append('\n');
+          break;
+        case 'r':
+          builder.append('\r');
+          break;
+        case 't':
+          builder.append('\t');
+          break;
+        case 'u':
+          int codeUnit = readHexCodeUnit();
+          if (codeUnit < 0) {
+            return null;
+          }
+          builder.append((char) codeUnit);
+          break;
+        default:
+          return null;
+      }
+    }
+    return null;
+  }
+
+  private int readHexCodeUnit() {
+    if (position + 4 > json.length()) {
+      return -1;
+    }
+    int codeUnit = 0;
+    for (int i = 0; i < 4; i++) {
+      char c = json.charAt(position++);
+      int digit;
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 'a' && c <= 'f') {
+        digit = c - 'a' + 10;
+      } else if (c >= 'A' && c <= 'F') {
+        digit = c - 'A' + 10;
+      } else {
+        return -1;
+      }
+      codeUnit = (codeUnit << 4) | digit;
+    }
+    return codeUnit;
+  }
+}
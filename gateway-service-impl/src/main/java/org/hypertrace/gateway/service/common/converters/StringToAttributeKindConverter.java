@@ -3,6 +3,8 @@ package org.hypertrace.gateway.service.common.converters;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,7 +26,15 @@ public class StringToAttributeKindConverter extends ToAttributeKindConverter<Str
   private static final TypeReference<List<String>> LIST_TYPE_REFERENCE = new TypeReference<>() {};
   public static final StringToAttributeKindConverter INSTANCE =
       new StringToAttributeKindConverter();
+  // Labels, tags and the like repeat a lot across the rows of a result, so the decoded values of
+  // the encoded strings that are not too long are kept around
+  private static final int CACHE_MAX_SIZE = 10_000;
+  private static final int CACHE_MAX_VALUE_LENGTH = 1024;
   private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Cache<String, List<String>> arrayCache =
+      CacheBuilder.newBuilder().maximumSize(CACHE_MAX_SIZE).build();
+  private final Cache<String, Map<String, String>> mapCache =
+      CacheBuilder.newBuilder().maximumSize(CACHE_MAX_SIZE).build();
 
   private StringToAttributeKindConverter() {}
 
@@ -91,7 +101,29 @@ public class StringToAttributeKindConverter extends ToAttributeKindConverter<Str
     if (StringUtils.isEmpty(jsonString)) {
       return List.of();
     }
+    List<String> cachedValues = arrayCache.getIfPresent(jsonString);
+    if (cachedValues != null) {
+      return cachedValues;
+    }
+
+    // Only a JSON array, or null, is read as a list. Anything else is a single string, which
+    // is returned as a list with one element without going through the JSON parser.
+    char firstChar = firstNonWhitespaceChar(jsonString);
+    if (firstChar != '[' && firstChar != 'n') {
+      return List.of(jsonString);
+    }
+    List<String> values = FlatJsonParser.parseStringArray(jsonString);
+    if (values == null) {
+      return readArray(jsonString);
+    }
+    values = Collections.unmodifiableList(values);
+    if (jsonString.length() <= CACHE_MAX_VALUE_LENGTH) {
+      arrayCache.put(jsonString, values);
+    }
+    return values;
+  }
 
+  private List<String> readArray(String jsonString) {
     // Check if the string is already in a list format.
     try {
       return Optional.ofNullable(objectMapper.readValue(jsonString, LIST_TYPE_REFERENCE))
@@ -103,11 +135,29 @@ public class StringToAttributeKindConverter extends ToAttributeKindConverter<Str
   }
 
   private Map<String, String> convertToMap(String jsonString) {
+    if (StringUtils.isEmpty(jsonString)) {
+      return new HashMap<>();
+    }
+    Map<String, String> cachedValues = mapCache.getIfPresent(jsonString);
+    if (cachedValues != null) {
+      return cachedValues;
+    }
+
+    Map<String, String> values = FlatJsonParser.parseStringMap(jsonString);
+    if (values == null) {
+      return readMap(jsonString);
+    }
+    values = Collections.unmodifiableMap(values);
+    if (jsonString.length() <= CACHE_MAX_VALUE_LENGTH) {
+      mapCache.put(jsonString, values);
+    }
+    return values;
+  }
+
+  private Map<String, String> readMap(String jsonString) {
     Map<String, String> mapData = new HashMap<>();
     try {
-      if (!StringUtils.isEmpty(jsonString)) {
-        mapData = objectMapper.readValue(jsonString, MAP_TYPE_REFERENCE);
-      }
+      mapData = objectMapper.readValue(jsonString, MAP_TYPE_REFERENCE);
     } catch (IOException e) {
       LOGGER.warn(
           "Unable to read Map JSON String data from: {}. Setting data as empty map instead. With error:",
@@ -116,4 +166,14 @@ public class StringToAttributeKindConverter extends ToAttributeKindConverter<Str
     }
     return mapData;
   }
+
+  private static char firstNonWhitespaceChar(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return c;
+      }
+    }
+    return 0;
+  }
 }
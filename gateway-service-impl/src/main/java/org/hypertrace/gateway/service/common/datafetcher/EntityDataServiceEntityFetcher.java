@@ -6,7 +6,6 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
@@ -17,8 +16,8 @@ import org.hypertrace.entity.query.service.v1.Row;
 import org.hypertrace.entity.query.service.v1.TotalEntitiesRequest;
 import org.hypertrace.entity.query.service.v1.TotalEntitiesResponse;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshot;
 import org.hypertrace.gateway.service.common.converters.EntityServiceAndGatewayServiceConverter;
-import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
@@ -54,11 +53,8 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
   public EntityFetcherResponse getEntities(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
     List<String> entityIdAttributeIds =
-        AttributeMetadataUtil.getIdAttributeIds(
-            attributeMetadataProvider,
-            entityIdColumnsConfigs,
-            requestContext,
-            entitiesRequest.getEntityType());
+        getAttributeMetadataSnapshot(requestContext)
+            .getIdAttributeIds(entitiesRequest.getEntityType());
     Map<String, List<String>> requestedAliasesByEntityIdAttributeIds =
         getExpectedResultNamesForEachAttributeId(
             entitiesRequest.getSelectionList(), entityIdAttributeIds);
@@ -222,21 +218,13 @@ public class EntityDataServiceEntityFetcher implements IEntityFetcher {
 
   private Map<String, AttributeMetadata> getAttributeMetadataByAlias(
       EntitiesRequestContext requestContext, EntitiesRequest request) {
-    Map<String, AttributeMetadata> attributeMetadataByIdMap =
-        attributeMetadataProvider.getAttributesMetadata(requestContext, request.getEntityType());
-    return request.getSelectionList().stream()
-        .filter(
-            expression ->
-                ExpressionReader.getAttributeIdFromAttributeSelection(expression)
-                    .map(attributeMetadataByIdMap::containsKey)
-                    .orElse(false))
-        .map(
-            expression ->
-                Map.entry(
-                    ExpressionReader.getSelectionResultName(expression).orElseThrow(),
-                    attributeMetadataByIdMap.get(
-                        ExpressionReader.getAttributeIdFromAttributeSelection(expression)
-                            .orElseThrow())))
-        .collect(Collectors.toUnmodifiableMap(Entry::getKey, Entry::getValue, (x, y) -> x));
+    return getAttributeMetadataSnapshot(requestContext)
+        .remapAttributeMetadataByResultKey(request.getEntityType(), request.getSelectionList());
+  }
+
+  private AttributeMetadataSnapshot getAttributeMetadataSnapshot(
+      EntitiesRequestContext requestContext) {
+    return requestContext.getAttributeMetadataSnapshot(
+        attributeMetadataProvider, entityIdColumnsConfigs);
   }
 }
@@ -1,7 +1,11 @@
 package org.hypertrace.gateway.service.common.datafetcher;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 
@@ -28,4 +32,24 @@ public class EntityFetcherResponse {
   public boolean isEmpty() {
     return entityKeyBuilderMap.isEmpty();
   }
+
+  /**
+   * Hands the entities to the consumer in batches of at most the given size, in order. Each batch
+   * is only built when it is handed over. A non positive size hands all the entities at once, and
+   * the consumer is not called if there are none.
+   */
+  public void forEachBatch(int batchSize, Consumer<EntityFetcherResponse> batchConsumer) {
+    if (batchSize <= 0 || size() <= batchSize) {
+      if (!isEmpty()) {
+        batchConsumer.accept(this);
+      }
+      return;
+    }
+    for (List<Map.Entry<EntityKey, Builder>> entries :
+        Iterables.partition(entityKeyBuilderMap.entrySet(), batchSize)) {
+      Map<EntityKey, Builder> batch = Maps.newLinkedHashMapWithExpectedSize(entries.size());
+      entries.forEach(entry -> batch.put(entry.getKey(), entry.getValue()));
+      batchConsumer.accept(new EntityFetcherResponse(batch));
+    }
+  }
 }
@@ -8,22 +8,26 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
+import org.hypertrace.core.attribute.service.v1.AttributeSource;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
 import org.hypertrace.core.query.service.api.Filter;
 import org.hypertrace.core.query.service.api.Operator;
@@ -35,12 +39,15 @@ import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
 import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.config.InteractionConfig;
 import org.hypertrace.gateway.service.entity.config.InteractionConfigs;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
 import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
 import org.hypertrace.gateway.service.v1.common.DomainEntityType;
 import org.hypertrace.gateway.service.v1.common.Expression;
@@ -88,14 +95,20 @@ public class EntityInteractionsFetcher {
   private final QueryServiceClient queryServiceClient;
   private final int queryServiceRequestTimeout;
   private final AttributeMetadataProvider metadataProvider;
+  private final ExecutionPools executionPools;
+  private final int entityIdBatchSize;
 
   public EntityInteractionsFetcher(
       QueryServiceClient queryServiceClient,
       int qsRequestTimeout,
-      AttributeMetadataProvider metadataProvider) {
+      AttributeMetadataProvider metadataProvider,
+      ExecutionPools executionPools,
+      SelectionConfig selectionConfig) {
     this.queryServiceClient = queryServiceClient;
     this.queryServiceRequestTimeout = qsRequestTimeout;
     this.metadataProvider = metadataProvider;
+    this.executionPools = executionPools;
+    this.entityIdBatchSize = selectionConfig.getEntityIdBatchSize();
   }
 
   private List<String> getEntityIdColumnsFromInteraction(
@@ -120,33 +133,64 @@ public class EntityInteractionsFetcher {
 
   public void populateEntityInteractions(
       RequestContext context, EntitiesRequest request, Map<EntityKey, Builder> entityBuilders) {
+    FutureUtil.await(fetchEntityInteractions(context, request, entityBuilders.keySet()))
+        .addTo(entityBuilders);
+  }
+
+  /**
+   * Fetches the incoming and outgoing interactions of the given entities. There is one query per
+   * direction, other entity type and batch of entity ids, and all of them run concurrently on the
+   * QS execution pool. The request is validated, and the queries are built, before this returns.
+   */
+  public CompletableFuture<EntityInteractionsResponse> fetchEntityInteractions(
+      RequestContext context, EntitiesRequest request, Set<EntityKey> entityKeys) {
+    List<Set<EntityKey>> entityKeyBatches = batchEntityKeys(entityKeys);
+    List<CompletableFuture<EntityInteractionsResponse>> responseFutures = new ArrayList<>();
+
     // Process the incoming interactions
     if (!InteractionsRequest.getDefaultInstance().equals(request.getIncomingInteractions())) {
-      addInteractions(
-          context,
-          request,
-          entityBuilders,
-          request.getIncomingInteractions(),
-          INCOMING,
-          "fromEntityType filter is mandatory for incoming interactions.");
+      responseFutures.addAll(
+          fetchInteractions(
+              context,
+              request,
+              entityKeyBatches,
+              request.getIncomingInteractions(),
+              INCOMING,
+              "fromEntityType filter is mandatory for incoming interactions."));
     }
 
     // Process the outgoing interactions
     if (!InteractionsRequest.getDefaultInstance().equals(request.getOutgoingInteractions())) {
-      addInteractions(
-          context,
-          request,
-          entityBuilders,
-          request.getOutgoingInteractions(),
-          OUTGOING,
-          "toEntityType filter is mandatory for outgoing interactions.");
+      responseFutures.addAll(
+          fetchInteractions(
+              context,
+              request,
+              entityKeyBatches,
+              request.getOutgoingInteractions(),
+              OUTGOING,
+              "toEntityType filter is mandatory for outgoing interactions."));
+    }
+
+    return FutureUtil.allAsList(responseFutures).thenApply(EntityInteractionsResponse::merge);
+  }
+
+  /**
+   * Splits the entity keys so that no single interactions query carries more than the configured
+   * number of entity ids in its IN filter.
+   */
+  private List<Set<EntityKey>> batchEntityKeys(Set<EntityKey> entityKeys) {
+    if (entityIdBatchSize <= 0 || entityKeys.size() <= entityIdBatchSize) {
+      return List.of(new LinkedHashSet<>(entityKeys));
     }
+    return Lists.partition(new ArrayList<>(entityKeys), entityIdBatchSize).stream()
+        .map(LinkedHashSet::new)
+        .collect(Collectors.toList());
   }
 
-  private void addInteractions(
+  private List<CompletableFuture<EntityInteractionsResponse>> fetchInteractions(
       RequestContext context,
       EntitiesRequest request,
-      Map<EntityKey, Builder> entityIdToBuilders,
+      List<Set<EntityKey>> entityKeyBatches,
       InteractionsRequest interactionsRequest,
       boolean incoming,
       String errorMsg) {
@@ -158,37 +202,45 @@ public class EntityInteractionsFetcher {
       throw new IllegalArgumentException("Interactions request should have non-empty selections.");
     }
 
-    Map<String, QueryRequest> requests =
-        buildQueryRequests(
-            request.getStartTimeMillis(),
-            request.getEndTimeMillis(),
-            request.getSpaceId(),
-            request.getEntityType(),
-            interactionsRequest,
-            entityIdToBuilders.keySet(),
-            incoming,
-            context);
-    if (requests.isEmpty()) {
-      throw new IllegalArgumentException(errorMsg);
-    }
-
     Map<String, FunctionExpression> metricToAggFunction =
         MetricAggregationFunctionUtil.getAggMetricToFunction(
             interactionsRequest.getSelectionList());
-    for (Map.Entry<String, QueryRequest> entry : requests.entrySet()) {
-      Iterator<ResultSetChunk> resultSet =
-          queryServiceClient.executeQuery(
-              entry.getValue(), context.getHeaders(), queryServiceRequestTimeout);
-      parseResultSet(
-          request.getEntityType(),
-          entry.getKey(),
-          interactionsRequest.getSelectionList(),
-          metricToAggFunction,
-          resultSet,
-          incoming,
-          entityIdToBuilders,
-          context);
+    List<CompletableFuture<EntityInteractionsResponse>> responseFutures = new ArrayList<>();
+    for (Set<EntityKey> entityKeys : entityKeyBatches) {
+      Map<String, QueryRequest> requests =
+          buildQueryRequests(
+              request.getStartTimeMillis(),
+              request.getEndTimeMillis(),
+              request.getSpaceId(),
+              request.getEntityType(),
+              interactionsRequest,
+              entityKeys,
+              incoming,
+              context);
+      if (requests.isEmpty()) {
+        throw new IllegalArgumentException(errorMsg);
+      }
+
+      for (Map.Entry<String, QueryRequest> entry : requests.entrySet()) {
+        responseFutures.add(
+            CompletableFuture.supplyAsync(
+                () -> {
+                  Iterator<ResultSetChunk> resultSet =
+                      queryServiceClient.executeQuery(
+                          entry.getValue(), context.getHeaders(), queryServiceRequestTimeout);
+                  return parseResultSet(
+                      request.getEntityType(),
+                      entry.getKey(),
+                      interactionsRequest.getSelectionList(),
+                      metricToAggFunction,
+                      resultSet,
+                      incoming,
+                      context);
+                },
+                executionPools.getPool(AttributeSource.QS.name())));
+      }
     }
+    return responseFutures;
   }
 
   private Set<String> getOtherEntityTypes(org.hypertrace.gateway.service.v1.common.Filter filter) {
@@ -392,8 +444,6 @@ public class EntityInteractionsFetcher {
 
     Map<String, QueryRequest> queryRequests = new HashMap<>();
 
-    // In future we could send these queries in parallel to QueryService so that we can reduce the
-    // response time.
     for (String e : entityTypes) {
       DomainEntityType otherEntityType = DomainEntityType.valueOf(e.toUpperCase());
 
@@ -432,15 +482,15 @@ public class EntityInteractionsFetcher {
     return queryRequests;
   }
 
-  private void parseResultSet(
+  private EntityInteractionsResponse parseResultSet(
       String entityType,
       String otherEntityType,
       Collection<Expression> selections,
       Map<String, FunctionExpression> metricToAggFunction,
       Iterator<ResultSetChunk> resultset,
       boolean incoming,
-      Map<EntityKey, Builder> entityIdToBuilders,
       RequestContext requestContext) {
+    EntityInteractionsResponse response = new EntityInteractionsResponse();
 
     Map<String, AttributeMetadata> attributeMetadataMap =
         metadataProvider.getAttributesMetadata(requestContext, SCOPE);
@@ -519,17 +569,14 @@ public class EntityInteractionsFetcher {
           }
         }
 
-        if (incoming) {
-          entityIdToBuilders.get(entityId).addIncomingInteraction(interaction);
-        } else {
-          entityIdToBuilders.get(entityId).addOutgoingInteraction(interaction);
-        }
+        response.addInteraction(entityId, interaction, incoming);
 
         if (LOG.isDebugEnabled()) {
           LOG.debug(interaction.build().toString());
         }
       }
     }
+    return response;
   }
 
   private void addInteractionEdges(
@@ -0,0 +1,50 @@
+package org.hypertrace.gateway.service.common.datafetcher;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+import org.hypertrace.gateway.service.v1.entity.EntityInteraction;
+
+/**
+ * Interactions fetched for a set of entities. They are kept apart from the entity builders until
+ * all the interaction queries are done, since the builders may still be filled by other fetches.
+ */
+public class EntityInteractionsResponse {
+  private final List<Map.Entry<EntityKey, EntityInteraction.Builder>> incomingInteractions =
+      new ArrayList<>();
+  private final List<Map.Entry<EntityKey, EntityInteraction.Builder>> outgoingInteractions =
+      new ArrayList<>();
+
+  static EntityInteractionsResponse merge(List<EntityInteractionsResponse> responses) {
+    EntityInteractionsResponse mergedResponse = new EntityInteractionsResponse();
+    for (EntityInteractionsResponse response : responses) {
+      mergedResponse.incomingInteractions.addAll(response.incomingInteractions);
+      mergedResponse.outgoingInteractions.addAll(response.outgoingInteractions);
+    }
+    return mergedResponse;
+  }
+
+  void addInteraction(
+      EntityKey entityKey, EntityInteraction.Builder interaction, boolean incoming) {
+    if (incoming) {
+      incomingInteractions.add(new SimpleImmutableEntry<>(entityKey, interaction));
+    } else {
+      outgoingInteractions.add(new SimpleImmutableEntry<>(entityKey, interaction));
+    }
+  }
+
+  /** Adds the interactions to the builders of their entities. */
+  public void addTo(Map<EntityKey, Entity.Builder> entityBuilders) {
+    incomingInteractions.forEach(
+        entry -> entityBuilders.get(entry.getKey()).addIncomingInteraction(entry.getValue()));
+    outgoingInteractions.forEach(
+        entry -> entityBuilders.get(entry.getKey()).addOutgoingInteraction(entry.getValue()));
+  }
+
+  public int size() {
+    return incomingInteractions.size() + outgoingInteractions.size();
+  }
+}
@@ -3,6 +3,7 @@ package org.hypertrace.gateway.service.common.datafetcher;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.v1.common.Interval;
 import org.hypertrace.gateway.service.v1.common.MetricSeries;
@@ -22,6 +23,25 @@ public interface IEntityFetcher {
   EntityFetcherResponse getEntities(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest);
 
+  /**
+   * Get entities matching the request criteria in batches, in the order they are fetched in. The
+   * default implementation fetches all the entities first, and then splits them into batches.
+   *
+   * @param requestContext Additional context for the incoming request
+   * @param entitiesRequest encapsulates the entity query (selection, filter, grouping, order,
+   *     pagination etc)
+   * @param batchSize maximum number of entities in a batch, all of them in one batch if not
+   *     positive
+   * @param batchConsumer consumer of the batches, which is not called if no entity matches
+   */
+  default void streamEntities(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      int batchSize,
+      Consumer<EntityFetcherResponse> batchConsumer) {
+    getEntities(requestContext, entitiesRequest).forEachBatch(batchSize, batchConsumer);
+  }
+
   /**
    * Get time series data
    *
@@ -1,6 +1,5 @@
 package org.hypertrace.gateway.service.common.datafetcher;
 
-import static java.util.Objects.isNull;
 import static org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter.convertToQueryExpression;
 import static org.hypertrace.gateway.service.common.converters.QueryRequestUtil.createCountByColumnSelection;
 import static org.hypertrace.gateway.service.common.converters.QueryRequestUtil.createDistinctCountByColumnSelection;
@@ -13,6 +12,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Streams;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -20,9 +20,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
 import org.hypertrace.core.query.service.api.Expression;
@@ -33,10 +33,10 @@ import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.api.Row;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
-import org.hypertrace.gateway.service.common.QueryRequestContext;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshot;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
-import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
@@ -44,8 +44,6 @@ import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntitiesRequestValidator;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
-import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
-import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.FunctionType;
 import org.hypertrace.gateway.service.v1.common.Health;
 import org.hypertrace.gateway.service.v1.common.Interval;
@@ -56,7 +54,6 @@ import org.hypertrace.gateway.service.v1.common.Value;
 import org.hypertrace.gateway.service.v1.common.ValueType;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
 import org.hypertrace.gateway.service.v1.entity.Entity;
-import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,42 +61,63 @@ import org.slf4j.LoggerFactory;
 public class QueryServiceEntityFetcher implements IEntityFetcher {
 
   private static final Logger LOG = LoggerFactory.getLogger(QueryServiceEntityFetcher.class);
-  private static final String COUNT_COLUMN_NAME = "COUNT";
 
   private final EntitiesRequestValidator entitiesRequestValidator = new EntitiesRequestValidator();
   private final QueryServiceClient queryServiceClient;
   private final int requestTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final EntityIdColumnsConfigs entityIdColumnsConfigs;
+  private final QueryLimitPlanner queryLimitPlanner;
 
   public QueryServiceEntityFetcher(
       QueryServiceClient queryServiceClient,
       int qsRequestTimeout,
       AttributeMetadataProvider attributeMetadataProvider,
-      EntityIdColumnsConfigs entityIdColumnsConfigs) {
+      EntityIdColumnsConfigs entityIdColumnsConfigs,
+      QueryLimitPlanner queryLimitPlanner) {
     this.queryServiceClient = queryServiceClient;
     this.requestTimeout = qsRequestTimeout;
     this.attributeMetadataProvider = attributeMetadataProvider;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
+    this.queryLimitPlanner = queryLimitPlanner;
   }
 
   @Override
   public EntityFetcherResponse getEntities(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
-    Map<String, AttributeMetadata> attributeMetadataMap =
-        attributeMetadataProvider.getAttributesMetadata(
-            requestContext, entitiesRequest.getEntityType());
+    List<EntityFetcherResponse> responses = new ArrayList<>(1);
+    fetchEntities(requestContext, entitiesRequest, 0, responses::add);
+    return responses.isEmpty() ? new EntityFetcherResponse() : responses.get(0);
+  }
+
+  /**
+   * The entities are handed over as the rows are read when each row is a distinct entity, which is
+   * the case when the query only groups by the entity ids. Otherwise, the rows of an entity may be
+   * anywhere in the result, so all of them are read before splitting the entities into batches.
+   */
+  @Override
+  public void streamEntities(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      int batchSize,
+      Consumer<EntityFetcherResponse> batchConsumer) {
+    fetchEntities(requestContext, entitiesRequest, batchSize, batchConsumer);
+  }
+
+  private void fetchEntities(
+      EntitiesRequestContext requestContext,
+      EntitiesRequest entitiesRequest,
+      int batchSize,
+      Consumer<EntityFetcherResponse> batchConsumer) {
+    AttributeMetadataSnapshot attributeMetadataSnapshot =
+        getAttributeMetadataSnapshot(requestContext);
     Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
-        this.remapAttributeMetadataByResultName(entitiesRequest, attributeMetadataMap);
+        this.remapAttributeMetadataByResultName(entitiesRequest, attributeMetadataSnapshot);
     // Validate EntitiesRequest
-    entitiesRequestValidator.validate(entitiesRequest, attributeMetadataMap);
+    entitiesRequestValidator.validate(entitiesRequest, attributeMetadataSnapshot);
 
     List<String> entityIdAttributeIds =
-        AttributeMetadataUtil.getIdAttributeIds(
-            attributeMetadataProvider,
-            entityIdColumnsConfigs,
-            requestContext,
-            entitiesRequest.getEntityType());
+        attributeMetadataSnapshot.getIdAttributeIds(entitiesRequest.getEntityType());
     List<org.hypertrace.gateway.service.v1.common.Expression> aggregates =
         ExpressionReader.getFunctionExpressions(entitiesRequest.getSelectionList());
 
@@ -110,7 +128,8 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     QueryRequest.Builder builder =
         constructSelectionQuery(requestContext, entitiesRequest, entityIdAttributeIds, aggregates);
 
-    adjustLimitAndOffset(builder, entitiesRequest.getLimit(), entitiesRequest.getOffset());
+    int defaultLimit =
+        adjustLimitAndOffset(builder, entitiesRequest.getLimit(), entitiesRequest.getOffset());
 
     if (!entitiesRequest.getOrderByList().isEmpty()) {
       // Order by from the request.
@@ -124,11 +143,14 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     LOG.debug("Sending Query to Query Service ======== \n {}", queryRequest);
 
     Iterator<ResultSetChunk> resultSetChunkIterator =
-        queryServiceClient.executeQuery(queryRequest, requestContext.getHeaders(), requestTimeout);
+        executeQuery(requestContext, queryRequest, defaultLimit);
 
+    boolean oneRowPerEntity = builder.getGroupByCount() == entityIdAttributeIds.size();
     // We want to retain the order as returned from the respective source. Hence using a
     // LinkedHashMap
     Map<EntityKey, Entity.Builder> entityBuilders = new LinkedHashMap<>();
+    // The decoder is compiled once per result set metadata, which is the same for all the chunks
+    QueryServiceEntityRowDecoder rowDecoder = null;
     while (resultSetChunkIterator.hasNext()) {
       ResultSetChunk chunk = resultSetChunkIterator.next();
       LOG.debug("Received chunk: {}", chunk);
@@ -137,59 +159,39 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
         break;
       }
 
+      if (rowDecoder == null || !rowDecoder.isCompiledFor(chunk.getResultSetMetadata())) {
+        rowDecoder =
+            QueryServiceEntityRowDecoder.compile(
+                chunk.getResultSetMetadata(),
+                entitiesRequest.getEntityType(),
+                entityIdAttributeIds,
+                requestedAliasesByEntityIdAttributeIds,
+                requestContext,
+                resultKeyToAttributeMetadataMap,
+                aggregates.isEmpty());
+      }
       for (Row row : chunk.getRowList()) {
-        // Construct the entity id from the entityIdAttributeIds columns
-        EntityKey entityKey =
-            EntityKey.of(
-                IntStream.range(0, entityIdAttributeIds.size())
-                    .mapToObj(value -> row.getColumn(value).getString())
-                    .toArray(String[]::new));
-        Builder entityBuilder = entityBuilders.computeIfAbsent(entityKey, k -> Entity.newBuilder());
-        entityBuilder.setEntityType(entitiesRequest.getEntityType());
-        entityBuilder.setId(entityKey.toString());
-        // Always include the id in entity since that's needed to make follow up queries in
-        // optimal fashion. If this wasn't really requested by the client, it should be removed
-        // as post processing.
-        for (int i = 0; i < entityIdAttributeIds.size(); i++) {
-          entityBuilder.putAttribute(
-              entityIdAttributeIds.get(i),
-              Value.newBuilder()
-                  .setString(entityKey.getAttributes().get(i))
-                  .setValueType(ValueType.STRING)
-                  .build());
-        }
-
-        requestedAliasesByEntityIdAttributeIds.forEach(
-            (attributeId, requestedAliasList) ->
-                requestedAliasList.forEach(
-                    requestedAlias ->
-                        entityBuilder.putAttribute(
-                            requestedAlias, entityBuilder.getAttributeOrThrow(attributeId))));
-
-        for (int i = entityIdAttributeIds.size();
-            i < chunk.getResultSetMetadata().getColumnMetadataCount();
-            i++) {
-          ColumnMetadata metadata = chunk.getResultSetMetadata().getColumnMetadata(i);
-          org.hypertrace.core.query.service.api.Value columnValue = row.getColumn(i);
-          buildEntity(
-              entityBuilder,
-              requestContext,
-              metadata,
-              columnValue,
-              resultKeyToAttributeMetadataMap,
-              aggregates.isEmpty());
+        rowDecoder.decode(row, entityBuilders);
+        if (oneRowPerEntity && batchSize > 0 && entityBuilders.size() >= batchSize) {
+          batchConsumer.accept(new EntityFetcherResponse(entityBuilders));
+          entityBuilders = new LinkedHashMap<>();
         }
       }
     }
-    return new EntityFetcherResponse(entityBuilders);
+    new EntityFetcherResponse(entityBuilders).forEachBatch(batchSize, batchConsumer);
   }
 
-  private void adjustLimitAndOffset(QueryRequest.Builder builder, int limit, int offset) {
+  /**
+   * Sets the limit and offset of the query, and returns the limit to query again with if the query
+   * returns as many rows as a planned limit. See {@link QueryLimitPlanner}.
+   */
+  private int adjustLimitAndOffset(QueryRequest.Builder builder, int limit, int offset) {
     // If there is more than one groupBy column, we cannot set the same limit that came
     // in the request since that might return less entities than needed when the same
     // entity has different values for the other group by columns. Example: A service entity's
     // name changes and that will now have two different names.
-    // For now, we pass a high value of limit in this case so that we get all the entities.
+    // For now, we pass a high value of limit in this case so that we get all the entities,
+    // unless a limit can be planned from the requested one.
     // Limit has to be applied post the query in this case. Setting offset also might be wrong
     // here, hence not setting it.
 
@@ -197,8 +199,17 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     boolean canApplyOffset = offset > 0;
 
     // If we cannot apply limit, limit the number of results to a default limit
-    if (!canApplyLimit || builder.getGroupByCount() > 1) {
+    if (!canApplyLimit) {
       builder.setLimit(QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT);
+    } else if (builder.getGroupByCount() > 1) {
+      // The entities of the page may come after the offset in the rows, so the planned limit
+      // covers the offset as well. Summed as a long so that it cannot overflow.
+      builder.setLimit(
+          queryLimitPlanner.planLimit(
+              (long) limit + (canApplyOffset ? offset : 0),
+              1,
+              builder.getGroupByCount(),
+              QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT));
     } else {
       builder.setLimit(limit);
     }
@@ -206,6 +217,9 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     if (canApplyOffset) {
       builder.setOffset(offset);
     }
+    return builder.getGroupByCount() > 1
+        ? QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT
+        : builder.getLimit();
   }
 
   private QueryRequest.Builder constructSelectionQuery(
@@ -263,86 +277,6 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
     return builder;
   }
 
-  private void buildEntity(
-      Entity.Builder entityBuilder,
-      QueryRequestContext requestContext,
-      ColumnMetadata metadata,
-      org.hypertrace.core.query.service.api.Value columnValue,
-      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
-      boolean isSkipCountColumn) {
-
-    // Ignore the count column since we introduced that ourselves into the query
-    if (isSkipCountColumn
-        && StringUtils.equalsIgnoreCase(COUNT_COLUMN_NAME, metadata.getColumnName())) {
-      return;
-    }
-
-    // aggregate
-    if (requestContext.containsFunctionExpression(metadata.getColumnName())) {
-      addAggregateMetric(
-          entityBuilder, requestContext, metadata, columnValue, resultKeyToAttributeMetadataMap);
-    } else {
-      // attribute
-      addEntityAttribute(entityBuilder, metadata, columnValue, resultKeyToAttributeMetadataMap);
-    }
-  }
-
-  private void addEntityAttribute(
-      Entity.Builder entityBuilder,
-      ColumnMetadata metadata,
-      org.hypertrace.core.query.service.api.Value columnValue,
-      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
-
-    String resultKey = metadata.getColumnName();
-    if (!resultKeyToAttributeMetadataMap.containsKey(resultKey)) {
-      LOG.warn("Missing attribute metadata for key {}", resultKey);
-    }
-
-    entityBuilder.putAttribute(
-        resultKey,
-        QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
-            columnValue, resultKeyToAttributeMetadataMap.get(resultKey)));
-  }
-
-  private void addAggregateMetric(
-      Entity.Builder entityBuilder,
-      QueryRequestContext requestContext,
-      ColumnMetadata metadata,
-      org.hypertrace.core.query.service.api.Value columnValue,
-      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
-
-    FunctionExpression functionExpression =
-        requestContext.getFunctionExpressionByAlias(metadata.getColumnName());
-    AttributeMetadata functionAttributeMetadata =
-        resultKeyToAttributeMetadataMap.get(metadata.getColumnName());
-
-    if (isNull(functionAttributeMetadata)) {
-      LOG.warn("Missing attribute metadata for {}", metadata.getColumnName());
-    }
-    List<org.hypertrace.gateway.service.v1.common.Expression> healthExpressions =
-        functionExpression.getArgumentsList().stream()
-            .filter(org.hypertrace.gateway.service.v1.common.Expression::hasHealth)
-            .collect(Collectors.toList());
-    Preconditions.checkArgument(healthExpressions.size() <= 1);
-    Health health = Health.NOT_COMPUTED;
-
-    Value convertedValue =
-        QueryAndGatewayDtoConverter.convertToGatewayValueForMetricValue(
-            MetricAggregationFunctionUtil.getValueTypeForFunctionType(
-                functionExpression.getFunction(), functionAttributeMetadata),
-            resultKeyToAttributeMetadataMap,
-            metadata,
-            columnValue);
-
-    entityBuilder.putMetric(
-        metadata.getColumnName(),
-        AggregatedMetricValue.newBuilder()
-            .setValue(convertedValue)
-            .setFunction(functionExpression.getFunction())
-            .setHealth(health)
-            .build());
-  }
-
   @Override
   public EntityFetcherResponse getTimeAggregatedMetrics(
       EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
@@ -351,23 +285,17 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
       return new EntityFetcherResponse();
     }
     // Only supported filter is entityIds IN ["id1", "id2", "id3"]
+    AttributeMetadataSnapshot attributeMetadataSnapshot =
+        getAttributeMetadataSnapshot(requestContext);
     List<String> idColumns =
-        AttributeMetadataUtil.getIdAttributeIds(
-            attributeMetadataProvider,
-            entityIdColumnsConfigs,
-            requestContext,
-            entitiesRequest.getEntityType());
+        attributeMetadataSnapshot.getIdAttributeIds(entitiesRequest.getEntityType());
     String timeColumn =
-        AttributeMetadataUtil.getTimestampAttributeId(
-            attributeMetadataProvider, requestContext, entitiesRequest.getEntityType());
-    Map<String, AttributeMetadata> attributeMetadataMap =
-        attributeMetadataProvider.getAttributesMetadata(
-            requestContext, entitiesRequest.getEntityType());
+        attributeMetadataSnapshot.getTimestampAttributeId(entitiesRequest.getEntityType());
 
     Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
-        this.remapAttributeMetadataByResultName(entitiesRequest, attributeMetadataMap);
+        this.remapAttributeMetadataByResultName(entitiesRequest, attributeMetadataSnapshot);
 
-    entitiesRequestValidator.validate(entitiesRequest, attributeMetadataMap);
+    entitiesRequestValidator.validate(entitiesRequest, attributeMetadataSnapshot);
 
     entitiesRequest
         .getTimeAggregationList()
@@ -403,7 +331,8 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
       }
 
       Iterator<ResultSetChunk> resultSetChunkIterator =
-          queryServiceClient.executeQuery(request, requestContext.getHeaders(), requestTimeout);
+          executeQuery(
+              requestContext, request, QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT);
 
       while (resultSetChunkIterator.hasNext()) {
         ResultSetChunk chunk = resultSetChunkIterator.next();
@@ -518,18 +447,13 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
 
   @Override
   public long getTotal(EntitiesRequestContext requestContext, EntitiesRequest entitiesRequest) {
-    Map<String, AttributeMetadata> attributeMetadataMap =
-        attributeMetadataProvider.getAttributesMetadata(
-            requestContext, entitiesRequest.getEntityType());
+    AttributeMetadataSnapshot attributeMetadataSnapshot =
+        getAttributeMetadataSnapshot(requestContext);
     // Validate EntitiesRequest
-    entitiesRequestValidator.validate(entitiesRequest, attributeMetadataMap);
+    entitiesRequestValidator.validate(entitiesRequest, attributeMetadataSnapshot);
 
     List<String> entityIdAttributeIds =
-        AttributeMetadataUtil.getIdAttributeIds(
-            attributeMetadataProvider,
-            entityIdColumnsConfigs,
-            requestContext,
-            entitiesRequest.getEntityType());
+        attributeMetadataSnapshot.getIdAttributeIds(entitiesRequest.getEntityType());
 
     Filter.Builder filterBuilder =
         constructQueryServiceFilter(entitiesRequest, requestContext, entityIdAttributeIds);
@@ -615,14 +539,75 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
 
     // Pinot truncates the GroupBy results to 10 when there is no limit explicitly but
     // here we neither want the results to be truncated nor apply the limit coming from client.
-    // We would like to get all entities based on filters so we set the limit to a high value.
-    // TODO: Figure out a reasonable computed limit instead of this hardcoded one. Probably
-    //  requested limit * expected max number of time series buckets
-    builder.setLimit(QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT);
+    // We would like to get all entities based on filters so we set the limit to a high value,
+    // or to the number of entities selected by id times the number of time buckets.
+    builder.setLimit(
+        queryLimitPlanner.planLimit(
+            getEntityCount(entitiesRequest.getFilter(), idColumns),
+            QueryLimitPlanner.getBucketCount(alignedStartTime, alignedEndTime, periodSecs),
+            idColumns.size(),
+            QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT));
 
     return builder.build();
   }
 
+  /**
+   * Returns the number of entities selected by a filter on their ids, as built by ExecutionVisitor
+   * from the entities of the child nodes, or 0 if the filter does not select entities by id.
+   */
+  private long getEntityCount(
+      org.hypertrace.gateway.service.v1.common.Filter filter, List<String> idColumns) {
+    switch (filter.getOperator()) {
+      case IN:
+        return idColumns.size() == 1
+                && isIdColumn(filter.getLhs(), idColumns)
+                && filter.getRhs().getLiteral().getValue().getValueType() == ValueType.STRING_ARRAY
+            ? filter.getRhs().getLiteral().getValue().getStringArrayCount()
+            : 0;
+      case OR:
+        // An AND of equality filters on the ids for each entity
+        boolean allEntityKeys =
+            filter.getChildFilterList().stream()
+                .allMatch(
+                    child ->
+                        child.getOperator() == org.hypertrace.gateway.service.v1.common.Operator.AND
+                            && child.getChildFilterList().stream()
+                                .allMatch(idFilter -> isIdEqualityFilter(idFilter, idColumns)));
+        return allEntityKeys ? filter.getChildFilterCount() : 0;
+      case AND:
+        // Every child filter applies, so the entities are at most those of the most selective one
+        return filter.getChildFilterList().stream()
+            .mapToLong(child -> getEntityCount(child, idColumns))
+            .filter(count -> count > 0)
+            .min()
+            .orElse(0);
+      default:
+        return 0;
+    }
+  }
+
+  private boolean isIdEqualityFilter(
+      org.hypertrace.gateway.service.v1.common.Filter filter, List<String> idColumns) {
+    return filter.getOperator() == org.hypertrace.gateway.service.v1.common.Operator.EQ
+        && isIdColumn(filter.getLhs(), idColumns);
+  }
+
+  private boolean isIdColumn(
+      org.hypertrace.gateway.service.v1.common.Expression expression, List<String> idColumns) {
+    return ExpressionReader.getAttributeIdFromAttributeSelection(expression)
+        .map(idColumns::contains)
+        .orElse(false);
+  }
+
+  private Iterator<ResultSetChunk> executeQuery(
+      EntitiesRequestContext requestContext, QueryRequest queryRequest, int defaultLimit) {
+    return queryLimitPlanner.execute(
+        queryRequest,
+        defaultLimit,
+        request ->
+            queryServiceClient.executeQuery(request, requestContext.getHeaders(), requestTimeout));
+  }
+
   /**
    * Converts the filter in the given request to the query service filter and adds a non null filter
    * on entity id.
@@ -651,8 +636,8 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
             entitiesRequest.getEndTimeMillis(),
             entitiesRequest.getSpaceId(),
             context.getTimestampAttributeId(),
-            AttributeMetadataUtil.getSpaceAttributeId(
-                attributeMetadataProvider, context, entitiesRequest.getEntityType()),
+            getAttributeMetadataSnapshot(context)
+                .getSpaceAttributeId(entitiesRequest.getEntityType()),
             entitiesRequest.getFilter());
 
     if (timeSpaceAndProvidedFilter.equals(Filter.getDefaultInstance())) {
@@ -672,12 +657,18 @@ public class QueryServiceEntityFetcher implements IEntityFetcher {
   }
 
   private Map<String, AttributeMetadata> remapAttributeMetadataByResultName(
-      EntitiesRequest request, Map<String, AttributeMetadata> attributeMetadataByIdMap) {
-    return AttributeMetadataUtil.remapAttributeMetadataByResultKey(
+      EntitiesRequest request, AttributeMetadataSnapshot attributeMetadataSnapshot) {
+    return attributeMetadataSnapshot.remapAttributeMetadataByResultKey(
+        request.getEntityType(),
         Streams.concat(
                 request.getSelectionList().stream(),
                 request.getTimeAggregationList().stream().map(TimeAggregation::getAggregation))
-            .collect(Collectors.toList()),
-        attributeMetadataByIdMap);
+            .collect(Collectors.toList()));
+  }
+
+  private AttributeMetadataSnapshot getAttributeMetadataSnapshot(
+      EntitiesRequestContext requestContext) {
+    return requestContext.getAttributeMetadataSnapshot(
+        attributeMetadataProvider, entityIdColumnsConfigs);
   }
 }
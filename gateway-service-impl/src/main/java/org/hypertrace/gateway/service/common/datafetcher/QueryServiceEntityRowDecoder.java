@@ -0,0 +1,223 @@
+package org.hypertrace.gateway.service.common.datafetcher;
+
+import static java.util.Objects.isNull;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeType;
+import org.hypertrace.core.query.service.api.ColumnMetadata;
+import org.hypertrace.core.query.service.api.ResultSetMetadata;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.gateway.service.common.QueryRequestContext;
+import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
+import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
+import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.v1.common.AggregatedMetricValue;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Health;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes the rows of the entity queries sent by {@link QueryServiceEntityFetcher}. Everything that
+ * depends only on the {@link ResultSetMetadata} of the result (whether a column is an aggregate,
+ * its function, its attribute metadata and the kind its values are converted to) is resolved once
+ * when the decoder is compiled, so decoding a row is a loop over an array of column decoders.
+ */
+class QueryServiceEntityRowDecoder {
+  private static final Logger LOG = LoggerFactory.getLogger(QueryServiceEntityRowDecoder.class);
+  private static final String COUNT_COLUMN_NAME = "COUNT";
+  private static final ColumnDecoder SKIPPED_COLUMN = (entityBuilder, columnValue) -> {};
+
+  private final ResultSetMetadata resultSetMetadata;
+  private final String entityType;
+  private final List<String> entityIdAttributeIds;
+  // the aliases and the index of the id attribute they are requested for
+  private final String[] entityIdAliases;
+  private final int[] entityIdAliasIndexes;
+  private final ColumnDecoder[] columnDecoders;
+
+  private QueryServiceEntityRowDecoder(
+      ResultSetMetadata resultSetMetadata,
+      String entityType,
+      List<String> entityIdAttributeIds,
+      String[] entityIdAliases,
+      int[] entityIdAliasIndexes,
+      ColumnDecoder[] columnDecoders) {
+    this.resultSetMetadata = resultSetMetadata;
+    this.entityType = entityType;
+    this.entityIdAttributeIds = entityIdAttributeIds;
+    this.entityIdAliases = entityIdAliases;
+    this.entityIdAliasIndexes = entityIdAliasIndexes;
+    this.columnDecoders = columnDecoders;
+  }
+
+  /**
+   * Compiles the decoder of a result whose first columns are the entity id attributes, followed by
+   * the aggregates mapped in the request context and the selected attributes.
+   */
+  static QueryServiceEntityRowDecoder compile(
+      ResultSetMetadata resultSetMetadata,
+      String entityType,
+      List<String> entityIdAttributeIds,
+      Map<String, List<String>> requestedAliasesByEntityIdAttributeIds,
+      QueryRequestContext requestContext,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
+      boolean isSkipCountColumn) {
+    List<String> entityIdAliases = new ArrayList<>();
+    List<Integer> entityIdAliasIndexes = new ArrayList<>();
+    requestedAliasesByEntityIdAttributeIds.forEach(
+        (attributeId, requestedAliasList) ->
+            requestedAliasList.forEach(
+                requestedAlias -> {
+                  entityIdAliases.add(requestedAlias);
+                  entityIdAliasIndexes.add(entityIdAttributeIds.indexOf(attributeId));
+                }));
+
+    int columnCount = resultSetMetadata.getColumnMetadataCount();
+    ColumnDecoder[] columnDecoders =
+        new ColumnDecoder[Math.max(0, columnCount - entityIdAttributeIds.size())];
+    for (int i = entityIdAttributeIds.size(); i < columnCount; i++) {
+      columnDecoders[i - entityIdAttributeIds.size()] =
+          compileColumnDecoder(
+              resultSetMetadata.getColumnMetadata(i),
+              requestContext,
+              resultKeyToAttributeMetadataMap,
+              isSkipCountColumn);
+    }
+
+    return new QueryServiceEntityRowDecoder(
+        resultSetMetadata,
+        entityType,
+        List.copyOf(entityIdAttributeIds),
+        entityIdAliases.toArray(String[]::new),
+        entityIdAliasIndexes.stream().mapToInt(Integer::intValue).toArray(),
+        columnDecoders);
+  }
+
+  boolean isCompiledFor(ResultSetMetadata resultSetMetadata) {
+    return this.resultSetMetadata == resultSetMetadata
+        || this.resultSetMetadata.equals(resultSetMetadata);
+  }
+
+  /** Decodes the row into the builder of its entity, creating the builder when it is not there */
+  void decode(Row row, Map<EntityKey, Entity.Builder> entityBuilders) {
+    int idColumnCount = entityIdAttributeIds.size();
+    // Construct the entity id from the entityIdAttributeIds columns
+    String[] entityIdValues = new String[idColumnCount];
+    for (int i = 0; i < idColumnCount; i++) {
+      entityIdValues[i] = row.getColumn(i).getString();
+    }
+    EntityKey entityKey = EntityKey.of(entityIdValues);
+    Entity.Builder entityBuilder =
+        entityBuilders.computeIfAbsent(entityKey, k -> Entity.newBuilder());
+    entityBuilder.setEntityType(entityType);
+    entityBuilder.setId(entityKey.toString());
+    // Always include the id in entity since that's needed to make follow up queries in
+    // optimal fashion. If this wasn't really requested by the client, it should be removed
+    // as post processing.
+    Value[] entityIdValueArray = new Value[idColumnCount];
+    for (int i = 0; i < idColumnCount; i++) {
+      entityIdValueArray[i] =
+          Value.newBuilder().setString(entityIdValues[i]).setValueType(ValueType.STRING).build();
+      entityBuilder.putAttribute(entityIdAttributeIds.get(i), entityIdValueArray[i]);
+    }
+    for (int i = 0; i < entityIdAliases.length; i++) {
+      entityBuilder.putAttribute(entityIdAliases[i], entityIdValueArray[entityIdAliasIndexes[i]]);
+    }
+
+    for (int i = 0; i < columnDecoders.length; i++) {
+      columnDecoders[i].decode(entityBuilder, row.getColumn(i + idColumnCount));
+    }
+  }
+
+  private static ColumnDecoder compileColumnDecoder(
+      ColumnMetadata metadata,
+      QueryRequestContext requestContext,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap,
+      boolean isSkipCountColumn) {
+    String resultKey = metadata.getColumnName();
+    // Ignore the count column since we introduced that ourselves into the query
+    if (isSkipCountColumn && StringUtils.equalsIgnoreCase(COUNT_COLUMN_NAME, resultKey)) {
+      return SKIPPED_COLUMN;
+    }
+
+    // aggregate
+    if (requestContext.containsFunctionExpression(resultKey)) {
+      return compileAggregateMetricDecoder(
+          metadata,
+          requestContext.getFunctionExpressionByAlias(resultKey),
+          resultKeyToAttributeMetadataMap);
+    }
+
+    // attribute
+    AttributeMetadata attributeMetadata = resultKeyToAttributeMetadataMap.get(resultKey);
+    if (isNull(attributeMetadata)) {
+      LOG.warn("Missing attribute metadata for key {}", resultKey);
+    }
+    return (entityBuilder, columnValue) ->
+        entityBuilder.putAttribute(
+            resultKey,
+            QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
+                columnValue, attributeMetadata));
+  }
+
+  private static ColumnDecoder compileAggregateMetricDecoder(
+      ColumnMetadata metadata,
+      FunctionExpression functionExpression,
+      Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap) {
+    String resultKey = metadata.getColumnName();
+    AttributeMetadata functionAttributeMetadata = resultKeyToAttributeMetadataMap.get(resultKey);
+    if (isNull(functionAttributeMetadata)) {
+      LOG.warn("Missing attribute metadata for {}", resultKey);
+    }
+    long healthExpressionCount =
+        functionExpression.getArgumentsList().stream().filter(Expression::hasHealth).count();
+    Preconditions.checkArgument(healthExpressionCount <= 1);
+
+    FunctionType functionType = functionExpression.getFunction();
+    AttributeKind valueKind =
+        MetricAggregationFunctionUtil.getValueTypeForFunctionType(
+            functionType, functionAttributeMetadata);
+    // Same as QueryAndGatewayDtoConverter.convertToGatewayValueForMetricValue
+    AttributeMetadata valueAttributeMetadata =
+        valueKind == null
+            ? functionAttributeMetadata
+            : AttributeMetadata.newBuilder()
+                .setId(resultKey)
+                .setType(AttributeType.METRIC)
+                .setValueKind(valueKind)
+                .build();
+    LOG.debug(
+        "Converting {} from type: {} to type: {}",
+        resultKey,
+        metadata.getValueType().name(),
+        valueAttributeMetadata.getValueKind().name());
+
+    return (entityBuilder, columnValue) ->
+        entityBuilder.putMetric(
+            resultKey,
+            AggregatedMetricValue.newBuilder()
+                .setValue(
+                    QueryAndGatewayDtoConverter.convertQueryValueToGatewayValue(
+                        columnValue, valueAttributeMetadata))
+                .setFunction(functionType)
+                .setHealth(Health.NOT_COMPUTED)
+                .build());
+  }
+
+  @FunctionalInterface
+  private interface ColumnDecoder {
+    void decode(Entity.Builder entityBuilder, org.hypertrace.core.query.service.api.Value value);
+  }
+}
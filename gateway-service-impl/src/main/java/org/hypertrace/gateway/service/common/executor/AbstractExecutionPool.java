@@ -0,0 +1,83 @@
+package org.hypertrace.gateway.service.common.executor;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/** Tracks the queued and active tasks of an {@link ExecutionPool} and reports them as metrics. */
+abstract class AbstractExecutionPool implements ExecutionPool {
+  private static final String POOL_TAG = "pool";
+  private static final String QUEUED_TASKS_METRIC = "hypertrace.execution.pool.queued";
+  private static final String ACTIVE_TASKS_METRIC = "hypertrace.execution.pool.active";
+  private static final String SATURATION_METRIC = "hypertrace.execution.pool.saturated";
+
+  private final String name;
+  private final AtomicInteger queuedTaskCount;
+  private final AtomicInteger activeTaskCount;
+  private final Counter saturationCounter;
+
+  AbstractExecutionPool(String name) {
+    this.name = name;
+    Map<String, String> tags = ImmutableMap.of(POOL_TAG, name);
+    this.queuedTaskCount =
+        PlatformMetricsRegistry.registerGauge(QUEUED_TASKS_METRIC, tags, new AtomicInteger(0));
+    this.activeTaskCount =
+        PlatformMetricsRegistry.registerGauge(ACTIVE_TASKS_METRIC, tags, new AtomicInteger(0));
+    this.saturationCounter = PlatformMetricsRegistry.registerCounter(SATURATION_METRIC, tags);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getQueuedTaskCount() {
+    return queuedTaskCount.get();
+  }
+
+  @Override
+  public int getActiveTaskCount() {
+    return activeTaskCount.get();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    queuedTaskCount.incrementAndGet();
+    try {
+      submit(new TrackedTask(command));
+    } catch (RejectedExecutionException e) {
+      queuedTaskCount.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /** Hands the tracked task over to the underlying executor. */
+  protected abstract void submit(Runnable trackedTask);
+
+  protected void recordSaturation() {
+    saturationCounter.increment();
+  }
+
+  private class TrackedTask implements Runnable {
+    private final Runnable delegate;
+
+    private TrackedTask(Runnable delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void run() {
+      queuedTaskCount.decrementAndGet();
+      activeTaskCount.incrementAndGet();
+      try {
+        delegate.run();
+      } finally {
+        activeTaskCount.decrementAndGet();
+      }
+    }
+  }
+}
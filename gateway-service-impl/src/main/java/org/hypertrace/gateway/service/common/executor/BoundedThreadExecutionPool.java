@@ -0,0 +1,52 @@
+package org.hypertrace.gateway.service.common.executor;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfig;
+
+/**
+ * {@link ExecutionPool} backed by a fixed number of platform threads and a bounded queue. When both
+ * the threads and the queue are full, the task runs on the submitting thread instead, which slows
+ * the caller down rather than failing the request. Once the pool is shut down, tasks are rejected.
+ */
+class BoundedThreadExecutionPool extends AbstractExecutionPool {
+  private final ThreadPoolExecutor executor;
+
+  BoundedThreadExecutionPool(ExecutionPoolConfig config) {
+    super(config.getName());
+    this.executor =
+        new ThreadPoolExecutor(
+            config.getMaxConcurrency(),
+            config.getMaxConcurrency(),
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(config.getQueueSize()),
+            new ThreadFactoryBuilder()
+                .setNameFormat("execution-pool-" + config.getName().toLowerCase() + "-%d")
+                .setDaemon(true)
+                .build(),
+            (task, pool) -> {
+              if (pool.isShutdown()) {
+                // Fails the submission, so that nothing waits on a task that never runs
+                throw new RejectedExecutionException(
+                    "Execution pool " + config.getName() + " has been shut down");
+              }
+              recordSaturation();
+              task.run();
+            });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  protected void submit(Runnable trackedTask) {
+    executor.execute(trackedTask);
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
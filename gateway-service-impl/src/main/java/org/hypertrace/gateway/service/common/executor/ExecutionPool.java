@@ -0,0 +1,20 @@
+package org.hypertrace.gateway.service.common.executor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A bounded executor used to run calls against a single downstream data source. Implementations
+ * limit the number of concurrent calls to the source and report queue depth, active tasks and
+ * saturation as metrics tagged with the pool name.
+ */
+public interface ExecutionPool extends Executor {
+  String getName();
+
+  /** Number of tasks submitted to the pool that have not started running yet. */
+  int getQueuedTaskCount();
+
+  /** Number of tasks currently running in the pool. */
+  int getActiveTaskCount();
+
+  void shutdown();
+}
@@ -0,0 +1,70 @@
+package org.hypertrace.gateway.service.common.executor;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfig;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds one {@link ExecutionPool} per downstream data source so that a slow source can only
+ * exhaust its own pool and does not starve calls to the other sources.
+ */
+public class ExecutionPools {
+  private static final Logger LOG = LoggerFactory.getLogger(ExecutionPools.class);
+
+  private final Map<String, ExecutionPool> pools;
+
+  public ExecutionPools(ExecutionPoolConfigs configs) {
+    Map<String, ExecutionPool> poolMap = new LinkedHashMap<>();
+    for (ExecutionPoolConfig config : configs.getPoolConfigMap().values()) {
+      poolMap.put(config.getName(), createPool(config, configs.isVirtualThreadsEnabled()));
+    }
+    this.pools = Collections.unmodifiableMap(poolMap);
+  }
+
+  private static ExecutionPool createPool(ExecutionPoolConfig config, boolean virtualThreads) {
+    if (virtualThreads) {
+      return VirtualThreadExecutionPool.create(config)
+          .orElseGet(
+              () -> {
+                LOG.warn(
+                    "Virtual threads are not supported by this JVM. Using platform threads for"
+                        + " execution pool {}",
+                    config.getName());
+                return new BoundedThreadExecutionPool(config);
+              });
+    }
+    return new BoundedThreadExecutionPool(config);
+  }
+
+  /**
+   * Returns the execution pool for the given source.
+   *
+   * @throws IllegalArgumentException if no pool is configured for the source
+   */
+  public ExecutionPool getPool(String source) {
+    ExecutionPool pool = pools.get(source);
+    if (pool == null) {
+      throw new IllegalArgumentException("No execution pool configured for source: " + source);
+    }
+    return pool;
+  }
+
+  /**
+   * Returns the executor the RPCs are handled on. Unless async request handling is enabled, this
+   * runs them directly on the calling gRPC server thread.
+   */
+  public Executor getRequestExecutor() {
+    ExecutionPool requestPool = pools.get(ExecutionPoolConfigs.REQUEST_POOL);
+    return requestPool != null ? requestPool : MoreExecutors.directExecutor();
+  }
+
+  public void shutdown() {
+    pools.values().forEach(ExecutionPool::shutdown);
+  }
+}
@@ -0,0 +1,62 @@
+package org.hypertrace.gateway.service.common.executor;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfig;
+
+/**
+ * {@link ExecutionPool} that runs every task on its own virtual thread. Since virtual threads are
+ * not a limited resource, the number of concurrent calls to the source is bounded by a semaphore
+ * instead, and tasks waiting on it count as queued.
+ *
+ * <p>Virtual threads are looked up reflectively so that the service still builds and runs on JVMs
+ * which do not have them.
+ */
+class VirtualThreadExecutionPool extends AbstractExecutionPool {
+  private final ExecutorService executor;
+  private final Semaphore permits;
+
+  private VirtualThreadExecutionPool(ExecutionPoolConfig config, ExecutorService executor) {
+    super(config.getName());
+    this.executor = executor;
+    this.permits = new Semaphore(config.getMaxConcurrency());
+  }
+
+  static Optional<ExecutionPool> create(ExecutionPoolConfig config) {
+    return newVirtualThreadPerTaskExecutor()
+        .map(executor -> new VirtualThreadExecutionPool(config, executor));
+  }
+
+  private static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return Optional.of((ExecutorService) factory.invoke(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  protected void submit(Runnable trackedTask) {
+    executor.execute(
+        () -> {
+          if (!permits.tryAcquire()) {
+            recordSaturation();
+            permits.acquireUninterruptibly();
+          }
+          try {
+            trackedTask.run();
+          } finally {
+            permits.release();
+          }
+        });
+  }
+
+  @Override
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,115 @@
+package org.hypertrace.gateway.service.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Max heap, backed by arrays, that keeps the {@code capacity} smallest elements added to it. The
+ * order in which elements were added breaks ties, which keeps the selection stable. The arrays grow
+ * up to the capacity as elements are added, so a large capacity costs nothing until it is used.
+ */
+public class BoundedHeap<E> {
+  private static final int INITIAL_SIZE = 16;
+
+  private final int capacity;
+  private final Comparator<? super E> comparator;
+  private Object[] elements;
+  private long[] sequences;
+  private int size;
+  private long nextSequence;
+
+  public BoundedHeap(int capacity, Comparator<? super E> comparator) {
+    this.capacity = capacity;
+    this.comparator = comparator;
+    this.elements = new Object[Math.min(capacity, INITIAL_SIZE)];
+    this.sequences = new long[elements.length];
+  }
+
+  public void add(E element) {
+    long sequence = nextSequence++;
+    if (size < capacity) {
+      if (size == elements.length) {
+        int newLength = (int) Math.min(capacity, 2L * elements.length);
+        elements = Arrays.copyOf(elements, newLength);
+        sequences = Arrays.copyOf(sequences, newLength);
+      }
+      elements[size] = element;
+      sequences[size] = sequence;
+      siftUp(size++);
+    } else if (size > 0 && compare(element, sequence, 0) < 0) {
+      // Smaller than the largest element kept so far, so it replaces it
+      elements[0] = element;
+      sequences[0] = sequence;
+      siftDown(0);
+    }
+  }
+
+  /** Drains the heap, returning its elements in ascending order. */
+  @SuppressWarnings("unchecked")
+  public List<E> sorted() {
+    Object[] result = new Object[size];
+    while (size > 0) {
+      result[size - 1] = elements[0];
+      swap(0, --size);
+      elements[size] = null;
+      siftDown(0);
+    }
+    List<E> sorted = new ArrayList<>(result.length);
+    for (Object element : result) {
+      sorted.add((E) element);
+    }
+    return sorted;
+  }
+
+  private void siftUp(int index) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (compare(index, parent) <= 0) {
+        return;
+      }
+      swap(index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int index) {
+    while (true) {
+      int largest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && compare(left, largest) > 0) {
+        largest = left;
+      }
+      if (right < size && compare(right, largest) > 0) {
+        largest = right;
+      }
+      if (largest == index) {
+        return;
+      }
+      swap(index, largest);
+      index = largest;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(int first, int second) {
+    return compare((E) elements[first], sequences[first], second);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(E element, long sequence, int index) {
+    int result = comparator.compare(element, (E) elements[index]);
+    return result != 0 ? result : Long.compare(sequence, sequences[index]);
+  }
+
+  private void swap(int first, int second) {
+    Object element = elements[first];
+    elements[first] = elements[second];
+    elements[second] = element;
+    long sequence = sequences[first];
+    sequences[first] = sequences[second];
+    sequences[second] = sequence;
+  }
+}
@@ -1,6 +1,9 @@
 package org.hypertrace.gateway.service.common.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -9,6 +12,11 @@ public class DataCollectionUtil {
 
   public static <E, C extends Comparator<E>> List<E> limitAndSort(
       Stream<E> unsortedStream, int limit, int offset, int orderByCount, C comparator) {
+    if (orderByCount > 0 && limit > 0) {
+      return limitAndSort(
+          unsortedStream.collect(Collectors.toList()), limit, offset, orderByCount, comparator);
+    }
+
     // Now apply the sorting and limiting.
     Stream<E> sorted = unsortedStream;
     if (orderByCount > 0) {
@@ -18,6 +26,30 @@ public class DataCollectionUtil {
     return paginateAndLimit(sorted, limit, offset);
   }
 
+  /**
+   * Same as {@link #limitAndSort(Stream, int, int, int, Comparator)}, but when a limit is set only
+   * the first offset + limit elements are kept while scanning the collection, in a bounded heap.
+   * This sorts in O(n log k) time and O(k) space instead of sorting the whole collection. Elements
+   * which compare equal keep their relative order, as they would with a stable full sort.
+   */
+  public static <E, C extends Comparator<E>> List<E> limitAndSort(
+      Collection<E> elements, int limit, int offset, int orderByCount, C comparator) {
+    if (orderByCount <= 0) {
+      return paginateAndLimit(elements, limit, offset);
+    }
+
+    long topCount = (long) Math.max(offset, 0) + limit;
+    if (limit <= 0 || topCount >= elements.size()) {
+      List<E> sorted = new ArrayList<>(elements);
+      sorted.sort(comparator);
+      return paginateAndLimit(sorted, limit, offset);
+    }
+
+    BoundedHeap<E> heap = new BoundedHeap<>((int) topCount, comparator);
+    elements.forEach(heap::add);
+    return paginateAndLimit(heap.sorted(), limit, offset);
+  }
+
   public static <E, C extends Comparator<E>> List<E> paginateAndLimit(
       Stream<E> sortedStream, int limit, int offset) {
     if (offset > 0) {
@@ -29,4 +61,24 @@ public class DataCollectionUtil {
     }
     return sortedStream.collect(Collectors.toList());
   }
+
+  /** Same as {@link #paginateAndLimit(Stream, int, int)}, without streaming the collection. */
+  public static <E> List<E> paginateAndLimit(Collection<E> sortedElements, int limit, int offset) {
+    int skip = Math.max(offset, 0);
+    int remaining = sortedElements.size() - skip;
+    if (remaining <= 0) {
+      return new ArrayList<>();
+    }
+    int count = limit > 0 ? Math.min(limit, remaining) : remaining;
+
+    List<E> page = new ArrayList<>(count);
+    Iterator<E> iterator = sortedElements.iterator();
+    for (int i = 0; i < skip; i++) {
+      iterator.next();
+    }
+    for (int i = 0; i < count; i++) {
+      page.add(iterator.next());
+    }
+    return page;
+  }
 }
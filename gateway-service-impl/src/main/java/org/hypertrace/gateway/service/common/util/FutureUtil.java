@@ -0,0 +1,53 @@
+package org.hypertrace.gateway.service.common.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/** Helpers for composing and waiting on the futures returned by the execution pools. */
+public class FutureUtil {
+
+  /** Combines the given futures into a single future holding their results in the same order. */
+  public static <T> CompletableFuture<List<T>> allAsList(List<CompletableFuture<T>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply(
+            ignored -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+
+  /**
+   * Cancels the source futures when the dependent future is cancelled, since cancelling a future
+   * does not cancel the futures it was derived from. Tasks that were not started yet are then
+   * skipped by their executor. Returns the dependent future.
+   */
+  public static <T> CompletableFuture<T> propagateCancellation(
+      CompletableFuture<T> dependent, List<? extends CompletableFuture<?>> sources) {
+    dependent.whenComplete(
+        (result, throwable) -> {
+          if (dependent.isCancelled()) {
+            sources.forEach(source -> source.cancel(true));
+          }
+        });
+    return dependent;
+  }
+
+  /**
+   * Waits for the future to complete and returns its result. Unchecked exceptions thrown by the
+   * task are rethrown as is, so that callers see the same exception as they would have by running
+   * the task inline.
+   */
+  public static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
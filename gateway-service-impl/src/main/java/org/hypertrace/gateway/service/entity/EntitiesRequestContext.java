@@ -2,11 +2,15 @@ package org.hypertrace.gateway.service.entity;
 
 import java.util.Map;
 import java.util.Objects;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshot;
 import org.hypertrace.gateway.service.common.QueryRequestContext;
+import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 
 public class EntitiesRequestContext extends QueryRequestContext {
   private final String entityType;
   private final String timestampAttributeId;
+  private AttributeMetadataSnapshot attributeMetadataSnapshot;
 
   public EntitiesRequestContext(
       String tenantId,
@@ -28,6 +32,25 @@ public class EntitiesRequestContext extends QueryRequestContext {
     return timestampAttributeId;
   }
 
+  /** Shares the metadata snapshot of the request with this context */
+  public void setAttributeMetadataSnapshot(AttributeMetadataSnapshot attributeMetadataSnapshot) {
+    this.attributeMetadataSnapshot = attributeMetadataSnapshot;
+  }
+
+  /**
+   * Returns the metadata snapshot of the request. A context that was not given one gets its own, so
+   * that at least its lookups are done once.
+   */
+  public AttributeMetadataSnapshot getAttributeMetadataSnapshot(
+      AttributeMetadataProvider attributeMetadataProvider,
+      EntityIdColumnsConfigs entityIdColumnsConfigs) {
+    if (attributeMetadataSnapshot == null) {
+      attributeMetadataSnapshot =
+          new AttributeMetadataSnapshot(attributeMetadataProvider, entityIdColumnsConfigs, this);
+    }
+    return attributeMetadataSnapshot;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -1,7 +1,9 @@
 package org.hypertrace.gateway.service.entity;
 
+import java.util.List;
 import java.util.Map;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshot;
 import org.hypertrace.gateway.service.common.validators.request.RequestValidator;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
 import org.slf4j.Logger;
@@ -22,6 +24,27 @@ import org.slf4j.LoggerFactory;
 public class EntitiesRequestValidator extends RequestValidator<EntitiesRequest> {
   private static final Logger LOG = LoggerFactory.getLogger(EntitiesRequestValidator.class);
 
+  /**
+   * Validates the request against the metadata of the request snapshot. The fetches of a request
+   * mostly differ in their filters, which are not validated, so a validation is only run once for
+   * the parts of the request it looks at.
+   */
+  public void validate(
+      EntitiesRequest entitiesRequest, AttributeMetadataSnapshot attributeMetadataSnapshot) {
+    attributeMetadataSnapshot.validateOnce(
+        List.of(
+            EntitiesRequestValidator.class,
+            entitiesRequest.getEntityType(),
+            entitiesRequest.getSelectionList(),
+            entitiesRequest.getTimeAggregationList(),
+            entitiesRequest.getStartTimeMillis(),
+            entitiesRequest.getEndTimeMillis()),
+        () ->
+            validate(
+                entitiesRequest,
+                attributeMetadataSnapshot.getAttributesMetadata(entitiesRequest.getEntityType())));
+  }
+
   public void validate(
       EntitiesRequest entitiesRequest, Map<String, AttributeMetadata> attributeMetadataMap) {
 
@@ -2,14 +2,22 @@ package org.hypertrace.gateway.service.entity;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
 import io.grpc.Status;
 import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import org.apache.commons.lang3.StringUtils;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeSource;
@@ -17,22 +25,39 @@ import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.entity.query.service.client.EntityQueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshot;
 import org.hypertrace.gateway.service.common.OrderByPercentileSizeSetter;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
+import org.hypertrace.gateway.service.common.RequestCoalescer;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.cache.ResultCache;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.common.config.RequestCoalescingConfig;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
 import org.hypertrace.gateway.service.common.datafetcher.EntityDataServiceEntityFetcher;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityInteractionsFetcher;
+import org.hypertrace.gateway.service.common.datafetcher.EntityInteractionsResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
 import org.hypertrace.gateway.service.common.datafetcher.QueryServiceEntityFetcher;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.common.transformer.RequestPreProcessor;
 import org.hypertrace.gateway.service.common.transformer.ResponsePostProcessor;
-import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
+import org.hypertrace.gateway.service.entity.cache.EntityTotalCache;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.entity.config.LogConfig;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
+import org.hypertrace.gateway.service.entity.config.TotalCacheConfig;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
 import org.hypertrace.gateway.service.entity.query.ExecutionContext;
 import org.hypertrace.gateway.service.entity.query.ExecutionTreeBuilder;
 import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.SelectionNode;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics;
+import org.hypertrace.gateway.service.entity.query.visitor.ExecutionProfiler;
 import org.hypertrace.gateway.service.entity.query.visitor.ExecutionVisitor;
 import org.hypertrace.gateway.service.entity.update.EdsEntityUpdater;
 import org.hypertrace.gateway.service.entity.update.UpdateExecutionContext;
@@ -41,8 +66,8 @@ import org.hypertrace.gateway.service.v1.entity.BulkUpdateEntitiesResponse;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
 import org.hypertrace.gateway.service.v1.entity.EntitiesResponse;
 import org.hypertrace.gateway.service.v1.entity.Entity;
-import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 import org.hypertrace.gateway.service.v1.entity.InteractionsRequest;
+import org.hypertrace.gateway.service.v1.entity.QueryNodeProfile;
 import org.hypertrace.gateway.service.v1.entity.UpdateEntityRequest;
 import org.hypertrace.gateway.service.v1.entity.UpdateEntityResponse;
 import org.slf4j.Logger;
@@ -68,6 +93,13 @@ public class EntityService {
   private final ResponsePostProcessor responsePostProcessor;
   private final EdsEntityUpdater edsEntityUpdater;
   private final LogConfig logConfig;
+  private final ExecutionPools executionPools;
+  private final SelectionConfig selectionConfig;
+  private final EntityTotalCache entityTotalCache;
+  private final PlannerConfig plannerConfig;
+  private final SourceStatistics sourceStatistics;
+  private final RequestCoalescer<EntitiesRequest, EntitiesResponse> requestCoalescer;
+  private final ResultCache<EntitiesRequest, EntitiesResponse> resultCache;
   // Metrics
   private Timer queryBuildTimer;
   private Timer queryExecutionTimer;
@@ -79,29 +111,61 @@ public class EntityService {
       AttributeMetadataProvider metadataProvider,
       EntityIdColumnsConfigs entityIdColumnsConfigs,
       ScopeFilterConfigs scopeFilterConfigs,
-      LogConfig logConfig) {
+      LogConfig logConfig,
+      ExecutionPools executionPools,
+      SelectionConfig selectionConfig,
+      TotalCacheConfig totalCacheConfig,
+      PlannerConfig plannerConfig,
+      RequestCoalescingConfig requestCoalescingConfig,
+      ResultCacheConfig resultCacheConfig,
+      QueryLimitConfig queryLimitConfig) {
     this.metadataProvider = metadataProvider;
     this.entityIdColumnsConfigs = entityIdColumnsConfigs;
     this.interactionsFetcher =
-        new EntityInteractionsFetcher(qsClient, qsRequestTimeout, metadataProvider);
+        new EntityInteractionsFetcher(
+            qsClient, qsRequestTimeout, metadataProvider, executionPools, selectionConfig);
     this.requestPreProcessor = new RequestPreProcessor(metadataProvider, scopeFilterConfigs);
     this.responsePostProcessor = new ResponsePostProcessor();
     this.edsEntityUpdater = new EdsEntityUpdater(edsQueryServiceClient);
     this.logConfig = logConfig;
-
-    registerEntityFetchers(qsClient, qsRequestTimeout, edsQueryServiceClient);
+    this.executionPools = executionPools;
+    this.selectionConfig = selectionConfig;
+    this.entityTotalCache = new EntityTotalCache(totalCacheConfig);
+    this.plannerConfig = plannerConfig;
+    this.sourceStatistics = new SourceStatistics(plannerConfig);
+    this.requestCoalescer =
+        new RequestCoalescer<>("entities", requestCoalescingConfig.isEntitiesEnabled());
+    this.resultCache =
+        new ResultCache<>(
+            "entities",
+            resultCacheConfig,
+            EntitiesRequest::getStartTimeMillis,
+            EntitiesRequest::getEndTimeMillis,
+            (request, startTimeMillis, endTimeMillis) ->
+                request.toBuilder()
+                    .setStartTimeMillis(startTimeMillis)
+                    .setEndTimeMillis(endTimeMillis)
+                    .build());
+
+    registerEntityFetchers(
+        qsClient, qsRequestTimeout, edsQueryServiceClient, new QueryLimitPlanner(queryLimitConfig));
     initMetrics();
   }
 
   private void registerEntityFetchers(
       QueryServiceClient queryServiceClient,
       int qsRequestTimeout,
-      EntityQueryServiceClient edsQueryServiceClient) {
+      EntityQueryServiceClient edsQueryServiceClient,
+      QueryLimitPlanner queryLimitPlanner) {
     EntityQueryHandlerRegistry registry = EntityQueryHandlerRegistry.get();
     registry.registerEntityFetcher(
         AttributeSource.QS.name(),
         new QueryServiceEntityFetcher(
-            queryServiceClient, qsRequestTimeout, metadataProvider, entityIdColumnsConfigs));
+            queryServiceClient,
+            qsRequestTimeout,
+            metadataProvider,
+            entityIdColumnsConfigs,
+            queryLimitPlanner));
     registry.registerEntityFetcher(
         AttributeSource.EDS.name(),
         new EntityDataServiceEntityFetcher(
@@ -127,15 +191,239 @@ public class EntityService {
    *   <li>4) Passes the execution tree through the ExecutionVisitor to get the result
    *   <li>5) Adds entity interaction data if requested for
    * </ul>
+   *
+   * <p>The selections at the top of the execution tree do not change the set of entities, so the
+   * interactions are fetched while those selections run.
+   *
+   * <p>Responses are served from the result cache when it is enabled, and identical requests of a
+   * tenant that arrive while one of them runs share its response. Requests asking for an execution
+   * profile are always executed on their own.
    */
   public EntitiesResponse getEntities(
       String tenantId, EntitiesRequest originalRequest, Map<String, String> requestHeaders) {
+    if (originalRequest.getExplainAnalyze()) {
+      return executeGetEntities(tenantId, originalRequest, requestHeaders);
+    }
+    return resultCache.get(
+        tenantId,
+        requestHeaders,
+        originalRequest,
+        request ->
+            requestCoalescer.execute(
+                tenantId,
+                requestHeaders,
+                request,
+                () -> executeGetEntities(tenantId, request, requestHeaders)));
+  }
+
+  private EntitiesResponse executeGetEntities(
+      String tenantId, EntitiesRequest originalRequest, Map<String, String> requestHeaders) {
     Instant start = Instant.now();
+    ExecutionContext executionContext =
+        createExecutionContext(tenantId, originalRequest, requestHeaders);
+    EntitiesRequest preProcessedRequest = executionContext.getEntitiesRequest();
+    ExecutionTreeBuilder executionTreeBuilder =
+        new ExecutionTreeBuilder(executionContext, plannerConfig, sourceStatistics);
+    QueryNode executionTree = executionTreeBuilder.build();
+    queryBuildTimer.record(
+        Duration.between(start, Instant.now()).toMillis(), TimeUnit.MILLISECONDS);
+
+    ExecutionProfiler executionProfiler =
+        ExecutionProfiler.create(executionContext.getEntitiesRequest().getExplainAnalyze());
+    ExecutionVisitor executionVisitor = createExecutionVisitor(executionContext, executionProfiler);
+    // The selection nodes at the top of the tree only add data to the entities matched below them
+    Deque<SelectionNode> selectionNodes = new ArrayDeque<>();
+    QueryNode entitiesNode = collectTopSelectionNodes(executionTree, selectionNodes);
+    EntityResponse response = entitiesNode.acceptVisitor(executionVisitor);
+
+    RequestContext requestContext = new RequestContext(tenantId, requestHeaders);
+    // If no entities were matched yet, the selections may still fetch them, so the interactions
+    // can only be fetched afterwards.
+    CompletableFuture<EntityInteractionsResponse> interactionsFuture = null;
+    if (!response.getEntityFetcherResponse().isEmpty()) {
+      interactionsFuture =
+          fetchEntityInteractions(
+              requestContext,
+              preProcessedRequest,
+              response.getEntityFetcherResponse().getEntityKeyBuilderMap());
+    }
+
+    while (!selectionNodes.isEmpty()) {
+      response = executionVisitor.select(selectionNodes.pop(), response);
+    }
+
+    EntityFetcherResponse entityFetcherResponse = response.getEntityFetcherResponse();
+
+    List<Entity.Builder> results =
+        this.responsePostProcessor.transform(
+            executionContext,
+            new ArrayList<>(entityFetcherResponse.getEntityKeyBuilderMap().values()));
+
+    // Add interactions.
+    if (!results.isEmpty()) {
+      if (interactionsFuture == null) {
+        interactionsFuture =
+            fetchEntityInteractions(
+                requestContext,
+                preProcessedRequest,
+                entityFetcherResponse.getEntityKeyBuilderMap());
+      }
+      FutureUtil.await(interactionsFuture).addTo(entityFetcherResponse.getEntityKeyBuilderMap());
+    }
+
+    EntitiesResponse.Builder responseBuilder =
+        EntitiesResponse.newBuilder().setTotal(Long.valueOf(response.getTotal()).intValue());
+
+    results.forEach(e -> responseBuilder.addEntity(e.build()));
+    if (executionProfiler.isEnabled()) {
+      responseBuilder.setExecutionProfile(
+          getExecutionProfile(executionProfiler, executionTree, originalRequest));
+    }
+
+    recordQueryExecutionTime(start, originalRequest);
+    return responseBuilder.build();
+  }
+
+  /**
+   * Streaming variant of {@link #getEntities}. The execution tree is run up to its topmost
+   * selection nodes, which decides the entities and their order. Those entities are then split into
+   * batches of the selection entity id batch size, and each batch gets its selections, post
+   * processing and interactions before it is handed to the consumer. So, only one batch of entities
+   * is enriched at a time. Every batch carries the total.
+   *
+   * <p>When the entities come straight from a data fetcher node and the total is requested from
+   * its source, the entities are streamed from the fetch, and each batch is handed over as soon as
+   * it is fetched, instead of fetching all the entities first.
+   */
+  public void getEntitiesStream(
+      String tenantId,
+      EntitiesRequest originalRequest,
+      Map<String, String> requestHeaders,
+      Consumer<EntitiesResponse> responseConsumer) {
+    Instant start = Instant.now();
+    ExecutionContext executionContext =
+        createExecutionContext(tenantId, originalRequest, requestHeaders);
+    ExecutionTreeBuilder executionTreeBuilder =
+        new ExecutionTreeBuilder(executionContext, plannerConfig, sourceStatistics);
+    QueryNode executionTree = executionTreeBuilder.build();
+    queryBuildTimer.record(
+        Duration.between(start, Instant.now()).toMillis(), TimeUnit.MILLISECONDS);
+
+    ExecutionProfiler executionProfiler =
+        ExecutionProfiler.create(executionContext.getEntitiesRequest().getExplainAnalyze());
+    ExecutionVisitor executionVisitor = createExecutionVisitor(executionContext, executionProfiler);
+    Deque<SelectionNode> selectionNodes = new ArrayDeque<>();
+    QueryNode entitiesNode = collectTopSelectionNodes(executionTree, selectionNodes);
+    RequestContext requestContext = new RequestContext(tenantId, requestHeaders);
+    int batchSize = selectionConfig.getEntityIdBatchSize();
+    Consumer<EntityResponse> batchEmitter =
+        batchResponse ->
+            responseConsumer.accept(
+                enrichBatch(
+                    executionContext,
+                    executionVisitor,
+                    selectionNodes,
+                    requestContext,
+                    batchResponse));
+
+    EntityResponse response;
+    if (entitiesNode instanceof DataFetcherNode
+        && executionContext.getEntitiesRequest().getFetchTotal()) {
+      AtomicBoolean emitted = new AtomicBoolean();
+      long total =
+          executionVisitor.streamData(
+              (DataFetcherNode) entitiesNode,
+              batchSize,
+              batchResponse -> {
+                emitted.set(true);
+                batchEmitter.accept(batchResponse);
+              });
+      response = new EntityResponse(new EntityFetcherResponse(), total);
+      if (emitted.get()) {
+        sendExecutionProfile(
+            executionProfiler, executionTree, originalRequest, total, responseConsumer);
+        recordQueryExecutionTime(start, originalRequest);
+        return;
+      }
+    } else {
+      response = entitiesNode.acceptVisitor(executionVisitor);
+    }
+
+    // If no entities were matched yet, the selections may still fetch them. So, they have to run
+    // over the whole result before it can be split.
+    if (response.getEntityFetcherResponse().isEmpty()) {
+      while (!selectionNodes.isEmpty()) {
+        response = executionVisitor.select(selectionNodes.pop(), response);
+      }
+    }
+
+    long total = response.getTotal();
+    if (response.getEntityFetcherResponse().isEmpty()) {
+      responseConsumer.accept(EntitiesResponse.newBuilder().setTotal((int) total).build());
+    }
+    response
+        .getEntityFetcherResponse()
+        .forEachBatch(batchSize, batch -> batchEmitter.accept(new EntityResponse(batch, total)));
+
+    sendExecutionProfile(
+        executionProfiler, executionTree, originalRequest, total, responseConsumer);
+    recordQueryExecutionTime(start, originalRequest);
+  }
+
+  /** Runs the remaining selections, post processing and interactions of a batch of entities */
+  private EntitiesResponse enrichBatch(
+      ExecutionContext executionContext,
+      ExecutionVisitor executionVisitor,
+      Collection<SelectionNode> selectionNodes,
+      RequestContext requestContext,
+      EntityResponse batchResponse) {
+    CompletableFuture<EntityInteractionsResponse> interactionsFuture =
+        fetchEntityInteractions(
+            requestContext,
+            executionContext.getEntitiesRequest(),
+            batchResponse.getEntityFetcherResponse().getEntityKeyBuilderMap());
+    for (SelectionNode selectionNode : selectionNodes) {
+      batchResponse = executionVisitor.select(selectionNode, batchResponse);
+    }
+
+    Map<EntityKey, Entity.Builder> entityBuilders =
+        batchResponse.getEntityFetcherResponse().getEntityKeyBuilderMap();
+    List<Entity.Builder> results =
+        this.responsePostProcessor.transform(
+            executionContext, new ArrayList<>(entityBuilders.values()));
+    FutureUtil.await(interactionsFuture).addTo(entityBuilders);
+
+    EntitiesResponse.Builder responseBuilder =
+        EntitiesResponse.newBuilder().setTotal(Long.valueOf(batchResponse.getTotal()).intValue());
+    results.forEach(e -> responseBuilder.addEntity(e.build()));
+    return responseBuilder.build();
+  }
+
+  /** The profile is only complete once all the batches are done, so it is sent on its own */
+  private void sendExecutionProfile(
+      ExecutionProfiler executionProfiler,
+      QueryNode executionTree,
+      EntitiesRequest originalRequest,
+      long total,
+      Consumer<EntitiesResponse> responseConsumer) {
+    if (executionProfiler.isEnabled()) {
+      responseConsumer.accept(
+          EntitiesResponse.newBuilder()
+              .setTotal((int) total)
+              .setExecutionProfile(
+                  getExecutionProfile(executionProfiler, executionTree, originalRequest))
+              .build());
+    }
+  }
+
+  private ExecutionContext createExecutionContext(
+      String tenantId, EntitiesRequest originalRequest, Map<String, String> requestHeaders) {
+    // The metadata used by the request is looked up once, and shared by all its fetches
+    AttributeMetadataSnapshot attributeMetadataSnapshot =
+        new AttributeMetadataSnapshot(
+            metadataProvider, entityIdColumnsConfigs, new RequestContext(tenantId, requestHeaders));
     String timestampAttributeId =
-        AttributeMetadataUtil.getTimestampAttributeId(
-            metadataProvider,
-            new RequestContext(tenantId, requestHeaders),
-            originalRequest.getEntityType());
+        attributeMetadataSnapshot.getTimestampAttributeId(originalRequest.getEntityType());
 
     // Set the size for percentiles in order by if it is not set. This is to give UI the time to fix
     // the bug which does not set the size when they have order by in the request.
@@ -148,46 +436,61 @@ public class EntityService {
             originalRequest.getEntityType(),
             timestampAttributeId,
             requestHeaders);
+    entitiesRequestContext.setAttributeMetadataSnapshot(attributeMetadataSnapshot);
     EntitiesRequest preProcessedRequest =
         requestPreProcessor.process(originalRequest, entitiesRequestContext);
 
-    ExecutionContext executionContext =
-        ExecutionContext.from(
-            metadataProvider, entityIdColumnsConfigs, preProcessedRequest, entitiesRequestContext);
-    ExecutionTreeBuilder executionTreeBuilder = new ExecutionTreeBuilder(executionContext);
-    QueryNode executionTree = executionTreeBuilder.build();
-    queryBuildTimer.record(
-        Duration.between(start, Instant.now()).toMillis(), TimeUnit.MILLISECONDS);
+    return ExecutionContext.from(
+        metadataProvider, entityIdColumnsConfigs, preProcessedRequest, entitiesRequestContext);
+  }
 
+  private ExecutionVisitor createExecutionVisitor(
+      ExecutionContext executionContext, ExecutionProfiler executionProfiler) {
     /*
      * EntityQueryHandlerRegistry.get() returns Singleton object, so, it's guaranteed that
      * it won't create new object for each request.
      */
-    EntityResponse response =
-        executionTree.acceptVisitor(
-            new ExecutionVisitor(executionContext, EntityQueryHandlerRegistry.get()));
-
-    EntityFetcherResponse entityFetcherResponse = response.getEntityFetcherResponse();
-
-    List<Entity.Builder> results =
-        this.responsePostProcessor.transform(
-            executionContext,
-            new ArrayList<>(entityFetcherResponse.getEntityKeyBuilderMap().values()));
+    return new ExecutionVisitor(
+        executionContext,
+        EntityQueryHandlerRegistry.get(),
+        executionPools,
+        selectionConfig,
+        entityTotalCache,
+        executionProfiler,
+        sourceStatistics);
+  }
 
-    // Add interactions.
-    if (!results.isEmpty()) {
-      addEntityInteractions(
-          tenantId,
-          preProcessedRequest,
-          entityFetcherResponse.getEntityKeyBuilderMap(),
-          requestHeaders);
+  private QueryNodeProfile getExecutionProfile(
+      ExecutionProfiler executionProfiler, QueryNode executionTree, EntitiesRequest request) {
+    QueryNodeProfile executionProfile = executionProfiler.getProfile(executionTree);
+    if (LOG.isInfoEnabled()) {
+      try {
+        LOG.info(
+            "Execution profile: {} for request: {}",
+            JsonFormat.printer().omittingInsignificantWhitespace().print(executionProfile),
+            request);
+      } catch (InvalidProtocolBufferException e) {
+        LOG.warn("Failed to print the execution profile", e);
+      }
     }
+    return executionProfile;
+  }
 
-    EntitiesResponse.Builder responseBuilder =
-        EntitiesResponse.newBuilder().setTotal(Long.valueOf(response.getTotal()).intValue());
-
-    results.forEach(e -> responseBuilder.addEntity(e.build()));
+  /**
+   * Pushes the selection nodes at the top of the execution tree, so that the lowest one is popped
+   * first, and returns the node right below them.
+   */
+  private static QueryNode collectTopSelectionNodes(
+      QueryNode executionTree, Deque<SelectionNode> selectionNodes) {
+    QueryNode queryNode = executionTree;
+    while (queryNode instanceof SelectionNode) {
+      selectionNodes.push((SelectionNode) queryNode);
+      queryNode = ((SelectionNode) queryNode).getChildNode();
+    }
+    return queryNode;
+  }
 
+  private void recordQueryExecutionTime(Instant start, EntitiesRequest originalRequest) {
     long queryExecutionTime = Duration.between(start, Instant.now()).toMillis();
     if (queryExecutionTime > logConfig.getQueryThresholdInMillis()) {
       LOG.info(
@@ -197,7 +500,6 @@ public class EntityService {
     }
 
     queryExecutionTimer.record(queryExecutionTime, TimeUnit.MILLISECONDS);
-    return responseBuilder.build();
   }
 
   public UpdateEntityResponse updateEntity(
@@ -243,18 +545,16 @@ public class EntityService {
     return edsEntityUpdater.bulkUpdateEntities(request, updateExecutionContext);
   }
 
-  private void addEntityInteractions(
-      String tenantId,
+  private CompletableFuture<EntityInteractionsResponse> fetchEntityInteractions(
+      RequestContext requestContext,
       EntitiesRequest request,
-      Map<EntityKey, Builder> result,
-      Map<String, String> requestHeaders) {
+      Map<EntityKey, Entity.Builder> entityBuilders) {
     if (InteractionsRequest.getDefaultInstance().equals(request.getIncomingInteractions())
         && InteractionsRequest.getDefaultInstance().equals(request.getOutgoingInteractions())) {
-      return;
+      return CompletableFuture.completedFuture(new EntityInteractionsResponse());
     }
 
-    RequestContext requestContext = new RequestContext(tenantId, requestHeaders);
-
-    interactionsFetcher.populateEntityInteractions(requestContext, request, result);
+    return interactionsFetcher.fetchEntityInteractions(
+        requestContext, request, entityBuilders.keySet());
   }
 }
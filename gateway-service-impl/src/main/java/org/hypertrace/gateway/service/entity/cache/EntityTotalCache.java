@@ -0,0 +1,236 @@
+package org.hypertrace.gateway.service.entity.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Counter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.gateway.service.entity.config.TotalCacheConfig;
+import org.hypertrace.gateway.service.v1.common.Filter;
+import org.hypertrace.gateway.service.v1.common.Operator;
+import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
+
+/**
+ * Caches the total number of entities matching an entities request, so that paging through the
+ * same entities does not recompute the total for every page. The total only depends on the tenant,
+ * request headers, entity type, space, filter and time range of the request, and not on the
+ * selections, order by, limit or offset. The request headers are part of the key, so that a total
+ * is only shared between callers with the same identity and authorization.
+ *
+ * <p>Exact totals are only shared by requests of the exact same time range, while approximate
+ * totals are shared by requests whose time ranges fall in the same time buckets.
+ */
+public class EntityTotalCache {
+  private final TotalCacheConfig totalCacheConfig;
+  private final Cache<TotalCacheKey, CachedTotal> cache;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  public EntityTotalCache(TotalCacheConfig totalCacheConfig) {
+    this.totalCacheConfig = totalCacheConfig;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(totalCacheConfig.getMaxSize())
+            .expireAfterWrite(
+                Math.max(
+                    totalCacheConfig.getTtlMillis(), totalCacheConfig.getApproximateTtlMillis()),
+                TimeUnit.MILLISECONDS)
+            .build();
+    this.hitCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.entities.total.cache.hit", ImmutableMap.of());
+    this.missCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.entities.total.cache.miss", ImmutableMap.of());
+  }
+
+  /** Whether totals are cached, without which approximate totals cannot be served from the cache */
+  public boolean isEnabled() {
+    return totalCacheConfig.isEnabled();
+  }
+
+  /**
+   * Returns the cached total of the exact same time range if it was computed within the TTL,
+   * otherwise computes it with the loader and caches it, for approximate totals too.
+   */
+  public long getTotal(
+      String source,
+      String tenantId,
+      Map<String, String> requestHeaders,
+      EntitiesRequest entitiesRequest,
+      Supplier<Long> totalLoader) {
+    if (!totalCacheConfig.isEnabled()) {
+      return totalLoader.get();
+    }
+
+    TotalCacheKey cacheKey = buildCacheKey(source, tenantId, requestHeaders, entitiesRequest, 1L);
+    Optional<Long> cachedTotal = getCachedTotal(cacheKey, totalCacheConfig.getTtlMillis());
+    if (cachedTotal.isPresent()) {
+      return cachedTotal.get();
+    }
+
+    long total = totalLoader.get();
+    CachedTotal computedTotal = new CachedTotal(total, System.currentTimeMillis());
+    cache.put(cacheKey, computedTotal);
+    cache.put(
+        buildCacheKey(
+            source, tenantId, requestHeaders, entitiesRequest, getApproximateTimeBucketMillis()),
+        computedTotal);
+    return total;
+  }
+
+  /**
+   * Returns the cached total if it was computed within the approximate TTL, which is usually much
+   * longer than the TTL of exact totals.
+   */
+  public Optional<Long> getApproximateTotal(
+      String source,
+      String tenantId,
+      Map<String, String> requestHeaders,
+      EntitiesRequest entitiesRequest) {
+    if (!totalCacheConfig.isEnabled()) {
+      return Optional.empty();
+    }
+    return getCachedTotal(
+        buildCacheKey(
+            source, tenantId, requestHeaders, entitiesRequest, getApproximateTimeBucketMillis()),
+        totalCacheConfig.getApproximateTtlMillis());
+  }
+
+  private long getApproximateTimeBucketMillis() {
+    return Math.max(totalCacheConfig.getTimeBucketMillis(), 1L);
+  }
+
+  private Optional<Long> getCachedTotal(TotalCacheKey cacheKey, long ttlMillis) {
+    CachedTotal cachedTotal = cache.getIfPresent(cacheKey);
+    if (cachedTotal != null
+        && System.currentTimeMillis() - cachedTotal.computedAtMillis <= ttlMillis) {
+      hitCounter.increment();
+      return Optional.of(cachedTotal.total);
+    }
+    missCounter.increment();
+    return Optional.empty();
+  }
+
+  private TotalCacheKey buildCacheKey(
+      String source,
+      String tenantId,
+      Map<String, String> requestHeaders,
+      EntitiesRequest entitiesRequest,
+      long timeBucketMillis) {
+    return new TotalCacheKey(
+        source,
+        tenantId,
+        requestHeaders,
+        entitiesRequest.getEntityType(),
+        entitiesRequest.getSpaceId(),
+        entitiesRequest.getIncludeNonLiveEntities(),
+        normalize(entitiesRequest.getFilter()),
+        timeBucketMillis,
+        entitiesRequest.getStartTimeMillis() / timeBucketMillis,
+        entitiesRequest.getEndTimeMillis() / timeBucketMillis);
+  }
+
+  /**
+   * Orders the child filters of AND and OR filters, so that filters differing only in the order of
+   * their children share the cached total.
+   */
+  static Filter normalize(Filter filter) {
+    if (filter.getChildFilterCount() == 0
+        || (filter.getOperator() != Operator.AND && filter.getOperator() != Operator.OR)) {
+      return filter;
+    }
+    List<Filter> childFilters =
+        filter.getChildFilterList().stream()
+            .map(EntityTotalCache::normalize)
+            .sorted(Comparator.comparingInt(Filter::hashCode))
+            .collect(Collectors.toList());
+    return filter.toBuilder().clearChildFilter().addAllChildFilter(childFilters).build();
+  }
+
+  private static class CachedTotal {
+    private final long total;
+    private final long computedAtMillis;
+
+    private CachedTotal(long total, long computedAtMillis) {
+      this.total = total;
+      this.computedAtMillis = computedAtMillis;
+    }
+  }
+
+  private static class TotalCacheKey {
+    private final String source;
+    private final String tenantId;
+    private final Map<String, String> requestHeaders;
+    private final String entityType;
+    private final String spaceId;
+    private final boolean includeNonLiveEntities;
+    private final Filter filter;
+    private final long timeBucketMillis;
+    private final long startTimeBucket;
+    private final long endTimeBucket;
+
+    private TotalCacheKey(
+        String source,
+        String tenantId,
+        Map<String, String> requestHeaders,
+        String entityType,
+        String spaceId,
+        boolean includeNonLiveEntities,
+        Filter filter,
+        long timeBucketMillis,
+        long startTimeBucket,
+        long endTimeBucket) {
+      this.source = source;
+      this.tenantId = tenantId;
+      this.requestHeaders = requestHeaders;
+      this.entityType = entityType;
+      this.spaceId = spaceId;
+      this.includeNonLiveEntities = includeNonLiveEntities;
+      this.filter = filter;
+      this.timeBucketMillis = timeBucketMillis;
+      this.startTimeBucket = startTimeBucket;
+      this.endTimeBucket = endTimeBucket;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      TotalCacheKey that = (TotalCacheKey) o;
+      return includeNonLiveEntities == that.includeNonLiveEntities
+          && timeBucketMillis == that.timeBucketMillis
+          && startTimeBucket == that.startTimeBucket
+          && endTimeBucket == that.endTimeBucket
+          && source.equals(that.source)
+          && tenantId.equals(that.tenantId)
+          && requestHeaders.equals(that.requestHeaders)
+          && entityType.equals(that.entityType)
+          && spaceId.equals(that.spaceId)
+          && filter.equals(that.filter);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          source,
+          tenantId,
+          requestHeaders,
+          entityType,
+          spaceId,
+          includeNonLiveEntities,
+          filter,
+          timeBucketMillis,
+          startTimeBucket,
+          endTimeBucket);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.hypertrace.gateway.service.entity.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for planning entity queries with the statistics observed from each source */
+public class PlannerConfig {
+  private static final String PLANNER_CONFIG = "entity.service.planner.config";
+  private static final String COST_BASED_ENABLED = "cost.based.enabled";
+  private static final String STATISTICS_MAX_SIZE = "statistics.max.size";
+  private static final String STATISTICS_EXPIRY_MINUTES = "statistics.expiry.minutes";
+  private static final String STATISTICS_SMOOTHING_FACTOR = "statistics.smoothing.factor";
+  private static final String SEMI_JOIN_ENABLED = "semi.join.enabled";
+  private static final String SEMI_JOIN_MAX_ENTITY_IDS = "semi.join.max.entity.ids";
+  private static final boolean DEFAULT_COST_BASED_ENABLED = true;
+  private static final long DEFAULT_STATISTICS_MAX_SIZE = 10000L;
+  private static final long DEFAULT_STATISTICS_EXPIRY_MINUTES = 60L;
+  private static final double DEFAULT_STATISTICS_SMOOTHING_FACTOR = 0.2;
+  private static final boolean DEFAULT_SEMI_JOIN_ENABLED = true;
+  private static final int DEFAULT_SEMI_JOIN_MAX_ENTITY_IDS = 10000;
+  private final boolean costBasedEnabled;
+  private final long statisticsMaxSize;
+  private final long statisticsExpiryMinutes;
+  private final double statisticsSmoothingFactor;
+  private final boolean semiJoinEnabled;
+  private final int semiJoinMaxEntityIds;
+
+  public PlannerConfig(Config appConfig) {
+    Config plannerConfig =
+        appConfig.hasPath(PLANNER_CONFIG)
+            ? appConfig.getConfig(PLANNER_CONFIG)
+            : ConfigFactory.empty();
+
+    this.costBasedEnabled =
+        plannerConfig.hasPath(COST_BASED_ENABLED)
+            ? plannerConfig.getBoolean(COST_BASED_ENABLED)
+            : DEFAULT_COST_BASED_ENABLED;
+    this.statisticsMaxSize =
+        plannerConfig.hasPath(STATISTICS_MAX_SIZE)
+            ? plannerConfig.getLong(STATISTICS_MAX_SIZE)
+            : DEFAULT_STATISTICS_MAX_SIZE;
+    this.statisticsExpiryMinutes =
+        plannerConfig.hasPath(STATISTICS_EXPIRY_MINUTES)
+            ? plannerConfig.getLong(STATISTICS_EXPIRY_MINUTES)
+            : DEFAULT_STATISTICS_EXPIRY_MINUTES;
+    this.statisticsSmoothingFactor =
+        plannerConfig.hasPath(STATISTICS_SMOOTHING_FACTOR)
+            ? plannerConfig.getDouble(STATISTICS_SMOOTHING_FACTOR)
+            : DEFAULT_STATISTICS_SMOOTHING_FACTOR;
+    this.semiJoinEnabled =
+        plannerConfig.hasPath(SEMI_JOIN_ENABLED)
+            ? plannerConfig.getBoolean(SEMI_JOIN_ENABLED)
+            : DEFAULT_SEMI_JOIN_ENABLED;
+    this.semiJoinMaxEntityIds =
+        plannerConfig.hasPath(SEMI_JOIN_MAX_ENTITY_IDS)
+            ? plannerConfig.getInt(SEMI_JOIN_MAX_ENTITY_IDS)
+            : DEFAULT_SEMI_JOIN_MAX_ENTITY_IDS;
+  }
+
+  /** Whether the observed statistics are used to plan the queries, and collected at all */
+  public boolean isCostBasedEnabled() {
+    return this.costBasedEnabled;
+  }
+
+  public long getStatisticsMaxSize() {
+    return this.statisticsMaxSize;
+  }
+
+  /** Statistics that were not updated for this long are dropped */
+  public long getStatisticsExpiryMinutes() {
+    return this.statisticsExpiryMinutes;
+  }
+
+  /** Weight of the latest observation in the moving averages of latency and cardinality */
+  public double getStatisticsSmoothingFactor() {
+    return this.statisticsSmoothingFactor;
+  }
+
+  /**
+   * Whether the entity ids matched by the most selective child of an AND filter are passed as a
+   * filter to the fetches of its siblings
+   */
+  public boolean isSemiJoinEnabled() {
+    return this.semiJoinEnabled;
+  }
+
+  /** Children expected to match more entities than this do not drive the fetches of siblings */
+  public int getSemiJoinMaxEntityIds() {
+    return this.semiJoinMaxEntityIds;
+  }
+}
@@ -0,0 +1,32 @@
+package org.hypertrace.gateway.service.entity.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for fetching the selections of the entities matched by the filter */
+public class SelectionConfig {
+  private static final String SELECTION_CONFIG = "entity.service.selection.config";
+  private static final String ENTITY_ID_BATCH_SIZE = "entity.id.batch.size";
+  private static final int DEFAULT_ENTITY_ID_BATCH_SIZE = 1000;
+  private final int entityIdBatchSize;
+
+  public SelectionConfig(Config appConfig) {
+    Config selectionConfig =
+        appConfig.hasPath(SELECTION_CONFIG)
+            ? appConfig.getConfig(SELECTION_CONFIG)
+            : ConfigFactory.empty();
+
+    this.entityIdBatchSize =
+        selectionConfig.hasPath(ENTITY_ID_BATCH_SIZE)
+            ? selectionConfig.getInt(ENTITY_ID_BATCH_SIZE)
+            : DEFAULT_ENTITY_ID_BATCH_SIZE;
+  }
+
+  /**
+   * Max number of entity ids in the filter of a single selection query. A value of 0 or less
+   * disables batching.
+   */
+  public int getEntityIdBatchSize() {
+    return this.entityIdBatchSize;
+  }
+}
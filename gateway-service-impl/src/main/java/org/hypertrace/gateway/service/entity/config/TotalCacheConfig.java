@@ -0,0 +1,71 @@
+package org.hypertrace.gateway.service.entity.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for caching the total number of entities matching an entities request */
+public class TotalCacheConfig {
+  private static final String TOTAL_CACHE_CONFIG = "entity.service.total.cache.config";
+  private static final String ENABLED = "enabled";
+  private static final String MAX_SIZE = "max.size";
+  private static final String TTL_MILLIS = "ttl.millis";
+  private static final String APPROXIMATE_TTL_MILLIS = "approximate.ttl.millis";
+  private static final String TIME_BUCKET_MILLIS = "time.bucket.millis";
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final long DEFAULT_MAX_SIZE = 10000L;
+  private static final long DEFAULT_TTL_MILLIS = 30000L;
+  private static final long DEFAULT_APPROXIMATE_TTL_MILLIS = 300000L;
+  private static final long DEFAULT_TIME_BUCKET_MILLIS = 60000L;
+  private final boolean enabled;
+  private final long maxSize;
+  private final long ttlMillis;
+  private final long approximateTtlMillis;
+  private final long timeBucketMillis;
+
+  public TotalCacheConfig(Config appConfig) {
+    Config totalCacheConfig =
+        appConfig.hasPath(TOTAL_CACHE_CONFIG)
+            ? appConfig.getConfig(TOTAL_CACHE_CONFIG)
+            : ConfigFactory.empty();
+
+    this.enabled =
+        totalCacheConfig.hasPath(ENABLED) ? totalCacheConfig.getBoolean(ENABLED) : DEFAULT_ENABLED;
+    this.maxSize =
+        totalCacheConfig.hasPath(MAX_SIZE) ? totalCacheConfig.getLong(MAX_SIZE) : DEFAULT_MAX_SIZE;
+    this.ttlMillis =
+        totalCacheConfig.hasPath(TTL_MILLIS)
+            ? totalCacheConfig.getLong(TTL_MILLIS)
+            : DEFAULT_TTL_MILLIS;
+    this.approximateTtlMillis =
+        totalCacheConfig.hasPath(APPROXIMATE_TTL_MILLIS)
+            ? totalCacheConfig.getLong(APPROXIMATE_TTL_MILLIS)
+            : DEFAULT_APPROXIMATE_TTL_MILLIS;
+    this.timeBucketMillis =
+        totalCacheConfig.hasPath(TIME_BUCKET_MILLIS)
+            ? totalCacheConfig.getLong(TIME_BUCKET_MILLIS)
+            : DEFAULT_TIME_BUCKET_MILLIS;
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  public long getMaxSize() {
+    return this.maxSize;
+  }
+
+  /** How long a cached total is returned for requests asking for the exact total */
+  public long getTtlMillis() {
+    return this.ttlMillis;
+  }
+
+  /** How long a cached total is returned for requests asking for an approximate total */
+  public long getApproximateTtlMillis() {
+    return this.approximateTtlMillis;
+  }
+
+  /** Requests whose time ranges fall in the same buckets share the cached approximate total */
+  public long getTimeBucketMillis() {
+    return this.timeBucketMillis;
+  }
+}
@@ -6,18 +6,39 @@ import org.hypertrace.gateway.service.entity.query.visitor.Visitor;
 /**
  * Node corresponding to the AND condition in the query filter. Applies an AND between all the child
  * nodes
+ *
+ * <p>In a semi join, the first child runs first and the entity ids it matched are added to the
+ * filters of the sibling data fetches, instead of running all the children independently. If the
+ * first child matches more entities than the semi join allows, the children are intersected as
+ * usual
  */
 public class AndNode implements QueryNode {
   private final List<QueryNode> childNodes;
+  private final boolean semiJoin;
+  private final int semiJoinMaxEntityIds;
 
   public AndNode(List<QueryNode> childNodes) {
+    this(childNodes, false, 0);
+  }
+
+  public AndNode(List<QueryNode> childNodes, boolean semiJoin, int semiJoinMaxEntityIds) {
     this.childNodes = childNodes;
+    this.semiJoin = semiJoin;
+    this.semiJoinMaxEntityIds = semiJoinMaxEntityIds;
   }
 
   public List<QueryNode> getChildNodes() {
     return childNodes;
   }
 
+  public boolean isSemiJoin() {
+    return semiJoin;
+  }
+
+  public int getSemiJoinMaxEntityIds() {
+    return semiJoinMaxEntityIds;
+  }
+
   @Override
   public <R> R acceptVisitor(Visitor<R> v) {
     return v.visit(this);
@@ -25,6 +46,13 @@ public class AndNode implements QueryNode {
 
   @Override
   public String toString() {
-    return "AndNode{" + "childNodes=" + childNodes + '}';
+    return "AndNode{"
+        + "childNodes="
+        + childNodes
+        + ", semiJoin="
+        + semiJoin
+        + ", semiJoinMaxEntityIds="
+        + semiJoinMaxEntityIds
+        + '}';
   }
 }
@@ -17,7 +17,7 @@ import java.util.stream.IntStream;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeSource;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
-import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
+import org.hypertrace.gateway.service.common.AttributeMetadataSnapshot;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.OrderByUtil;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
@@ -117,6 +117,12 @@ public class ExecutionContext {
     return attributeMetadataProvider;
   }
 
+  /** Metadata looked up for this request, shared with the contexts of the downstream fetches */
+  public AttributeMetadataSnapshot getAttributeMetadataSnapshot() {
+    return entitiesRequestContext.getAttributeMetadataSnapshot(
+        attributeMetadataProvider, entityIdColumnsConfigs);
+  }
+
   public Map<String, List<Expression>> getSourceToSelectionExpressionMap() {
     return sourceToSelectionExpressionMap;
   }
@@ -187,11 +193,7 @@ public class ExecutionContext {
 
   public List<Expression> getEntityIdExpressions() {
     List<String> entityIdAttributeNames =
-        AttributeMetadataUtil.getIdAttributeIds(
-            attributeMetadataProvider,
-            entityIdColumnsConfigs,
-            this.entitiesRequestContext,
-            entitiesRequest.getEntityType());
+        getAttributeMetadataSnapshot().getIdAttributeIds(entitiesRequest.getEntityType());
     return IntStream.range(0, entityIdAttributeNames.size())
         .mapToObj(
             value ->
@@ -396,8 +398,7 @@ public class ExecutionContext {
     }
     Map<String, List<Expression>> sourceToExpressionMap = new HashMap<>();
     Map<String, AttributeMetadata> attrNameToMetadataMap =
-        attributeMetadataProvider.getAttributesMetadata(
-            this.entitiesRequestContext, entitiesRequest.getEntityType());
+        getAttributeMetadataSnapshot().getAttributesMetadata(entitiesRequest.getEntityType());
     for (Expression expression : expressions) {
       Set<String> attributeIds = ExpressionReader.extractAttributeIds(expression);
       Set<AttributeSource> sources =
@@ -4,7 +4,9 @@ import static org.hypertrace.core.attribute.service.v1.AttributeSource.EDS;
 import static org.hypertrace.core.attribute.service.v1.AttributeSource.QS;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.typesafe.config.ConfigFactory;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -15,6 +17,10 @@ import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeSource;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.TimeRangeFilterUtil;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.query.planner.CostModel;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics;
+import org.hypertrace.gateway.service.entity.query.visitor.CostBasedOrderingVisitor;
 import org.hypertrace.gateway.service.entity.query.visitor.ExecutionContextBuilderVisitor;
 import org.hypertrace.gateway.service.entity.query.visitor.FilterOptimizingVisitor;
 import org.hypertrace.gateway.service.entity.query.visitor.PrintVisitor;
@@ -33,15 +39,30 @@ public class ExecutionTreeBuilder {
   private final Map<String, AttributeMetadata> attributeMetadataMap;
   private final ExecutionContext executionContext;
   private final Set<String> sourceSetsIfFilterAndOrderByAreFromSameSourceSets;
+  private final PlannerConfig plannerConfig;
+  private final SourceStatistics sourceStatistics;
+  private final CostModel costModel;
 
   public ExecutionTreeBuilder(ExecutionContext executionContext) {
+    this(executionContext, new PlannerConfig(ConfigFactory.empty()), SourceStatistics.disabled());
+  }
+
+  public ExecutionTreeBuilder(
+      ExecutionContext executionContext,
+      PlannerConfig plannerConfig,
+      SourceStatistics sourceStatistics) {
     this.executionContext = executionContext;
+    this.plannerConfig = plannerConfig;
+    this.sourceStatistics = sourceStatistics;
+    this.costModel =
+        new CostModel(
+            sourceStatistics,
+            executionContext.getTenantId(),
+            executionContext.getEntitiesRequest().getEntityType());
     this.attributeMetadataMap =
         executionContext
-            .getAttributeMetadataProvider()
-            .getAttributesMetadata(
-                executionContext.getEntitiesRequestContext(),
-                executionContext.getEntitiesRequest().getEntityType());
+            .getAttributeMetadataSnapshot()
+            .getAttributesMetadata(executionContext.getEntitiesRequest().getEntityType());
 
     this.sourceSetsIfFilterAndOrderByAreFromSameSourceSets =
         ExecutionTreeUtils.getSourceSetsIfFilterAndOrderByAreFromSameSourceSets(executionContext);
@@ -151,6 +172,19 @@ public class ExecutionTreeBuilder {
       LOG.debug("Optimized Filter Tree:{}", optimizedFilterTree.acceptVisitor(new PrintVisitor()));
     }
 
+    /**
+     * {@link CostBasedOrderingVisitor} puts the most selective child of each {@link AndNode} first,
+     * going by the statistics observed for the sources so far, and marks the nodes whose first
+     * child is selective enough to run as a semi join
+     */
+    if (sourceStatistics.isEnabled()) {
+      optimizedFilterTree =
+          optimizedFilterTree.acceptVisitor(new CostBasedOrderingVisitor(costModel, plannerConfig));
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Ordered Filter Tree:{}", optimizedFilterTree.acceptVisitor(new PrintVisitor()));
+      }
+    }
+
     QueryNode executionTree = buildExecutionTree(executionContext, optimizedFilterTree);
     if (LOG.isDebugEnabled()) {
       LOG.debug("Execution Tree:{}", executionTree.acceptVisitor(new PrintVisitor()));
@@ -298,10 +332,36 @@ public class ExecutionTreeBuilder {
         return createQsDataFetcherNodeWithLimitAndOffset(entitiesRequest);
       }
 
-      return new DataFetcherNode(sources.contains(QS) ? QS.name() : sources.get(0).name(), filter);
+      return new DataFetcherNode(chooseFilterSource(filter, sources), filter);
     }
   }
 
+  /**
+   * Picks the source that fetches the entities matching a filter on an attribute of several
+   * sources. QS is preferred, unless the cost model estimates another source to match fewer
+   * entities, or as many in less time, so that it can drive the fetches of the other sources. The
+   * time range filter always stays on QS, since it is what restricts the entities to the live ones.
+   */
+  private String chooseFilterSource(Filter filter, List<AttributeSource> sources) {
+    String defaultSource = sources.contains(QS) ? QS.name() : sources.get(0).name();
+    if (!sourceStatistics.isEnabled() || sources.size() < 2 || isTimeRangeFilter(filter)) {
+      return defaultSource;
+    }
+    return sources.stream()
+        .map(AttributeSource::name)
+        .min(
+            Comparator.comparing(
+                    (String source) -> costModel.estimate(new DataFetcherNode(source, filter)))
+                .thenComparing(source -> !source.equals(defaultSource)))
+        .orElse(defaultSource);
+  }
+
+  private boolean isTimeRangeFilter(Filter filter) {
+    return ExpressionReader.getAttributeIdFromAttributeSelection(filter.getLhs())
+        .map(attributeId -> attributeId.equals(executionContext.getTimestampAttributeId()))
+        .orElse(false);
+  }
+
   private QueryNode checkAndAddSortAndPaginationNode(
       QueryNode childNode, ExecutionContext executionContext) {
     // If sort/pagination node is already added or if the child is a NoOp don't add it
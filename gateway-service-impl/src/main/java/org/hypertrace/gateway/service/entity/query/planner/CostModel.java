@@ -0,0 +1,146 @@
+package org.hypertrace.gateway.service.entity.query.planner;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.entity.query.AndNode;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
+import org.hypertrace.gateway.service.entity.query.NoOpNode;
+import org.hypertrace.gateway.service.entity.query.OrNode;
+import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.SelectionNode;
+import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics.SourceStatistic;
+import org.hypertrace.gateway.service.entity.query.visitor.Visitor;
+
+/**
+ * Estimates the cost of running a node of the execution tree for an entity type, from the {@link
+ * SourceStatistics} observed for the data fetches below it. A node whose fetches have not been
+ * seen yet gets an unknown, so infinite, number of entities.
+ */
+public class CostModel {
+  private final SourceStatistics sourceStatistics;
+  private final String tenantId;
+  private final String entityType;
+
+  public CostModel(SourceStatistics sourceStatistics, String tenantId, String entityType) {
+    this.sourceStatistics = sourceStatistics;
+    this.tenantId = tenantId;
+    this.entityType = entityType;
+  }
+
+  public Cost estimate(QueryNode queryNode) {
+    return queryNode.acceptVisitor(new CostEstimatingVisitor());
+  }
+
+  /**
+   * Estimated number of entities produced by a node and the latency to produce them. Cheaper costs
+   * come first: fewer entities, then lower latency.
+   */
+  public static class Cost implements Comparable<Cost> {
+    private static final Comparator<Cost> COMPARATOR =
+        Comparator.comparingDouble(Cost::getRowCount).thenComparingDouble(Cost::getLatencyMillis);
+    static final Cost UNKNOWN = new Cost(Double.POSITIVE_INFINITY, 0);
+
+    private final double rowCount;
+    private final double latencyMillis;
+
+    Cost(double rowCount, double latencyMillis) {
+      this.rowCount = rowCount;
+      this.latencyMillis = latencyMillis;
+    }
+
+    public double getRowCount() {
+      return rowCount;
+    }
+
+    public double getLatencyMillis() {
+      return latencyMillis;
+    }
+
+    private Cost limitRowCount(Integer limit, Integer offset) {
+      if (limit == null) {
+        return this;
+      }
+      int maxRowCount = limit + (offset == null ? 0 : offset);
+      return new Cost(Math.min(rowCount, maxRowCount), latencyMillis);
+    }
+
+    @Override
+    public int compareTo(Cost other) {
+      return COMPARATOR.compare(this, other);
+    }
+
+    @Override
+    public String toString() {
+      return "Cost{" + "rowCount=" + rowCount + ", latencyMillis=" + latencyMillis + '}';
+    }
+  }
+
+  private class CostEstimatingVisitor implements Visitor<Cost> {
+
+    @Override
+    public Cost visit(DataFetcherNode dataFetcherNode) {
+      Optional<SourceStatistic> statistic =
+          sourceStatistics.get(
+              tenantId, entityType, dataFetcherNode.getSource(), dataFetcherNode.getFilter());
+      if (statistic.isEmpty()) {
+        return Cost.UNKNOWN;
+      }
+      OptionalDouble rowCount = statistic.get().getRowCount();
+      return new Cost(
+              rowCount.orElse(Double.POSITIVE_INFINITY), statistic.get().getLatencyMillis())
+          .limitRowCount(dataFetcherNode.getLimit(), dataFetcherNode.getOffset());
+    }
+
+    @Override
+    public Cost visit(AndNode andNode) {
+      // An entity has to match every child, and the children run concurrently
+      List<Cost> childCosts = estimateChildren(andNode.getChildNodes());
+      return new Cost(
+          childCosts.stream().mapToDouble(Cost::getRowCount).min().orElse(0),
+          childCosts.stream().mapToDouble(Cost::getLatencyMillis).max().orElse(0));
+    }
+
+    @Override
+    public Cost visit(OrNode orNode) {
+      List<Cost> childCosts = estimateChildren(orNode.getChildNodes());
+      return new Cost(
+          childCosts.stream().mapToDouble(Cost::getRowCount).sum(),
+          childCosts.stream().mapToDouble(Cost::getLatencyMillis).max().orElse(0));
+    }
+
+    @Override
+    public Cost visit(SelectionNode selectionNode) {
+      return selectionNode.getChildNode().acceptVisitor(this);
+    }
+
+    @Override
+    public Cost visit(SortAndPaginateNode sortAndPaginateNode) {
+      return sortAndPaginateNode
+          .getChildNode()
+          .acceptVisitor(this)
+          .limitRowCount(sortAndPaginateNode.getLimit(), sortAndPaginateNode.getOffset());
+    }
+
+    @Override
+    public Cost visit(NoOpNode noOpNode) {
+      return Cost.UNKNOWN;
+    }
+
+    @Override
+    public Cost visit(PaginateOnlyNode paginateOnlyNode) {
+      return paginateOnlyNode
+          .getChildNode()
+          .acceptVisitor(this)
+          .limitRowCount(paginateOnlyNode.getLimit(), paginateOnlyNode.getOffset());
+    }
+
+    private List<Cost> estimateChildren(List<QueryNode> childNodes) {
+      return childNodes.stream().map(node -> node.acceptVisitor(this)).collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package org.hypertrace.gateway.service.entity.query.planner;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.v1.common.Filter;
+
+/**
+ * Statistics observed for the data fetches of each tenant, entity type and source: moving averages
+ * of the fetch latency and of the number of entities matched. Fetches are told apart by the shape
+ * of their filter, which is the attributes and operators it uses without the values, since that is
+ * mostly what decides how selective a filter is. When a filter shape has not been seen yet, the
+ * statistics of all the fetches from the source are used instead.
+ */
+public class SourceStatistics {
+  private static final String ANY_FILTER_SHAPE = "*";
+  private static final SourceStatistics DISABLED = new SourceStatistics();
+
+  private final boolean enabled;
+  private final double smoothingFactor;
+  private final Cache<StatisticsKey, SourceStatistic> statistics;
+
+  public SourceStatistics(PlannerConfig plannerConfig) {
+    this.enabled = plannerConfig.isCostBasedEnabled();
+    this.smoothingFactor = plannerConfig.getStatisticsSmoothingFactor();
+    this.statistics =
+        CacheBuilder.newBuilder()
+            .maximumSize(plannerConfig.getStatisticsMaxSize())
+            .expireAfterWrite(plannerConfig.getStatisticsExpiryMinutes(), TimeUnit.MINUTES)
+            .build();
+  }
+
+  private SourceStatistics() {
+    this.enabled = false;
+    this.smoothingFactor = 0;
+    this.statistics = CacheBuilder.newBuilder().maximumSize(0).build();
+  }
+
+  public static SourceStatistics disabled() {
+    return DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Records a data fetch. The number of entities of a limited fetch only bounds the number of
+   * matching entities, so it is not used for the cardinality.
+   */
+  public void record(
+      String tenantId,
+      String entityType,
+      String source,
+      Filter filter,
+      long latencyMillis,
+      long rowCount,
+      boolean limited) {
+    if (!enabled) {
+      return;
+    }
+    OptionalDouble matchedRowCount = limited ? OptionalDouble.empty() : OptionalDouble.of(rowCount);
+    for (String filterShape : List.of(getFilterShape(filter), ANY_FILTER_SHAPE)) {
+      statistics
+          .asMap()
+          .computeIfAbsent(
+              new StatisticsKey(tenantId, entityType, source, filterShape),
+              key -> new SourceStatistic())
+          .update(smoothingFactor, latencyMillis, matchedRowCount);
+    }
+  }
+
+  public Optional<SourceStatistic> get(
+      String tenantId, String entityType, String source, Filter filter) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    SourceStatistic statistic =
+        statistics.getIfPresent(
+            new StatisticsKey(tenantId, entityType, source, getFilterShape(filter)));
+    if (statistic == null || statistic.getRowCount().isEmpty()) {
+      statistic =
+          statistics.getIfPresent(
+              new StatisticsKey(tenantId, entityType, source, ANY_FILTER_SHAPE));
+    }
+    return Optional.ofNullable(statistic);
+  }
+
+  static String getFilterShape(Filter filter) {
+    if (filter.getChildFilterCount() > 0) {
+      return filter.getOperator()
+          + filter.getChildFilterList().stream()
+              .map(SourceStatistics::getFilterShape)
+              .sorted()
+              .collect(Collectors.joining(",", "(", ")"));
+    }
+    if (Filter.getDefaultInstance().equals(filter)) {
+      return "";
+    }
+    return ExpressionReader.getAttributeIdFromAttributeSelection(filter.getLhs())
+            .orElse(filter.getLhs().getValueCase().name())
+        + " "
+        + filter.getOperator();
+  }
+
+  /** Moving averages of the latency and the number of entities matched by the fetches */
+  public static class SourceStatistic {
+    private double latencyMillis = Double.NaN;
+    private double rowCount = Double.NaN;
+
+    private synchronized void update(
+        double smoothingFactor, long latencyMillis, OptionalDouble rowCount) {
+      this.latencyMillis = average(this.latencyMillis, latencyMillis, smoothingFactor);
+      if (rowCount.isPresent()) {
+        this.rowCount = average(this.rowCount, rowCount.getAsDouble(), smoothingFactor);
+      }
+    }
+
+    private static double average(double average, double value, double smoothingFactor) {
+      return Double.isNaN(average)
+          ? value
+          : smoothingFactor * value + (1 - smoothingFactor) * average;
+    }
+
+    public synchronized double getLatencyMillis() {
+      return latencyMillis;
+    }
+
+    public synchronized OptionalDouble getRowCount() {
+      return Double.isNaN(rowCount) ? OptionalDouble.empty() : OptionalDouble.of(rowCount);
+    }
+  }
+
+  private static class StatisticsKey {
+    private final String tenantId;
+    private final String entityType;
+    private final String source;
+    private final String filterShape;
+
+    private StatisticsKey(String tenantId, String entityType, String source, String filterShape) {
+      this.tenantId = tenantId;
+      this.entityType = entityType;
+      this.source = source;
+      this.filterShape = filterShape;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      StatisticsKey that = (StatisticsKey) o;
+      return Objects.equals(tenantId, that.tenantId)
+          && Objects.equals(entityType, that.entityType)
+          && Objects.equals(source, that.source)
+          && Objects.equals(filterShape, that.filterShape);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(tenantId, entityType, source, filterShape);
+    }
+  }
+}
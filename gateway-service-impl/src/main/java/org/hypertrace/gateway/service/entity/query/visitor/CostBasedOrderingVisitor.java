@@ -0,0 +1,114 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.query.AndNode;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
+import org.hypertrace.gateway.service.entity.query.NoOpNode;
+import org.hypertrace.gateway.service.entity.query.OrNode;
+import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.SelectionNode;
+import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.entity.query.planner.CostModel;
+import org.hypertrace.gateway.service.entity.query.planner.CostModel.Cost;
+
+/**
+ * Visitor that orders the children of every {@link AndNode} of the filter tree by their estimated
+ * cost, so that the most selective child comes first and can drive the fetches of its siblings.
+ * Children with the same cost keep their order.
+ *
+ * <p>When the first child is expected to match few enough entities, the node is turned into a semi
+ * join, so that its entity ids restrict the data fetches of the siblings. The estimate may be off
+ * for the filter values of a request, so the node also carries the limit to be checked against the
+ * entities the first child actually matched.
+ */
+public class CostBasedOrderingVisitor implements Visitor<QueryNode> {
+  private final CostModel costModel;
+  private final PlannerConfig plannerConfig;
+
+  public CostBasedOrderingVisitor(CostModel costModel, PlannerConfig plannerConfig) {
+    this.costModel = costModel;
+    this.plannerConfig = plannerConfig;
+  }
+
+  @Override
+  public QueryNode visit(DataFetcherNode dataFetcherNode) {
+    return dataFetcherNode;
+  }
+
+  @Override
+  public QueryNode visit(AndNode andNode) {
+    List<QueryNode> childNodes =
+        andNode.getChildNodes().stream()
+            .map(n -> n.acceptVisitor(this))
+            .collect(Collectors.toList());
+    Map<QueryNode, Cost> childCosts = new IdentityHashMap<>();
+    childNodes.forEach(childNode -> childCosts.put(childNode, costModel.estimate(childNode)));
+    // List.sort is stable
+    childNodes.sort(Comparator.comparing(childCosts::get));
+    return new AndNode(
+        childNodes,
+        isSemiJoin(childNodes, childCosts),
+        plannerConfig.getSemiJoinMaxEntityIds());
+  }
+
+  private boolean isSemiJoin(List<QueryNode> orderedChildNodes, Map<QueryNode, Cost> childCosts) {
+    return plannerConfig.isSemiJoinEnabled()
+        && orderedChildNodes.size() > 1
+        && childCosts.get(orderedChildNodes.get(0)).getRowCount()
+            <= plannerConfig.getSemiJoinMaxEntityIds()
+        && orderedChildNodes.stream()
+            .skip(1)
+            .anyMatch(CostBasedOrderingVisitor::canBeRestrictedByEntityIds);
+  }
+
+  /** A limited fetch would return another page once restricted, so only unlimited ones are */
+  static boolean canBeRestrictedByEntityIds(QueryNode queryNode) {
+    return queryNode instanceof DataFetcherNode && ((DataFetcherNode) queryNode).getLimit() == null;
+  }
+
+  @Override
+  public QueryNode visit(OrNode orNode) {
+    return new OrNode(
+        orNode.getChildNodes().stream()
+            .map(n -> n.acceptVisitor(this))
+            .collect(Collectors.toList()));
+  }
+
+  @Override
+  public QueryNode visit(SelectionNode selectionNode) {
+    QueryNode childNode = selectionNode.getChildNode().acceptVisitor(this);
+    return new SelectionNode.Builder(childNode)
+        .setTimeSeriesSelectionSources(selectionNode.getTimeSeriesSelectionSources())
+        .setAggMetricSelectionSources(selectionNode.getAggMetricSelectionSources())
+        .setAttrSelectionSources(selectionNode.getAttrSelectionSources())
+        .build();
+  }
+
+  @Override
+  public QueryNode visit(SortAndPaginateNode sortAndPaginateNode) {
+    QueryNode childNode = sortAndPaginateNode.getChildNode().acceptVisitor(this);
+    return new SortAndPaginateNode(
+        childNode,
+        sortAndPaginateNode.getLimit(),
+        sortAndPaginateNode.getOffset(),
+        sortAndPaginateNode.getOrderByExpressionList());
+  }
+
+  @Override
+  public QueryNode visit(NoOpNode noOpNode) {
+    return noOpNode;
+  }
+
+  @Override
+  public QueryNode visit(PaginateOnlyNode paginateOnlyNode) {
+    QueryNode childNode = paginateOnlyNode.getChildNode().acceptVisitor(this);
+    return new PaginateOnlyNode(
+        childNode, paginateOnlyNode.getLimit(), paginateOnlyNode.getOffset());
+  }
+}
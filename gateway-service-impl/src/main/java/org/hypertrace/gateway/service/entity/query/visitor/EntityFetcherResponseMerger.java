@@ -0,0 +1,82 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import com.google.common.collect.Maps;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
+import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+
+/**
+ * Intersects and unions the responses of the entity fetchers. The entities present in more than one
+ * response are merged into the builder of the first response having them, field by field, the same
+ * way {@link Entity.Builder#mergeFrom(Entity)} would, but without building an intermediate {@link
+ * Entity} for every merge. Values from later responses overwrite the ones from earlier responses.
+ */
+class EntityFetcherResponseMerger {
+
+  /** Returns the entities present in all the responses. */
+  static EntityFetcherResponse intersect(List<EntityFetcherResponse> responses) {
+    if (responses.isEmpty()) {
+      return new EntityFetcherResponse(Collections.emptyMap());
+    }
+
+    // Only the keys of the smallest response can be in the intersection
+    EntityFetcherResponse smallest = responses.get(0);
+    for (EntityFetcherResponse response : responses) {
+      if (response.size() < smallest.size()) {
+        smallest = response;
+      }
+    }
+    if (smallest.isEmpty()) {
+      return new EntityFetcherResponse(Collections.emptyMap());
+    }
+
+    Map<EntityKey, Entity.Builder> result = Maps.newHashMapWithExpectedSize(smallest.size());
+    for (EntityKey entityKey : smallest.getEntityKeyBuilderMap().keySet()) {
+      if (responses.stream()
+          .allMatch(response -> response.getEntityKeyBuilderMap().containsKey(entityKey))) {
+        Entity.Builder builder = responses.get(0).getEntityKeyBuilderMap().get(entityKey);
+        for (int i = 1; i < responses.size(); i++) {
+          merge(builder, responses.get(i).getEntityKeyBuilderMap().get(entityKey));
+        }
+        result.put(entityKey, builder);
+      }
+    }
+    return new EntityFetcherResponse(result);
+  }
+
+  /** Returns the entities present in any of the responses, in the order they are first seen. */
+  static EntityFetcherResponse union(List<EntityFetcherResponse> responses) {
+    int maxSize = responses.stream().mapToInt(EntityFetcherResponse::size).max().orElse(0);
+    Map<EntityKey, Entity.Builder> result = Maps.newLinkedHashMapWithExpectedSize(maxSize);
+    for (EntityFetcherResponse response : responses) {
+      response
+          .getEntityKeyBuilderMap()
+          .forEach(
+              (entityKey, builder) ->
+                  result.merge(entityKey, builder, EntityFetcherResponseMerger::merge));
+    }
+    return new EntityFetcherResponse(result);
+  }
+
+  /** Merges the source into the target, following the proto3 merge semantics. */
+  static Entity.Builder merge(Entity.Builder target, Entity.Builder source) {
+    if (target == source) {
+      return target;
+    }
+    if (!source.getId().isEmpty()) {
+      target.setId(source.getId());
+    }
+    if (!source.getEntityType().isEmpty()) {
+      target.setEntityType(source.getEntityType());
+    }
+    target.putAllAttribute(source.getAttributeMap());
+    target.putAllMetric(source.getMetricMap());
+    target.putAllMetricSeries(source.getMetricSeriesMap());
+    target.addAllIncomingInteraction(source.getIncomingInteractionList());
+    target.addAllOutgoingInteraction(source.getOutgoingInteractionList());
+    return target;
+  }
+}
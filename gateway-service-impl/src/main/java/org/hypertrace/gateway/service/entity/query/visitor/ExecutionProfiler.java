@@ -0,0 +1,205 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
+import org.hypertrace.gateway.service.entity.query.AndNode;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
+import org.hypertrace.gateway.service.entity.query.NoOpNode;
+import org.hypertrace.gateway.service.entity.query.OrNode;
+import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.SelectionNode;
+import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+import org.hypertrace.gateway.service.v1.entity.QueryNodeProfile;
+
+/**
+ * Records the wall time, downstream fetches and produced entities of every node run by the {@link
+ * ExecutionVisitor}, for requests that ask for an explain analyze profile. Nodes can run
+ * concurrently, and a selection node can run once per batch of entities, so the stats of a node
+ * are accumulated.
+ */
+public class ExecutionProfiler {
+  private static final ExecutionProfiler DISABLED = new ExecutionProfiler(false);
+
+  private final boolean enabled;
+  private final Map<QueryNode, NodeStats> nodeStats =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+
+  private ExecutionProfiler(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public static ExecutionProfiler create(boolean enabled) {
+    return enabled ? new ExecutionProfiler(true) : DISABLED;
+  }
+
+  public static ExecutionProfiler disabled() {
+    return DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  EntityResponse profile(QueryNode queryNode, Supplier<EntityResponse> execution) {
+    if (!enabled) {
+      return execution.get();
+    }
+    NodeStats stats = getNodeStats(queryNode);
+    stats.start(System.nanoTime());
+    EntityResponse response = execution.get();
+    stats.end(System.nanoTime(), response);
+    return response;
+  }
+
+  CompletableFuture<EntityResponse> profileAsync(
+      QueryNode queryNode, Supplier<CompletableFuture<EntityResponse>> execution) {
+    if (!enabled) {
+      return execution.get();
+    }
+    NodeStats stats = getNodeStats(queryNode);
+    stats.start(System.nanoTime());
+    CompletableFuture<EntityResponse> future = execution.get();
+    return FutureUtil.propagateCancellation(
+        future.whenComplete(
+            (response, throwable) -> {
+              if (response != null) {
+                stats.end(System.nanoTime(), response);
+              }
+            }),
+        List.of(future));
+  }
+
+  /** Records a batch of the entities of a node, whose entities are streamed since startNanos */
+  void recordBatch(QueryNode queryNode, long startNanos, EntityResponse batchResponse) {
+    if (enabled) {
+      NodeStats stats = getNodeStats(queryNode);
+      stats.start(startNanos);
+      stats.end(System.nanoTime(), batchResponse);
+    }
+  }
+
+  void recordQuery(QueryNode queryNode) {
+    if (enabled) {
+      getNodeStats(queryNode).addQuery();
+    }
+  }
+
+  /** Builds the profile of the execution tree with the stats recorded so far. */
+  public QueryNodeProfile getProfile(QueryNode rootNode) {
+    return rootNode.acceptVisitor(new ProfileBuildingVisitor());
+  }
+
+  private NodeStats getNodeStats(QueryNode queryNode) {
+    return nodeStats.computeIfAbsent(queryNode, node -> new NodeStats());
+  }
+
+  private static class NodeStats {
+    private long startNanos = Long.MAX_VALUE;
+    private long endNanos = Long.MIN_VALUE;
+    private int queryCount;
+    private long rowCount;
+    private long bytes;
+
+    synchronized void start(long nanos) {
+      startNanos = Math.min(startNanos, nanos);
+    }
+
+    synchronized void end(long nanos, EntityResponse response) {
+      endNanos = Math.max(endNanos, nanos);
+      Map<?, Entity.Builder> entityBuilders =
+          response.getEntityFetcherResponse().getEntityKeyBuilderMap();
+      rowCount += entityBuilders.size();
+      for (Entity.Builder entityBuilder : entityBuilders.values()) {
+        bytes += entityBuilder.build().getSerializedSize();
+      }
+    }
+
+    synchronized void addQuery() {
+      queryCount++;
+    }
+
+    synchronized long getWallTimeMillis() {
+      return endNanos < startNanos ? 0 : TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+  }
+
+  /** Builds the profiles of the children first, so that a node's wall time includes them. */
+  private class ProfileBuildingVisitor implements Visitor<QueryNodeProfile> {
+
+    @Override
+    public QueryNodeProfile visit(DataFetcherNode dataFetcherNode) {
+      return buildProfile(dataFetcherNode, "DATA_FETCHER", List.of());
+    }
+
+    @Override
+    public QueryNodeProfile visit(AndNode andNode) {
+      return buildProfile(andNode, "AND", andNode.getChildNodes());
+    }
+
+    @Override
+    public QueryNodeProfile visit(OrNode orNode) {
+      return buildProfile(orNode, "OR", orNode.getChildNodes());
+    }
+
+    @Override
+    public QueryNodeProfile visit(SelectionNode selectionNode) {
+      return buildProfile(selectionNode, "SELECT", List.of(selectionNode.getChildNode()));
+    }
+
+    @Override
+    public QueryNodeProfile visit(SortAndPaginateNode sortAndPaginateNode) {
+      return buildProfile(
+          sortAndPaginateNode, "SORT_AND_PAGINATION", List.of(sortAndPaginateNode.getChildNode()));
+    }
+
+    @Override
+    public QueryNodeProfile visit(NoOpNode noOpNode) {
+      return buildProfile(noOpNode, "NO_OP", List.of());
+    }
+
+    @Override
+    public QueryNodeProfile visit(PaginateOnlyNode paginateOnlyNode) {
+      return buildProfile(
+          paginateOnlyNode, "PAGINATE_ONLY", List.of(paginateOnlyNode.getChildNode()));
+    }
+
+    private QueryNodeProfile buildProfile(
+        QueryNode queryNode, String nodeType, List<QueryNode> childNodes) {
+      QueryNodeProfile.Builder profileBuilder =
+          QueryNodeProfile.newBuilder().setNodeType(nodeType).setDescription(queryNode.toString());
+      for (QueryNode childNode : childNodes) {
+        profileBuilder.addChild(childNode.acceptVisitor(this));
+      }
+
+      NodeStats stats = nodeStats.get(queryNode);
+      if (stats == null) {
+        return profileBuilder.build();
+      }
+      for (QueryNode childNode : childNodes) {
+        NodeStats childStats = nodeStats.get(childNode);
+        if (childStats != null) {
+          synchronized (childStats) {
+            stats.start(childStats.startNanos);
+          }
+        }
+      }
+      synchronized (stats) {
+        return profileBuilder
+            .setWallTimeMillis(stats.getWallTimeMillis())
+            .setQueryCount(stats.queryCount)
+            .setRowCount(stats.rowCount)
+            .setBytes(stats.bytes)
+            .build();
+      }
+    }
+  }
+}
@@ -1,37 +1,46 @@
 package org.hypertrace.gateway.service.entity.query.visitor;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.MapDifference;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Streams;
+import io.grpc.Context;
+import io.grpc.Deadline;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
 import org.hypertrace.gateway.service.common.datafetcher.IEntityFetcher;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.common.util.DataCollectionUtil;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.EntityKeyEntityBuilderEntryComparator;
 import org.hypertrace.gateway.service.entity.EntityQueryHandlerRegistry;
+import org.hypertrace.gateway.service.entity.cache.EntityTotalCache;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
 import org.hypertrace.gateway.service.entity.query.AndNode;
 import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
 import org.hypertrace.gateway.service.entity.query.ExecutionContext;
 import org.hypertrace.gateway.service.entity.query.NoOpNode;
 import org.hypertrace.gateway.service.entity.query.OrNode;
 import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
 import org.hypertrace.gateway.service.entity.query.SelectionNode;
 import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
@@ -47,68 +56,61 @@ import org.slf4j.LoggerFactory;
 /** Visitor that executes each QueryNode in the execution tree. */
 public class ExecutionVisitor implements Visitor<EntityResponse> {
 
-  private static final int THREAD_COUNT = 20;
-  private static final ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
-
   private final EntityQueryHandlerRegistry queryHandlerRegistry;
   private final ExecutionContext executionContext;
+  private final ExecutionPools executionPools;
+  private final SelectionConfig selectionConfig;
+  private final EntityTotalCache entityTotalCache;
+  private final ExecutionProfiler executionProfiler;
+  private final SourceStatistics sourceStatistics;
   private static final Logger LOG = LoggerFactory.getLogger(ExecutionVisitor.class);
 
   public ExecutionVisitor(
-      ExecutionContext executionContext, EntityQueryHandlerRegistry queryHandlerRegistry) {
+      ExecutionContext executionContext,
+      EntityQueryHandlerRegistry queryHandlerRegistry,
+      ExecutionPools executionPools,
+      SelectionConfig selectionConfig,
+      EntityTotalCache entityTotalCache,
+      ExecutionProfiler executionProfiler,
+      SourceStatistics sourceStatistics) {
     this.executionContext = executionContext;
     this.queryHandlerRegistry = queryHandlerRegistry;
+    this.executionPools = executionPools;
+    this.selectionConfig = selectionConfig;
+    this.entityTotalCache = entityTotalCache;
+    this.executionProfiler = executionProfiler;
+    this.sourceStatistics = sourceStatistics;
   }
 
-  private static EntityFetcherResponse intersectEntities(List<EntityFetcherResponse> builders) {
-    return new EntityFetcherResponse(
-        builders.stream()
-            .map(EntityFetcherResponse::getEntityKeyBuilderMap)
-            .reduce(
-                (map1, map2) ->
-                    Maps.difference(map1, map2).entriesDiffering().entrySet().stream()
-                        .collect(
-                            Collectors.toMap(
-                                Map.Entry::getKey,
-                                stringValueDifferenceEntry -> {
-                                  MapDifference.ValueDifference<Entity.Builder> diff =
-                                      stringValueDifferenceEntry.getValue();
-                                  return diff.leftValue().mergeFrom(diff.rightValue().build());
-                                })))
-            .orElse(Collections.emptyMap()));
+  /** Feeds the cost based planning of later requests for the same entity type */
+  private void recordSourceStatistics(
+      DataFetcherNode dataFetcherNode, long latencyMillis, int rowCount) {
+    sourceStatistics.record(
+        executionContext.getTenantId(),
+        executionContext.getEntitiesRequest().getEntityType(),
+        dataFetcherNode.getSource(),
+        dataFetcherNode.getFilter(),
+        latencyMillis,
+        rowCount,
+        dataFetcherNode.getLimit() != null);
   }
 
   @VisibleForTesting
   protected static EntityResponse intersect(List<EntityResponse> entityResponses) {
     EntityFetcherResponse entityFetcherResponse =
-        intersectEntities(
-            entityResponses.parallelStream()
+        EntityFetcherResponseMerger.intersect(
+            entityResponses.stream()
                 .map(EntityResponse::getEntityFetcherResponse)
                 .collect(Collectors.toList()));
 
     return new EntityResponse(entityFetcherResponse, entityFetcherResponse.size());
   }
 
-  private static EntityFetcherResponse unionEntities(List<EntityFetcherResponse> builders) {
-    return new EntityFetcherResponse(
-        builders.stream()
-            .map(EntityFetcherResponse::getEntityKeyBuilderMap)
-            .reduce(
-                new LinkedHashMap<>(),
-                (map1, map2) -> {
-                  Map<EntityKey, Builder> newMap = new LinkedHashMap<>(map1);
-                  map2.forEach(
-                      (key, value) ->
-                          newMap.merge(key, value, (v1, v2) -> v1.mergeFrom(v2.build())));
-                  return newMap;
-                }));
-  }
-
   @VisibleForTesting
   protected static EntityResponse union(List<EntityResponse> entityResponses) {
     EntityFetcherResponse entityFetcherResponse =
-        unionEntities(
-            entityResponses.parallelStream()
+        EntityFetcherResponseMerger.union(
+            entityResponses.stream()
                 .map(EntityResponse::getEntityFetcherResponse)
                 .collect(Collectors.toList()));
 
@@ -117,16 +119,121 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
 
   @Override
   public EntityResponse visit(DataFetcherNode dataFetcherNode) {
+    return FutureUtil.await(fetchDataAsync(dataFetcherNode));
+  }
+
+  private CompletableFuture<EntityResponse> fetchDataAsync(DataFetcherNode dataFetcherNode) {
+    return executionProfiler.profileAsync(dataFetcherNode, () -> doFetchDataAsync(dataFetcherNode));
+  }
+
+  private CompletableFuture<EntityResponse> doFetchDataAsync(DataFetcherNode dataFetcherNode) {
+    EntitiesRequest entitiesRequest = executionContext.getEntitiesRequest();
+    CompletableFuture<EntityFetcherResponse> entitiesFuture =
+        fetchEntitiesAsync(dataFetcherNode, dataFetcherNode.getFilter(), true);
+
+    // if the data fetcher node is fetching paginated records and the client has requested for
+    // total, the total number of entities has to be fetched separately
+    if (!dataFetcherNode.canFetchTotal()) {
+      // if the data fetcher node is not paginating, the total number of entities is equal to number
+      // of records fetched
+      return FutureUtil.propagateCancellation(
+          entitiesFuture.thenApply(
+              response -> new EntityResponse(response, response.getEntityKeyBuilderMap().size())),
+          List.of(entitiesFuture));
+    }
+
+    // Without the total cache, a total computed in the background would be thrown away, so the
+    // exact total is fetched instead
+    if (entitiesRequest.getApproximateTotal() && entityTotalCache.isEnabled()) {
+      return fetchDataWithApproximateTotalAsync(dataFetcherNode, entitiesFuture);
+    }
+
+    // since, the pagination is pushed down to the data store, total can be requested directly
+    // from the data store. It is fetched alongside the entities, and if either of the two fails or
+    // the request deadline passes, the other one is cancelled.
+    CompletableFuture<Long> totalFuture = fetchTotalAsync(dataFetcherNode);
+    CompletableFuture<EntityResponse> responseFuture =
+        entitiesFuture.thenCombine(totalFuture, EntityResponse::new);
+    Deadline deadline = Context.current().getDeadline();
+    if (deadline != null) {
+      responseFuture.orTimeout(
+          deadline.timeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+    }
+    responseFuture.whenComplete(
+        (response, throwable) -> {
+          if (throwable != null) {
+            entitiesFuture.cancel(true);
+            totalFuture.cancel(true);
+          }
+        });
+    return responseFuture;
+  }
+
+  /**
+   * Fetches the entities of the node with the given filter. Only the fetches of the filter of the
+   * node itself are recorded in the source statistics, since a filter restricted to the entities
+   * matched elsewhere says nothing about the selectivity of the node.
+   */
+  private CompletableFuture<EntityFetcherResponse> fetchEntitiesAsync(
+      DataFetcherNode dataFetcherNode, Filter filter, boolean recordStatistics) {
+    EntitiesRequest request = buildEntitiesRequest(dataFetcherNode, filter);
+    return fetchAsync(
+        dataFetcherNode,
+        dataFetcherNode.getSource(),
+        (entityFetcher, context) -> {
+          long startTime = System.currentTimeMillis();
+          EntityFetcherResponse response = entityFetcher.getEntities(context, request);
+          if (recordStatistics) {
+            recordSourceStatistics(
+                dataFetcherNode, System.currentTimeMillis() - startTime, response.size());
+          }
+          return response;
+        });
+  }
+
+  /**
+   * Streams the entities of the data fetcher node to the consumer in batches of at most the given
+   * size, in the order of its source, instead of fetching all of them before handing them over.
+   * The total is fetched from the source alongside the entities, and every batch carries it. The
+   * entities are fetched on the calling thread, so that a slow consumer holds up that thread
+   * rather than one of the source pool. A streamed fetch is not recorded in the source statistics,
+   * since its latency includes the consumer.
+   *
+   * @return the total
+   */
+  public long streamData(
+      DataFetcherNode dataFetcherNode, int batchSize, Consumer<EntityResponse> batchConsumer) {
+    long startNanos = System.nanoTime();
+    CompletableFuture<Long> totalFuture = fetchTotalAsync(dataFetcherNode);
+    Deadline deadline = Context.current().getDeadline();
+    if (deadline != null) {
+      totalFuture.orTimeout(deadline.timeRemaining(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+    }
+    EntitiesRequest request = buildEntitiesRequest(dataFetcherNode, dataFetcherNode.getFilter());
+    try {
+      executionProfiler.recordQuery(dataFetcherNode);
+      queryHandlerRegistry
+          .getEntityFetcher(dataFetcherNode.getSource())
+          .streamEntities(
+              createFetchContext(),
+              request,
+              batchSize,
+              batch -> {
+                EntityResponse batchResponse =
+                    new EntityResponse(batch, FutureUtil.await(totalFuture));
+                executionProfiler.recordBatch(dataFetcherNode, startNanos, batchResponse);
+                batchConsumer.accept(batchResponse);
+              });
+      return FutureUtil.await(totalFuture);
+    } catch (RuntimeException | Error e) {
+      totalFuture.cancel(true);
+      throw e;
+    }
+  }
+
+  private EntitiesRequest buildEntitiesRequest(DataFetcherNode dataFetcherNode, Filter filter) {
     String source = dataFetcherNode.getSource();
     EntitiesRequest entitiesRequest = executionContext.getEntitiesRequest();
-    EntitiesRequestContext context =
-        new EntitiesRequestContext(
-            executionContext.getTenantId(),
-            entitiesRequest.getStartTimeMillis(),
-            entitiesRequest.getEndTimeMillis(),
-            entitiesRequest.getEntityType(),
-            executionContext.getTimestampAttributeId(),
-            executionContext.getRequestHeaders());
 
     EntitiesRequest.Builder requestBuilder =
         EntitiesRequest.newBuilder(entitiesRequest)
@@ -140,7 +247,7 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
                 executionContext
                     .getSourceToSelectionExpressionMap()
                     .getOrDefault(source, executionContext.getEntityIdExpressions()))
-            .setFilter(dataFetcherNode.getFilter());
+            .setFilter(filter);
 
     if (dataFetcherNode.getLimit() != null) {
       requestBuilder.setLimit(dataFetcherNode.getLimit());
@@ -154,45 +261,231 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
       requestBuilder.addAllOrderBy(dataFetcherNode.getOrderByExpressionList());
     }
 
-    EntitiesRequest request = requestBuilder.build();
-    IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
+    return requestBuilder.build();
+  }
 
-    // if the data fetcher node is fetching paginated records and the client has requested for
-    // total, the total number of entities has to be fetched separately
-    if (dataFetcherNode.canFetchTotal()) {
-      // since, the pagination is pushed down to the data store, total can be requested directly
-      // from the data store
-      return new EntityResponse(
-          entityFetcher.getEntities(context, request),
-          entityFetcher.getTotal(context, entitiesRequest));
-    } else {
-      // if the data fetcher node is not paginating, the total number of entities is equal to number
-      // of records fetched
-      EntityFetcherResponse response = entityFetcher.getEntities(context, request);
-      return new EntityResponse(response, response.getEntityKeyBuilderMap().size());
+  private CompletableFuture<Long> fetchTotalAsync(DataFetcherNode dataFetcherNode) {
+    String source = dataFetcherNode.getSource();
+    EntitiesRequest entitiesRequest = executionContext.getEntitiesRequest();
+    return fetchAsync(
+        dataFetcherNode,
+        source,
+        (entityFetcher, context) ->
+            entityTotalCache.getTotal(
+                source,
+                executionContext.getTenantId(),
+                executionContext.getRequestHeaders(),
+                entitiesRequest,
+                () -> entityFetcher.getTotal(context, entitiesRequest)));
+  }
+
+  /**
+   * Returns a recently cached total if there is one. Otherwise, the total is estimated from the
+   * fetched page, and computed in the background so that it is cached for the following pages.
+   */
+  private CompletableFuture<EntityResponse> fetchDataWithApproximateTotalAsync(
+      DataFetcherNode dataFetcherNode, CompletableFuture<EntityFetcherResponse> entitiesFuture) {
+    Optional<Long> cachedTotal =
+        entityTotalCache.getApproximateTotal(
+            dataFetcherNode.getSource(),
+            executionContext.getTenantId(),
+            executionContext.getRequestHeaders(),
+            executionContext.getEntitiesRequest());
+    if (cachedTotal.isPresent()) {
+      return FutureUtil.propagateCancellation(
+          entitiesFuture.thenApply(response -> new EntityResponse(response, cachedTotal.get())),
+          List.of(entitiesFuture));
     }
+
+    fetchTotalAsync(dataFetcherNode)
+        .whenComplete(
+            (total, throwable) -> {
+              if (throwable != null) {
+                LOG.warn("Failed to compute the total of entities in the background", throwable);
+              }
+            });
+    return FutureUtil.propagateCancellation(
+        entitiesFuture.thenApply(
+            response ->
+                new EntityResponse(
+                    response,
+                    estimateTotal(
+                        dataFetcherNode.getOffset(), dataFetcherNode.getLimit(), response.size()))),
+        List.of(entitiesFuture));
+  }
+
+  /**
+   * A page that is not full is the last one, so the total is exact. Otherwise, there is at least
+   * one more entity after the page.
+   */
+  private static long estimateTotal(int offset, int limit, int pageSize) {
+    return pageSize < limit ? offset + pageSize : offset + pageSize + 1L;
   }
 
   @Override
   public EntityResponse visit(AndNode andNode) {
-    return intersect(
-        andNode.getChildNodes().parallelStream()
-            .map(n -> n.acceptVisitor(this))
-            .collect(Collectors.toList()));
+    return FutureUtil.await(visitAsync(andNode));
   }
 
   @Override
   public EntityResponse visit(OrNode orNode) {
-    return union(
-        orNode.getChildNodes().parallelStream()
-            .map(n -> n.acceptVisitor(this))
-            .collect(Collectors.toList()));
+    return FutureUtil.await(visitAsync(orNode));
+  }
+
+  /**
+   * Visits the node without blocking a pool thread on its children. Data fetches run on the
+   * execution pool of their source, while AND and OR nodes only combine the futures of their
+   * children. This keeps a bounded pool from waiting on tasks queued behind it.
+   */
+  private CompletableFuture<EntityResponse> visitAsync(QueryNode queryNode) {
+    if (queryNode instanceof DataFetcherNode) {
+      return fetchDataAsync((DataFetcherNode) queryNode);
+    }
+    if (queryNode instanceof AndNode) {
+      AndNode andNode = (AndNode) queryNode;
+      return executionProfiler.profileAsync(
+          andNode,
+          () ->
+              andNode.isSemiJoin()
+                  ? semiJoinAsync(andNode)
+                  : intersectAsync(visitChildrenAsync(andNode.getChildNodes())));
+    }
+    if (queryNode instanceof OrNode) {
+      return executionProfiler.profileAsync(
+          queryNode,
+          () -> {
+            List<CompletableFuture<EntityResponse>> childFutures =
+                visitChildrenAsync(((OrNode) queryNode).getChildNodes());
+            return FutureUtil.propagateCancellation(
+                FutureUtil.allAsList(childFutures).thenApply(ExecutionVisitor::union),
+                childFutures);
+          });
+    }
+    return CompletableFuture.completedFuture(queryNode.acceptVisitor(this));
+  }
+
+  private List<CompletableFuture<EntityResponse>> visitChildrenAsync(List<QueryNode> childNodes) {
+    return childNodes.stream().map(this::visitAsync).collect(Collectors.toList());
+  }
+
+  /**
+   * Intersects the responses of the children of an AND node. As soon as one child matches no
+   * entities, the intersection is known to be empty and the other children are cancelled.
+   */
+  private static CompletableFuture<EntityResponse> intersectAsync(
+      List<CompletableFuture<EntityResponse>> childFutures) {
+    CompletableFuture<EntityResponse> resultFuture = new CompletableFuture<>();
+    for (CompletableFuture<EntityResponse> childFuture : childFutures) {
+      childFuture.thenAccept(
+          response -> {
+            if (response.getEntityFetcherResponse().isEmpty()
+                && resultFuture.complete(new EntityResponse())) {
+              childFutures.forEach(future -> future.cancel(true));
+            }
+          });
+    }
+    FutureUtil.allAsList(childFutures)
+        .whenComplete(
+            (responses, throwable) -> {
+              if (throwable != null) {
+                resultFuture.completeExceptionally(throwable);
+              } else {
+                resultFuture.complete(intersect(responses));
+              }
+            });
+    return FutureUtil.propagateCancellation(resultFuture, childFutures);
+  }
+
+  /**
+   * Runs the first child of the node, which the planner found to be the most selective one, and
+   * fetches the sibling data fetchers only for the entities it matched, in batches of entity ids.
+   * Siblings that cannot be restricted this way run alongside the first child. If the first child
+   * matched more entities than the semi join allows, the siblings are fetched unrestricted instead,
+   * since the entity id batches would cost more than the plain fetch.
+   */
+  private CompletableFuture<EntityResponse> semiJoinAsync(AndNode andNode) {
+    List<QueryNode> childNodes = andNode.getChildNodes();
+    CompletableFuture<EntityResponse> drivingFuture = visitAsync(childNodes.get(0));
+    List<CompletableFuture<EntityResponse>> childFutures = new ArrayList<>();
+    childFutures.add(drivingFuture);
+    for (QueryNode childNode : childNodes.subList(1, childNodes.size())) {
+      if (CostBasedOrderingVisitor.canBeRestrictedByEntityIds(childNode)) {
+        DataFetcherNode dataFetcherNode = (DataFetcherNode) childNode;
+        childFutures.add(
+            drivingFuture.thenCompose(
+                drivingResponse ->
+                    drivingResponse.getEntityFetcherResponse().size()
+                            > andNode.getSemiJoinMaxEntityIds()
+                        ? fetchUnrestrictedDataAsync(dataFetcherNode, drivingResponse)
+                        : fetchRestrictedDataAsync(dataFetcherNode, drivingResponse)));
+      } else {
+        childFutures.add(visitAsync(childNode));
+      }
+    }
+    return intersectAsync(childFutures);
+  }
+
+  private CompletableFuture<EntityResponse> fetchUnrestrictedDataAsync(
+      DataFetcherNode dataFetcherNode, EntityResponse drivingResponse) {
+    LOG.debug(
+        "Semi join driving child matched {} entities, fetching {} without restricting it",
+        drivingResponse.getEntityFetcherResponse().size(),
+        dataFetcherNode);
+    return fetchDataAsync(dataFetcherNode);
+  }
+
+  private CompletableFuture<EntityResponse> fetchRestrictedDataAsync(
+      DataFetcherNode dataFetcherNode, EntityResponse drivingResponse) {
+    EntityFetcherResponse drivingEntities = drivingResponse.getEntityFetcherResponse();
+    if (drivingEntities.isEmpty()) {
+      return CompletableFuture.completedFuture(new EntityResponse());
+    }
+    return executionProfiler.profileAsync(
+        dataFetcherNode,
+        () -> {
+          List<CompletableFuture<EntityFetcherResponse>> batchFutures =
+              constructFiltersFromChildNodesResult(drivingEntities).stream()
+                  .map(
+                      entityIdFilter ->
+                          fetchEntitiesAsync(
+                              dataFetcherNode,
+                              restrictFilter(dataFetcherNode.getFilter(), entityIdFilter),
+                              false))
+                  .collect(Collectors.toList());
+          return FutureUtil.propagateCancellation(
+              FutureUtil.allAsList(batchFutures)
+                  .thenApply(EntityFetcherResponseMerger::union)
+                  .thenApply(response -> new EntityResponse(response, response.size())),
+              batchFutures);
+        });
+  }
+
+  private static Filter restrictFilter(Filter filter, Filter entityIdFilter) {
+    if (Filter.getDefaultInstance().equals(filter)) {
+      return entityIdFilter;
+    }
+    return Filter.newBuilder()
+        .setOperator(Operator.AND)
+        .addChildFilter(filter)
+        .addChildFilter(entityIdFilter)
+        .build();
   }
 
   @Override
   public EntityResponse visit(SelectionNode selectionNode) {
-    EntityResponse childNodeResponse = selectionNode.getChildNode().acceptVisitor(this);
+    return select(selectionNode, selectionNode.getChildNode().acceptVisitor(this));
+  }
+
+  /**
+   * Fetches the selections of the node for the entities in the response of its child node, which
+   * has already been executed.
+   */
+  public EntityResponse select(SelectionNode selectionNode, EntityResponse childNodeResponse) {
+    return executionProfiler.profile(
+        selectionNode, () -> doSelect(selectionNode, childNodeResponse));
+  }
 
+  private EntityResponse doSelect(SelectionNode selectionNode, EntityResponse childNodeResponse) {
     EntityFetcherResponse childEntityFetcherResponse = childNodeResponse.getEntityFetcherResponse();
 
     // If the result was empty when the filter is non-empty, it means no entities matched the filter
@@ -203,105 +496,20 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
       return childNodeResponse;
     }
 
-    // Construct the filter from the child nodes result
-    final Filter filter = constructFilterFromChildNodesResult(childEntityFetcherResponse);
+    // Construct the filters from the child nodes result. Large results are split into batches of
+    // entity ids, which are fetched concurrently
+    List<Filter> filters = constructFiltersFromChildNodesResult(childEntityFetcherResponse);
 
     // Select attributes, metric aggregations and time-series data from corresponding sources
+    List<CompletableFuture<EntityFetcherResponse>> resultFutures = new ArrayList<>();
+    for (Filter filter : filters) {
+      resultFutures.addAll(fetchSelectionsAsync(selectionNode, filter));
+    }
     List<EntityFetcherResponse> resultMapList = new ArrayList<>();
-    // if data are coming from multiple sources, then, get entities and aggregated metrics
-    // needs to be separated
-    resultMapList.addAll(
-        selectionNode.getAttrSelectionSources().parallelStream()
-            .map(
-                source -> {
-                  EntitiesRequest request =
-                      EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
-                          .clearSelection()
-                          .clearTimeAggregation()
-                          .clearFilter()
-                          // TODO: Should we push order by, limit and offet down to the data source?
-                          // If we want to push the order by down, we would also have to divide
-                          // order by into sourceToOrderBySelectionExpressionMap,
-                          // sourceToOrderByMetricExpressionMap, sourceToOrderByTimeAggregationMap
-                          .clearOrderBy()
-                          .clearLimit()
-                          .clearOffset()
-                          .addAllSelection(
-                              executionContext.getSourceToSelectionExpressionMap().get(source))
-                          .setFilter(filter)
-                          .build();
-                  IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
-                  EntitiesRequestContext context =
-                      new EntitiesRequestContext(
-                          executionContext.getTenantId(),
-                          request.getStartTimeMillis(),
-                          request.getEndTimeMillis(),
-                          request.getEntityType(),
-                          executionContext.getTimestampAttributeId(),
-                          executionContext.getRequestHeaders());
-                  return entityFetcher.getEntities(context, request);
-                })
-            .collect(Collectors.toList()));
-    resultMapList.addAll(
-        selectionNode.getAggMetricSelectionSources().parallelStream()
-            .map(
-                source -> {
-                  EntitiesRequest request =
-                      EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
-                          .clearSelection()
-                          .clearTimeAggregation()
-                          .clearFilter()
-                          .clearOrderBy()
-                          .clearOffset()
-                          .clearLimit()
-                          .addAllSelection(
-                              executionContext.getSourceToMetricExpressionMap().get(source))
-                          .setFilter(filter)
-                          .build();
-                  IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
-                  EntitiesRequestContext context =
-                      new EntitiesRequestContext(
-                          executionContext.getTenantId(),
-                          request.getStartTimeMillis(),
-                          request.getEndTimeMillis(),
-                          request.getEntityType(),
-                          executionContext.getTimestampAttributeId(),
-                          executionContext.getRequestHeaders());
-                  return entityFetcher.getEntities(context, request);
-                })
-            .collect(Collectors.toList()));
-    resultMapList.addAll(
-        selectionNode.getTimeSeriesSelectionSources().parallelStream()
-            .map(
-                source -> {
-                  EntitiesRequest request =
-                      EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
-                          .clearSelection()
-                          .clearTimeAggregation()
-                          .clearFilter()
-                          .clearOrderBy()
-                          .clearOffset()
-                          .clearLimit()
-                          .addAllTimeAggregation(
-                              executionContext.getSourceToTimeAggregationMap().get(source))
-                          .setFilter(filter)
-                          .build();
-                  IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
-                  EntitiesRequestContext requestContext =
-                      new EntitiesRequestContext(
-                          executionContext.getTenantId(),
-                          request.getStartTimeMillis(),
-                          request.getEndTimeMillis(),
-                          request.getEntityType(),
-                          executionContext.getTimestampAttributeId(),
-                          executionContext.getRequestHeaders());
-                  return entityFetcher.getTimeAggregatedMetrics(requestContext, request);
-                })
-            .collect(Collectors.toList()));
-
-    EntityFetcherResponse response =
-        resultMapList.stream()
-            .reduce(childEntityFetcherResponse, (r1, r2) -> unionEntities(Arrays.asList(r1, r2)));
+    resultMapList.add(childEntityFetcherResponse);
+    resultMapList.addAll(FutureUtil.await(FutureUtil.allAsList(resultFutures)));
+
+    EntityFetcherResponse response = EntityFetcherResponseMerger.union(resultMapList);
 
     if (!childEntityFetcherResponse.isEmpty()) {
       // if the child fetcher response is non empty, the total
@@ -315,16 +523,142 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
     }
   }
 
+  private List<CompletableFuture<EntityFetcherResponse>> fetchSelectionsAsync(
+      SelectionNode selectionNode, Filter filter) {
+    List<CompletableFuture<EntityFetcherResponse>> resultFutures = new ArrayList<>();
+    // if data are coming from multiple sources, then, get entities and aggregated metrics
+    // needs to be separated
+    selectionNode
+        .getAttrSelectionSources()
+        .forEach(
+            source -> {
+              EntitiesRequest request =
+                  EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
+                      .clearSelection()
+                      .clearTimeAggregation()
+                      .clearFilter()
+                      // TODO: Should we push order by, limit and offet down to the data source?
+                      // If we want to push the order by down, we would also have to divide
+                      // order by into sourceToOrderBySelectionExpressionMap,
+                      // sourceToOrderByMetricExpressionMap, sourceToOrderByTimeAggregationMap
+                      .clearOrderBy()
+                      .clearLimit()
+                      .clearOffset()
+                      .addAllSelection(
+                          executionContext.getSourceToSelectionExpressionMap().get(source))
+                      .setFilter(filter)
+                      .build();
+              resultFutures.add(
+                  fetchAsync(
+                      selectionNode,
+                      source,
+                      (entityFetcher, context) -> entityFetcher.getEntities(context, request)));
+            });
+    selectionNode
+        .getAggMetricSelectionSources()
+        .forEach(
+            source -> {
+              EntitiesRequest request =
+                  EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
+                      .clearSelection()
+                      .clearTimeAggregation()
+                      .clearFilter()
+                      .clearOrderBy()
+                      .clearOffset()
+                      .clearLimit()
+                      .addAllSelection(
+                          executionContext.getSourceToMetricExpressionMap().get(source))
+                      .setFilter(filter)
+                      .build();
+              resultFutures.add(
+                  fetchAsync(
+                      selectionNode,
+                      source,
+                      (entityFetcher, context) -> entityFetcher.getEntities(context, request)));
+            });
+    selectionNode
+        .getTimeSeriesSelectionSources()
+        .forEach(
+            source -> {
+              EntitiesRequest request =
+                  EntitiesRequest.newBuilder(executionContext.getEntitiesRequest())
+                      .clearSelection()
+                      .clearTimeAggregation()
+                      .clearFilter()
+                      .clearOrderBy()
+                      .clearOffset()
+                      .clearLimit()
+                      .addAllTimeAggregation(
+                          executionContext.getSourceToTimeAggregationMap().get(source))
+                      .setFilter(filter)
+                      .build();
+              resultFutures.add(
+                  fetchAsync(
+                      selectionNode,
+                      source,
+                      (entityFetcher, context) ->
+                          entityFetcher.getTimeAggregatedMetrics(context, request)));
+            });
+    return resultFutures;
+  }
+
+  /**
+   * Runs the fetch on the execution pool of the source. Each fetch gets its own request context
+   * since the fetchers record per request state, like aliases, on it.
+   */
+  private <T> CompletableFuture<T> fetchAsync(
+      QueryNode queryNode,
+      String source,
+      BiFunction<IEntityFetcher, EntitiesRequestContext, T> fetch) {
+    executionProfiler.recordQuery(queryNode);
+    IEntityFetcher entityFetcher = queryHandlerRegistry.getEntityFetcher(source);
+    EntitiesRequestContext context = createFetchContext();
+    return CompletableFuture.supplyAsync(
+        () -> fetch.apply(entityFetcher, context), executionPools.getPool(source));
+  }
+
+  private EntitiesRequestContext createFetchContext() {
+    EntitiesRequest entitiesRequest = executionContext.getEntitiesRequest();
+    EntitiesRequestContext context =
+        new EntitiesRequestContext(
+            executionContext.getTenantId(),
+            entitiesRequest.getStartTimeMillis(),
+            entitiesRequest.getEndTimeMillis(),
+            entitiesRequest.getEntityType(),
+            executionContext.getTimestampAttributeId(),
+            executionContext.getRequestHeaders());
+    context.setAttributeMetadataSnapshot(executionContext.getAttributeMetadataSnapshot());
+    return context;
+  }
+
+  /**
+   * Builds the entity id filters for the selections from the child nodes result. When there are
+   * more entities than the configured batch size, the ids are split across several filters so that
+   * no single query carries a huge IN list.
+   */
+  List<Filter> constructFiltersFromChildNodesResult(EntityFetcherResponse result) {
+    int batchSize = selectionConfig.getEntityIdBatchSize();
+    if (batchSize <= 0 || result.size() <= batchSize) {
+      return List.of(constructFilterFromChildNodesResult(result));
+    }
+    return Streams.stream(Iterables.partition(result.getEntityKeyBuilderMap().keySet(), batchSize))
+        .map(this::constructFilterFromEntityKeys)
+        .collect(Collectors.toList());
+  }
+
   Filter constructFilterFromChildNodesResult(EntityFetcherResponse result) {
     if (result.isEmpty()) {
       return Filter.getDefaultInstance();
     }
+    return constructFilterFromEntityKeys(result.getEntityKeyBuilderMap().keySet());
+  }
 
+  private Filter constructFilterFromEntityKeys(Collection<EntityKey> entityKeys) {
     List<Expression> entityIdExpressionList = executionContext.getEntityIdExpressions();
     if (entityIdExpressionList.size() == 1) {
       Expression entityIdExpression = entityIdExpressionList.get(0);
       Set<String> entityIdValues =
-          result.getEntityKeyBuilderMap().keySet().stream()
+          entityKeys.stream()
               .map(entityKey -> entityKey.getAttributes().get(0))
               .collect(Collectors.toSet());
       return Filter.newBuilder()
@@ -343,7 +677,7 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
       return Filter.newBuilder()
           .setOperator(Operator.OR)
           .addAllChildFilter(
-              result.getEntityKeyBuilderMap().keySet().stream()
+              entityKeys.stream()
                   .map(
                       entityKey ->
                           Filter.newBuilder()
@@ -368,17 +702,17 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
 
   @Override
   public EntityResponse visit(SortAndPaginateNode sortAndPaginateNode) {
-    EntityResponse childNodeResponse = sortAndPaginateNode.getChildNode().acceptVisitor(this);
+    return executionProfiler.profile(
+        sortAndPaginateNode, () -> sortAndPaginate(sortAndPaginateNode));
+  }
 
-    // Create a list from elements of HashMap
-    List<Map.Entry<EntityKey, Builder>> list =
-        new LinkedList<>(
-            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet());
+  private EntityResponse sortAndPaginate(SortAndPaginateNode sortAndPaginateNode) {
+    EntityResponse childNodeResponse = sortAndPaginateNode.getChildNode().acceptVisitor(this);
 
-    // Sort the list
+    // Only the top offset + limit entities are sorted
     List<Map.Entry<EntityKey, Entity.Builder>> sortedList =
         DataCollectionUtil.limitAndSort(
-            list.stream(),
+            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet(),
             sortAndPaginateNode.getLimit(),
             sortAndPaginateNode.getOffset(),
             sortAndPaginateNode.getOrderByExpressionList().size(),
@@ -386,7 +720,8 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
                 sortAndPaginateNode.getOrderByExpressionList()));
 
     // put data from sorted list to a linked hashmap
-    Map<EntityKey, Builder> linkedHashMap = new LinkedHashMap<>();
+    Map<EntityKey, Builder> linkedHashMap =
+        Maps.newLinkedHashMapWithExpectedSize(sortedList.size());
     sortedList.forEach(entry -> linkedHashMap.put(entry.getKey(), entry.getValue()));
     return new EntityResponse(
         new EntityFetcherResponse(linkedHashMap), childNodeResponse.getTotal());
@@ -399,20 +734,21 @@ public class ExecutionVisitor implements Visitor<EntityResponse> {
 
   @Override
   public EntityResponse visit(PaginateOnlyNode paginateOnlyNode) {
-    EntityResponse childNodeResponse = paginateOnlyNode.getChildNode().acceptVisitor(this);
+    return executionProfiler.profile(paginateOnlyNode, () -> paginate(paginateOnlyNode));
+  }
 
-    // Create a list from elements of HashMap
-    List<Map.Entry<EntityKey, Builder>> list =
-        new LinkedList<>(
-            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet());
+  private EntityResponse paginate(PaginateOnlyNode paginateOnlyNode) {
+    EntityResponse childNodeResponse = paginateOnlyNode.getChildNode().acceptVisitor(this);
 
-    // Sort the list
     List<Map.Entry<EntityKey, Entity.Builder>> sortedList =
         DataCollectionUtil.paginateAndLimit(
-            list.stream(), paginateOnlyNode.getLimit(), paginateOnlyNode.getOffset());
+            childNodeResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().entrySet(),
+            paginateOnlyNode.getLimit(),
+            paginateOnlyNode.getOffset());
 
     // put data from sorted list to a linked hashmap
-    Map<EntityKey, Builder> linkedHashMap = new LinkedHashMap<>();
+    Map<EntityKey, Builder> linkedHashMap =
+        Maps.newLinkedHashMapWithExpectedSize(sortedList.size());
     sortedList.forEach(entry -> linkedHashMap.put(entry.getKey(), entry.getValue()));
 
     return new EntityResponse(
@@ -13,6 +13,7 @@ public class ExploreRequestContext extends QueryRequestContext {
 
   private boolean hasGroupBy = false;
   private List<OrderByExpression> orderByExpressions;
+  private int queryServiceDefaultLimit;
 
   ExploreRequestContext(
       String tenantId, ExploreRequest exploreRequest, Map<String, String> requestHeaders) {
@@ -49,6 +50,19 @@ public class ExploreRequestContext extends QueryRequestContext {
     return this.hasGroupBy;
   }
 
+  /**
+   * The limit the query to Query Service is executed again with when it returns as many rows as
+   * the limit planned for it. 0 when the limit of the query was not planned. See
+   * QueryLimitPlanner.
+   */
+  void setQueryServiceDefaultLimit(int queryServiceDefaultLimit) {
+    this.queryServiceDefaultLimit = queryServiceDefaultLimit;
+  }
+
+  int getQueryServiceDefaultLimit() {
+    return this.queryServiceDefaultLimit;
+  }
+
   public List<OrderByExpression> getOrderByExpressions() {
     return this.orderByExpressions;
   }
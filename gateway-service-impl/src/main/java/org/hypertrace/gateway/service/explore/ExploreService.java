@@ -5,12 +5,25 @@ import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeSource;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
+import org.hypertrace.gateway.service.common.RequestCoalescer;
+import org.hypertrace.gateway.service.common.cache.ResultCache;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.common.config.RequestCoalescingConfig;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.config.TimeSeriesCacheConfig;
+import org.hypertrace.gateway.service.explore.config.PipeliningConfig;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
+import org.hypertrace.gateway.service.v1.common.Row;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
 
@@ -23,6 +36,8 @@ public class ExploreService {
   private final TimeAggregationsRequestHandler timeAggregationsRequestHandler;
   private final TimeAggregationsWithGroupByRequestHandler timeAggregationsWithGroupByRequestHandler;
   private final ScopeFilterConfigs scopeFilterConfigs;
+  private final RequestCoalescer<ExploreRequest, ExploreResponse> requestCoalescer;
+  private final ResultCache<ExploreRequest, ExploreResponse> resultCache;
 
   private Timer queryExecutionTimer;
 
@@ -30,17 +45,59 @@ public class ExploreService {
       QueryServiceClient queryServiceClient,
       int requestTimeout,
       AttributeMetadataProvider attributeMetadataProvider,
-      ScopeFilterConfigs scopeFiltersConfig) {
+      ScopeFilterConfigs scopeFiltersConfig,
+      RequestCoalescingConfig requestCoalescingConfig,
+      ResultCacheConfig resultCacheConfig,
+      TimeSeriesCacheConfig timeSeriesCacheConfig,
+      ExecutionPools executionPools,
+      RestGroupConfig restGroupConfig,
+      PipeliningConfig pipeliningConfig,
+      QueryLimitConfig queryLimitConfig) {
     this.attributeMetadataProvider = attributeMetadataProvider;
+    TimeSeriesCache<Row> timeSeriesCache = new TimeSeriesCache<>("explore", timeSeriesCacheConfig);
+    Executor queryServiceExecutor = executionPools.getPool(AttributeSource.QS.name());
+    QueryLimitPlanner queryLimitPlanner = new QueryLimitPlanner(queryLimitConfig);
     this.normalRequestHandler =
-        new RequestHandler(queryServiceClient, requestTimeout, attributeMetadataProvider);
+        new RequestHandler(
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            queryServiceExecutor,
+            restGroupConfig,
+            queryLimitPlanner);
     this.timeAggregationsRequestHandler =
         new TimeAggregationsRequestHandler(
-            queryServiceClient, requestTimeout, attributeMetadataProvider);
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            queryServiceExecutor,
+            restGroupConfig,
+            queryLimitPlanner,
+            timeSeriesCache);
     this.timeAggregationsWithGroupByRequestHandler =
         new TimeAggregationsWithGroupByRequestHandler(
-            queryServiceClient, requestTimeout, attributeMetadataProvider);
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            queryServiceExecutor,
+            restGroupConfig,
+            pipeliningConfig,
+            queryLimitPlanner,
+            timeSeriesCache);
     this.scopeFilterConfigs = scopeFiltersConfig;
+    this.requestCoalescer =
+        new RequestCoalescer<>("explore", requestCoalescingConfig.isExploreEnabled());
+    this.resultCache =
+        new ResultCache<>(
+            "explore",
+            resultCacheConfig,
+            ExploreRequest::getStartTimeMillis,
+            ExploreRequest::getEndTimeMillis,
+            (request, startTimeMillis, endTimeMillis) ->
+                request.toBuilder()
+                    .setStartTimeMillis(startTimeMillis)
+                    .setEndTimeMillis(endTimeMillis)
+                    .build());
     initMetrics();
   }
 
@@ -50,9 +107,26 @@ public class ExploreService {
             "hypertrace.explore.query.execution", ImmutableMap.of());
   }
 
+  /**
+   * Responses are served from the result cache when it is enabled, and identical requests of a
+   * tenant that arrive while one of them runs share its response
+   */
   public ExploreResponse explore(
-      String tenantId, ExploreRequest request, Map<String, String> requestHeaders) {
+      String tenantId, ExploreRequest originalRequest, Map<String, String> requestHeaders) {
+    return resultCache.get(
+        tenantId,
+        requestHeaders,
+        originalRequest,
+        request ->
+            requestCoalescer.execute(
+                tenantId,
+                requestHeaders,
+                request,
+                () -> executeExplore(tenantId, request, requestHeaders)));
+  }
 
+  private ExploreResponse executeExplore(
+      String tenantId, ExploreRequest request, Map<String, String> requestHeaders) {
     final Instant start = Instant.now();
     try {
       ExploreRequestContext exploreRequestContext =
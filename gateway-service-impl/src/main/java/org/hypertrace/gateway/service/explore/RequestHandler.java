@@ -5,6 +5,10 @@ import com.google.protobuf.util.JsonFormat;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
 import org.hypertrace.core.query.service.api.Filter;
@@ -15,12 +19,13 @@ import org.hypertrace.core.query.service.api.Row;
 import org.hypertrace.core.query.service.api.Value;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
-import org.hypertrace.gateway.service.common.util.DataCollectionUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.MetricAggregationFunctionUtil;
 import org.hypertrace.gateway.service.common.util.OrderByUtil;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
@@ -35,15 +40,22 @@ public class RequestHandler implements RequestHandlerWithSorting {
   private final int requestTimeout;
   private final AttributeMetadataProvider attributeMetadataProvider;
   private final TheRestGroupRequestHandler theRestGroupRequestHandler;
+  private final QueryLimitPlanner queryLimitPlanner;
 
   RequestHandler(
       QueryServiceClient queryServiceClient,
       int qsRequestTimeout,
-      AttributeMetadataProvider attributeMetadataProvider) {
+      AttributeMetadataProvider attributeMetadataProvider,
+      Executor queryServiceExecutor,
+      RestGroupConfig restGroupConfig,
+      QueryLimitPlanner queryLimitPlanner) {
     this.queryServiceClient = queryServiceClient;
     this.requestTimeout = qsRequestTimeout;
     this.attributeMetadataProvider = attributeMetadataProvider;
-    this.theRestGroupRequestHandler = new TheRestGroupRequestHandler(this);
+    this.queryLimitPlanner = queryLimitPlanner;
+    this.theRestGroupRequestHandler =
+        new TheRestGroupRequestHandler(
+            this, queryServiceExecutor, restGroupConfig, attributeMetadataProvider);
   }
 
   @Override
@@ -52,10 +64,36 @@ public class RequestHandler implements RequestHandlerWithSorting {
     QueryRequest queryRequest =
         buildQueryRequest(requestContext, request, attributeMetadataProvider);
 
+    // When the rest group can be computed from the total, the total is queried alongside the groups
+    Optional<CompletableFuture<ExploreResponse.Builder>> totalFuture =
+        requestContext.hasGroupBy() && requestContext.getIncludeRestGroup()
+            ? theRestGroupRequestHandler.startTotalRequest(
+                requestContext, requestContext.getExploreRequest())
+            : Optional.empty();
+    try {
+      Iterator<ResultSetChunk> resultSetChunkIterator = executeQuery(requestContext, queryRequest);
+
+      return handleQueryServiceResponse(
+          requestContext,
+          resultSetChunkIterator,
+          requestContext,
+          attributeMetadataProvider,
+          totalFuture);
+    } catch (RuntimeException e) {
+      totalFuture.ifPresent(future -> future.cancel(true));
+      throw e;
+    }
+  }
+
+  /** Executes the query for the request and reads its rows, without sorting or paginating them */
+  ExploreResponse.Builder fetchRows(ExploreRequestContext requestContext, ExploreRequest request) {
+    QueryRequest queryRequest =
+        buildQueryRequest(requestContext, request, attributeMetadataProvider);
+
     Iterator<ResultSetChunk> resultSetChunkIterator = executeQuery(requestContext, queryRequest);
 
-    return handleQueryServiceResponse(
-        requestContext, resultSetChunkIterator, requestContext, attributeMetadataProvider);
+    return readQueryServiceResponse(
+        resultSetChunkIterator, requestContext, attributeMetadataProvider);
   }
 
   QueryRequest buildQueryRequest(
@@ -128,7 +166,10 @@ public class RequestHandler implements RequestHandlerWithSorting {
       }
     }
 
-    return queryServiceClient.executeQuery(queryRequest, context.getHeaders(), requestTimeout);
+    return queryLimitPlanner.execute(
+        queryRequest,
+        context.getQueryServiceDefaultLimit(),
+        request -> queryServiceClient.executeQuery(request, context.getHeaders(), requestTimeout));
   }
 
   Filter constructQueryServiceFilter(
@@ -180,11 +221,57 @@ public class RequestHandler implements RequestHandlerWithSorting {
 
   private ExploreResponse.Builder handleQueryServiceResponse(
       ExploreRequestContext context,
+      Iterator<ResultSetChunk> resultSetChunkIterator,
+      ExploreRequestContext requestContext,
+      AttributeMetadataProvider attributeMetadataProvider,
+      Optional<CompletableFuture<ExploreResponse.Builder>> totalFuture) {
+    ExploreResponse.Builder builder;
+    // If there's a Group By in the request, we need to do the sorting and pagination ourselves.
+    // Only the rows of the page are kept while the rows are read.
+    if (requestContext.hasGroupBy()) {
+      TopRowsCollector topRowsCollector =
+          new TopRowsCollector(
+              requestContext.getOrderByExpressions(),
+              requestContext.getRowLimitBeforeRest(),
+              requestContext.getOffset());
+      readQueryServiceResponse(
+          resultSetChunkIterator, requestContext, attributeMetadataProvider, topRowsCollector::add);
+      builder = ExploreResponse.newBuilder();
+      topRowsCollector.getRows().forEach(builder::addRow);
+    } else {
+      builder =
+          readQueryServiceResponse(
+              resultSetChunkIterator, requestContext, attributeMetadataProvider);
+    }
+
+    if (requestContext.hasGroupBy() && requestContext.getIncludeRestGroup()) {
+      if (totalFuture.isPresent()) {
+        theRestGroupRequestHandler.getRowsForTheRestGroup(
+            context, requestContext.getExploreRequest(), builder, totalFuture.get());
+      } else {
+        theRestGroupRequestHandler.getRowsForTheRestGroup(
+            context, requestContext.getExploreRequest(), builder);
+      }
+    }
+
+    return builder;
+  }
+
+  private ExploreResponse.Builder readQueryServiceResponse(
       Iterator<ResultSetChunk> resultSetChunkIterator,
       ExploreRequestContext requestContext,
       AttributeMetadataProvider attributeMetadataProvider) {
     ExploreResponse.Builder builder = ExploreResponse.newBuilder();
+    readQueryServiceResponse(
+        resultSetChunkIterator, requestContext, attributeMetadataProvider, builder::addRow);
+    return builder;
+  }
 
+  private void readQueryServiceResponse(
+      Iterator<ResultSetChunk> resultSetChunkIterator,
+      ExploreRequestContext requestContext,
+      AttributeMetadataProvider attributeMetadataProvider,
+      Consumer<org.hypertrace.gateway.service.v1.common.Row.Builder> rowConsumer) {
     while (resultSetChunkIterator.hasNext()) {
       ResultSetChunk chunk = resultSetChunkIterator.next();
       getLogger().debug("Received chunk: {}", chunk);
@@ -204,32 +291,16 @@ public class RequestHandler implements RequestHandlerWithSorting {
                   handleQueryServiceResponseSingleRow(
                       row,
                       chunk.getResultSetMetadata(),
-                      builder,
+                      rowConsumer,
                       requestContext,
                       attributeMetadataProvider));
     }
-
-    // If there's a Group By in the request, we need to do the sorting and pagination ourselves.
-    if (requestContext.hasGroupBy()) {
-      sortAndPaginatePostProcess(
-          builder,
-          requestContext.getOrderByExpressions(),
-          requestContext.getRowLimitBeforeRest(),
-          requestContext.getOffset());
-    }
-
-    if (requestContext.hasGroupBy() && requestContext.getIncludeRestGroup()) {
-      theRestGroupRequestHandler.getRowsForTheRestGroup(
-          context, requestContext.getExploreRequest(), builder);
-    }
-
-    return builder;
   }
 
   protected void handleQueryServiceResponseSingleRow(
       Row row,
       ResultSetMetadata resultSetMetadata,
-      ExploreResponse.Builder builder,
+      Consumer<org.hypertrace.gateway.service.v1.common.Row.Builder> rowConsumer,
       ExploreRequestContext requestContext,
       AttributeMetadataProvider attributeMetadataProvider) {
     var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
@@ -241,7 +312,7 @@ public class RequestHandler implements RequestHandlerWithSorting {
           requestContext,
           attributeMetadataProvider);
     }
-    builder.addRow(rowBuilder);
+    rowConsumer.accept(rowBuilder);
   }
 
   protected void handleQueryServiceResponseSingleColumn(
@@ -316,10 +387,9 @@ public class RequestHandler implements RequestHandlerWithSorting {
       List<OrderByExpression> orderByExpressions,
       int limit,
       int offset) {
-    RowComparator rowComparator = new RowComparator(orderByExpressions);
-
-    return DataCollectionUtil.limitAndSort(
-        rowBuilders.stream(), limit, offset, orderByExpressions.size(), rowComparator);
+    TopRowsCollector topRowsCollector = new TopRowsCollector(orderByExpressions, limit, offset);
+    rowBuilders.forEach(topRowsCollector::add);
+    return topRowsCollector.getRows();
   }
 
   protected Logger getLogger() {
@@ -3,12 +3,21 @@ package org.hypertrace.gateway.service.explore;
 import com.google.common.collect.ImmutableSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
 import org.hypertrace.gateway.service.v1.common.Operator;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
@@ -24,15 +33,82 @@ import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
  * the request to exclude the groups that were found in the first query, executes the request and
  * then merges the results into the first response and sorts the response.
  *
+ * <p>When all the aggregations of the request are SUM or COUNT, and subtraction is enabled, the
+ * rest group is instead the total over all the groups minus the found groups. The total does not
+ * depend on the found groups, so it is queried at the same time as the groups, and without the
+ * filter excluding them. This needs each row to be in a single group, so it is not done when
+ * grouping by a multi-valued attribute.
+ *
  * <p>It is called from the implementations of IRequestHandler when ExploreRequest.includeRestGroup
  * of the original request is set to true.
  */
 class TheRestGroupRequestHandler {
   private static final String OTHER_COLUMN_VALUE = "__Other";
+  private static final Set<FunctionType> ADDITIVE_FUNCTIONS =
+      ImmutableSet.of(FunctionType.SUM, FunctionType.COUNT);
+  private static final Set<AttributeKind> MULTI_VALUED_KINDS =
+      ImmutableSet.of(
+          AttributeKind.TYPE_STRING_ARRAY,
+          AttributeKind.TYPE_INT64_ARRAY,
+          AttributeKind.TYPE_DOUBLE_ARRAY,
+          AttributeKind.TYPE_BOOL_ARRAY,
+          AttributeKind.TYPE_STRING_MAP);
   private final RequestHandlerWithSorting requestHandler;
+  private final Executor queryServiceExecutor;
+  private final RestGroupConfig restGroupConfig;
+  private final AttributeMetadataProvider attributeMetadataProvider;
 
-  TheRestGroupRequestHandler(RequestHandlerWithSorting requestHandler) {
+  TheRestGroupRequestHandler(
+      RequestHandlerWithSorting requestHandler,
+      Executor queryServiceExecutor,
+      RestGroupConfig restGroupConfig,
+      AttributeMetadataProvider attributeMetadataProvider) {
     this.requestHandler = requestHandler;
+    this.queryServiceExecutor = queryServiceExecutor;
+    this.restGroupConfig = restGroupConfig;
+    this.attributeMetadataProvider = attributeMetadataProvider;
+  }
+
+  /**
+   * Starts the query for the total over all the groups if the rest group of the request can be
+   * computed by subtraction. The total is then passed on when getting the rows for the rest group.
+   */
+  Optional<CompletableFuture<ExploreResponse.Builder>> startTotalRequest(
+      ExploreRequestContext context, ExploreRequest originalRequest) {
+    if (!restGroupConfig.isSubtractionEnabled()
+        || !hasOnlyAdditiveAggregations(context, originalRequest)) {
+      return Optional.empty();
+    }
+    ExploreRequest totalRequest = createTotalRequest(originalRequest).build();
+    ExploreRequestContext totalRequestContext =
+        new ExploreRequestContext(context.getTenantId(), totalRequest, context.getHeaders());
+    return Optional.of(
+        CompletableFuture.supplyAsync(
+            () -> requestHandler.handleRequest(totalRequestContext, totalRequest),
+            queryServiceExecutor));
+  }
+
+  /** Adds the rest group computed by subtracting the found groups from the total */
+  void getRowsForTheRestGroup(
+      ExploreRequestContext context,
+      ExploreRequest originalRequest,
+      ExploreResponse.Builder originalResponse,
+      CompletableFuture<ExploreResponse.Builder> totalFuture) {
+    // Return if there was no data in the original request
+    if (originalResponse.getRowBuilderList().isEmpty()) {
+      totalFuture.cancel(true);
+      return;
+    }
+
+    ExploreResponse.Builder totalResponse = FutureUtil.await(totalFuture);
+    Optional<ExploreResponse.Builder> theRestGroupResponse =
+        subtractFoundGroups(originalRequest, totalResponse, originalResponse);
+    if (theRestGroupResponse.isEmpty()) {
+      getRowsForTheRestGroup(context, originalRequest, originalResponse);
+      return;
+    }
+
+    mergeTheRestGroup(context, originalRequest, originalResponse, theRestGroupResponse.get());
   }
 
   void getRowsForTheRestGroup(
@@ -44,19 +120,39 @@ class TheRestGroupRequestHandler {
       return;
     }
 
-    ExploreRequest theRestRequest = createRequest(originalRequest, originalResponse);
+    mergeTheRestGroup(
+        context,
+        originalRequest,
+        originalResponse,
+        queryTheRestGroup(context, originalRequest, originalResponse));
+  }
+
+  /**
+   * Queries the rest group, excluding the groups in the found groups response. This can run while
+   * the response the rest group is merged into is still being queried, as long as that response
+   * has the same groups.
+   */
+  ExploreResponse.Builder queryTheRestGroup(
+      ExploreRequestContext context,
+      ExploreRequest originalRequest,
+      ExploreResponse.Builder foundGroupsResponse) {
+    ExploreRequest theRestRequest = createRequest(originalRequest, foundGroupsResponse);
     ExploreRequestContext theRestRequestContext =
         new ExploreRequestContext(context.getTenantId(), theRestRequest, context.getHeaders());
 
-    ExploreResponse.Builder theRestGroupResponse =
-        requestHandler.handleRequest(theRestRequestContext, theRestRequest);
+    return requestHandler.handleRequest(theRestRequestContext, theRestRequest);
+  }
 
-    List<OrderByExpression> orderByExpressions =
-        requestHandler.getRequestOrderByExpressions(theRestRequest);
+  /** Merges the rest group returned by {@link #queryTheRestGroup} into the original response */
+  void mergeTheRestGroup(
+      ExploreRequestContext context,
+      ExploreRequest originalRequest,
+      ExploreResponse.Builder originalResponse,
+      ExploreResponse.Builder theRestGroupResponse) {
     mergeAndSort(
         originalResponse,
         theRestGroupResponse,
-        orderByExpressions,
+        requestHandler.getRequestOrderByExpressions(createTotalRequest(originalRequest).build()),
         context.getRowLimitAfterRest(), // check how many rows expected from original request
         originalRequest.getOffset(),
         requestHandler,
@@ -83,16 +179,7 @@ class TheRestGroupRequestHandler {
    */
   private ExploreRequest createRequest(
       ExploreRequest originalRequest, ExploreResponse.Builder originalResponse) {
-    // Create a new request copied from the originalRequest but without any group by, order by and
-    // set
-    // includeRestGroup set to
-    // false. This way we create a query with the same conditions as the original request.
-    ExploreRequest.Builder requestBuilder =
-        ExploreRequest.newBuilder(originalRequest)
-            .clearGroupBy() // Remove groupBy
-            .clearOrderBy() // Remove orderBy
-            .setIncludeRestGroup(false) // Set includeRestGroup to false.
-            .setOffset(0); // No offset
+    ExploreRequest.Builder requestBuilder = createTotalRequest(originalRequest);
 
     // Create a filter to exclude the values in the the groups found in the original request.
     Filter.Builder excludedGroupsFilter =
@@ -107,6 +194,99 @@ class TheRestGroupRequestHandler {
     return requestBuilder.build();
   }
 
+  private ExploreRequest.Builder createTotalRequest(ExploreRequest originalRequest) {
+    // Create a new request copied from the originalRequest but without any group by, order by and
+    // offset, and with includeRestGroup set to false. This way we create a query with the same
+    // conditions as the original request.
+    return ExploreRequest.newBuilder(originalRequest)
+        .clearGroupBy() // Remove groupBy
+        .clearOrderBy() // Remove orderBy
+        .setIncludeRestGroup(false) // Set includeRestGroup to false.
+        .setOffset(0); // No offset
+  }
+
+  /**
+   * Time series are not computed by subtraction, since the found groups may not have a row in
+   * every time bucket of the response. Neither are groups of multi-valued attributes, since a row
+   * is then counted in each of its groups.
+   */
+  private boolean hasOnlyAdditiveAggregations(
+      ExploreRequestContext context, ExploreRequest originalRequest) {
+    return originalRequest.getGroupByCount() > 0
+        && originalRequest.getTimeAggregationCount() == 0
+        && originalRequest.getSelectionCount() > 0
+        && originalRequest.getSelectionList().stream()
+            .allMatch(
+                selection ->
+                    selection.hasFunction()
+                        && ADDITIVE_FUNCTIONS.contains(selection.getFunction().getFunction()))
+        && !hasMultiValuedGroupBy(context, originalRequest);
+  }
+
+  /** Attributes without metadata are taken to be multi-valued */
+  private boolean hasMultiValuedGroupBy(
+      ExploreRequestContext context, ExploreRequest originalRequest) {
+    Map<String, AttributeMetadata> attributeMetadataMap =
+        attributeMetadataProvider.getAttributesMetadata(context, originalRequest.getContext());
+    return originalRequest.getGroupByList().stream()
+        .map(ExpressionReader::getAttributeIdFromAttributeSelection)
+        .map(attributeId -> attributeId.map(attributeMetadataMap::get))
+        .anyMatch(
+            attributeMetadata ->
+                attributeMetadata.isEmpty()
+                    || MULTI_VALUED_KINDS.contains(attributeMetadata.get().getValueKind()));
+  }
+
+  /**
+   * Subtracts the aggregations of the found groups from those of the total. Returns nothing if an
+   * aggregation is not a number, in which case the rest group has to be queried.
+   */
+  private Optional<ExploreResponse.Builder> subtractFoundGroups(
+      ExploreRequest originalRequest,
+      ExploreResponse.Builder totalResponse,
+      ExploreResponse.Builder originalResponse) {
+    ExploreResponse.Builder theRestGroupResponse = ExploreResponse.newBuilder();
+    for (Row.Builder totalRow : totalResponse.getRowBuilderList()) {
+      Row.Builder theRestRow = totalRow.clone();
+      for (Expression selection : originalRequest.getSelectionList()) {
+        String resultName = ExpressionReader.getSelectionResultName(selection).orElseThrow();
+        Value total = totalRow.getColumnsMap().get(resultName);
+        if (total == null) {
+          continue;
+        }
+        Optional<Value> theRest = Optional.of(total);
+        for (Row.Builder foundGroupRow : originalResponse.getRowBuilderList()) {
+          Value foundGroupValue = foundGroupRow.getColumnsMap().get(resultName);
+          if (foundGroupValue != null) {
+            theRest = theRest.flatMap(value -> subtract(value, foundGroupValue));
+          }
+        }
+        if (theRest.isEmpty()) {
+          return Optional.empty();
+        }
+        theRestRow.putColumns(resultName, theRest.get());
+      }
+      theRestGroupResponse.addRow(theRestRow);
+    }
+    return Optional.of(theRestGroupResponse);
+  }
+
+  private Optional<Value> subtract(Value value, Value subtrahend) {
+    if (value.getValueType() != subtrahend.getValueType()) {
+      return Optional.empty();
+    }
+    switch (value.getValueType()) {
+      case LONG:
+        return Optional.of(
+            value.toBuilder().setLong(value.getLong() - subtrahend.getLong()).build());
+      case DOUBLE:
+        return Optional.of(
+            value.toBuilder().setDouble(value.getDouble() - subtrahend.getDouble()).build());
+      default:
+        return Optional.empty();
+    }
+  }
+
   /**
    * Returns a filter that will exclude all the found group values in the request for the "The
    * Rest". If the request contains only one group, then we will use a "NOT_IN" group values list
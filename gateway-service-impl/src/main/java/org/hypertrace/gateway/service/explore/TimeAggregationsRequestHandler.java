@@ -7,6 +7,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.hypertrace.core.query.service.api.ColumnMetadata;
 import org.hypertrace.core.query.service.api.QueryRequest;
 import org.hypertrace.core.query.service.api.ResultSetMetadata;
@@ -14,10 +17,13 @@ import org.hypertrace.core.query.service.api.Row;
 import org.hypertrace.core.query.service.api.Value;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.util.AttributeMetadataUtil;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.common.OrderByExpression;
 import org.hypertrace.gateway.service.v1.common.Period;
 import org.hypertrace.gateway.service.v1.common.SortOrder;
@@ -32,11 +38,74 @@ import org.slf4j.LoggerFactory;
 public class TimeAggregationsRequestHandler extends RequestHandler {
   private static final Logger LOG = LoggerFactory.getLogger(TimeAggregationsRequestHandler.class);
 
+  private final QueryLimitPlanner queryLimitPlanner;
+  private final TimeSeriesCache<org.hypertrace.gateway.service.v1.common.Row> timeSeriesCache;
+
   TimeAggregationsRequestHandler(
       QueryServiceClient queryServiceClient,
       int qsRequestTimeout,
-      AttributeMetadataProvider attributeMetadataProvider) {
-    super(queryServiceClient, qsRequestTimeout, attributeMetadataProvider);
+      AttributeMetadataProvider attributeMetadataProvider,
+      Executor queryServiceExecutor,
+      RestGroupConfig restGroupConfig,
+      QueryLimitPlanner queryLimitPlanner,
+      TimeSeriesCache<org.hypertrace.gateway.service.v1.common.Row> timeSeriesCache) {
+    super(
+        queryServiceClient,
+        qsRequestTimeout,
+        attributeMetadataProvider,
+        queryServiceExecutor,
+        restGroupConfig,
+        queryLimitPlanner);
+    this.queryLimitPlanner = queryLimitPlanner;
+    this.timeSeriesCache = timeSeriesCache;
+  }
+
+  /**
+   * With the time series cache enabled, only the time buckets that are not cached are queried, and
+   * the rows of the cached buckets are added to them before sorting and paginating. The rest group
+   * is computed from the whole time range, so requests including it are not cached.
+   */
+  @Override
+  public ExploreResponse.Builder handleRequest(
+      ExploreRequestContext requestContext, ExploreRequest request) {
+    if (!timeSeriesCache.isEnabled() || request.getIncludeRestGroup()) {
+      return super.handleRequest(requestContext, request);
+    }
+    requestContext.setHasGroupBy(true);
+    requestContext.setOrderByExpressions(getRequestOrderByExpressions(request));
+
+    ExploreRequest alignedRequest = createPeriodBoundaryAlignedExploreRequest(request);
+    long periodMillis =
+        TimeUnit.SECONDS.toMillis(
+            getPeriodSecsFromTimeAggregations(request.getTimeAggregationList()));
+    // Everything but the time range decides the rows, the period is part of the time aggregations.
+    // The request headers are part of the key, so that rows are only shared between callers with
+    // the same identity and authorization.
+    ExploreRequest seriesRequest =
+        alignedRequest.toBuilder().clearStartTimeMillis().clearEndTimeMillis().build();
+    List<org.hypertrace.gateway.service.v1.common.Row> rows =
+        timeSeriesCache.getSeries(
+            List.of(requestContext.getTenantId(), requestContext.getHeaders(), seriesRequest),
+            alignedRequest.getStartTimeMillis(),
+            alignedRequest.getEndTimeMillis(),
+            periodMillis,
+            row -> row.getColumnsOrThrow(ColumnName.INTERVAL_START_TIME.name()).getLong(),
+            (startTimeMillis, endTimeMillis) ->
+                fetchRows(
+                        requestContext,
+                        alignedRequest.toBuilder()
+                            .setStartTimeMillis(startTimeMillis)
+                            .setEndTimeMillis(endTimeMillis)
+                            .build())
+                    .getRowList());
+
+    ExploreResponse.Builder builder = ExploreResponse.newBuilder().addAllRow(rows);
+    sortAndPaginatePostProcess(
+        builder,
+        requestContext.getOrderByExpressions(),
+        requestContext.getRowLimitBeforeRest(),
+        requestContext.getOffset());
+    return builder;
   }
 
   @Override
@@ -66,9 +135,20 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
     // Scale the limit size based on the limit so that we have a better chance of capturing all the
     // results within the
     // time range. This is especially important when the actual Group By list is not empty.
-    builder.setLimit(
+    // When the number of groups is known, the limit is planned from the groups and time buckets,
+    // and the scaled limit is only used if the query returns as many rows as the planned limit.
+    int defaultLimit =
         Math.min(request.getLimit(), 1000)
-            * QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT);
+            * QueryServiceClient.DEFAULT_QUERY_SERVICE_GROUP_BY_LIMIT;
+    long bucketCount =
+        QueryLimitPlanner.getBucketCount(
+            request.getStartTimeMillis(),
+            request.getEndTimeMillis(),
+            getPeriodSecsFromTimeAggregations(request.getTimeAggregationList()));
+    builder.setLimit(
+        queryLimitPlanner.planLimit(
+            getGroupCount(request), bucketCount, request.getGroupByCount(), defaultLimit));
+    requestContext.setQueryServiceDefaultLimit(defaultLimit);
     requestContext.setOrderByExpressions(getRequestOrderByExpressions(request));
 
     return builder.build();
@@ -169,6 +249,17 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
         .build();
   }
 
+  /**
+   * Returns the number of groups of the time series: a single one without group by, else the group
+   * limit, or the limit of requests without a group limit.
+   */
+  private long getGroupCount(ExploreRequest request) {
+    if (request.getGroupByCount() == 0) {
+      return 1;
+    }
+    return request.getGroupLimit() > 0 ? request.getGroupLimit() : request.getLimit();
+  }
+
   private long getPeriodSecsFromTimeAggregations(List<TimeAggregation> timeAggregations) {
     // Get period - all the time aggregations should have the same period.
     Period period = timeAggregations.stream().findFirst().orElseThrow().getPeriod();
@@ -180,7 +271,7 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
   protected void handleQueryServiceResponseSingleRow(
       Row row,
       ResultSetMetadata resultSetMetadata,
-      ExploreResponse.Builder builder,
+      Consumer<org.hypertrace.gateway.service.v1.common.Row.Builder> rowConsumer,
       ExploreRequestContext requestContext,
       AttributeMetadataProvider attributeMetadataProvider) {
     var rowBuilder = org.hypertrace.gateway.service.v1.common.Row.newBuilder();
@@ -205,7 +296,7 @@ public class TimeAggregationsRequestHandler extends RequestHandler {
           requestContext,
           attributeMetadataProvider);
     }
-    builder.addRow(rowBuilder);
+    rowConsumer.accept(rowBuilder);
   }
 
   @Override
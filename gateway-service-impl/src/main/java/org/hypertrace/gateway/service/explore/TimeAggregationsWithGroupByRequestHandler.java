@@ -1,10 +1,29 @@
 package org.hypertrace.gateway.service.explore;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import io.micrometer.core.instrument.Counter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
 import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.common.util.FutureUtil;
+import org.hypertrace.gateway.service.explore.config.PipeliningConfig;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
@@ -18,16 +37,65 @@ public class TimeAggregationsWithGroupByRequestHandler implements IRequestHandle
 
   private final RequestHandler normalRequestHandler;
   private final TimeAggregationsRequestHandler timeAggregationsRequestHandler;
+  private final Executor queryServiceExecutor;
+  private final PipeliningConfig pipeliningConfig;
+  // The last groups found by each request, set when speculation is enabled
+  private final Cache<List<Object>, ExploreResponse> predictedGroups;
+  private final Counter speculationHitCounter;
+  private final Counter speculationMissCounter;
 
   TimeAggregationsWithGroupByRequestHandler(
       QueryServiceClient queryServiceClient,
       int requestTimeout,
-      AttributeMetadataProvider attributeMetadataProvider) {
-    this.normalRequestHandler =
-        new RequestHandler(queryServiceClient, requestTimeout, attributeMetadataProvider);
-    this.timeAggregationsRequestHandler =
+      AttributeMetadataProvider attributeMetadataProvider,
+      Executor queryServiceExecutor,
+      RestGroupConfig restGroupConfig,
+      PipeliningConfig pipeliningConfig,
+      QueryLimitPlanner queryLimitPlanner,
+      TimeSeriesCache<org.hypertrace.gateway.service.v1.common.Row> timeSeriesCache) {
+    this(
+        new RequestHandler(
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            queryServiceExecutor,
+            restGroupConfig,
+            queryLimitPlanner),
         new TimeAggregationsRequestHandler(
-            queryServiceClient, requestTimeout, attributeMetadataProvider);
+            queryServiceClient,
+            requestTimeout,
+            attributeMetadataProvider,
+            queryServiceExecutor,
+            restGroupConfig,
+            queryLimitPlanner,
+            timeSeriesCache),
+        queryServiceExecutor,
+        pipeliningConfig);
+  }
+
+  @VisibleForTesting
+  TimeAggregationsWithGroupByRequestHandler(
+      RequestHandler normalRequestHandler,
+      TimeAggregationsRequestHandler timeAggregationsRequestHandler,
+      Executor queryServiceExecutor,
+      PipeliningConfig pipeliningConfig) {
+    this.normalRequestHandler = normalRequestHandler;
+    this.timeAggregationsRequestHandler = timeAggregationsRequestHandler;
+    this.queryServiceExecutor = queryServiceExecutor;
+    this.pipeliningConfig = pipeliningConfig;
+    this.predictedGroups =
+        pipeliningConfig.isSpeculationEnabled()
+            ? CacheBuilder.newBuilder()
+                .maximumSize(pipeliningConfig.getSpeculationMaxSize())
+                .expireAfterAccess(pipeliningConfig.getSpeculationExpiryMinutes(), TimeUnit.MINUTES)
+                .build()
+            : null;
+    this.speculationHitCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.explore.speculative.series.hit", ImmutableMap.of());
+    this.speculationMissCounter =
+        PlatformMetricsRegistry.registerCounter(
+            "hypertrace.explore.speculative.series.miss", ImmutableMap.of());
   }
 
   @Override
@@ -35,37 +103,161 @@ public class TimeAggregationsWithGroupByRequestHandler implements IRequestHandle
       ExploreRequestContext requestContext, ExploreRequest request) {
     // This type of handler is always a group by
     requestContext.setHasGroupBy(true);
-    // 1. Create a GroupBy request and get the response for the GroupBy
+    // 1. Create a GroupBy request and get the response for the GroupBy. If the groups the request
+    // found the last time are known, the time series of those groups are queried meanwhile
     ExploreRequest groupByRequest = buildGroupByRequest(request);
     ExploreRequestContext groupByRequestContext =
         new ExploreRequestContext(
             requestContext.getTenantId(), groupByRequest, requestContext.getHeaders());
-    ExploreResponse.Builder groupByResponse =
-        normalRequestHandler.handleRequest(groupByRequestContext, groupByRequest);
+    Optional<SpeculativeSeries> speculativeSeries =
+        startSpeculativeSeries(requestContext, request, groupByRequest);
+    ExploreResponse.Builder groupByResponse;
+    try {
+      groupByResponse = normalRequestHandler.handleRequest(groupByRequestContext, groupByRequest);
+    } catch (RuntimeException e) {
+      speculativeSeries.ifPresent(series -> series.future.cancel(true));
+      throw e;
+    }
+    if (predictedGroups != null) {
+      predictedGroups.put(
+          getPredictedGroupsKey(requestContext, groupByRequest), groupByResponse.build());
+    }
 
     // No need for a second query if no results.
     if (groupByResponse.getRowBuilderList().isEmpty()) {
+      speculativeSeries.ifPresent(series -> series.future.cancel(true));
       return ExploreResponse.newBuilder();
     }
 
-    // 2. Create a Time Aggregations request for the groups found in the request above. This will be
+    // 2. If includeRestGroup is set, query the rest group, which only needs the groups found above,
+    // at the same time as the time series
+    Optional<CompletableFuture<ExploreResponse.Builder>> theRestGroupFuture =
+        request.getIncludeRestGroup() && pipeliningConfig.isEnabled()
+            ? Optional.of(
+                CompletableFuture.supplyAsync(
+                    () ->
+                        getTheRestGroupRequestHandler()
+                            .queryTheRestGroup(requestContext, request, groupByResponse),
+                    queryServiceExecutor))
+            : Optional.empty();
+
+    // 3. Create a Time Aggregations request for the groups found in the request above. This will be
     // the actual query response
-    ExploreRequest timeAggregationsRequest = buildTimeAggregationsRequest(request, groupByResponse);
+    ExploreResponse.Builder timeAggregationsResponse;
+    try {
+      timeAggregationsResponse =
+          getTimeAggregationsResponse(requestContext, request, groupByResponse, speculativeSeries);
+    } catch (RuntimeException e) {
+      theRestGroupFuture.ifPresent(future -> future.cancel(true));
+      throw e;
+    }
+
+    // 4. If includeRestGroup is set, merge in the rest group, or invoke TheRestGroupRequestHandler
+    if (theRestGroupFuture.isPresent()) {
+      // Return if there was no data in the time series, as TheRestGroupRequestHandler does
+      if (timeAggregationsResponse.getRowBuilderList().isEmpty()) {
+        theRestGroupFuture.get().cancel(true);
+      } else if (!getFoundGroups(request, timeAggregationsResponse)
+          .equals(getFoundGroups(request, groupByResponse))) {
+        // The rest group excludes the groups of the time series rows, which may be fewer than the
+        // found groups once paginated, so it is queried again for those
+        theRestGroupFuture.get().cancel(true);
+        getTheRestGroupRequestHandler()
+            .getRowsForTheRestGroup(requestContext, request, timeAggregationsResponse);
+      } else {
+        getTheRestGroupRequestHandler()
+            .mergeTheRestGroup(
+                requestContext,
+                request,
+                timeAggregationsResponse,
+                FutureUtil.await(theRestGroupFuture.get()));
+      }
+    } else if (request.getIncludeRestGroup()) {
+      getTheRestGroupRequestHandler()
+          .getRowsForTheRestGroup(requestContext, request, timeAggregationsResponse);
+    }
+
+    return timeAggregationsResponse;
+  }
+
+  private TheRestGroupRequestHandler getTheRestGroupRequestHandler() {
+    return timeAggregationsRequestHandler.getTheRestGroupRequestHandler();
+  }
+
+  /**
+   * Starts querying the time series of the groups the request found the last time, if speculation
+   * is enabled and those groups are known
+   */
+  private Optional<SpeculativeSeries> startSpeculativeSeries(
+      ExploreRequestContext requestContext, ExploreRequest request, ExploreRequest groupByRequest) {
+    if (predictedGroups == null) {
+      return Optional.empty();
+    }
+    ExploreResponse predictedGroupByResponse =
+        predictedGroups.getIfPresent(getPredictedGroupsKey(requestContext, groupByRequest));
+    if (predictedGroupByResponse == null || predictedGroupByResponse.getRowCount() == 0) {
+      return Optional.empty();
+    }
+    ExploreResponse.Builder predictedGroupByResponseBuilder = predictedGroupByResponse.toBuilder();
+    ExploreRequest timeAggregationsRequest =
+        buildTimeAggregationsRequest(request, predictedGroupByResponseBuilder);
     ExploreRequestContext timeAggregationsRequestContext =
         new ExploreRequestContext(
             requestContext.getTenantId(), timeAggregationsRequest, requestContext.getHeaders());
-    ExploreResponse.Builder timeAggregationsResponse =
-        timeAggregationsRequestHandler.handleRequest(
-            timeAggregationsRequestContext, timeAggregationsRequest);
-
-    // 3. If includeRestGroup is set, invoke TheRestGroupRequestHandler
-    if (request.getIncludeRestGroup()) {
-      timeAggregationsRequestHandler
-          .getTheRestGroupRequestHandler()
-          .getRowsForTheRestGroup(requestContext, request, timeAggregationsResponse);
+    return Optional.of(
+        new SpeculativeSeries(
+            getFoundGroups(request, predictedGroupByResponseBuilder),
+            CompletableFuture.supplyAsync(
+                () ->
+                    timeAggregationsRequestHandler.handleRequest(
+                        timeAggregationsRequestContext, timeAggregationsRequest),
+                queryServiceExecutor)));
+  }
+
+  /**
+   * Returns the speculatively queried time series if they are of the found groups, and otherwise
+   * queries the time series of the found groups
+   */
+  private ExploreResponse.Builder getTimeAggregationsResponse(
+      ExploreRequestContext requestContext,
+      ExploreRequest request,
+      ExploreResponse.Builder groupByResponse,
+      Optional<SpeculativeSeries> speculativeSeries) {
+    if (speculativeSeries.isPresent()) {
+      if (speculativeSeries.get().groups.equals(getFoundGroups(request, groupByResponse))) {
+        speculationHitCounter.increment();
+        return FutureUtil.await(speculativeSeries.get().future);
+      }
+      speculationMissCounter.increment();
+      speculativeSeries.get().future.cancel(true);
     }
 
-    return timeAggregationsResponse;
+    ExploreRequest timeAggregationsRequest = buildTimeAggregationsRequest(request, groupByResponse);
+    ExploreRequestContext timeAggregationsRequestContext =
+        new ExploreRequestContext(
+            requestContext.getTenantId(), timeAggregationsRequest, requestContext.getHeaders());
+    return timeAggregationsRequestHandler.handleRequest(
+        timeAggregationsRequestContext, timeAggregationsRequest);
+  }
+
+  /** The group by request is keyed without its time range, as it slides between refreshes */
+  private List<Object> getPredictedGroupsKey(
+      ExploreRequestContext requestContext, ExploreRequest groupByRequest) {
+    return List.of(
+        requestContext.getTenantId(),
+        groupByRequest.toBuilder().clearStartTimeMillis().clearEndTimeMillis().build());
+  }
+
+  /** The values of each group by, which decide the time aggregations request */
+  private Map<String, Set<String>> getFoundGroups(
+      ExploreRequest originalRequest, ExploreResponse.Builder groupByResponse) {
+    return originalRequest.getGroupByList().stream()
+        .map(groupBy -> ExpressionReader.getSelectionResultName(groupBy).orElseThrow())
+        .distinct()
+        .collect(
+            Collectors.toUnmodifiableMap(
+                Function.identity(),
+                groupByResultName -> getInClauseValues(groupByResultName, groupByResponse)));
   }
 
   private ExploreRequest buildGroupByRequest(ExploreRequest originalRequest) {
@@ -146,4 +338,15 @@ public class TimeAggregationsWithGroupByRequestHandler implements IRequestHandle
                                 .setValueType(ValueType.STRING_ARRAY)
                                 .addAllStringArray(inClauseValues))));
   }
+
+  private static class SpeculativeSeries {
+    private final Map<String, Set<String>> groups;
+    private final CompletableFuture<ExploreResponse.Builder> future;
+
+    private SpeculativeSeries(
+        Map<String, Set<String>> groups, CompletableFuture<ExploreResponse.Builder> future) {
+      this.groups = groups;
+      this.future = future;
+    }
+  }
 }
@@ -0,0 +1,170 @@
+package org.hypertrace.gateway.service.explore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.common.comparators.ValueComparator;
+import org.hypertrace.gateway.service.common.util.BoundedHeap;
+import org.hypertrace.gateway.service.common.util.DataCollectionUtil;
+import org.hypertrace.gateway.service.common.util.ExpressionReader;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.SortOrder;
+import org.hypertrace.gateway.service.v1.common.Value;
+
+/**
+ * Collects the page of rows that sorting by the order by expressions and then applying the offset
+ * and limit would return, as the rows are read. With a limit, only the first offset + limit rows
+ * are kept, in a bounded heap, instead of keeping and sorting all the rows the query service
+ * returned for a group by. Rows comparing equal keep the order they were added in, as they would
+ * with {@link RowComparator} and a stable sort.
+ *
+ * <p>The values of a row that are sorted on are read from its columns once, when the row is added,
+ * rather than on every comparison.
+ */
+class TopRowsCollector {
+  private final List<String> sortColumnNames;
+  private final int[] directions;
+  private final int limit;
+  private final int offset;
+  private final BoundedHeap<SortedRow> heap;
+  private final List<SortedRow> sortedRows;
+  private final List<Row.Builder> unsortedRows;
+  private int skippedRowCount;
+
+  TopRowsCollector(List<OrderByExpression> orderByExpressions, int limit, int offset) {
+    this.sortColumnNames =
+        orderByExpressions.stream()
+            .map(TopRowsCollector::getSortColumnName)
+            .collect(Collectors.toUnmodifiableList());
+    this.directions =
+        orderByExpressions.stream()
+            .mapToInt(orderBy -> orderBy.getOrder() == SortOrder.ASC ? 1 : -1)
+            .toArray();
+    this.limit = limit;
+    this.offset = Math.max(offset, 0);
+    boolean sorted = !orderByExpressions.isEmpty();
+    this.heap =
+        sorted && limit > 0
+            ? new BoundedHeap<>(
+                (int) Math.min(Integer.MAX_VALUE, (long) this.offset + limit),
+                Comparator.naturalOrder())
+            : null;
+    this.sortedRows = sorted && limit <= 0 ? new ArrayList<>() : null;
+    this.unsortedRows = sorted ? null : new ArrayList<>();
+  }
+
+  void add(Row.Builder row) {
+    if (heap != null) {
+      heap.add(new SortedRow(row));
+    } else if (sortedRows != null) {
+      sortedRows.add(new SortedRow(row));
+    } else if (skippedRowCount < offset) {
+      // Without ordering, the page is the rows in the order they were read
+      skippedRowCount++;
+    } else if (limit <= 0 || unsortedRows.size() < limit) {
+      unsortedRows.add(row);
+    }
+  }
+
+  /** Returns the collected page of rows, in order */
+  List<Row.Builder> getRows() {
+    if (unsortedRows != null) {
+      return unsortedRows;
+    }
+    List<SortedRow> rows;
+    if (heap != null) {
+      rows = heap.sorted();
+    } else {
+      rows = sortedRows;
+      rows.sort(Comparator.naturalOrder());
+    }
+    return DataCollectionUtil.paginateAndLimit(rows, limit, offset).stream()
+        .map(sortedRow -> sortedRow.row)
+        .collect(Collectors.toList());
+  }
+
+  private static String getSortColumnName(OrderByExpression orderBy) {
+    switch (orderBy.getExpression().getValueCase()) {
+      case FUNCTION:
+      case COLUMNIDENTIFIER:
+      case ATTRIBUTE_EXPRESSION:
+        return ExpressionReader.getSelectionResultName(orderBy.getExpression()).orElseThrow();
+      default:
+        throw new IllegalArgumentException(
+            "Invalid orderBy: " + orderBy.getExpression().getValueCase());
+    }
+  }
+
+  /**
+   * A row with the values it is sorted on. Numbers and strings are compared directly, other values
+   * and values of different types are compared with {@link ValueComparator}.
+   */
+  private class SortedRow implements Comparable<SortedRow> {
+    private final Row.Builder row;
+    private final Value[] values;
+    private final long[] longs;
+    private final double[] doubles;
+
+    private SortedRow(Row.Builder row) {
+      this.row = row;
+      int sortColumnCount = sortColumnNames.size();
+      this.values = new Value[sortColumnCount];
+      this.longs = new long[sortColumnCount];
+      this.doubles = new double[sortColumnCount];
+      for (int i = 0; i < sortColumnCount; i++) {
+        Value value = row.getColumnsOrDefault(sortColumnNames.get(i), null);
+        values[i] = value;
+        if (value == null) {
+          continue;
+        }
+        switch (value.getValueType()) {
+          case LONG:
+            longs[i] = value.getLong();
+            break;
+          case TIMESTAMP:
+            longs[i] = value.getTimestamp();
+            break;
+          case DOUBLE:
+            doubles[i] = value.getDouble();
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    @Override
+    public int compareTo(SortedRow other) {
+      for (int i = 0; i < directions.length; i++) {
+        int result = compare(other, i);
+        if (result != 0) {
+          return directions[i] * result;
+        }
+      }
+      return 0;
+    }
+
+    private int compare(SortedRow other, int index) {
+      Value value = values[index];
+      Value otherValue = other.values[index];
+      if (value == null
+          || otherValue == null
+          || value.getValueType() != otherValue.getValueType()) {
+        return ValueComparator.compare(value, otherValue);
+      }
+      switch (value.getValueType()) {
+        case LONG:
+        case TIMESTAMP:
+          return Long.compare(longs[index], other.longs[index]);
+        case DOUBLE:
+          return Double.compare(doubles[index], other.doubles[index]);
+        case STRING:
+          return value.getString().compareTo(otherValue.getString());
+        default:
+          return ValueComparator.compare(value, otherValue);
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.hypertrace.gateway.service.explore.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for overlapping the queries of grouped time series explore requests */
+public class PipeliningConfig {
+  private static final String PIPELINING_CONFIG = "explore.service.pipelining.config";
+  private static final String ENABLED = "enabled";
+  private static final String SPECULATION_ENABLED = "speculation.enabled";
+  private static final String SPECULATION_MAX_SIZE = "speculation.max.size";
+  private static final String SPECULATION_EXPIRY_MINUTES = "speculation.expiry.minutes";
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final boolean DEFAULT_SPECULATION_ENABLED = false;
+  private static final long DEFAULT_SPECULATION_MAX_SIZE = 10000L;
+  private static final long DEFAULT_SPECULATION_EXPIRY_MINUTES = 10L;
+  private final boolean enabled;
+  private final boolean speculationEnabled;
+  private final long speculationMaxSize;
+  private final long speculationExpiryMinutes;
+
+  public PipeliningConfig(Config appConfig) {
+    Config pipeliningConfig =
+        appConfig.hasPath(PIPELINING_CONFIG)
+            ? appConfig.getConfig(PIPELINING_CONFIG)
+            : ConfigFactory.empty();
+
+    this.enabled =
+        pipeliningConfig.hasPath(ENABLED) ? pipeliningConfig.getBoolean(ENABLED) : DEFAULT_ENABLED;
+    this.speculationEnabled =
+        pipeliningConfig.hasPath(SPECULATION_ENABLED)
+            ? pipeliningConfig.getBoolean(SPECULATION_ENABLED)
+            : DEFAULT_SPECULATION_ENABLED;
+    this.speculationMaxSize =
+        pipeliningConfig.hasPath(SPECULATION_MAX_SIZE)
+            ? pipeliningConfig.getLong(SPECULATION_MAX_SIZE)
+            : DEFAULT_SPECULATION_MAX_SIZE;
+    this.speculationExpiryMinutes =
+        pipeliningConfig.hasPath(SPECULATION_EXPIRY_MINUTES)
+            ? pipeliningConfig.getLong(SPECULATION_EXPIRY_MINUTES)
+            : DEFAULT_SPECULATION_EXPIRY_MINUTES;
+  }
+
+  /** Whether the rest group is queried at the same time as the time series of the found groups */
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Whether the time series are queried at the same time as the groups, for the groups the same
+   * request found the last time. The series are queried again if the groups turn out different.
+   */
+  public boolean isSpeculationEnabled() {
+    return this.speculationEnabled;
+  }
+
+  /** Maximum number of requests whose last found groups are kept */
+  public long getSpeculationMaxSize() {
+    return this.speculationMaxSize;
+  }
+
+  /** How long the last found groups of a request are kept after it was last made */
+  public long getSpeculationExpiryMinutes() {
+    return this.speculationExpiryMinutes;
+  }
+}
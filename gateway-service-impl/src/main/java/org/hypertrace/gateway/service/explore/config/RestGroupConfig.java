@@ -0,0 +1,33 @@
+package org.hypertrace.gateway.service.explore.config;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/** Configuration for computing the rest group of explore requests */
+public class RestGroupConfig {
+  private static final String REST_GROUP_CONFIG = "explore.service.rest.group.config";
+  private static final String SUBTRACTION_ENABLED = "subtraction.enabled";
+  private static final boolean DEFAULT_SUBTRACTION_ENABLED = false;
+  private final boolean subtractionEnabled;
+
+  public RestGroupConfig(Config appConfig) {
+    Config restGroupConfig =
+        appConfig.hasPath(REST_GROUP_CONFIG)
+            ? appConfig.getConfig(REST_GROUP_CONFIG)
+            : ConfigFactory.empty();
+
+    this.subtractionEnabled =
+        restGroupConfig.hasPath(SUBTRACTION_ENABLED)
+            ? restGroupConfig.getBoolean(SUBTRACTION_ENABLED)
+            : DEFAULT_SUBTRACTION_ENABLED;
+  }
+
+  /**
+   * Whether the rest group of requests selecting only SUM and COUNT aggregations is computed by
+   * subtracting the found groups from the total, which is queried at the same time as the groups.
+   * Groups of multi-valued attributes are never computed this way.
+   */
+  public boolean isSubtractionEnabled() {
+    return this.subtractionEnabled;
+  }
+}
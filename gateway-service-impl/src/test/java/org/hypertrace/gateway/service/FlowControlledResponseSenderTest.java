@@ -0,0 +1,65 @@
+package org.hypertrace.gateway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class FlowControlledResponseSenderTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSendsOnlyOnceTheCallIsReady() throws Exception {
+    ServerCallStreamObserver<String> observer = mock(ServerCallStreamObserver.class);
+    AtomicBoolean ready = new AtomicBoolean(false);
+    when(observer.isReady()).thenAnswer(invocation -> ready.get());
+    FlowControlledResponseSender<String> sender = new FlowControlledResponseSender<>(observer);
+    ArgumentCaptor<Runnable> onReadyHandler = ArgumentCaptor.forClass(Runnable.class);
+    verify(observer).setOnReadyHandler(onReadyHandler.capture());
+
+    CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> sender.accept("response"));
+    Thread.sleep(100);
+    verify(observer, never()).onNext(any());
+
+    ready.set(true);
+    onReadyHandler.getValue().run();
+    sent.get(5, TimeUnit.SECONDS);
+    verify(observer).onNext("response");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSendingFailsOnceTheCallIsCancelled() {
+    ServerCallStreamObserver<String> observer = mock(ServerCallStreamObserver.class);
+    FlowControlledResponseSender<String> sender = new FlowControlledResponseSender<>(observer);
+    ArgumentCaptor<Runnable> onCancelHandler = ArgumentCaptor.forClass(Runnable.class);
+    verify(observer).setOnCancelHandler(onCancelHandler.capture());
+
+    onCancelHandler.getValue().run();
+    StatusRuntimeException exception =
+        assertThrows(StatusRuntimeException.class, () -> sender.accept("response"));
+    assertEquals(Status.Code.CANCELLED, exception.getStatus().getCode());
+    verify(observer, never()).onNext(any());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPlainObserverIsSentImmediately() {
+    StreamObserver<String> observer = mock(StreamObserver.class);
+    new FlowControlledResponseSender<>(observer).accept("response");
+    verify(observer).onNext("response");
+  }
+}
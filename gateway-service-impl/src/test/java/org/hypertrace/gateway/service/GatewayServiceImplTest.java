@@ -1,8 +1,19 @@
 package org.hypertrace.gateway.service;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
+import org.hypertrace.gateway.service.v1.entity.EntitiesResponse;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -29,4 +40,41 @@ public class GatewayServiceImplTest {
   public void testServiceImplInitialization() {
     new GatewayServiceImpl(appConfig);
   }
+
+  @Test
+  public void testAsyncRequestHandlingCompletesObserverWithError() throws InterruptedException {
+    Config asyncConfig =
+        ConfigFactory.parseMap(Map.of("execution.pools.config.async.requests.enabled", true))
+            .withFallback(appConfig);
+    GatewayServiceImpl gatewayService = new GatewayServiceImpl(asyncConfig);
+
+    CountDownLatch completed = new CountDownLatch(1);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    StreamObserver<EntitiesResponse> responseObserver =
+        new StreamObserver<>() {
+          @Override
+          public void onNext(EntitiesResponse value) {}
+
+          @Override
+          public void onError(Throwable t) {
+            error.set(t);
+            completed.countDown();
+          }
+
+          @Override
+          public void onCompleted() {
+            completed.countDown();
+          }
+        };
+
+    // An empty request fails validation on the request executor
+    Context.current()
+        .withValue(RequestContext.CURRENT, RequestContext.forTenantId("tenant1"))
+        .run(
+            () ->
+                gatewayService.getEntities(EntitiesRequest.getDefaultInstance(), responseObserver));
+
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+    assertTrue(error.get() instanceof IllegalArgumentException);
+  }
 }
@@ -33,6 +33,7 @@ import org.hypertrace.core.attribute.service.v1.AttributeMetadataFilter;
 import org.hypertrace.core.query.service.api.QueryRequest;
 import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
+import org.hypertrace.gateway.service.common.config.AttributeMetadataCacheConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -106,7 +107,9 @@ public abstract class AbstractServiceTest<
                       .iterator();
                 });
 
-    attributeMetadataProvider = new AttributeMetadataProvider(attributesServiceClient);
+    attributeMetadataProvider =
+        new AttributeMetadataProvider(
+            attributesServiceClient, new AttributeMetadataCacheConfig(ConfigFactory.empty()));
   }
 
   private static List<AttributeMetadata> getAttributes() throws IOException {
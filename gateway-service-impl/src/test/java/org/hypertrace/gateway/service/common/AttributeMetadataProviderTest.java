@@ -1,23 +1,35 @@
 package org.hypertrace.gateway.service.common;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
+import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.hypertrace.core.attribute.service.client.AttributeServiceClient;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadataFilter;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
+import org.hypertrace.gateway.service.common.config.AttributeMetadataCacheConfig;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.stubbing.Answer;
 
 public class AttributeMetadataProviderTest {
+  private static final AttributeMetadataCacheConfig NO_PRELOAD_CACHE_CONFIG =
+      new AttributeMetadataCacheConfig(
+          ConfigFactory.parseMap(Map.of("attribute.metadata.cache.config.preload.enabled", false)));
 
   @Test
   public void testGetAttributeMetadata() {
@@ -48,7 +60,7 @@ public class AttributeMetadataProviderTest {
         .thenAnswer((Answer<Iterator<AttributeMetadata>>) invocation -> attributesList1.iterator());
 
     AttributeMetadataProvider attributeMetadataProvider =
-        new AttributeMetadataProvider(attributesServiceClient);
+        new AttributeMetadataProvider(attributesServiceClient, NO_PRELOAD_CACHE_CONFIG);
 
     RequestContext requestContext1 =
         new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
@@ -87,9 +99,9 @@ public class AttributeMetadataProviderTest {
             .build(),
         attributeMetadata);
 
-    // Since the cache keys on (scope, key), we expect 2 calls to attr svc. One for (Api, name) and
-    // the other for (Api, id)
-    verify(attributesServiceClient, times(2))
+    // Since the cache keys on scope and indexes the scope by key, we expect 1 call to attr svc for
+    // both (Api, name) and (Api, id)
+    verify(attributesServiceClient, times(1))
         .findAttributes(
             eq(Map.of("test-header-key", "test-header-value")),
             eq(
@@ -150,8 +162,8 @@ public class AttributeMetadataProviderTest {
             .build(),
         attributeMetadata);
 
-    // 2 for a different tenant on (Api, id) and (Api, name2)
-    verify(attributesServiceClient, times(2))
+    // 1 for a different tenant on (Api, id) and (Api, name2)
+    verify(attributesServiceClient, times(1))
         .findAttributes(
             eq(Map.of("test-header-key", "test-header-value-2")),
             eq(
@@ -192,7 +204,7 @@ public class AttributeMetadataProviderTest {
         .thenAnswer((Answer<Iterator<AttributeMetadata>>) invocation -> attributesList1.iterator());
 
     AttributeMetadataProvider attributeMetadataProvider =
-        new AttributeMetadataProvider(attributesServiceClient);
+        new AttributeMetadataProvider(attributesServiceClient, NO_PRELOAD_CACHE_CONFIG);
 
     RequestContext requestContext1 =
         new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
@@ -275,4 +287,262 @@ public class AttributeMetadataProviderTest {
                     .addScopeString(AttributeScope.API.name())
                     .build()));
   }
+
+  @Test
+  public void testPreloadAllScopes() {
+    AttributeServiceClient attributesServiceClient = mock(AttributeServiceClient.class);
+    AttributeMetadata apiAttributeMetadata =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiName")
+            .setId("API.apiName")
+            .build();
+    AttributeMetadata serviceAttributeMetadata =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.SERVICE.name())
+            .setKey("name")
+            .setId("SERVICE.name")
+            .build();
+    when(attributesServiceClient.findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(AttributeMetadataFilter.getDefaultInstance())))
+        .thenAnswer(
+            (Answer<Iterator<AttributeMetadata>>)
+                invocation -> List.of(apiAttributeMetadata, serviceAttributeMetadata).iterator());
+    when(attributesServiceClient.findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(
+                AttributeMetadataFilter.newBuilder()
+                    .addScopeString(AttributeScope.BACKEND.name())
+                    .build())))
+        .thenAnswer((Answer<Iterator<AttributeMetadata>>) invocation -> List.of().iterator());
+
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(
+            attributesServiceClient, new AttributeMetadataCacheConfig(ConfigFactory.empty()));
+    RequestContext requestContext =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
+
+    Assertions.assertEquals(
+        Map.of("API.apiName", apiAttributeMetadata),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+    Assertions.assertEquals(
+        serviceAttributeMetadata,
+        attributeMetadataProvider
+            .getAttributeMetadata(requestContext, AttributeScope.SERVICE.name(), "name")
+            .get());
+    // A scope without attributes is loaded on its own
+    Assertions.assertEquals(
+        Map.of(),
+        attributeMetadataProvider.getAttributesMetadata(
+            requestContext, AttributeScope.BACKEND.name()));
+
+    verify(attributesServiceClient, times(1))
+        .findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(AttributeMetadataFilter.getDefaultInstance()));
+    verify(attributesServiceClient, times(0))
+        .findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(
+                AttributeMetadataFilter.newBuilder()
+                    .addScopeString(AttributeScope.API.name())
+                    .build()));
+    verify(attributesServiceClient, times(1))
+        .findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(
+                AttributeMetadataFilter.newBuilder()
+                    .addScopeString(AttributeScope.BACKEND.name())
+                    .build()));
+  }
+
+  @Test
+  public void testFailedPreloadIsRetried() {
+    AttributeServiceClient attributesServiceClient = mock(AttributeServiceClient.class);
+    AttributeMetadata apiAttributeMetadata =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiName")
+            .setId("API.apiName")
+            .build();
+    AttributeMetadata serviceAttributeMetadata =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.SERVICE.name())
+            .setKey("name")
+            .setId("SERVICE.name")
+            .build();
+    when(attributesServiceClient.findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(AttributeMetadataFilter.getDefaultInstance())))
+        .thenThrow(new RuntimeException("Attribute service unavailable"))
+        .thenAnswer(
+            (Answer<Iterator<AttributeMetadata>>)
+                invocation -> List.of(apiAttributeMetadata, serviceAttributeMetadata).iterator());
+    when(attributesServiceClient.findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(
+                AttributeMetadataFilter.newBuilder()
+                    .addScopeString(AttributeScope.API.name())
+                    .build())))
+        .thenAnswer(
+            (Answer<Iterator<AttributeMetadata>>)
+                invocation -> List.of(apiAttributeMetadata).iterator());
+
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(
+            attributesServiceClient, new AttributeMetadataCacheConfig(ConfigFactory.empty()));
+    RequestContext requestContext =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
+
+    // The scope is loaded on its own when the preload fails
+    Assertions.assertEquals(
+        Map.of("API.apiName", apiAttributeMetadata),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+    // The next miss of the tenant preloads again
+    Assertions.assertEquals(
+        Map.of("SERVICE.name", serviceAttributeMetadata),
+        attributeMetadataProvider.getAttributesMetadata(
+            requestContext, AttributeScope.SERVICE.name()));
+
+    verify(attributesServiceClient, times(2))
+        .findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(AttributeMetadataFilter.getDefaultInstance()));
+    verify(attributesServiceClient, times(0))
+        .findAttributes(
+            eq(Map.of("test-header-key", "test-header-value")),
+            eq(
+                AttributeMetadataFilter.newBuilder()
+                    .addScopeString(AttributeScope.SERVICE.name())
+                    .build()));
+  }
+
+  @Test
+  public void testStaleMetadataIsServedWhileRefreshing() {
+    AttributeServiceClient attributesServiceClient = mock(AttributeServiceClient.class);
+    AttributeMetadata attributeMetadata1 =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiName")
+            .setId("API.apiName")
+            .build();
+    AttributeMetadata attributeMetadata2 =
+        attributeMetadata1.toBuilder().setDisplayName("API Name").build();
+    AttributeMetadataFilter apiFilter =
+        AttributeMetadataFilter.newBuilder().addScopeString(AttributeScope.API.name()).build();
+    when(attributesServiceClient.findAttributes(any(), eq(apiFilter)))
+        .thenReturn(List.of(attributeMetadata1).iterator(), List.of(attributeMetadata2).iterator())
+        .thenThrow(new RuntimeException("attribute service is down"))
+        .thenReturn(List.of(attributeMetadata1).iterator());
+
+    AtomicLong nanos = new AtomicLong();
+    AttributeMetadataProvider attributeMetadataProvider =
+        new AttributeMetadataProvider(
+            attributesServiceClient,
+            new AttributeMetadataCacheConfig(
+                ConfigFactory.parseMap(
+                    Map.of(
+                        "attribute.metadata.cache.config.preload.enabled", false,
+                        "attribute.metadata.cache.config.refresh.jitter", 0))),
+            MoreExecutors.directExecutor(),
+            new Ticker() {
+              @Override
+              public long read() {
+                return nanos.get();
+              }
+            });
+    RequestContext requestContext =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
+
+    Assertions.assertEquals(
+        Map.of("API.apiName", attributeMetadata1),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+
+    // Due for a refresh: the stale metadata is returned and the refreshed one afterwards
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(61));
+    Assertions.assertEquals(
+        Map.of("API.apiName", attributeMetadata1),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+    Assertions.assertEquals(
+        Map.of("API.apiName", attributeMetadata2),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+    verify(attributesServiceClient, times(2)).findAttributes(any(), eq(apiFilter));
+
+    // A failed refresh keeps the stale metadata and is retried a bit later
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(61));
+    Assertions.assertEquals(
+        attributeMetadata2,
+        attributeMetadataProvider
+            .getAttributeMetadata(requestContext, AttributeScope.API.name(), "apiName")
+            .get());
+    Assertions.assertEquals(
+        attributeMetadata2,
+        attributeMetadataProvider
+            .getAttributeMetadata(requestContext, AttributeScope.API.name(), "apiName")
+            .get());
+    verify(attributesServiceClient, times(3)).findAttributes(any(), eq(apiFilter));
+
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name());
+    Assertions.assertEquals(
+        Map.of("API.apiName", attributeMetadata1),
+        attributeMetadataProvider.getAttributesMetadata(requestContext, AttributeScope.API.name()));
+    verify(attributesServiceClient, times(4)).findAttributes(any(), eq(apiFilter));
+  }
+
+  @Test
+  public void testSnapshotIsRestoredAndRevalidated(@TempDir Path snapshotDir) {
+    AttributeMetadata attributeMetadata1 =
+        AttributeMetadata.newBuilder()
+            .setScopeString(AttributeScope.API.name())
+            .setKey("apiName")
+            .setId("API.apiName")
+            .build();
+    AttributeMetadata attributeMetadata2 =
+        attributeMetadata1.toBuilder().setDisplayName("API Name").build();
+    AttributeMetadataFilter apiFilter =
+        AttributeMetadataFilter.newBuilder().addScopeString(AttributeScope.API.name()).build();
+    RequestContext requestContext =
+        new RequestContext("test-tenant-id", Map.of("test-header-key", "test-header-value"));
+    AttributeMetadataSnapshotStore snapshotStore =
+        new AttributeMetadataSnapshotStore(snapshotDir.resolve("attributes.snapshot"));
+
+    AttributeServiceClient attributesServiceClient1 = mock(AttributeServiceClient.class);
+    when(attributesServiceClient1.findAttributes(any(), eq(apiFilter)))
+        .thenReturn(List.of(attributeMetadata1).iterator());
+    AttributeMetadataProvider attributeMetadataProvider1 =
+        new AttributeMetadataProvider(
+            attributesServiceClient1,
+            NO_PRELOAD_CACHE_CONFIG,
+            MoreExecutors.directExecutor(),
+            Ticker.systemTicker());
+    attributeMetadataProvider1.getAttributesMetadata(requestContext, AttributeScope.API.name());
+    attributeMetadataProvider1.writeSnapshot(snapshotStore);
+
+    // The restarted provider serves the snapshot and revalidates it in the background
+    AttributeServiceClient attributesServiceClient2 = mock(AttributeServiceClient.class);
+    when(attributesServiceClient2.findAttributes(any(), eq(apiFilter)))
+        .thenReturn(List.of(attributeMetadata2).iterator());
+    AttributeMetadataProvider attributeMetadataProvider2 =
+        new AttributeMetadataProvider(
+            attributesServiceClient2,
+            NO_PRELOAD_CACHE_CONFIG,
+            MoreExecutors.directExecutor(),
+            Ticker.systemTicker());
+    attributeMetadataProvider2.restoreSnapshot(snapshotStore);
+
+    Assertions.assertEquals(
+        attributeMetadata1,
+        attributeMetadataProvider2
+            .getAttributeMetadata(requestContext, AttributeScope.API.name(), "apiName")
+            .get());
+    Assertions.assertEquals(
+        Map.of("API.apiName", attributeMetadata2),
+        attributeMetadataProvider2.getAttributesMetadata(
+            requestContext, AttributeScope.API.name()));
+    // The revalidation uses the headers of the request
+    verify(attributesServiceClient2, times(1))
+        .findAttributes(eq(Map.of("test-header-key", "test-header-value")), eq(apiFilter));
+  }
 }
@@ -0,0 +1,97 @@
+package org.hypertrace.gateway.service.common;
+
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.buildExpression;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeScope;
+import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AttributeMetadataSnapshotTest {
+  private static final String API_SCOPE = AttributeScope.API.name();
+  private static final AttributeMetadata API_ID_METADATA =
+      AttributeMetadata.newBuilder().setScopeString(API_SCOPE).setKey("id").setId("API.id").build();
+  private static final AttributeMetadata API_START_TIME_METADATA =
+      AttributeMetadata.newBuilder()
+          .setScopeString(API_SCOPE)
+          .setKey("startTime")
+          .setId("API.startTime")
+          .build();
+
+  private AttributeMetadataProvider attributeMetadataProvider;
+  private AttributeMetadataSnapshot attributeMetadataSnapshot;
+
+  @BeforeEach
+  public void setup() {
+    attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    when(attributeMetadataProvider.getAttributesMetadata(any(), eq(API_SCOPE)))
+        .thenReturn(Map.of("API.id", API_ID_METADATA, "API.startTime", API_START_TIME_METADATA));
+    when(attributeMetadataProvider.getAttributeMetadata(any(), eq(API_SCOPE), eq("id")))
+        .thenReturn(Optional.of(API_ID_METADATA));
+    when(attributeMetadataProvider.getAttributeMetadata(any(), eq(API_SCOPE), eq("startTime")))
+        .thenReturn(Optional.of(API_START_TIME_METADATA));
+    attributeMetadataSnapshot =
+        new AttributeMetadataSnapshot(
+            attributeMetadataProvider,
+            new EntityIdColumnsConfigs(Map.of(API_SCOPE, "id")),
+            new RequestContext("tenant1", Map.of()));
+  }
+
+  @Test
+  public void testMetadataIsLookedUpOnce() {
+    for (int i = 0; i < 3; i++) {
+      assertEquals(2, attributeMetadataSnapshot.getAttributesMetadata(API_SCOPE).size());
+      assertEquals(List.of("API.id"), attributeMetadataSnapshot.getIdAttributeIds(API_SCOPE));
+      assertEquals("API.startTime", attributeMetadataSnapshot.getTimestampAttributeId(API_SCOPE));
+      assertEquals(
+          Map.of("API.id", API_ID_METADATA),
+          attributeMetadataSnapshot.remapAttributeMetadataByResultKey(
+              API_SCOPE, List.of(buildExpression("API.id"))));
+    }
+
+    verify(attributeMetadataProvider, times(1)).getAttributesMetadata(any(), eq(API_SCOPE));
+    verify(attributeMetadataProvider, times(1))
+        .getAttributeMetadata(any(), eq(API_SCOPE), eq("id"));
+    verify(attributeMetadataProvider, times(1))
+        .getAttributeMetadata(any(), eq(API_SCOPE), eq("startTime"));
+  }
+
+  @Test
+  public void testValidationRunsOncePerKey() {
+    AtomicInteger validationCount = new AtomicInteger();
+
+    attributeMetadataSnapshot.validateOnce(List.of("request1"), validationCount::incrementAndGet);
+    attributeMetadataSnapshot.validateOnce(List.of("request1"), validationCount::incrementAndGet);
+    attributeMetadataSnapshot.validateOnce(List.of("request2"), validationCount::incrementAndGet);
+
+    assertEquals(2, validationCount.get());
+  }
+
+  @Test
+  public void testFailedValidationIsNotRemembered() {
+    Runnable failingValidation =
+        () -> {
+          throw new IllegalArgumentException("invalid request");
+        };
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> attributeMetadataSnapshot.validateOnce("request1", failingValidation));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> attributeMetadataSnapshot.validateOnce("request1", failingValidation));
+  }
+}
@@ -0,0 +1,118 @@
+package org.hypertrace.gateway.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.junit.jupiter.api.Test;
+
+public class QueryLimitPlannerTest {
+  private static final int DEFAULT_LIMIT = 10000;
+
+  private final QueryLimitPlanner planner =
+      new QueryLimitPlanner(
+          new QueryLimitConfig(
+              ConfigFactory.parseMap(Map.of("adaptive.enabled", true))
+                  .atPath("query.service.limit.config")));
+
+  @Test
+  public void testPlanLimitFromGroupsAndBuckets() {
+    assertEquals(601, planner.planLimit(10, 60, 1, DEFAULT_LIMIT));
+    // Each extra group by column may multiply the rows of a group
+    assertEquals(2401, planner.planLimit(10, 60, 3, DEFAULT_LIMIT));
+    assertEquals(DEFAULT_LIMIT, planner.planLimit(1000, 60, 1, DEFAULT_LIMIT));
+  }
+
+  @Test
+  public void testPlanLimitDefaultsWhenGroupsUnknownOrDisabled() {
+    assertEquals(DEFAULT_LIMIT, planner.planLimit(0, 60, 1, DEFAULT_LIMIT));
+    assertEquals(DEFAULT_LIMIT, planner.planLimit(10, 0, 1, DEFAULT_LIMIT));
+    assertEquals(
+        DEFAULT_LIMIT,
+        new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty()))
+            .planLimit(10, 60, 1, DEFAULT_LIMIT));
+  }
+
+  @Test
+  public void testBucketCountRoundsUp() {
+    long hour = TimeUnit.HOURS.toMillis(1);
+    assertEquals(60, QueryLimitPlanner.getBucketCount(0, hour, 60));
+    assertEquals(61, QueryLimitPlanner.getBucketCount(0, hour + 1, 60));
+    assertEquals(0, QueryLimitPlanner.getBucketCount(hour, hour, 60));
+  }
+
+  @Test
+  public void testResultUnderPlannedLimitIsNotQueriedAgain() {
+    List<QueryRequest> executed = new ArrayList<>();
+    Iterator<ResultSetChunk> chunks =
+        planner.execute(
+            QueryRequest.newBuilder().setLimit(601).build(),
+            DEFAULT_LIMIT,
+            request -> {
+              executed.add(request);
+              return ImmutableList.of(chunk(400), chunk(200)).iterator();
+            });
+
+    assertEquals(600, countRows(chunks));
+    assertEquals(List.of(QueryRequest.newBuilder().setLimit(601).build()), executed);
+  }
+
+  @Test
+  public void testResultAtPlannedLimitIsQueriedAgainWithDefaultLimit() {
+    List<QueryRequest> executed = new ArrayList<>();
+    Iterator<ResultSetChunk> chunks =
+        planner.execute(
+            QueryRequest.newBuilder().setLimit(601).build(),
+            DEFAULT_LIMIT,
+            request -> {
+              executed.add(request);
+              return ImmutableList.of(chunk(request.getLimit())).iterator();
+            });
+
+    assertEquals(DEFAULT_LIMIT, countRows(chunks));
+    assertEquals(
+        List.of(
+            QueryRequest.newBuilder().setLimit(601).build(),
+            QueryRequest.newBuilder().setLimit(DEFAULT_LIMIT).build()),
+        executed);
+  }
+
+  @Test
+  public void testUnplannedLimitIsExecutedOnce() {
+    List<QueryRequest> executed = new ArrayList<>();
+    planner.execute(
+        QueryRequest.newBuilder().setLimit(DEFAULT_LIMIT).build(),
+        DEFAULT_LIMIT,
+        request -> {
+          executed.add(request);
+          return ImmutableList.of(chunk(request.getLimit())).iterator();
+        });
+
+    assertEquals(1, executed.size());
+  }
+
+  private ResultSetChunk chunk(int rowCount) {
+    ResultSetChunk.Builder chunk = ResultSetChunk.newBuilder();
+    for (int i = 0; i < rowCount; i++) {
+      chunk.addRow(Row.getDefaultInstance());
+    }
+    return chunk.build();
+  }
+
+  private int countRows(Iterator<ResultSetChunk> chunks) {
+    int rowCount = 0;
+    while (chunks.hasNext()) {
+      rowCount += chunks.next().getRowCount();
+    }
+    return rowCount;
+  }
+}
@@ -0,0 +1,260 @@
+package org.hypertrace.gateway.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.Context;
+import io.grpc.Context.CancellableContext;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestCoalescerTest {
+  private static final Map<String, String> HEADERS = Map.of("authorization", "Bearer user1");
+  private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+  @AfterEach
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentIdenticalRequestsShareOneExecution() throws Exception {
+    RequestCoalescer<Expression, String> coalescer = new RequestCoalescer<>("test", true);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger executions = new AtomicInteger();
+
+    CompletableFuture<String> leader =
+        CompletableFuture.supplyAsync(
+            () ->
+                coalescer.execute(
+                    "tenant1",
+                    HEADERS,
+                    column("API.name"),
+                    () -> {
+                      executions.incrementAndGet();
+                      started.countDown();
+                      await(release);
+                      return "result";
+                    }),
+            executorService);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    // an equal request built separately joins the running execution
+    CompletableFuture<String> follower =
+        CompletableFuture.supplyAsync(
+            () ->
+                coalescer.execute(
+                    "tenant1",
+                    HEADERS,
+                    column("API.name"),
+                    () -> {
+                      executions.incrementAndGet();
+                      return "other";
+                    }),
+            executorService);
+    // other tenants, other callers and other requests are not coalesced
+    assertEquals(
+        "tenant2", coalescer.execute("tenant2", HEADERS, column("API.name"), () -> "tenant2"));
+    assertEquals(
+        "user2",
+        coalescer.execute(
+            "tenant1", Map.of("authorization", "Bearer user2"), column("API.name"), () -> "user2"));
+    assertEquals(
+        "api.id", coalescer.execute("tenant1", HEADERS, column("API.id"), () -> "api.id"));
+
+    waitForFollower(coalescer, follower);
+    release.countDown();
+    assertEquals("result", leader.get(10, TimeUnit.SECONDS));
+    assertEquals("result", follower.get(10, TimeUnit.SECONDS));
+    assertEquals(1, executions.get());
+    assertEquals(0, coalescer.getInFlightRequestCount());
+
+    // once completed, the request is executed again
+    assertEquals(
+        "again", coalescer.execute("tenant1", HEADERS, column("API.name"), () -> "again"));
+  }
+
+  @Test
+  public void testFailureIsSharedAndNotRemembered() throws Exception {
+    RequestCoalescer<Expression, String> coalescer = new RequestCoalescer<>("test", true);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    IllegalStateException failure = new IllegalStateException("failed");
+
+    CompletableFuture<String> leader =
+        CompletableFuture.supplyAsync(
+            () ->
+                coalescer.execute(
+                    "tenant1",
+                    HEADERS,
+                    column("API.name"),
+                    () -> {
+                      started.countDown();
+                      await(release);
+                      throw failure;
+                    }),
+            executorService);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    CompletableFuture<String> follower =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.execute("tenant1", HEADERS, column("API.name"), () -> "other"),
+            executorService);
+
+    waitForFollower(coalescer, follower);
+    release.countDown();
+    assertSame(failure, getCause(leader));
+    assertSame(failure, getCause(follower));
+    assertEquals(
+        "retried", coalescer.execute("tenant1", HEADERS, column("API.name"), () -> "retried"));
+  }
+
+  @Test
+  public void testWaitingRequestGivesUpAtItsOwnDeadline() throws Exception {
+    RequestCoalescer<Expression, String> coalescer = new RequestCoalescer<>("test", true);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<String> leader =
+        CompletableFuture.supplyAsync(
+            () ->
+                coalescer.execute(
+                    "tenant1",
+                    HEADERS,
+                    column("API.name"),
+                    () -> {
+                      started.countDown();
+                      await(release);
+                      return "result";
+                    }),
+            executorService);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    CancellableContext followerContext =
+        Context.current()
+            .withDeadline(
+                Deadline.after(100, TimeUnit.MILLISECONDS),
+                Executors.newSingleThreadScheduledExecutor());
+    StatusRuntimeException exception =
+        assertThrows(
+            StatusRuntimeException.class,
+            () ->
+                callIn(
+                    followerContext,
+                    () ->
+                        coalescer.execute("tenant1", HEADERS, column("API.name"), () -> "other")));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, exception.getStatus().getCode());
+
+    // the execution goes on for the requests that still wait for it
+    assertFalse(leader.isDone());
+    release.countDown();
+    assertEquals("result", leader.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testWaitingRequestRunsAgainWhenTheExecutingCallIsCancelled() throws Exception {
+    RequestCoalescer<Expression, String> coalescer = new RequestCoalescer<>("test", true);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CancellableContext leaderContext = Context.current().withCancellation();
+
+    CompletableFuture<String> leader =
+        CompletableFuture.supplyAsync(
+            () ->
+                callIn(
+                    leaderContext,
+                    () ->
+                        coalescer.execute(
+                            "tenant1",
+                            HEADERS,
+                            column("API.name"),
+                            () -> {
+                              started.countDown();
+                              await(release);
+                              throw Status.CANCELLED.asRuntimeException();
+                            })),
+            executorService);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    CompletableFuture<String> follower =
+        CompletableFuture.supplyAsync(
+            () -> coalescer.execute("tenant1", HEADERS, column("API.name"), () -> "other"),
+            executorService);
+
+    waitForFollower(coalescer, follower);
+    leaderContext.cancel(null);
+    release.countDown();
+    assertTrue(getCause(leader) instanceof StatusRuntimeException);
+    assertEquals("other", follower.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testDisabledCoalescerExecutesEveryRequest() {
+    RequestCoalescer<Expression, String> coalescer = new RequestCoalescer<>("test", false);
+    AtomicInteger executions = new AtomicInteger();
+    coalescer.execute(
+        "tenant1",
+        HEADERS,
+        column("API.name"),
+        () ->
+            coalescer.execute(
+                "tenant1",
+                HEADERS, column("API.name"), () -> "" + executions.incrementAndGet()));
+    assertEquals(1, executions.get());
+    assertEquals(0, coalescer.getInFlightRequestCount());
+  }
+
+  private static Expression column(String columnName) {
+    return Expression.newBuilder()
+        .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName))
+        .build();
+  }
+
+  private static String callIn(Context context, Supplier<String> supplier) {
+    Context previous = context.attach();
+    try {
+      return supplier.get();
+    } finally {
+      context.detach(previous);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The follower only registers as coalesced when it finds the running execution, which it cannot
+   * signal, so give it time to get there before the leader is released
+   */
+  private static void waitForFollower(
+      RequestCoalescer<Expression, String> coalescer, CompletableFuture<String> follower)
+      throws InterruptedException {
+    assertEquals(1, coalescer.getInFlightRequestCount());
+    Thread.sleep(200);
+    assertFalse(follower.isDone());
+  }
+
+  private static Throwable getCause(CompletableFuture<String> future) {
+    return assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS)).getCause();
+  }
+}
@@ -0,0 +1,169 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.typesafe.config.ConfigFactory;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ResultCacheTest {
+  private static final long MINUTE_MILLIS = 60000L;
+  private static final long NOW_MILLIS = 1000 * MINUTE_MILLIS;
+  private static final Map<String, String> HEADERS = Map.of("authorization", "Bearer user1");
+
+  private final List<ExploreRequest> executedRequests = new ArrayList<>();
+  private Clock clock;
+
+  @BeforeEach
+  public void setup() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW_MILLIS);
+    executedRequests.clear();
+  }
+
+  @Test
+  public void testRequestsInTheSameTimeBucketShareTheResponse() {
+    ResultCache<ExploreRequest, ExploreResponse> resultCache = createResultCache(Map.of());
+
+    ExploreRequest request = request(NOW_MILLIS - 60 * MINUTE_MILLIS + 5, NOW_MILLIS - 1);
+    ExploreResponse response = resultCache.get("tenant1", HEADERS, request, this::execute);
+    ExploreRequest sameBucketRequest =
+        request(NOW_MILLIS - 60 * MINUTE_MILLIS + 20, NOW_MILLIS - 2);
+    assertEquals(response, resultCache.get("tenant1", HEADERS, sameBucketRequest, this::execute));
+    // the executed request has the rounded time range
+    assertEquals(
+        List.of(request(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS - MINUTE_MILLIS)),
+        executedRequests);
+
+    // other tenants and other time buckets are executed
+    resultCache.get(
+        "tenant2", HEADERS, request(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS), this::execute);
+    resultCache.get(
+        "tenant1", HEADERS, request(NOW_MILLIS - 30 * MINUTE_MILLIS, NOW_MILLIS), this::execute);
+    assertEquals(3, executedRequests.size());
+  }
+
+  @Test
+  public void testRequestsWithDifferentHeadersDoNotShareTheResponse() {
+    ResultCache<ExploreRequest, ExploreResponse> resultCache = createResultCache(Map.of());
+    ExploreRequest request = request(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS);
+
+    ExploreResponse response = resultCache.get("tenant1", HEADERS, request, this::execute);
+    ExploreResponse otherCallerResponse =
+        resultCache.get(
+            "tenant1", Map.of("authorization", "Bearer user2"), request, this::execute);
+
+    assertEquals(2, executedRequests.size());
+    assertNotEquals(response, otherCallerResponse);
+    assertEquals(response, resultCache.get("tenant1", HEADERS, request, this::execute));
+  }
+
+  @Test
+  public void testRecentTimeRangesExpireSooner() {
+    ResultCache<ExploreRequest, ExploreResponse> resultCache = createResultCache(Map.of());
+    ExploreRequest recentRequest = request(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS);
+    ExploreRequest oldRequest =
+        request(NOW_MILLIS - 120 * MINUTE_MILLIS, NOW_MILLIS - 60 * MINUTE_MILLIS);
+    resultCache.get("tenant1", HEADERS, recentRequest, this::execute);
+    resultCache.get("tenant1", HEADERS, oldRequest, this::execute);
+
+    // past the recent TTL, but within the TTL
+    when(clock.millis()).thenReturn(NOW_MILLIS + MINUTE_MILLIS);
+    resultCache.get("tenant1", HEADERS, recentRequest, this::execute);
+    resultCache.get("tenant1", HEADERS, oldRequest, this::execute);
+    assertEquals(3, executedRequests.size());
+
+    // past the TTL
+    when(clock.millis()).thenReturn(NOW_MILLIS + 11 * MINUTE_MILLIS);
+    resultCache.get("tenant1", HEADERS, oldRequest, this::execute);
+    assertEquals(4, executedRequests.size());
+  }
+
+  @Test
+  public void testTenantQuota() {
+    ResultCache<ExploreRequest, ExploreResponse> resultCache =
+        createResultCache(Map.of("tenant.max.weight.bytes", 200));
+    for (int i = 1; i <= 10; i++) {
+      resultCache.get(
+          "tenant1",
+          HEADERS, request(NOW_MILLIS - i * MINUTE_MILLIS, NOW_MILLIS), this::execute);
+    }
+    long tenantWeight = resultCache.getTenantWeight("tenant1");
+    assertTrue(tenantWeight > 0 && tenantWeight <= 200);
+
+    // the responses over the quota were not cached
+    resultCache.get(
+        "tenant1", HEADERS, request(NOW_MILLIS - 10 * MINUTE_MILLIS, NOW_MILLIS), this::execute);
+    assertEquals(11, executedRequests.size());
+    // other tenants have their own quota
+    resultCache.get(
+        "tenant2", HEADERS, request(NOW_MILLIS - MINUTE_MILLIS, NOW_MILLIS), this::execute);
+    resultCache.get(
+        "tenant2", HEADERS, request(NOW_MILLIS - MINUTE_MILLIS, NOW_MILLIS), this::execute);
+    assertEquals(12, executedRequests.size());
+  }
+
+  @Test
+  public void testDisabledCacheExecutesTheRequest() {
+    ResultCache<ExploreRequest, ExploreResponse> resultCache =
+        createResultCache(Map.of("enabled", false));
+    ExploreRequest request = request(NOW_MILLIS - MINUTE_MILLIS + 5, NOW_MILLIS);
+    resultCache.get("tenant1", HEADERS, request, this::execute);
+    resultCache.get("tenant1", HEADERS, request, this::execute);
+    assertEquals(List.of(request, request), executedRequests);
+  }
+
+  private ResultCache<ExploreRequest, ExploreResponse> createResultCache(
+      Map<String, Object> overrides) {
+    Map<String, Object> config = new HashMap<>(Map.of("enabled", true));
+    config.putAll(overrides);
+    return new ResultCache<>(
+        "test",
+        new ResultCacheConfig(ConfigFactory.parseMap(config).atPath("result.cache.config")),
+        ExploreRequest::getStartTimeMillis,
+        ExploreRequest::getEndTimeMillis,
+        (request, startTimeMillis, endTimeMillis) ->
+            request.toBuilder()
+                .setStartTimeMillis(startTimeMillis)
+                .setEndTimeMillis(endTimeMillis)
+                .build(),
+        clock);
+  }
+
+  private ExploreResponse execute(ExploreRequest request) {
+    executedRequests.add(request);
+    return ExploreResponse.newBuilder()
+        .addRow(
+            Row.newBuilder()
+                .putColumns(
+                    "count",
+                    Value.newBuilder()
+                        .setValueType(ValueType.LONG)
+                        .setLong(executedRequests.size())
+                        .build()))
+        .build();
+  }
+
+  private static ExploreRequest request(long startTimeMillis, long endTimeMillis) {
+    return ExploreRequest.newBuilder()
+        .setContext("API")
+        .setStartTimeMillis(startTimeMillis)
+        .setEndTimeMillis(endTimeMillis)
+        .build();
+  }
+}
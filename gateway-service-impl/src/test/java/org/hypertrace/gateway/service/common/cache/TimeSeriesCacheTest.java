@@ -0,0 +1,109 @@
+package org.hypertrace.gateway.service.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.typesafe.config.ConfigFactory;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.hypertrace.gateway.service.common.config.TimeSeriesCacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TimeSeriesCacheTest {
+  private static final long MINUTE_MILLIS = 60000L;
+  private static final long NOW_MILLIS = 1000 * MINUTE_MILLIS;
+  private static final List<Object> KEY = List.of("tenant1", "series");
+
+  private final List<List<Long>> fetchedRanges = new ArrayList<>();
+  private Clock clock;
+  private TimeSeriesCache<Long> timeSeriesCache;
+
+  @BeforeEach
+  public void setup() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW_MILLIS);
+    fetchedRanges.clear();
+    timeSeriesCache =
+        new TimeSeriesCache<>(
+            "test",
+            new TimeSeriesCacheConfig(
+                ConfigFactory.parseMap(
+                        Map.of("enabled", true, "mutable.window.millis", 2 * MINUTE_MILLIS))
+                    .atPath("time.series.cache.config")),
+            clock);
+  }
+
+  @Test
+  public void testOnlyMutableAndMissingBucketsAreFetched() {
+    assertEquals(
+        buckets(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS),
+        getSeries(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS));
+    // the buckets ending in the last two minutes are fetched again
+    assertEquals(
+        buckets(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS),
+        getSeries(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS));
+
+    // a minute later, the window slides and one more bucket can no longer change
+    when(clock.millis()).thenReturn(NOW_MILLIS + MINUTE_MILLIS);
+    assertEquals(
+        buckets(NOW_MILLIS - 59 * MINUTE_MILLIS, NOW_MILLIS + MINUTE_MILLIS),
+        getSeries(NOW_MILLIS - 59 * MINUTE_MILLIS, NOW_MILLIS + MINUTE_MILLIS));
+    assertEquals(
+        List.of(
+            List.of(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS),
+            List.of(NOW_MILLIS - 2 * MINUTE_MILLIS, NOW_MILLIS),
+            List.of(NOW_MILLIS - 2 * MINUTE_MILLIS, NOW_MILLIS + MINUTE_MILLIS)),
+        fetchedRanges);
+  }
+
+  @Test
+  public void testFullyImmutableRangeIsServedFromTheCache() {
+    getSeries(NOW_MILLIS - 60 * MINUTE_MILLIS, NOW_MILLIS - 30 * MINUTE_MILLIS);
+    assertEquals(
+        buckets(NOW_MILLIS - 50 * MINUTE_MILLIS, NOW_MILLIS - 30 * MINUTE_MILLIS),
+        getSeries(NOW_MILLIS - 50 * MINUTE_MILLIS, NOW_MILLIS - 30 * MINUTE_MILLIS));
+    // a range starting before the cached series is fetched again
+    getSeries(NOW_MILLIS - 70 * MINUTE_MILLIS, NOW_MILLIS - 30 * MINUTE_MILLIS);
+    assertEquals(2, fetchedRanges.size());
+  }
+
+  @Test
+  public void testDisabledCacheFetchesTheWholeRange() {
+    TimeSeriesCache<Long> disabledCache =
+        new TimeSeriesCache<>("test", new TimeSeriesCacheConfig(ConfigFactory.empty()), clock);
+    for (int i = 0; i < 2; i++) {
+      disabledCache.getSeries(
+          KEY,
+          NOW_MILLIS - 60 * MINUTE_MILLIS,
+          NOW_MILLIS - 30 * MINUTE_MILLIS,
+          MINUTE_MILLIS,
+          Long::longValue,
+          this::fetch);
+    }
+    assertEquals(2, fetchedRanges.size());
+  }
+
+  private List<Long> getSeries(long startTimeMillis, long endTimeMillis) {
+    return timeSeriesCache.getSeries(
+        KEY, startTimeMillis, endTimeMillis, MINUTE_MILLIS, Long::longValue, this::fetch);
+  }
+
+  /** A row per minute bucket, which is its start time */
+  private List<Long> fetch(long startTimeMillis, long endTimeMillis) {
+    fetchedRanges.add(List.of(startTimeMillis, endTimeMillis));
+    return buckets(startTimeMillis, endTimeMillis);
+  }
+
+  private static List<Long> buckets(long startTimeMillis, long endTimeMillis) {
+    return LongStream.iterate(
+            startTimeMillis, time -> time < endTimeMillis, time -> time + MINUTE_MILLIS)
+        .boxed()
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,94 @@
+package org.hypertrace.gateway.service.common.converters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.junit.jupiter.api.Test;
+
+public class StringToAttributeKindConverterTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void testStringArray() {
+    assertEquals(List.of("a", "b"), convertToArray("[\"a\",\"b\"]"));
+    assertEquals(List.of("a", "b"), convertToArray(" [ \"a\" , \"b\" ] "));
+    assertEquals(List.of(), convertToArray("[]"));
+    assertEquals(List.of(), convertToArray("null"));
+    assertEquals(List.of(), convertToArray(""));
+    // not an array, so a single string
+    assertEquals(List.of("abc"), convertToArray("abc"));
+    assertEquals(List.of("nope"), convertToArray("nope"));
+    assertEquals(List.of("\"abc\""), convertToArray("\"abc\""));
+    assertEquals(List.of("[\"a\""), convertToArray("[\"a\""));
+    // values the flat parser does not handle fall back to the JSON parser
+    assertEquals(List.of("a", "1"), convertToArray("[\"a\", 1]"));
+  }
+
+  @Test
+  public void testStringMap() {
+    assertEquals(Map.of("k1", "v1", "k2", "v2"), convertToMap("{\"k1\":\"v1\",\"k2\":\"v2\"}"));
+    assertEquals(Map.of(), convertToMap("{ }"));
+    assertEquals(Map.of(), convertToMap(""));
+    assertEquals(Map.of("k1", "v2"), convertToMap("{\"k1\":\"v1\",\"k1\":\"v2\"}"));
+    assertEquals(Map.of("k1", "1"), convertToMap("{\"k1\":1}"));
+    assertEquals(Map.of(), convertToMap("{\"k1\":"));
+  }
+
+  @Test
+  public void testFlatParserMatchesJsonParser() throws Exception {
+    List<String> arrays =
+        List.of(
+            "[\"a\\\"b\", \"c\\\\d\", \"\\/e\", \"\\u00e9\\u4E2D\", \"tab\\tnew\\nline\"]",
+            "[\"\\b\\f\\r\", \"unicode \u00e9 \u4e2d\"]",
+            "[\"\"]");
+    for (String array : arrays) {
+      assertEquals(
+          objectMapper.readValue(array, new TypeReference<List<String>>() {}),
+          FlatJsonParser.parseStringArray(array));
+      assertEquals(
+          objectMapper.readValue(array, new TypeReference<List<String>>() {}),
+          convertToArray(array));
+    }
+    String map = "{\"a\\\"b\": \"c\\\\d\", \"\\u00e9\": \"x\\ny\", \"\": \"\"}";
+    assertEquals(
+        objectMapper.readValue(map, new TypeReference<Map<String, String>>() {}),
+        FlatJsonParser.parseStringMap(map));
+  }
+
+  @Test
+  public void testFlatParserRejectsOtherShapes() {
+    assertNull(FlatJsonParser.parseStringArray("[\"a\", null]"));
+    assertNull(FlatJsonParser.parseStringArray("[\"a\", [\"b\"]]"));
+    assertNull(FlatJsonParser.parseStringArray("[\"a\",]"));
+    assertNull(FlatJsonParser.parseStringArray("[\"a\"] x"));
+    assertNull(FlatJsonParser.parseStringArray("[\"\\x\"]"));
+    assertNull(FlatJsonParser.parseStringArray("[\"\\u12\"]"));
+    assertNull(FlatJsonParser.parseStringArray("[\"a\nb\"]"));
+    assertNull(FlatJsonParser.parseStringMap("{\"k\": {\"a\": \"b\"}}"));
+    assertNull(FlatJsonParser.parseStringMap("{\"k\" \"v\"}"));
+    assertNull(FlatJsonParser.parseStringMap("{\"k\": \"v\""));
+  }
+
+  private List<String> convertToArray(String value) {
+    Value converted =
+        StringToAttributeKindConverter.INSTANCE.doConvert(
+            value, AttributeKind.TYPE_STRING_ARRAY, Value.newBuilder());
+    assertEquals(ValueType.STRING_ARRAY, converted.getValueType());
+    return converted.getStringArrayList();
+  }
+
+  private Map<String, String> convertToMap(String value) {
+    Value converted =
+        StringToAttributeKindConverter.INSTANCE.doConvert(
+            value, AttributeKind.TYPE_STRING_MAP, Value.newBuilder());
+    assertEquals(ValueType.STRING_MAP, converted.getValueType());
+    return converted.getStringMapMap();
+  }
+}
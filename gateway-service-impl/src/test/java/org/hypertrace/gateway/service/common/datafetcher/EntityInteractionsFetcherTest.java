@@ -12,9 +12,13 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,16 +28,21 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
 import org.hypertrace.core.query.service.api.QueryRequest;
+import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.core.query.service.util.QueryRequestUtil;
 import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
 import org.hypertrace.gateway.service.v1.common.DomainEntityType;
 import org.hypertrace.gateway.service.v1.common.Expression;
@@ -113,7 +122,7 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider);
+        createEntityInteractionsFetcher(null, ConfigFactory.empty());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -222,7 +231,7 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider);
+        createEntityInteractionsFetcher(null, ConfigFactory.empty());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -286,7 +295,7 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
             Optional.of(AttributeMetadata.newBuilder().setId("INTERACTION.startTime").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider);
+        createEntityInteractionsFetcher(null, ConfigFactory.empty());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -405,7 +414,7 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
             Optional.of(AttributeMetadata.newBuilder().setId("INTERACTION.startTime").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider);
+        createEntityInteractionsFetcher(null, ConfigFactory.empty());
     LinkedHashSet<EntityKey> entityKeys = new LinkedHashSet<>();
     entityKeys.add(EntityKey.of("test_name1", "test_type1"));
     entityKeys.add(EntityKey.of("test_name2", "test_type2"));
@@ -505,7 +514,7 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
 
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider);
+        createEntityInteractionsFetcher(null, ConfigFactory.empty());
     Map<String, QueryRequest> queryRequests =
         aggregator.buildQueryRequests(
             request.getStartTimeMillis(),
@@ -579,7 +588,7 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
                 Mockito.eq("startTime")))
         .thenReturn(Optional.of(AttributeMetadata.newBuilder().setFqn("dummy").build()));
     EntityInteractionsFetcher aggregator =
-        new EntityInteractionsFetcher(null, 500, attributeMetadataProvider);
+        createEntityInteractionsFetcher(null, ConfigFactory.empty());
 
     for (EntitiesRequest request : getInvalidRequests()) {
       try {
@@ -591,4 +600,78 @@ public class EntityInteractionsFetcherTest extends AbstractGatewayServiceTest {
       }
     }
   }
+
+  @Test
+  public void testInteractionsAreFetchedConcurrentlyInEntityIdBatches() {
+    InteractionsRequest toServiceBytesSentInteractions =
+        InteractionsRequest.newBuilder()
+            .setFilter(buildStringFilter("INTERACTION.toEntityType", Operator.EQ, "SERVICE"))
+            .addSelection(
+                getAggregateFunctionExpression(
+                    "INTERACTION.bytesSent", FunctionType.SUM, "SUM_bytes_sent"))
+            .build();
+    EntitiesRequest request =
+        EntitiesRequest.newBuilder()
+            .setEntityType(DomainEntityType.SERVICE.name())
+            .setStartTimeMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30))
+            .setEndTimeMillis(System.currentTimeMillis())
+            .addSelection(buildAttributeExpression("SERVICE.name"))
+            .setIncomingInteractions(fromServiceInteractions)
+            .setOutgoingInteractions(toServiceBytesSentInteractions)
+            .build();
+
+    attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    Mockito.when(
+            attributeMetadataProvider.getAttributeMetadata(
+                any(), Mockito.eq(AttributeScope.INTERACTION.name()), Mockito.eq("startTime")))
+        .thenReturn(Optional.of(AttributeMetadata.newBuilder().setId("dummy").build()));
+    Mockito.when(
+            attributeMetadataProvider.getAttributesMetadata(
+                any(), Mockito.eq(AttributeScope.INTERACTION.name())))
+        .thenReturn(
+            Map.of(
+                "INTERACTION.bytesReceived",
+                AttributeMetadata.newBuilder()
+                    .setId("INTERACTION.bytesReceived")
+                    .setValueKind(AttributeKind.TYPE_INT64)
+                    .build(),
+                "INTERACTION.bytesSent",
+                AttributeMetadata.newBuilder()
+                    .setId("INTERACTION.bytesSent")
+                    .setValueKind(AttributeKind.TYPE_INT64)
+                    .build()));
+    QueryServiceClient queryServiceClient = mock(QueryServiceClient.class);
+    Mockito.when(queryServiceClient.executeQuery(any(), any(), Mockito.anyInt()))
+        .thenAnswer(invocation -> Collections.emptyIterator());
+
+    EntityInteractionsFetcher aggregator =
+        createEntityInteractionsFetcher(
+            queryServiceClient,
+            ConfigFactory.parseMap(
+                Map.of("entity.service.selection.config.entity.id.batch.size", 2)));
+    EntityInteractionsResponse response =
+        aggregator
+            .fetchEntityInteractions(
+                new RequestContext(TENANT_ID, new HashMap<>()),
+                request,
+                Set.of(
+                    EntityKey.from("test_id1"),
+                    EntityKey.from("test_id2"),
+                    EntityKey.from("test_id3")))
+            .join();
+
+    // 2 batches of entity ids, for each of the incoming and outgoing interactions
+    verify(queryServiceClient, times(4)).executeQuery(any(), any(), Mockito.anyInt());
+    assertEquals(0, response.size());
+  }
+
+  private EntityInteractionsFetcher createEntityInteractionsFetcher(
+      QueryServiceClient queryServiceClient, Config appConfig) {
+    return new EntityInteractionsFetcher(
+        queryServiceClient,
+        500,
+        attributeMetadataProvider,
+        new ExecutionPools(new ExecutionPoolConfigs(ConfigFactory.empty())),
+        new SelectionConfig(appConfig));
+  }
 }
@@ -19,8 +19,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -36,7 +39,9 @@ import org.hypertrace.core.query.service.api.ResultSetChunk;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
 import org.hypertrace.gateway.service.common.converters.QueryAndGatewayDtoConverter;
 import org.hypertrace.gateway.service.common.converters.QueryRequestUtil;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
@@ -59,6 +64,7 @@ import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 public class QueryServiceEntityFetcherTests {
   private static final String API_ID_ATTR = "API.id";
@@ -88,7 +94,11 @@ public class QueryServiceEntityFetcherTests {
 
     queryServiceEntityFetcher =
         new QueryServiceEntityFetcher(
-            queryServiceClient, 500, attributeMetadataProvider, entityIdColumnsConfigs);
+            queryServiceClient,
+            500,
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())));
   }
 
   @Test
@@ -474,6 +484,63 @@ public class QueryServiceEntityFetcherTests {
         new EntityFetcherResponse(expectedEntityKeyBuilderResponseMap), response);
   }
 
+  @Test
+  public void testGetEntitiesWithOffsetPlansLimitFromLimitAndOffset() {
+    QueryServiceEntityFetcher fetcher =
+        new QueryServiceEntityFetcher(
+            queryServiceClient,
+            500,
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            new QueryLimitPlanner(
+                new QueryLimitConfig(
+                    ConfigFactory.parseMap(Map.of("adaptive.enabled", true))
+                        .atPath("query.service.limit.config"))));
+    long startTime = 1L;
+    long endTime = 10L;
+    String tenantId = "TENANT_ID";
+    Map<String, String> requestHeaders = Map.of("x-tenant-id", tenantId);
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType(AttributeScope.API.name())
+            .setStartTimeMillis(startTime)
+            .setEndTimeMillis(endTime)
+            .addSelection(buildExpression(API_NAME_ATTR))
+            .setFilter(
+                EntitiesRequestAndResponseUtils.getTimeRangeFilter(
+                    "API.startTime", startTime, endTime))
+            .addOrderBy(buildOrderByExpression(API_ID_ATTR))
+            .setLimit(10)
+            .setOffset(5)
+            .build();
+    EntitiesRequestContext entitiesRequestContext =
+        new EntitiesRequestContext(
+            tenantId,
+            startTime,
+            endTime,
+            AttributeScope.API.name(),
+            "API.startTime",
+            requestHeaders);
+
+    // More rows than a limit planned from the page size alone, (10 * 2) + 1, but fewer than the
+    // one planned from the page size and offset, (15 * 2) + 1
+    String[][] rows = new String[25][];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = new String[] {"apiId" + i, "api " + i};
+    }
+    when(queryServiceClient.executeQuery(any(), eq(requestHeaders), eq(500)))
+        .thenReturn(List.of(getResultSetChunk(List.of("API.id", "API.name"), rows)).iterator());
+
+    EntityFetcherResponse response = fetcher.getEntities(entitiesRequestContext, entitiesRequest);
+    assertEquals(25, response.size());
+
+    ArgumentCaptor<QueryRequest> queryRequest = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(queryServiceClient, times(1))
+        .executeQuery(queryRequest.capture(), eq(requestHeaders), eq(500));
+    assertEquals(31, queryRequest.getValue().getLimit());
+    assertEquals(5, queryRequest.getValue().getOffset());
+  }
+
   @Test
   public void test_getEntitiesWithPagination() {
     List<OrderByExpression> orderByExpressions = List.of(buildOrderByExpression(API_ID_ATTR));
@@ -0,0 +1,108 @@
+package org.hypertrace.gateway.service.common.datafetcher;
+
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.buildAggregateExpression;
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.getAggregatedMetricValue;
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.getStringValue;
+import static org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils.getResultSetChunk;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.query.service.api.ResultSetChunk;
+import org.hypertrace.core.query.service.api.Row;
+import org.hypertrace.gateway.service.common.QueryRequestContext;
+import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+import org.junit.jupiter.api.Test;
+
+public class QueryServiceEntityRowDecoderTest {
+  private static final String API_ID_ATTR = "API.id";
+  private static final String API_NAME_ATTR = "API.name";
+  private static final String API_NUM_CALLS_ATTR = "API.numCalls";
+
+  private final Map<String, AttributeMetadata> resultKeyToAttributeMetadataMap =
+      Map.of(
+          API_NAME_ATTR,
+          AttributeMetadata.newBuilder()
+              .setId(API_NAME_ATTR)
+              .setValueKind(AttributeKind.TYPE_STRING)
+              .build(),
+          "countCalls",
+          AttributeMetadata.newBuilder()
+              .setId(API_NUM_CALLS_ATTR)
+              .setValueKind(AttributeKind.TYPE_INT64)
+              .build());
+
+  @Test
+  public void testDecodeAttributesAndAggregates() {
+    QueryRequestContext requestContext =
+        new QueryRequestContext("tenant1", 0, 1, Collections.emptyMap());
+    requestContext.mapAliasToFunctionExpression(
+        "countCalls",
+        buildAggregateExpression(API_NUM_CALLS_ATTR, FunctionType.COUNT, "countCalls", List.of())
+            .getFunction());
+    ResultSetChunk chunk =
+        getResultSetChunk(
+            List.of(API_ID_ATTR, "countCalls", API_NAME_ATTR),
+            new String[][] {{"api-1", "10", "checkout"}, {"api-2", "20", "cart"}});
+
+    QueryServiceEntityRowDecoder rowDecoder =
+        QueryServiceEntityRowDecoder.compile(
+            chunk.getResultSetMetadata(),
+            "API",
+            List.of(API_ID_ATTR),
+            Map.of(API_ID_ATTR, List.of("apiId")),
+            requestContext,
+            resultKeyToAttributeMetadataMap,
+            false);
+    Map<EntityKey, Entity.Builder> entityBuilders = new LinkedHashMap<>();
+    for (Row row : chunk.getRowList()) {
+      rowDecoder.decode(row, entityBuilders);
+    }
+
+    assertEquals(
+        List.of(EntityKey.of("api-1"), EntityKey.of("api-2")),
+        List.copyOf(entityBuilders.keySet()));
+    Entity entity = entityBuilders.get(EntityKey.of("api-1")).build();
+    assertEquals("API", entity.getEntityType());
+    assertEquals("api-1", entity.getId());
+    assertEquals(getStringValue("api-1"), entity.getAttributeOrThrow(API_ID_ATTR));
+    assertEquals(getStringValue("api-1"), entity.getAttributeOrThrow("apiId"));
+    assertEquals(getStringValue("checkout"), entity.getAttributeOrThrow(API_NAME_ATTR));
+    assertEquals(
+        getAggregatedMetricValue(FunctionType.COUNT, 10L), entity.getMetricOrThrow("countCalls"));
+  }
+
+  @Test
+  public void testCountColumnIsSkipped() {
+    QueryRequestContext requestContext =
+        new QueryRequestContext("tenant1", 0, 1, Collections.emptyMap());
+    ResultSetChunk chunk =
+        getResultSetChunk(
+            List.of(API_ID_ATTR, API_NAME_ATTR, "COUNT"), new String[][] {{"api-1", "cart", "5"}});
+
+    QueryServiceEntityRowDecoder rowDecoder =
+        QueryServiceEntityRowDecoder.compile(
+            chunk.getResultSetMetadata(),
+            "API",
+            List.of(API_ID_ATTR),
+            Map.of(),
+            requestContext,
+            resultKeyToAttributeMetadataMap,
+            true);
+    Map<EntityKey, Entity.Builder> entityBuilders = new LinkedHashMap<>();
+    rowDecoder.decode(chunk.getRow(0), entityBuilders);
+
+    Entity entity = entityBuilders.get(EntityKey.of("api-1")).build();
+    assertEquals(2, entity.getAttributeCount());
+    assertFalse(entity.containsAttribute("COUNT"));
+    assertTrue(rowDecoder.isCompiledFor(chunk.getResultSetMetadata().toBuilder().build()));
+  }
+}
@@ -0,0 +1,89 @@
+package org.hypertrace.gateway.service.common.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
+import org.junit.jupiter.api.Test;
+
+public class ExecutionPoolsTest {
+
+  @Test
+  public void testPoolsAreCreatedPerSource() {
+    ExecutionPools executionPools =
+        new ExecutionPools(new ExecutionPoolConfigs(ConfigFactory.empty()));
+
+    assertEquals("QS", executionPools.getPool("QS").getName());
+    assertEquals("EDS", executionPools.getPool("EDS").getName());
+    assertNotSame(executionPools.getPool("QS"), executionPools.getPool("EDS"));
+    assertSame(executionPools.getPool("QS"), executionPools.getPool("QS"));
+    assertThrows(IllegalArgumentException.class, () -> executionPools.getPool("UNKNOWN"));
+    executionPools.shutdown();
+  }
+
+  @Test
+  public void testSaturatedPoolRunsTaskOnCallerThread() throws InterruptedException {
+    ExecutionPools executionPools =
+        new ExecutionPools(
+            new ExecutionPoolConfigs(
+                ConfigFactory.parseMap(
+                    Map.of(
+                        "execution.pools.config.QS.max.concurrency", 1,
+                        "execution.pools.config.QS.queue.size", 1))));
+    ExecutionPool pool = executionPools.getPool("QS");
+
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    pool.execute(
+        () -> {
+          started.countDown();
+          awaitQuietly(release);
+        });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertEquals(1, pool.getActiveTaskCount());
+
+    // Fills up the queue
+    pool.execute(() -> {});
+    assertEquals(1, pool.getQueuedTaskCount());
+
+    // Neither a thread nor a queue slot is available, so this runs inline
+    AtomicReference<Thread> runner = new AtomicReference<>();
+    pool.execute(() -> runner.set(Thread.currentThread()));
+    assertSame(Thread.currentThread(), runner.get());
+
+    release.countDown();
+    executionPools.shutdown();
+  }
+
+  @Test
+  public void testShutDownPoolRejectsTasks() {
+    ExecutionPools executionPools =
+        new ExecutionPools(new ExecutionPoolConfigs(ConfigFactory.empty()));
+    ExecutionPool pool = executionPools.getPool("QS");
+    executionPools.shutdown();
+
+    // Fails the submission instead of leaving a future that never completes
+    assertThrows(
+        RejectedExecutionException.class,
+        () -> CompletableFuture.supplyAsync(() -> "result", pool));
+    assertEquals(0, pool.getQueuedTaskCount());
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,8 +1,13 @@
 package org.hypertrace.gateway.service.common.util;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.EntityKeyEntityBuilderEntryComparator;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
@@ -60,4 +65,35 @@ public class DataCollectionUtilTest {
     Assertions.assertEquals(pqrBuilder, sortedBuilders.get(0).getValue());
     Assertions.assertEquals(xyzBuilder, sortedBuilders.get(1).getValue());
   }
+
+  @Test
+  public void testLimitAndSortKeepsOnlyTopElementsInStableOrder() {
+    Random random = new Random(42);
+    // Sort only on the tens digit so that there are plenty of ties
+    List<Integer> elements =
+        IntStream.range(0, 1000).map(i -> random.nextInt(500)).boxed().collect(Collectors.toList());
+    Comparator<Integer> comparator = Comparator.comparing(element -> element / 10);
+    List<Integer> fullySorted = new ArrayList<>(elements);
+    fullySorted.sort(comparator);
+
+    for (int[] limitAndOffset : new int[][] {{10, 0}, {10, 25}, {1, 999}, {50, 990}, {5, 1000}}) {
+      int limit = limitAndOffset[0];
+      int offset = limitAndOffset[1];
+      Assertions.assertEquals(
+          fullySorted.stream().skip(offset).limit(limit).collect(Collectors.toList()),
+          DataCollectionUtil.limitAndSort(elements, limit, offset, 1, comparator));
+      Assertions.assertEquals(
+          fullySorted.stream().skip(offset).limit(limit).collect(Collectors.toList()),
+          DataCollectionUtil.limitAndSort(elements.stream(), limit, offset, 1, comparator));
+    }
+  }
+
+  @Test
+  public void testPaginateAndLimitCollection() {
+    List<Integer> elements = List.of(1, 2, 3, 4, 5);
+    Assertions.assertEquals(List.of(2, 3), DataCollectionUtil.paginateAndLimit(elements, 2, 1));
+    Assertions.assertEquals(List.of(4, 5), DataCollectionUtil.paginateAndLimit(elements, 0, 3));
+    Assertions.assertEquals(List.of(5), DataCollectionUtil.paginateAndLimit(elements, 10, 4));
+    Assertions.assertEquals(List.of(), DataCollectionUtil.paginateAndLimit(elements, 2, 5));
+  }
 }
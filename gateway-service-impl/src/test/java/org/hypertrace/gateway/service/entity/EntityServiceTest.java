@@ -22,10 +22,12 @@ import static org.mockito.Mockito.when;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
@@ -45,9 +47,17 @@ import org.hypertrace.gateway.service.AbstractGatewayServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.QueryServiceRequestAndResponseUtils;
 import org.hypertrace.gateway.service.common.RequestContext;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.common.config.RequestCoalescingConfig;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
 import org.hypertrace.gateway.service.entity.config.LogConfig;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
+import org.hypertrace.gateway.service.entity.config.TotalCacheConfig;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionType;
 import org.hypertrace.gateway.service.v1.common.LiteralConstant;
@@ -57,6 +67,7 @@ import org.hypertrace.gateway.service.v1.common.TimeAggregation;
 import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
 import org.hypertrace.gateway.service.v1.entity.EntitiesResponse;
 import org.hypertrace.gateway.service.v1.entity.Entity;
+import org.hypertrace.gateway.service.v1.entity.QueryNodeProfile;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -69,6 +80,7 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
   private AttributeMetadataProvider attributeMetadataProvider;
   private EntityIdColumnsConfigs entityIdColumnsConfigs;
   private LogConfig logConfig;
+  private ExecutionPools executionPools;
 
   @BeforeEach
   public void setup() {
@@ -80,6 +92,7 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
     mock(attributeMetadataProvider);
     logConfig = Mockito.mock(LogConfig.class);
     when(logConfig.getQueryThresholdInMillis()).thenReturn(1500L);
+    executionPools = new ExecutionPools(new ExecutionPoolConfigs(ConfigFactory.empty()));
   }
 
   private void mockEntityIdColumnConfigs() {
@@ -278,7 +291,14 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
-            logConfig);
+            logConfig,
+            executionPools,
+            new SelectionConfig(ConfigFactory.empty()),
+            new TotalCacheConfig(ConfigFactory.empty()),
+            new PlannerConfig(ConfigFactory.empty()),
+            new RequestCoalescingConfig(ConfigFactory.empty()),
+            new ResultCacheConfig(ConfigFactory.empty()),
+            new QueryLimitConfig(ConfigFactory.empty()));
     EntitiesResponse response = entityService.getEntities(TENANT_ID, entitiesRequest, Map.of());
     Assertions.assertNotNull(response);
     Assertions.assertEquals(2, response.getTotal());
@@ -312,7 +332,14 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
             attributeMetadataProvider,
             entityIdColumnsConfigs,
             scopeFilterConfigs,
-            logConfig);
+            logConfig,
+            executionPools,
+            new SelectionConfig(ConfigFactory.empty()),
+            new TotalCacheConfig(ConfigFactory.empty()),
+            new PlannerConfig(ConfigFactory.empty()),
+            new RequestCoalescingConfig(ConfigFactory.empty()),
+            new ResultCacheConfig(ConfigFactory.empty()),
+            new QueryLimitConfig(ConfigFactory.empty()));
     EntitiesRequest entitiesRequest =
         EntitiesRequest.newBuilder()
             .setEntityType("API")
@@ -435,6 +462,174 @@ public class EntityServiceTest extends AbstractGatewayServiceTest {
     }
   }
 
+  @Test
+  public void testGetEntitiesStreamEmitsEntitiesInBatches() {
+    long endTime = System.currentTimeMillis();
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType("API")
+            .setStartTimeMillis(endTime - 1000)
+            .setEndTimeMillis(endTime)
+            .addSelection(buildAttributeExpression("API.apiId", "API Id"))
+            .addSelection(buildAttributeExpression("API.apiName", "API Name"))
+            .setLimit(3)
+            .build();
+    when(queryServiceClient.executeQuery(any(), any(), Mockito.anyInt()))
+        .thenReturn(
+            List.of(
+                    getResultSetChunk(
+                        List.of("API.apiId", "API.apiName"),
+                        new String[][] {
+                          {"apiId1", "/login"}, {"apiId2", "/checkout"}, {"apiId3", "/logout"}
+                        }))
+                .iterator());
+
+    EntityService entityService =
+        new EntityService(
+            queryServiceClient,
+            500,
+            entityQueryServiceClient,
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            new ScopeFilterConfigs(ConfigFactory.empty()),
+            logConfig,
+            executionPools,
+            new SelectionConfig(
+                ConfigFactory.parseMap(
+                    Map.of("entity.service.selection.config.entity.id.batch.size", 2))),
+            new TotalCacheConfig(ConfigFactory.empty()),
+            new PlannerConfig(ConfigFactory.empty()),
+            new RequestCoalescingConfig(ConfigFactory.empty()),
+            new ResultCacheConfig(ConfigFactory.empty()),
+            new QueryLimitConfig(ConfigFactory.empty()));
+    List<EntitiesResponse> responses = new ArrayList<>();
+    entityService.getEntitiesStream(TENANT_ID, entitiesRequest, Map.of(), responses::add);
+
+    Assertions.assertEquals(2, responses.size());
+    Assertions.assertEquals(
+        List.of(List.of("apiId1", "apiId2"), List.of("apiId3")),
+        responses.stream()
+            .map(
+                response ->
+                    response.getEntityList().stream()
+                        .map(entity -> entity.getAttributeMap().get("API.apiId").getString())
+                        .collect(Collectors.toList()))
+            .collect(Collectors.toList()));
+    responses.forEach(response -> Assertions.assertEquals(3, response.getTotal()));
+  }
+
+  @Test
+  public void testGetEntitiesStreamWithTotalStreamsEntitiesFromTheFetch() {
+    long endTime = System.currentTimeMillis();
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType("API")
+            .setStartTimeMillis(endTime - 1000)
+            .setEndTimeMillis(endTime)
+            .addSelection(buildAttributeExpression("API.apiId", "API Id"))
+            .setLimit(3)
+            .setFetchTotal(true)
+            .build();
+    when(queryServiceClient.executeQuery(
+            Mockito.argThat(request -> request.getGroupByCount() == 0), any(), Mockito.anyInt()))
+        .thenReturn(
+            List.of(getResultSetChunk(List.of("total"), new String[][] {{"5"}})).iterator());
+    when(queryServiceClient.executeQuery(
+            Mockito.argThat(request -> request.getGroupByCount() > 0), any(), Mockito.anyInt()))
+        .thenReturn(
+            List.of(
+                    getResultSetChunk(
+                        List.of("API.apiId"), new String[][] {{"apiId1"}, {"apiId2"}, {"apiId3"}}))
+                .iterator());
+
+    EntityService entityService =
+        new EntityService(
+            queryServiceClient,
+            500,
+            entityQueryServiceClient,
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            new ScopeFilterConfigs(ConfigFactory.empty()),
+            logConfig,
+            executionPools,
+            new SelectionConfig(
+                ConfigFactory.parseMap(
+                    Map.of("entity.service.selection.config.entity.id.batch.size", 2))),
+            new TotalCacheConfig(ConfigFactory.empty()),
+            new PlannerConfig(ConfigFactory.empty()),
+            new RequestCoalescingConfig(ConfigFactory.empty()),
+            new ResultCacheConfig(ConfigFactory.empty()),
+            new QueryLimitConfig(ConfigFactory.empty()));
+    List<EntitiesResponse> responses = new ArrayList<>();
+    entityService.getEntitiesStream(TENANT_ID, entitiesRequest, Map.of(), responses::add);
+
+    Assertions.assertEquals(
+        List.of(List.of("apiId1", "apiId2"), List.of("apiId3")),
+        responses.stream()
+            .map(
+                response ->
+                    response.getEntityList().stream()
+                        .map(entity -> entity.getAttributeMap().get("API.apiId").getString())
+                        .collect(Collectors.toList()))
+            .collect(Collectors.toList()));
+    // The total comes from the source rather than from the streamed entities
+    responses.forEach(response -> Assertions.assertEquals(5, response.getTotal()));
+  }
+
+  @Test
+  public void testGetEntitiesWithExplainAnalyzeReturnsExecutionProfile() {
+    long endTime = System.currentTimeMillis();
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder()
+            .setEntityType("API")
+            .setStartTimeMillis(endTime - 1000)
+            .setEndTimeMillis(endTime)
+            .addSelection(buildAttributeExpression("API.apiId", "API Id"))
+            .addSelection(buildAttributeExpression("API.apiName", "API Name"))
+            .setLimit(2)
+            .setExplainAnalyze(true)
+            .build();
+    when(queryServiceClient.executeQuery(any(), any(), Mockito.anyInt()))
+        .thenReturn(
+            List.of(
+                    getResultSetChunk(
+                        List.of("API.apiId", "API.apiName"),
+                        new String[][] {{"apiId1", "/login"}, {"apiId2", "/checkout"}}))
+                .iterator());
+
+    EntityService entityService =
+        new EntityService(
+            queryServiceClient,
+            500,
+            entityQueryServiceClient,
+            attributeMetadataProvider,
+            entityIdColumnsConfigs,
+            new ScopeFilterConfigs(ConfigFactory.empty()),
+            logConfig,
+            executionPools,
+            new SelectionConfig(ConfigFactory.empty()),
+            new TotalCacheConfig(ConfigFactory.empty()),
+            new PlannerConfig(ConfigFactory.empty()),
+            new RequestCoalescingConfig(ConfigFactory.empty()),
+            new ResultCacheConfig(ConfigFactory.empty()),
+            new QueryLimitConfig(ConfigFactory.empty()));
+    EntitiesResponse response = entityService.getEntities(TENANT_ID, entitiesRequest, Map.of());
+
+    Assertions.assertEquals(2, response.getEntityCount());
+    QueryNodeProfile paginateProfile = response.getExecutionProfile();
+    Assertions.assertEquals("PAGINATE_ONLY", paginateProfile.getNodeType());
+    Assertions.assertEquals(2, paginateProfile.getRowCount());
+    Assertions.assertEquals(0, paginateProfile.getQueryCount());
+    Assertions.assertEquals(1, paginateProfile.getChildCount());
+    QueryNodeProfile dataFetcherProfile = paginateProfile.getChild(0);
+    Assertions.assertEquals("DATA_FETCHER", dataFetcherProfile.getNodeType());
+    Assertions.assertEquals(1, dataFetcherProfile.getQueryCount());
+    Assertions.assertEquals(2, dataFetcherProfile.getRowCount());
+    Assertions.assertTrue(dataFetcherProfile.getBytes() > 0);
+    Assertions.assertTrue(
+        paginateProfile.getWallTimeMillis() >= dataFetcherProfile.getWallTimeMillis());
+  }
+
   private Expression getStringListLiteral(List<String> values) {
     return Expression.newBuilder()
         .setLiteral(
@@ -0,0 +1,142 @@
+package org.hypertrace.gateway.service.entity.cache;
+
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.buildExpression;
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.generateEQFilter;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.gateway.service.entity.config.TotalCacheConfig;
+import org.hypertrace.gateway.service.v1.common.Filter;
+import org.hypertrace.gateway.service.v1.common.Operator;
+import org.hypertrace.gateway.service.v1.entity.EntitiesRequest;
+import org.junit.jupiter.api.Test;
+
+public class EntityTotalCacheTest {
+  private static final String TENANT_ID = "tenant1";
+  private static final String QS_SOURCE = "QS";
+  private static final Map<String, String> HEADERS = Map.of("authorization", "Bearer user1");
+  private static final TotalCacheConfig ENABLED_CONFIG =
+      new TotalCacheConfig(
+          ConfigFactory.parseMap(Map.of("entity.service.total.cache.config.enabled", true)));
+
+  private static final Filter FILTER_A = generateEQFilter("API.apiDiscoveryState", "DISCOVERED");
+  private static final Filter FILTER_B = generateEQFilter("API.apiName", "/login");
+  private static final EntitiesRequest ENTITIES_REQUEST =
+      EntitiesRequest.newBuilder()
+          .setEntityType("API")
+          .setStartTimeMillis(120_000L)
+          .setEndTimeMillis(480_000L)
+          .setFilter(
+              Filter.newBuilder()
+                  .setOperator(Operator.AND)
+                  .addChildFilter(FILTER_A)
+                  .addChildFilter(FILTER_B))
+          .addSelection(buildExpression("API.apiName"))
+          .setLimit(10)
+          .setOffset(0)
+          .setFetchTotal(true)
+          .build();
+
+  @Test
+  public void testTotalIsSharedAcrossPages() {
+    EntityTotalCache entityTotalCache = new EntityTotalCache(ENABLED_CONFIG);
+    AtomicInteger loads = new AtomicInteger();
+
+    assertEquals(
+        42L,
+        entityTotalCache.getTotal(
+            QS_SOURCE, TENANT_ID, HEADERS, ENTITIES_REQUEST, () -> load(loads)));
+
+    // Different page, selections and order of the AND filter
+    EntitiesRequest nextPageRequest =
+        ENTITIES_REQUEST.toBuilder()
+            .setOffset(10)
+            .clearSelection()
+            .setFilter(
+                Filter.newBuilder()
+                    .setOperator(Operator.AND)
+                    .addChildFilter(FILTER_B)
+                    .addChildFilter(FILTER_A))
+            .build();
+    assertEquals(
+        42L,
+        entityTotalCache.getTotal(
+            QS_SOURCE, TENANT_ID, HEADERS, nextPageRequest, () -> load(loads)));
+    assertEquals(1, loads.get());
+    assertEquals(
+        Optional.of(42L),
+        entityTotalCache.getApproximateTotal(QS_SOURCE, TENANT_ID, HEADERS, nextPageRequest));
+  }
+
+  @Test
+  public void testExactTotalIsNotSharedAcrossTimeRangesInTheSameBucket() {
+    EntityTotalCache entityTotalCache = new EntityTotalCache(ENABLED_CONFIG);
+    AtomicInteger loads = new AtomicInteger();
+    EntitiesRequest shiftedRequest =
+        ENTITIES_REQUEST.toBuilder()
+            .setStartTimeMillis(ENTITIES_REQUEST.getStartTimeMillis() + 1000)
+            .build();
+
+    entityTotalCache.getTotal(QS_SOURCE, TENANT_ID, HEADERS, ENTITIES_REQUEST, () -> load(loads));
+    // Within the same minute, the approximate total is shared but the exact total is not
+    assertEquals(
+        Optional.of(42L),
+        entityTotalCache.getApproximateTotal(QS_SOURCE, TENANT_ID, HEADERS, shiftedRequest));
+    entityTotalCache.getTotal(QS_SOURCE, TENANT_ID, HEADERS, shiftedRequest, () -> load(loads));
+
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testTotalIsNotSharedAcrossTenantsHeadersOrFilters() {
+    EntityTotalCache entityTotalCache = new EntityTotalCache(ENABLED_CONFIG);
+    AtomicInteger loads = new AtomicInteger();
+
+    entityTotalCache.getTotal(QS_SOURCE, TENANT_ID, HEADERS, ENTITIES_REQUEST, () -> load(loads));
+    entityTotalCache.getTotal(QS_SOURCE, "tenant2", HEADERS, ENTITIES_REQUEST, () -> load(loads));
+    entityTotalCache.getTotal(
+        QS_SOURCE,
+        TENANT_ID,
+        Map.of("authorization", "Bearer user2"),
+        ENTITIES_REQUEST,
+        () -> load(loads));
+    entityTotalCache.getTotal(
+        QS_SOURCE,
+        TENANT_ID,
+        HEADERS,
+        ENTITIES_REQUEST.toBuilder().setFilter(FILTER_A).build(),
+        () -> load(loads));
+
+    assertEquals(4, loads.get());
+    assertTrue(
+        entityTotalCache
+            .getApproximateTotal(
+                QS_SOURCE, TENANT_ID, Map.of("authorization", "Bearer user3"), ENTITIES_REQUEST)
+            .isEmpty());
+  }
+
+  @Test
+  public void testDisabledCacheAlwaysLoadsTotal() {
+    EntityTotalCache entityTotalCache =
+        new EntityTotalCache(new TotalCacheConfig(ConfigFactory.empty()));
+    AtomicInteger loads = new AtomicInteger();
+
+    entityTotalCache.getTotal(QS_SOURCE, TENANT_ID, HEADERS, ENTITIES_REQUEST, () -> load(loads));
+    entityTotalCache.getTotal(QS_SOURCE, TENANT_ID, HEADERS, ENTITIES_REQUEST, () -> load(loads));
+
+    assertEquals(2, loads.get());
+    assertTrue(
+        entityTotalCache
+            .getApproximateTotal(QS_SOURCE, TENANT_ID, HEADERS, ENTITIES_REQUEST)
+            .isEmpty());
+  }
+
+  private static long load(AtomicInteger loads) {
+    loads.incrementAndGet();
+    return 42L;
+  }
+}
@@ -16,6 +16,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -33,6 +34,8 @@ import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
 import org.hypertrace.gateway.service.common.RequestContext;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.config.EntityIdColumnsConfigs;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics;
 import org.hypertrace.gateway.service.entity.query.visitor.FilterOptimizingVisitor;
 import org.hypertrace.gateway.service.v1.common.Filter;
 import org.hypertrace.gateway.service.v1.common.FunctionType;
@@ -190,6 +193,28 @@ public class ExecutionTreeBuilderTest {
     assertEquals(((DataFetcherNode) optimizedQueryNode).getFilter(), filter);
   }
 
+  @Test
+  public void testFilterSourceIsChosenByEstimatedCost() {
+    Filter filter = generateEQFilter(API_DISCOVERY_STATE, "DISCOVERED");
+    ExecutionContext executionContext = getExecutionContextForOptimizedFilterTests(filter);
+    PlannerConfig plannerConfig = new PlannerConfig(ConfigFactory.empty());
+    SourceStatistics sourceStatistics = new SourceStatistics(plannerConfig);
+    ExecutionTreeBuilder executionTreeBuilder =
+        new ExecutionTreeBuilder(executionContext, plannerConfig, sourceStatistics);
+
+    // Without statistics, QS is preferred
+    QueryNode queryNode =
+        executionTreeBuilder.buildFilterTree(executionContext.getEntitiesRequest(), filter);
+    assertEquals(AttributeSource.QS.name(), ((DataFetcherNode) queryNode).getSource());
+
+    sourceStatistics.record(
+        TENANT_ID, AttributeScope.API.name(), AttributeSource.QS.name(), filter, 100, 5000, false);
+    sourceStatistics.record(
+        TENANT_ID, AttributeScope.API.name(), AttributeSource.EDS.name(), filter, 20, 10, false);
+    queryNode = executionTreeBuilder.buildFilterTree(executionContext.getEntitiesRequest(), filter);
+    assertEquals(AttributeSource.EDS.name(), ((DataFetcherNode) queryNode).getSource());
+  }
+
   @Test
   public void testOptimizedFilterTreeBuilderAndOrFilterSingleDataSource() {
     {
@@ -0,0 +1,113 @@
+package org.hypertrace.gateway.service.entity.query.planner;
+
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.generateAndOrNotFilter;
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.generateEQFilter;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.Map;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics.SourceStatistic;
+import org.hypertrace.gateway.service.v1.common.Filter;
+import org.hypertrace.gateway.service.v1.common.Operator;
+import org.junit.jupiter.api.Test;
+
+public class SourceStatisticsTest {
+  private static final String TENANT_ID = "tenant1";
+  private static final String ENTITY_TYPE = "API";
+
+  @Test
+  public void testMovingAverages() {
+    SourceStatistics sourceStatistics =
+        new SourceStatistics(
+            new PlannerConfig(
+                ConfigFactory.parseMap(
+                    Map.of("entity.service.planner.config.statistics.smoothing.factor", 0.5))));
+    Filter filter = generateEQFilter("API.name", "checkout");
+
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", filter, 100, 10, false);
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", filter, 200, 30, false);
+
+    SourceStatistic statistic =
+        sourceStatistics.get(TENANT_ID, ENTITY_TYPE, "QS", filter).orElseThrow();
+    assertEquals(150, statistic.getLatencyMillis());
+    assertEquals(20, statistic.getRowCount().getAsDouble());
+    assertTrue(sourceStatistics.get("tenant2", ENTITY_TYPE, "QS", filter).isEmpty());
+    assertTrue(sourceStatistics.get(TENANT_ID, ENTITY_TYPE, "EDS", filter).isEmpty());
+  }
+
+  @Test
+  public void testLimitedFetchesDoNotUpdateRowCount() {
+    SourceStatistics sourceStatistics =
+        new SourceStatistics(new PlannerConfig(ConfigFactory.empty()));
+    Filter filter = generateEQFilter("API.name", "checkout");
+
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", filter, 100, 10, true);
+
+    SourceStatistic statistic =
+        sourceStatistics.get(TENANT_ID, ENTITY_TYPE, "QS", filter).orElseThrow();
+    assertEquals(100, statistic.getLatencyMillis());
+    assertFalse(statistic.getRowCount().isPresent());
+  }
+
+  @Test
+  public void testUnseenFilterShapeFallsBackToSourceStatistics() {
+    SourceStatistics sourceStatistics =
+        new SourceStatistics(new PlannerConfig(ConfigFactory.empty()));
+    sourceStatistics.record(
+        TENANT_ID, ENTITY_TYPE, "EDS", generateEQFilter("API.name", "checkout"), 10, 5, false);
+
+    // same shape with another value
+    assertEquals(
+        5,
+        sourceStatistics
+            .get(TENANT_ID, ENTITY_TYPE, "EDS", generateEQFilter("API.name", "cart"))
+            .orElseThrow()
+            .getRowCount()
+            .getAsDouble());
+    // unseen shape
+    assertEquals(
+        5,
+        sourceStatistics
+            .get(TENANT_ID, ENTITY_TYPE, "EDS", generateEQFilter("API.id", "api1"))
+            .orElseThrow()
+            .getRowCount()
+            .getAsDouble());
+  }
+
+  @Test
+  public void testFilterShape() {
+    Filter filter =
+        generateAndOrNotFilter(
+            Operator.AND,
+            generateEQFilter("API.name", "checkout"),
+            generateEQFilter("API.id", "api1"));
+    Filter reorderedFilter =
+        generateAndOrNotFilter(
+            Operator.AND,
+            generateEQFilter("API.id", "api2"),
+            generateEQFilter("API.name", "cart"));
+
+    assertEquals("AND(API.id EQ,API.name EQ)", SourceStatistics.getFilterShape(filter));
+    assertEquals(
+        SourceStatistics.getFilterShape(filter), SourceStatistics.getFilterShape(reorderedFilter));
+    assertEquals("", SourceStatistics.getFilterShape(Filter.getDefaultInstance()));
+  }
+
+  @Test
+  public void testDisabled() {
+    SourceStatistics sourceStatistics =
+        new SourceStatistics(
+            new PlannerConfig(
+                ConfigFactory.parseMap(
+                    Map.of("entity.service.planner.config.cost.based.enabled", false))));
+    Filter filter = generateEQFilter("API.name", "checkout");
+
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", filter, 100, 10, false);
+
+    assertFalse(sourceStatistics.isEnabled());
+    assertTrue(sourceStatistics.get(TENANT_ID, ENTITY_TYPE, "QS", filter).isEmpty());
+  }
+}
@@ -0,0 +1,92 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.generateEQFilter;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.typesafe.config.ConfigFactory;
+import java.util.List;
+import org.hypertrace.gateway.service.entity.config.PlannerConfig;
+import org.hypertrace.gateway.service.entity.query.AndNode;
+import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
+import org.hypertrace.gateway.service.entity.query.OrNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
+import org.hypertrace.gateway.service.entity.query.planner.CostModel;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CostBasedOrderingVisitorTest {
+  private static final String TENANT_ID = "tenant1";
+  private static final String ENTITY_TYPE = "API";
+
+  private SourceStatistics sourceStatistics;
+  private CostBasedOrderingVisitor costBasedOrderingVisitor;
+
+  @BeforeEach
+  public void setup() {
+    PlannerConfig plannerConfig = new PlannerConfig(ConfigFactory.empty());
+    sourceStatistics = new SourceStatistics(plannerConfig);
+    costBasedOrderingVisitor =
+        new CostBasedOrderingVisitor(
+            new CostModel(sourceStatistics, TENANT_ID, ENTITY_TYPE), plannerConfig);
+  }
+
+  @Test
+  public void testMostSelectiveChildComesFirst() {
+    DataFetcherNode qsNode = new DataFetcherNode("QS", generateEQFilter("API.duration", "10"));
+    DataFetcherNode edsNode = new DataFetcherNode("EDS", generateEQFilter("API.name", "cart"));
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", qsNode.getFilter(), 50, 10000, false);
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "EDS", edsNode.getFilter(), 200, 3, false);
+
+    AndNode orderedNode =
+        (AndNode) new AndNode(List.of(qsNode, edsNode)).acceptVisitor(costBasedOrderingVisitor);
+
+    assertEquals(List.of(edsNode, qsNode), orderedNode.getChildNodes());
+    assertTrue(orderedNode.isSemiJoin());
+  }
+
+  @Test
+  public void testNoSemiJoinForUnselectiveChildren() {
+    DataFetcherNode qsNode = new DataFetcherNode("QS", generateEQFilter("API.duration", "10"));
+    DataFetcherNode edsNode = new DataFetcherNode("EDS", generateEQFilter("API.name", "cart"));
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", qsNode.getFilter(), 50, 50000, false);
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "EDS", edsNode.getFilter(), 200, 20000, false);
+
+    AndNode orderedNode =
+        (AndNode) new AndNode(List.of(qsNode, edsNode)).acceptVisitor(costBasedOrderingVisitor);
+
+    assertEquals(List.of(edsNode, qsNode), orderedNode.getChildNodes());
+    assertFalse(orderedNode.isSemiJoin());
+  }
+
+  @Test
+  public void testChildrenWithoutStatisticsKeepTheirOrder() {
+    DataFetcherNode qsNode = new DataFetcherNode("QS", generateEQFilter("API.duration", "10"));
+    DataFetcherNode edsNode = new DataFetcherNode("EDS", generateEQFilter("API.name", "cart"));
+
+    AndNode orderedNode =
+        (AndNode) new AndNode(List.of(qsNode, edsNode)).acceptVisitor(costBasedOrderingVisitor);
+
+    assertEquals(List.of(qsNode, edsNode), orderedNode.getChildNodes());
+    assertFalse(orderedNode.isSemiJoin());
+  }
+
+  @Test
+  public void testNestedAndNodesAreOrdered() {
+    DataFetcherNode qsNode = new DataFetcherNode("QS", generateEQFilter("API.duration", "10"));
+    DataFetcherNode edsNode = new DataFetcherNode("EDS", generateEQFilter("API.name", "cart"));
+    DataFetcherNode otherQsNode = new DataFetcherNode("QS", generateEQFilter("API.id", "api1"));
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "QS", qsNode.getFilter(), 50, 10000, false);
+    sourceStatistics.record(TENANT_ID, ENTITY_TYPE, "EDS", edsNode.getFilter(), 200, 3, false);
+
+    QueryNode orNode =
+        new OrNode(List.of(new AndNode(List.of(qsNode, edsNode)), otherQsNode))
+            .acceptVisitor(costBasedOrderingVisitor);
+
+    AndNode orderedNode = (AndNode) ((OrNode) orNode).getChildNodes().get(0);
+    assertEquals(List.of(edsNode, qsNode), orderedNode.getChildNodes());
+    assertEquals(otherQsNode, ((OrNode) orNode).getChildNodes().get(1));
+  }
+}
@@ -0,0 +1,97 @@
+package org.hypertrace.gateway.service.entity.query.visitor;
+
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.getAggregatedMetricValue;
+import static org.hypertrace.gateway.service.common.EntitiesRequestAndResponseUtils.getStringValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
+import org.hypertrace.gateway.service.entity.EntityKey;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.MetricSeries;
+import org.hypertrace.gateway.service.v1.entity.Entity;
+import org.hypertrace.gateway.service.v1.entity.EntityInteraction;
+import org.junit.jupiter.api.Test;
+
+public class EntityFetcherResponseMergerTest {
+
+  @Test
+  public void testMergeMatchesProtoMergeFrom() {
+    Entity target =
+        Entity.newBuilder()
+            .setId("id1")
+            .putAttribute("name", getStringValue("old"))
+            .putAttribute("type", getStringValue("HTTP"))
+            .putMetric("duration", getAggregatedMetricValue(FunctionType.AVG, 10.0))
+            .addIncomingInteraction(
+                EntityInteraction.newBuilder().putAttribute("from", getStringValue("a")))
+            .build();
+    Entity source =
+        Entity.newBuilder()
+            .setEntityType("API")
+            .putAttribute("name", getStringValue("new"))
+            .putMetric("numCalls", getAggregatedMetricValue(FunctionType.SUM, 5.0))
+            .putMetricSeries("numCalls", MetricSeries.newBuilder().setAggregation("SUM").build())
+            .addIncomingInteraction(
+                EntityInteraction.newBuilder().putAttribute("from", getStringValue("b")))
+            .addOutgoingInteraction(
+                EntityInteraction.newBuilder().putAttribute("to", getStringValue("c")))
+            .build();
+
+    assertEquals(
+        target.toBuilder().mergeFrom(source).build(),
+        EntityFetcherResponseMerger.merge(target.toBuilder(), source.toBuilder()).build());
+  }
+
+  @Test
+  public void testIntersectMergesInResponseOrder() {
+    EntityFetcherResponse first =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("id1"), Entity.newBuilder().putAttribute("k", getStringValue("1")),
+                EntityKey.of("id2"), Entity.newBuilder().putAttribute("k", getStringValue("1")),
+                EntityKey.of("id3"), Entity.newBuilder().putAttribute("k", getStringValue("1"))));
+    EntityFetcherResponse second =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("id1"), Entity.newBuilder().putAttribute("k", getStringValue("2")),
+                EntityKey.of("id2"), Entity.newBuilder().putAttribute("k", getStringValue("2"))));
+    EntityFetcherResponse third =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("id2"), Entity.newBuilder().putAttribute("j", getStringValue("3"))));
+
+    Map<EntityKey, Entity.Builder> result =
+        EntityFetcherResponseMerger.intersect(List.of(first, second, third))
+            .getEntityKeyBuilderMap();
+
+    assertEquals(1, result.size());
+    assertEquals(
+        Map.of("k", getStringValue("2"), "j", getStringValue("3")),
+        result.get(EntityKey.of("id2")).getAttributeMap());
+  }
+
+  @Test
+  public void testUnionKeepsFirstSeenOrder() {
+    EntityFetcherResponse first =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("id2"), Entity.newBuilder().putAttribute("k", getStringValue("1"))));
+    EntityFetcherResponse second =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("id2"), Entity.newBuilder().putAttribute("k", getStringValue("2"))));
+    EntityFetcherResponse third =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("id1"), Entity.newBuilder().putAttribute("j", getStringValue("3"))));
+
+    Map<EntityKey, Entity.Builder> result =
+        EntityFetcherResponseMerger.union(List.of(first, second, third)).getEntityKeyBuilderMap();
+
+    assertEquals(List.of(EntityKey.of("id2"), EntityKey.of("id1")), List.copyOf(result.keySet()));
+    assertEquals("2", result.get(EntityKey.of("id2")).getAttributeMap().get("k").getString());
+    assertEquals("3", result.get(EntityKey.of("id1")).getAttributeMap().get("j").getString());
+  }
+}
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -31,19 +32,28 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.hypertrace.core.attribute.service.v1.AttributeScope;
 import org.hypertrace.entity.v1.entitytype.EntityType;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
 import org.hypertrace.gateway.service.common.datafetcher.EntityDataServiceEntityFetcher;
 import org.hypertrace.gateway.service.common.datafetcher.EntityFetcherResponse;
 import org.hypertrace.gateway.service.common.datafetcher.EntityResponse;
 import org.hypertrace.gateway.service.common.datafetcher.QueryServiceEntityFetcher;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
 import org.hypertrace.gateway.service.entity.EntitiesRequestContext;
 import org.hypertrace.gateway.service.entity.EntityKey;
 import org.hypertrace.gateway.service.entity.EntityQueryHandlerRegistry;
+import org.hypertrace.gateway.service.entity.cache.EntityTotalCache;
+import org.hypertrace.gateway.service.entity.config.SelectionConfig;
+import org.hypertrace.gateway.service.entity.config.TotalCacheConfig;
+import org.hypertrace.gateway.service.entity.query.AndNode;
 import org.hypertrace.gateway.service.entity.query.DataFetcherNode;
 import org.hypertrace.gateway.service.entity.query.ExecutionContext;
 import org.hypertrace.gateway.service.entity.query.NoOpNode;
+import org.hypertrace.gateway.service.entity.query.OrNode;
 import org.hypertrace.gateway.service.entity.query.PaginateOnlyNode;
+import org.hypertrace.gateway.service.entity.query.QueryNode;
 import org.hypertrace.gateway.service.entity.query.SelectionNode;
 import org.hypertrace.gateway.service.entity.query.SortAndPaginateNode;
+import org.hypertrace.gateway.service.entity.query.planner.SourceStatistics;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
 import org.hypertrace.gateway.service.v1.common.DomainEntityType;
 import org.hypertrace.gateway.service.v1.common.Expression;
@@ -64,6 +74,7 @@ import org.hypertrace.gateway.service.v1.entity.Entity.Builder;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 public class ExecutionVisitorTest {
   private static final String QS_SOURCE = "QS";
@@ -118,6 +129,9 @@ public class ExecutionVisitorTest {
   private ExecutionVisitor executionVisitor;
   private QueryServiceEntityFetcher queryServiceEntityFetcher;
   private EntityDataServiceEntityFetcher entityDataServiceEntityFetcher;
+  private ExecutionPools executionPools;
+  private SelectionConfig selectionConfig;
+  private EntityTotalCache entityTotalCache;
 
   @BeforeEach
   public void setup() {
@@ -129,7 +143,18 @@ public class ExecutionVisitorTest {
         .thenReturn(queryServiceEntityFetcher);
     when(entityQueryHandlerRegistry.getEntityFetcher(EDS_SOURCE))
         .thenReturn(entityDataServiceEntityFetcher);
-    executionVisitor = new ExecutionVisitor(executionContext, entityQueryHandlerRegistry);
+    executionPools = new ExecutionPools(new ExecutionPoolConfigs(ConfigFactory.empty()));
+    selectionConfig = new SelectionConfig(ConfigFactory.empty());
+    entityTotalCache = new EntityTotalCache(new TotalCacheConfig(ConfigFactory.empty()));
+    executionVisitor =
+        new ExecutionVisitor(
+            executionContext,
+            entityQueryHandlerRegistry,
+            executionPools,
+            selectionConfig,
+            entityTotalCache,
+            ExecutionProfiler.disabled(),
+            SourceStatistics.disabled());
   }
 
   @Test
@@ -209,6 +234,106 @@ public class ExecutionVisitorTest {
     }
   }
 
+  @Test
+  public void test_visitAndOrNodes_fetchChildrenOnSourcePools() {
+    when(executionContext.getEntitiesRequest()).thenReturn(ENTITIES_REQUEST);
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    when(queryServiceEntityFetcher.getEntities(any(), any())).thenReturn(result2);
+    when(entityDataServiceEntityFetcher.getEntities(any(), any())).thenReturn(result3);
+    List<QueryNode> childNodes =
+        List.of(
+            new DataFetcherNode(QS_SOURCE, Filter.getDefaultInstance()),
+            new DataFetcherNode(EDS_SOURCE, Filter.getDefaultInstance()));
+
+    EntityResponse andResponse = executionVisitor.visit(new AndNode(childNodes));
+    assertEquals(
+        Set.of(EntityKey.of("id1")),
+        andResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().keySet());
+    assertEquals(1, andResponse.getTotal());
+
+    EntityResponse orResponse = executionVisitor.visit(new OrNode(childNodes));
+    assertEquals(
+        Set.of(EntityKey.of("id1"), EntityKey.of("id2"), EntityKey.of("id3")),
+        orResponse.getEntityFetcherResponse().getEntityKeyBuilderMap().keySet());
+    assertEquals(3, orResponse.getTotal());
+    verify(queryServiceEntityFetcher, times(2)).getEntities(any(), any());
+    verify(entityDataServiceEntityFetcher, times(2)).getEntities(any(), any());
+  }
+
+  @Test
+  public void test_visitSemiJoinAndNode_restrictsSiblingsToDrivingEntities() {
+    when(executionContext.getEntitiesRequest()).thenReturn(ENTITIES_REQUEST);
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    Expression entityIdExpression = buildExpression("API.id");
+    when(executionContext.getEntityIdExpressions()).thenReturn(List.of(entityIdExpression));
+    when(entityDataServiceEntityFetcher.getEntities(any(), any())).thenReturn(result3);
+    when(queryServiceEntityFetcher.getEntities(any(), any())).thenReturn(result2);
+    Filter qsFilter = generateEQFilter("API.duration", "10");
+    List<QueryNode> childNodes =
+        List.of(
+            new DataFetcherNode(EDS_SOURCE, generateEQFilter("API.name", "cart")),
+            new DataFetcherNode(QS_SOURCE, qsFilter));
+
+    EntityResponse response = executionVisitor.visit(new AndNode(childNodes, true, 10000));
+
+    assertEquals(
+        Set.of(EntityKey.of("id1")),
+        response.getEntityFetcherResponse().getEntityKeyBuilderMap().keySet());
+    ArgumentCaptor<EntitiesRequest> qsRequestCaptor =
+        ArgumentCaptor.forClass(EntitiesRequest.class);
+    verify(queryServiceEntityFetcher).getEntities(any(), qsRequestCaptor.capture());
+    Filter restrictedFilter = qsRequestCaptor.getValue().getFilter();
+    assertEquals(Operator.AND, restrictedFilter.getOperator());
+    assertEquals(qsFilter, restrictedFilter.getChildFilter(0));
+    Filter entityIdFilter = restrictedFilter.getChildFilter(1);
+    assertEquals(entityIdExpression, entityIdFilter.getLhs());
+    assertEquals(Operator.IN, entityIdFilter.getOperator());
+    assertEquals(
+        Set.of("id1", "id3"),
+        new HashSet<>(entityIdFilter.getRhs().getLiteral().getValue().getStringArrayList()));
+  }
+
+  @Test
+  public void test_visitSemiJoinAndNode_tooManyDrivingEntitiesFetchesSiblingsUnrestricted() {
+    when(executionContext.getEntitiesRequest()).thenReturn(ENTITIES_REQUEST);
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    when(entityDataServiceEntityFetcher.getEntities(any(), any())).thenReturn(result3);
+    when(queryServiceEntityFetcher.getEntities(any(), any())).thenReturn(result2);
+    Filter qsFilter = generateEQFilter("API.duration", "10");
+    List<QueryNode> childNodes =
+        List.of(
+            new DataFetcherNode(EDS_SOURCE, generateEQFilter("API.name", "cart")),
+            new DataFetcherNode(QS_SOURCE, qsFilter));
+
+    EntityResponse response = executionVisitor.visit(new AndNode(childNodes, true, 1));
+
+    assertEquals(
+        Set.of(EntityKey.of("id1")),
+        response.getEntityFetcherResponse().getEntityKeyBuilderMap().keySet());
+    ArgumentCaptor<EntitiesRequest> qsRequestCaptor =
+        ArgumentCaptor.forClass(EntitiesRequest.class);
+    verify(queryServiceEntityFetcher).getEntities(any(), qsRequestCaptor.capture());
+    assertEquals(qsFilter, qsRequestCaptor.getValue().getFilter());
+  }
+
+  @Test
+  public void test_visitSemiJoinAndNode_emptyDrivingChildSkipsSiblings() {
+    when(executionContext.getEntitiesRequest()).thenReturn(ENTITIES_REQUEST);
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    when(entityDataServiceEntityFetcher.getEntities(any(), any()))
+        .thenReturn(new EntityFetcherResponse());
+    List<QueryNode> childNodes =
+        List.of(
+            new DataFetcherNode(EDS_SOURCE, generateEQFilter("API.name", "cart")),
+            new DataFetcherNode(QS_SOURCE, generateEQFilter("API.duration", "10")));
+
+    EntityResponse response = executionVisitor.visit(new AndNode(childNodes, true, 10000));
+
+    assertTrue(response.getEntityFetcherResponse().isEmpty());
+    assertEquals(0, response.getTotal());
+    verify(queryServiceEntityFetcher, never()).getEntities(any(), any());
+  }
+
   @Test
   public void testConstructFilterFromChildNodesResultEmptyResults() {
     // Empty results.
@@ -256,6 +381,47 @@ public class ExecutionVisitorTest {
         ValueType.STRING_ARRAY, filter.getRhs().getLiteral().getValue().getValueType());
   }
 
+  @Test
+  public void testConstructFiltersFromChildNodesResultSplitsEntityIdsIntoBatches() {
+    EntityFetcherResponse result =
+        new EntityFetcherResponse(
+            Map.of(
+                EntityKey.of("api0"), Entity.newBuilder(),
+                EntityKey.of("api1"), Entity.newBuilder(),
+                EntityKey.of("api2"), Entity.newBuilder()));
+    Expression entityIdExpression =
+        Expression.newBuilder()
+            .setColumnIdentifier(
+                ColumnIdentifier.newBuilder().setColumnName("API.id").setAlias("entityId0").build())
+            .build();
+    when(executionContext.getEntityIdExpressions()).thenReturn(List.of(entityIdExpression));
+    ExecutionVisitor batchingExecutionVisitor =
+        new ExecutionVisitor(
+            executionContext,
+            entityQueryHandlerRegistry,
+            executionPools,
+            new SelectionConfig(
+                ConfigFactory.parseMap(
+                    Map.of("entity.service.selection.config.entity.id.batch.size", 2))),
+            entityTotalCache,
+            ExecutionProfiler.disabled(),
+            SourceStatistics.disabled());
+
+    List<Filter> filters = batchingExecutionVisitor.constructFiltersFromChildNodesResult(result);
+
+    Assertions.assertEquals(2, filters.size());
+    filters.forEach(filter -> Assertions.assertEquals(Operator.IN, filter.getOperator()));
+    Assertions.assertEquals(
+        Set.of("api0", "api1", "api2"),
+        filters.stream()
+            .map(filter -> filter.getRhs().getLiteral().getValue().getStringArrayList())
+            .flatMap(List::stream)
+            .collect(Collectors.toSet()));
+    Assertions.assertEquals(
+        List.of(executionVisitor.constructFilterFromChildNodesResult(result)),
+        executionVisitor.constructFiltersFromChildNodesResult(result));
+  }
+
   @Test
   public void testConstructFilterFromChildNodesNonEmptyResultsMultipleEntityIdExpressions() {
     EntityFetcherResponse result =
@@ -431,6 +597,74 @@ public class ExecutionVisitorTest {
         new EntityResponse(entityFetcherResponse, 100L), executionVisitor.visit(dataFetcherNode));
   }
 
+  @Test
+  public void test_visitDataFetcherNode_totalFailureFailsTheNode() {
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder(ENTITIES_REQUEST)
+            .addSelection(buildExpression(API_NAME_ATTR))
+            .setLimit(10)
+            .setOffset(0)
+            .build();
+    when(executionContext.getEntitiesRequest()).thenReturn(entitiesRequest);
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    when(queryServiceEntityFetcher.getEntities(any(), any())).thenReturn(result1);
+    when(queryServiceEntityFetcher.getTotal(any(), any()))
+        .thenThrow(new IllegalStateException("total failed"));
+
+    DataFetcherNode dataFetcherNode =
+        new DataFetcherNode(
+            QS_SOURCE,
+            Filter.getDefaultInstance(),
+            10,
+            0,
+            List.of(buildOrderByExpression(API_ID_ATTR)),
+            true);
+
+    IllegalStateException exception =
+        Assertions.assertThrows(
+            IllegalStateException.class, () -> executionVisitor.visit(dataFetcherNode));
+    assertEquals("total failed", exception.getMessage());
+  }
+
+  @Test
+  public void test_visitDataFetcherNode_approximateTotalWithoutTotalCacheIsExact() {
+    EntitiesRequest entitiesRequest =
+        EntitiesRequest.newBuilder(ENTITIES_REQUEST)
+            .addSelection(buildExpression(API_NAME_ATTR))
+            .setLimit(10)
+            .setOffset(0)
+            .setApproximateTotal(true)
+            .build();
+    when(executionContext.getEntitiesRequest()).thenReturn(entitiesRequest);
+    when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
+    when(queryServiceEntityFetcher.getEntities(any(), any())).thenReturn(result1);
+    when(queryServiceEntityFetcher.getTotal(any(), any())).thenReturn(100L);
+    ExecutionVisitor visitor =
+        new ExecutionVisitor(
+            executionContext,
+            entityQueryHandlerRegistry,
+            executionPools,
+            selectionConfig,
+            new EntityTotalCache(
+                new TotalCacheConfig(
+                    ConfigFactory.parseMap(Map.of("enabled", false))
+                        .atPath("entity.service.total.cache.config"))),
+            ExecutionProfiler.disabled(),
+            SourceStatistics.disabled());
+
+    DataFetcherNode dataFetcherNode =
+        new DataFetcherNode(
+            QS_SOURCE,
+            Filter.getDefaultInstance(),
+            10,
+            0,
+            List.of(buildOrderByExpression(API_ID_ATTR)),
+            true);
+
+    assertEquals(100L, visitor.visit(dataFetcherNode).getTotal());
+    verify(queryServiceEntityFetcher, times(1)).getTotal(any(), any());
+  }
+
   @Test
   public void test_visitDataFetcherNode_cannotFetchTotal() {
     List<OrderByExpression> orderByExpressions = List.of(buildOrderByExpression(API_ID_ATTR));
@@ -752,7 +986,15 @@ public class ExecutionVisitorTest {
   @Test
   public void test_visitSelectionNode_differentSource_callSeparatedCalls() {
     ExecutionVisitor executionVisitor =
-        spy(new ExecutionVisitor(executionContext, entityQueryHandlerRegistry));
+        spy(
+            new ExecutionVisitor(
+                executionContext,
+                entityQueryHandlerRegistry,
+                executionPools,
+                selectionConfig,
+                entityTotalCache,
+                ExecutionProfiler.disabled(),
+                SourceStatistics.disabled()));
     when(executionContext.getTimestampAttributeId()).thenReturn("API.startTime");
     SelectionNode selectionNode =
         new SelectionNode.Builder(new NoOpNode())
@@ -928,7 +1170,15 @@ public class ExecutionVisitorTest {
             .setFilter(generateEQFilter(API_DISCOVERY_STATE, "DISCOVERED"))
             .build();
     ExecutionVisitor executionVisitor =
-        spy(new ExecutionVisitor(executionContext, entityQueryHandlerRegistry));
+        spy(
+            new ExecutionVisitor(
+                executionContext,
+                entityQueryHandlerRegistry,
+                executionPools,
+                selectionConfig,
+                entityTotalCache,
+                ExecutionProfiler.disabled(),
+                SourceStatistics.disabled()));
     when(executionContext.getEntitiesRequest()).thenReturn(entitiesRequest);
 
     // Selection node with NoOp child, to short-circuit the call to first service.
@@ -1,14 +1,25 @@
 package org.hypertrace.gateway.service.explore;
 
 import com.google.protobuf.GeneratedMessageV3;
+import com.typesafe.config.ConfigFactory;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.Stream;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AbstractServiceTest;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.config.ExecutionPoolConfigs;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.common.config.RequestCoalescingConfig;
+import org.hypertrace.gateway.service.common.config.ResultCacheConfig;
 import org.hypertrace.gateway.service.common.config.ScopeFilterConfigs;
+import org.hypertrace.gateway.service.common.config.TimeSeriesCacheConfig;
+import org.hypertrace.gateway.service.common.executor.ExecutionPools;
+import org.hypertrace.gateway.service.explore.config.PipeliningConfig;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.junit.jupiter.api.Assertions;
 
 public class ExploreServiceTest extends AbstractServiceTest<ExploreRequest, ExploreResponse> {
   private static final String SUITE_NAME = "explore";
@@ -39,7 +50,24 @@ public class ExploreServiceTest extends AbstractServiceTest<ExploreRequest, Expl
       AttributeMetadataProvider attributeMetadataProvider,
       ScopeFilterConfigs scopeFilterConfigs) {
     ExploreService exploreService =
-        new ExploreService(queryServiceClient, 500, attributeMetadataProvider, scopeFilterConfigs);
-    return exploreService.explore(TENANT_ID, request, new HashMap<>());
+        new ExploreService(
+            queryServiceClient,
+            500,
+            attributeMetadataProvider,
+            scopeFilterConfigs,
+            new RequestCoalescingConfig(ConfigFactory.empty()),
+            new ResultCacheConfig(ConfigFactory.empty()),
+            new TimeSeriesCacheConfig(ConfigFactory.empty()),
+            new ExecutionPools(new ExecutionPoolConfigs(ConfigFactory.empty())),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new PipeliningConfig(
+                ConfigFactory.parseMap(Map.of("enabled", true, "speculation.enabled", true))
+                    .atPath("explore.service.pipelining.config")),
+            new QueryLimitConfig(ConfigFactory.empty()));
+    ExploreResponse response = exploreService.explore(TENANT_ID, request, new HashMap<>());
+    // Grouped time series are queried for the groups found the first time when the request is
+    // repeated, which must not change the response
+    Assertions.assertEquals(response, exploreService.explore(TENANT_ID, request, new HashMap<>()));
+    return response;
   }
 }
@@ -2,9 +2,14 @@ package org.hypertrace.gateway.service.explore;
 
 import static org.mockito.Mockito.mock;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
 import java.util.List;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
@@ -75,7 +80,12 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -152,7 +162,12 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -229,7 +244,12 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -301,7 +321,12 @@ public class RequestHandlerTest {
 
     RequestHandler requestHandler =
         new RequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -0,0 +1,231 @@
+package org.hypertrace.gateway.service.explore;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Operator;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TheRestGroupRequestHandlerTest {
+  private static final String NAME_ATTRIBUTE = "API.name";
+  private static final String LABELS_ATTRIBUTE = "API.labels";
+  private static final String CALLS_ALIAS = "SUM_numCalls";
+  private static final String DURATION_ALIAS = "SUM_duration";
+  private static final ExploreRequest REQUEST =
+      ExploreRequest.newBuilder()
+          .setContext("API")
+          .setStartTimeMillis(1000L)
+          .setEndTimeMillis(61000L)
+          .addSelection(createSum("API.numCalls", CALLS_ALIAS))
+          .addSelection(createSum("API.duration", DURATION_ALIAS))
+          .addGroupBy(QueryExpressionUtil.buildAttributeExpression(NAME_ATTRIBUTE))
+          .setGroupLimit(2)
+          .setIncludeRestGroup(true)
+          .build();
+
+  private RequestHandlerWithSorting requestHandler;
+  private AttributeMetadataProvider attributeMetadataProvider;
+
+  @BeforeEach
+  public void setup() {
+    requestHandler = mock(RequestHandlerWithSorting.class);
+    attributeMetadataProvider = mock(AttributeMetadataProvider.class);
+    when(attributeMetadataProvider.getAttributesMetadata(any(), eq("API")))
+        .thenReturn(
+            Map.of(
+                NAME_ATTRIBUTE,
+                AttributeMetadata.newBuilder()
+                    .setId(NAME_ATTRIBUTE)
+                    .setValueKind(AttributeKind.TYPE_STRING)
+                    .build(),
+                LABELS_ATTRIBUTE,
+                AttributeMetadata.newBuilder()
+                    .setId(LABELS_ATTRIBUTE)
+                    .setValueKind(AttributeKind.TYPE_STRING_ARRAY)
+                    .build()));
+  }
+
+  @Test
+  public void restGroupIsTheTotalMinusTheFoundGroups() {
+    when(requestHandler.handleRequest(any(), any()))
+        .thenReturn(createResponse(createRow(null, createLong(10), createDouble(7.5))));
+    TheRestGroupRequestHandler handler = createHandler(true);
+    ExploreResponse.Builder response =
+        createResponse(
+            createRow("a", createLong(3), createDouble(2.0)),
+            createRow("b", createLong(4), createDouble(1.5)));
+
+    CompletableFuture<ExploreResponse.Builder> totalFuture =
+        handler.startTotalRequest(createContext(REQUEST), REQUEST).orElseThrow();
+    handler.getRowsForTheRestGroup(createContext(REQUEST), REQUEST, response, totalFuture);
+
+    Assertions.assertEquals(
+        createRow("__Other", createLong(3), createDouble(4.0)).build(),
+        response.getRow(2).build());
+    // Only the total was queried, without excluding the found groups
+    ArgumentCaptor<ExploreRequest> requests = ArgumentCaptor.forClass(ExploreRequest.class);
+    verify(requestHandler, times(1)).handleRequest(any(), requests.capture());
+    Assertions.assertEquals(0, requests.getValue().getGroupByCount());
+    Assertions.assertEquals(REQUEST.getFilter(), requests.getValue().getFilter());
+  }
+
+  @Test
+  public void restGroupIsQueriedWhenTheValueTypesDiffer() {
+    assertRestGroupIsQueried(createLong(10), createDouble(3.0));
+  }
+
+  @Test
+  public void restGroupIsQueriedWhenTheValuesAreNotNumbers() {
+    assertRestGroupIsQueried(createString("10"), createString("3"));
+  }
+
+  @Test
+  public void totalIsCancelledWhenNoGroupsWereFound() {
+    List<Runnable> pendingTasks = new ArrayList<>();
+    TheRestGroupRequestHandler handler =
+        new TheRestGroupRequestHandler(
+            requestHandler,
+            pendingTasks::add,
+            createRestGroupConfig(true),
+            attributeMetadataProvider);
+    ExploreResponse.Builder response = ExploreResponse.newBuilder();
+
+    CompletableFuture<ExploreResponse.Builder> totalFuture =
+        handler.startTotalRequest(createContext(REQUEST), REQUEST).orElseThrow();
+    handler.getRowsForTheRestGroup(createContext(REQUEST), REQUEST, response, totalFuture);
+
+    Assertions.assertTrue(totalFuture.isCancelled());
+    Assertions.assertEquals(0, response.getRowCount());
+    pendingTasks.forEach(Runnable::run);
+    verify(requestHandler, never()).handleRequest(any(), any());
+  }
+
+  @Test
+  public void totalIsNotQueriedForMultiValuedGroupBys() {
+    ExploreRequest request =
+        REQUEST.toBuilder()
+            .clearGroupBy()
+            .addGroupBy(QueryExpressionUtil.buildAttributeExpression(LABELS_ATTRIBUTE))
+            .build();
+
+    Assertions.assertEquals(
+        Optional.empty(), createHandler(true).startTotalRequest(createContext(request), request));
+    // Unlike for the single valued group by
+    Assertions.assertTrue(
+        createHandler(true).startTotalRequest(createContext(REQUEST), REQUEST).isPresent());
+  }
+
+  @Test
+  public void totalIsNotQueriedWhenSubtractionIsDisabled() {
+    Assertions.assertEquals(
+        Optional.empty(), createHandler(false).startTotalRequest(createContext(REQUEST), REQUEST));
+    verify(requestHandler, never()).handleRequest(any(), any());
+  }
+
+  private void assertRestGroupIsQueried(Value total, Value foundGroupValue) {
+    when(requestHandler.handleRequest(any(), any()))
+        .thenReturn(createResponse(createRow(null, total, createDouble(7.5))))
+        .thenReturn(createResponse(createRow(null, createLong(7), createDouble(4.0))));
+    TheRestGroupRequestHandler handler = createHandler(true);
+    ExploreResponse.Builder response =
+        createResponse(createRow("a", foundGroupValue, createDouble(3.5)));
+
+    CompletableFuture<ExploreResponse.Builder> totalFuture =
+        handler.startTotalRequest(createContext(REQUEST), REQUEST).orElseThrow();
+    handler.getRowsForTheRestGroup(createContext(REQUEST), REQUEST, response, totalFuture);
+
+    Assertions.assertEquals(
+        createRow("__Other", createLong(7), createDouble(4.0)).build(),
+        response.getRow(1).build());
+    // The rest group was queried excluding the found groups
+    ArgumentCaptor<ExploreRequest> requests = ArgumentCaptor.forClass(ExploreRequest.class);
+    verify(requestHandler, times(2)).handleRequest(any(), requests.capture());
+    Assertions.assertEquals(
+        Operator.NOT_IN,
+        requests.getAllValues().get(1).getFilter().getChildFilter(0).getOperator());
+  }
+
+  private TheRestGroupRequestHandler createHandler(boolean subtractionEnabled) {
+    return new TheRestGroupRequestHandler(
+        requestHandler,
+        MoreExecutors.directExecutor(),
+        createRestGroupConfig(subtractionEnabled),
+        attributeMetadataProvider);
+  }
+
+  private RestGroupConfig createRestGroupConfig(boolean subtractionEnabled) {
+    return new RestGroupConfig(
+        ConfigFactory.parseMap(Map.of("subtraction.enabled", subtractionEnabled))
+            .atPath("explore.service.rest.group.config"));
+  }
+
+  private ExploreRequestContext createContext(ExploreRequest request) {
+    return new ExploreRequestContext("tenant1", request, Map.of());
+  }
+
+  private static Expression.Builder createSum(String attributeId, String alias) {
+    return Expression.newBuilder()
+        .setFunction(
+            FunctionExpression.newBuilder()
+                .setFunction(FunctionType.SUM)
+                .setAlias(alias)
+                .addArguments(QueryExpressionUtil.buildAttributeExpression(attributeId)));
+  }
+
+  private ExploreResponse.Builder createResponse(Row.Builder... rows) {
+    ExploreResponse.Builder response = ExploreResponse.newBuilder();
+    for (Row.Builder row : rows) {
+      response.addRow(row);
+    }
+    return response;
+  }
+
+  private Row.Builder createRow(String group, Value calls, Value duration) {
+    Row.Builder row = Row.newBuilder().putColumns(CALLS_ALIAS, calls);
+    row.putColumns(DURATION_ALIAS, duration);
+    if (group != null) {
+      row.putColumns(NAME_ATTRIBUTE, createString(group));
+    }
+    return row;
+  }
+
+  private Value createLong(long value) {
+    return Value.newBuilder().setValueType(ValueType.LONG).setLong(value).build();
+  }
+
+  private Value createDouble(double value) {
+    return Value.newBuilder().setValueType(ValueType.DOUBLE).setDouble(value).build();
+  }
+
+  private Value createString(String value) {
+    return Value.newBuilder().setValueType(ValueType.STRING).setString(value).build();
+  }
+}
@@ -1,11 +1,24 @@
 package org.hypertrace.gateway.service.explore;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
 import java.util.List;
+import java.util.Map;
 import org.hypertrace.core.query.service.client.QueryServiceClient;
 import org.hypertrace.gateway.service.common.AttributeMetadataProvider;
+import org.hypertrace.gateway.service.common.QueryLimitPlanner;
+import org.hypertrace.gateway.service.common.cache.TimeSeriesCache;
+import org.hypertrace.gateway.service.common.config.QueryLimitConfig;
+import org.hypertrace.gateway.service.common.config.TimeSeriesCacheConfig;
 import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.explore.config.RestGroupConfig;
 import org.hypertrace.gateway.service.v1.common.Expression;
 import org.hypertrace.gateway.service.v1.common.FunctionExpression;
 import org.hypertrace.gateway.service.v1.common.FunctionType;
@@ -17,6 +30,7 @@ import org.hypertrace.gateway.service.v1.explore.ColumnName;
 import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 public class TimeAggregationsRequestHandlerTest {
 
@@ -64,7 +78,13 @@ public class TimeAggregationsRequestHandlerTest {
 
     TimeAggregationsRequestHandler requestHandler =
         new TimeAggregationsRequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())),
+            new TimeSeriesCache<>("test", new TimeSeriesCacheConfig(ConfigFactory.empty())));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -119,7 +139,13 @@ public class TimeAggregationsRequestHandlerTest {
 
     TimeAggregationsRequestHandler requestHandler =
         new TimeAggregationsRequestHandler(
-            mock(QueryServiceClient.class), 500, mock(AttributeMetadataProvider.class));
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())),
+            new TimeSeriesCache<>("test", new TimeSeriesCacheConfig(ConfigFactory.empty())));
     List<OrderByExpression> orderByExpressions =
         requestHandler.getRequestOrderByExpressions(exploreRequest);
 
@@ -134,4 +160,54 @@ public class TimeAggregationsRequestHandlerTest {
                 .build()),
         orderByExpressions);
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void timeSeriesCacheKeyIncludesRequestHeaders() {
+    ExploreRequest exploreRequest =
+        ExploreRequest.newBuilder()
+            .setStartTimeMillis(0)
+            .setEndTimeMillis(600000)
+            .addTimeAggregation(
+                TimeAggregation.newBuilder()
+                    .setPeriod(Period.newBuilder().setUnit("SECONDS").setValue(60))
+                    .setAggregation(
+                        Expression.newBuilder()
+                            .setFunction(
+                                FunctionExpression.newBuilder()
+                                    .setFunction(FunctionType.MAX)
+                                    .setAlias("MAX_Duration")
+                                    .addArguments(
+                                        QueryExpressionUtil.buildAttributeExpression("duration")))))
+            .build();
+    TimeSeriesCache<org.hypertrace.gateway.service.v1.common.Row> timeSeriesCache =
+        mock(TimeSeriesCache.class);
+    when(timeSeriesCache.isEnabled()).thenReturn(true);
+    when(timeSeriesCache.getSeries(any(), anyLong(), anyLong(), anyLong(), any(), any()))
+        .thenReturn(List.of());
+    TimeAggregationsRequestHandler requestHandler =
+        new TimeAggregationsRequestHandler(
+            mock(QueryServiceClient.class),
+            500,
+            mock(AttributeMetadataProvider.class),
+            MoreExecutors.directExecutor(),
+            new RestGroupConfig(ConfigFactory.empty()),
+            new QueryLimitPlanner(new QueryLimitConfig(ConfigFactory.empty())),
+            timeSeriesCache);
+
+    requestHandler.handleRequest(
+        new ExploreRequestContext(
+            "tenant1", exploreRequest, Map.of("authorization", "Bearer user1")),
+        exploreRequest);
+    requestHandler.handleRequest(
+        new ExploreRequestContext(
+            "tenant1", exploreRequest, Map.of("authorization", "Bearer user2")),
+        exploreRequest);
+
+    ArgumentCaptor<List<Object>> keyCaptor = ArgumentCaptor.forClass(List.class);
+    verify(timeSeriesCache, times(2))
+        .getSeries(keyCaptor.capture(), anyLong(), anyLong(), anyLong(), any(), any());
+    // Callers with different headers do not share the cached series
+    Assertions.assertNotEquals(keyCaptor.getAllValues().get(0), keyCaptor.getAllValues().get(1));
+  }
 }
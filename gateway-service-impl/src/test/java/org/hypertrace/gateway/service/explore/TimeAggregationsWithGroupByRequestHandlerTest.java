@@ -0,0 +1,238 @@
+package org.hypertrace.gateway.service.explore;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.gateway.service.common.util.QueryExpressionUtil;
+import org.hypertrace.gateway.service.explore.config.PipeliningConfig;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.FunctionType;
+import org.hypertrace.gateway.service.v1.common.Period;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.TimeAggregation;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.hypertrace.gateway.service.v1.explore.ExploreRequest;
+import org.hypertrace.gateway.service.v1.explore.ExploreResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TimeAggregationsWithGroupByRequestHandlerTest {
+  private static final String TENANT_ID = "tenant1";
+  private static final String GROUP_BY_COLUMN = "API.name";
+  private static final ExploreRequest REQUEST =
+      ExploreRequest.newBuilder()
+          .setStartTimeMillis(1000L)
+          .setEndTimeMillis(61000L)
+          .addTimeAggregation(
+              TimeAggregation.newBuilder()
+                  .setPeriod(Period.newBuilder().setUnit("SECONDS").setValue(60))
+                  .setAggregation(
+                      Expression.newBuilder()
+                          .setFunction(
+                              FunctionExpression.newBuilder()
+                                  .setFunction(FunctionType.SUM)
+                                  .setAlias("SUM_numCalls")
+                                  .addArguments(
+                                      QueryExpressionUtil.buildAttributeExpression(
+                                          "API.numCalls")))))
+          .addGroupBy(QueryExpressionUtil.buildAttributeExpression(GROUP_BY_COLUMN))
+          .setGroupLimit(2)
+          .build();
+
+  private RequestHandler normalRequestHandler;
+  private TimeAggregationsRequestHandler timeAggregationsRequestHandler;
+  private TheRestGroupRequestHandler theRestGroupRequestHandler;
+
+  @BeforeEach
+  public void setup() {
+    normalRequestHandler = mock(RequestHandler.class);
+    timeAggregationsRequestHandler = mock(TimeAggregationsRequestHandler.class);
+    theRestGroupRequestHandler = mock(TheRestGroupRequestHandler.class);
+    when(timeAggregationsRequestHandler.getTheRestGroupRequestHandler())
+        .thenReturn(theRestGroupRequestHandler);
+  }
+
+  @Test
+  public void restGroupIsQueriedWhileTheSeriesAreQueriedAndMerged() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ExploreRequest request = REQUEST.toBuilder().setIncludeRestGroup(true).build();
+      CountDownLatch restGroupQueried = new CountDownLatch(1);
+      ExploreResponse.Builder restGroupResponse = createResponse("rest");
+      when(normalRequestHandler.handleRequest(any(), any()))
+          .thenAnswer(invocation -> createResponse("a", "b"));
+      when(theRestGroupRequestHandler.queryTheRestGroup(any(), eq(request), any()))
+          .thenAnswer(
+              invocation -> {
+                restGroupQueried.countDown();
+                return restGroupResponse;
+              });
+      // The series are only returned once the rest group was queried, which would time out if
+      // the rest group were queried after the series
+      when(timeAggregationsRequestHandler.handleRequest(any(), any()))
+          .thenAnswer(
+              invocation -> {
+                Assertions.assertTrue(restGroupQueried.await(5, TimeUnit.SECONDS));
+                return createResponse("a", "b");
+              });
+
+      ExploreResponse.Builder response =
+          createHandler(executor, Map.of()).handleRequest(createContext(request), request);
+
+      ArgumentCaptor<ExploreResponse.Builder> foundGroups =
+          ArgumentCaptor.forClass(ExploreResponse.Builder.class);
+      verify(theRestGroupRequestHandler)
+          .queryTheRestGroup(any(), eq(request), foundGroups.capture());
+      Assertions.assertEquals(createResponse("a", "b").build(), foundGroups.getValue().build());
+      verify(theRestGroupRequestHandler)
+          .mergeTheRestGroup(any(), eq(request), eq(response), eq(restGroupResponse));
+      verify(theRestGroupRequestHandler, never()).getRowsForTheRestGroup(any(), any(), any());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void restGroupIsQueriedAgainWhenTheSeriesHaveFewerGroups() {
+    ExploreRequest request = REQUEST.toBuilder().setIncludeRestGroup(true).build();
+    List<Runnable> pendingTasks = new ArrayList<>();
+    when(normalRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a", "b"));
+    when(timeAggregationsRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a"));
+
+    ExploreResponse.Builder response =
+        createHandler(pendingTasks::add, Map.of()).handleRequest(createContext(request), request);
+
+    verify(theRestGroupRequestHandler)
+        .getRowsForTheRestGroup(any(), eq(request), eq(response));
+    // The rest group queried meanwhile was cancelled
+    pendingTasks.forEach(Runnable::run);
+    verify(theRestGroupRequestHandler, never()).queryTheRestGroup(any(), any(), any());
+    verify(theRestGroupRequestHandler, never()).mergeTheRestGroup(any(), any(), any(), any());
+  }
+
+  @Test
+  public void restGroupIsCancelledWhenThereAreNoSeries() {
+    ExploreRequest request = REQUEST.toBuilder().setIncludeRestGroup(true).build();
+    List<Runnable> pendingTasks = new ArrayList<>();
+    when(normalRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a", "b"));
+    when(timeAggregationsRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> ExploreResponse.newBuilder());
+
+    ExploreResponse.Builder response =
+        createHandler(pendingTasks::add, Map.of()).handleRequest(createContext(request), request);
+
+    Assertions.assertEquals(0, response.getRowCount());
+    Assertions.assertEquals(1, pendingTasks.size());
+    pendingTasks.forEach(Runnable::run);
+    verify(theRestGroupRequestHandler, never()).queryTheRestGroup(any(), any(), any());
+    verify(theRestGroupRequestHandler, never()).mergeTheRestGroup(any(), any(), any(), any());
+    verify(theRestGroupRequestHandler, never()).getRowsForTheRestGroup(any(), any(), any());
+  }
+
+  @Test
+  public void seriesQueriedForThePredictedGroupsAreUsedWhenTheGroupsAreTheSame() {
+    when(normalRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a", "b"));
+    ExploreResponse.Builder speculativeSeries = createResponse("a", "b");
+    when(timeAggregationsRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a", "b"))
+        .thenReturn(speculativeSeries);
+    TimeAggregationsWithGroupByRequestHandler handler =
+        createHandler(MoreExecutors.directExecutor(), Map.of("speculation.enabled", true));
+
+    handler.handleRequest(createContext(REQUEST), REQUEST);
+    ExploreResponse.Builder response = handler.handleRequest(createContext(REQUEST), REQUEST);
+
+    Assertions.assertSame(speculativeSeries, response);
+    // Once for each request, as the series of the second one were queried speculatively
+    verify(timeAggregationsRequestHandler, times(2)).handleRequest(any(), any());
+  }
+
+  @Test
+  public void seriesQueriedForThePredictedGroupsAreCancelledWhenTheGroupsChange() {
+    List<Runnable> pendingTasks = new ArrayList<>();
+    when(normalRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a", "b"))
+        .thenAnswer(invocation -> createResponse("a", "c"));
+    when(timeAggregationsRequestHandler.handleRequest(any(), any()))
+        .thenAnswer(invocation -> createResponse("a", "b"))
+        .thenAnswer(invocation -> createResponse("a", "c"));
+    TimeAggregationsWithGroupByRequestHandler handler =
+        createHandler(pendingTasks::add, Map.of("speculation.enabled", true));
+
+    handler.handleRequest(createContext(REQUEST), REQUEST);
+    ExploreResponse.Builder response = handler.handleRequest(createContext(REQUEST), REQUEST);
+
+    Assertions.assertEquals(createResponse("a", "c").build(), response.build());
+    // The series of the predicted groups were cancelled before they were queried
+    Assertions.assertEquals(1, pendingTasks.size());
+    pendingTasks.forEach(Runnable::run);
+    ArgumentCaptor<ExploreRequest> seriesRequests = ArgumentCaptor.forClass(ExploreRequest.class);
+    verify(timeAggregationsRequestHandler, times(2)).handleRequest(any(), seriesRequests.capture());
+    Assertions.assertEquals(
+        List.of("a", "c"),
+        seriesRequests
+            .getAllValues()
+            .get(1)
+            .getFilter()
+            .getChildFilter(0)
+            .getRhs()
+            .getLiteral()
+            .getValue()
+            .getStringArrayList());
+  }
+
+  private TimeAggregationsWithGroupByRequestHandler createHandler(
+      Executor executor, Map<String, Object> pipeliningConfig) {
+    Map<String, Object> config = new HashMap<>(Map.of("enabled", true));
+    config.putAll(pipeliningConfig);
+    return new TimeAggregationsWithGroupByRequestHandler(
+        normalRequestHandler,
+        timeAggregationsRequestHandler,
+        executor,
+        new PipeliningConfig(
+            ConfigFactory.parseMap(config).atPath("explore.service.pipelining.config")));
+  }
+
+  private ExploreRequestContext createContext(ExploreRequest request) {
+    return new ExploreRequestContext(TENANT_ID, request, Map.of());
+  }
+
+  private ExploreResponse.Builder createResponse(String... groups) {
+    ExploreResponse.Builder response = ExploreResponse.newBuilder();
+    for (String group : groups) {
+      response.addRow(
+          Row.newBuilder()
+              .putColumns(
+                  GROUP_BY_COLUMN,
+                  Value.newBuilder().setValueType(ValueType.STRING).setString(group).build())
+              .putColumns(
+                  "SUM_numCalls",
+                  Value.newBuilder().setValueType(ValueType.LONG).setLong(1L).build()));
+    }
+    return response;
+  }
+}
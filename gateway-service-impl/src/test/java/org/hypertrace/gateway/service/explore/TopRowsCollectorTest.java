@@ -0,0 +1,111 @@
+package org.hypertrace.gateway.service.explore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.hypertrace.gateway.service.v1.common.ColumnIdentifier;
+import org.hypertrace.gateway.service.v1.common.Expression;
+import org.hypertrace.gateway.service.v1.common.FunctionExpression;
+import org.hypertrace.gateway.service.v1.common.OrderByExpression;
+import org.hypertrace.gateway.service.v1.common.Row;
+import org.hypertrace.gateway.service.v1.common.SortOrder;
+import org.hypertrace.gateway.service.v1.common.Value;
+import org.hypertrace.gateway.service.v1.common.ValueType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TopRowsCollectorTest {
+  private static final int[][] LIMITS_AND_OFFSETS = {
+    {10, 0}, {10, 25}, {1, 999}, {50, 990}, {5, 1000}, {0, 0}, {0, 20}
+  };
+
+  @Test
+  public void testPageMatchesStableSortWithRowComparator() {
+    List<Row.Builder> rows = createRows();
+    List<OrderByExpression> orderByExpressions =
+        List.of(
+            createOrderByExpression("status", SortOrder.ASC, false),
+            createOrderByExpression("calls", SortOrder.DESC, true),
+            createOrderByExpression("latency", SortOrder.ASC, true));
+    List<Row.Builder> fullySorted = new ArrayList<>(rows);
+    fullySorted.sort(new RowComparator(orderByExpressions));
+
+    for (int[] limitAndOffset : LIMITS_AND_OFFSETS) {
+      int limit = limitAndOffset[0];
+      int offset = limitAndOffset[1];
+      TopRowsCollector topRowsCollector = new TopRowsCollector(orderByExpressions, limit, offset);
+      rows.forEach(topRowsCollector::add);
+      Assertions.assertEquals(page(fullySorted, limit, offset), topRowsCollector.getRows());
+    }
+  }
+
+  @Test
+  public void testPageWithoutOrderByKeepsReadOrder() {
+    List<Row.Builder> rows = createRows();
+    for (int[] limitAndOffset : LIMITS_AND_OFFSETS) {
+      int limit = limitAndOffset[0];
+      int offset = limitAndOffset[1];
+      TopRowsCollector topRowsCollector = new TopRowsCollector(List.of(), limit, offset);
+      rows.forEach(topRowsCollector::add);
+      Assertions.assertEquals(page(rows, limit, offset), topRowsCollector.getRows());
+    }
+  }
+
+  private List<Row.Builder> page(List<Row.Builder> rows, int limit, int offset) {
+    return rows.stream()
+        .skip(offset)
+        .limit(limit > 0 ? limit : Long.MAX_VALUE)
+        .collect(Collectors.toList());
+  }
+
+  /** Rows with few distinct values, so that there are plenty of ties, some without a latency */
+  private List<Row.Builder> createRows() {
+    Random random = new Random(42);
+    List<Row.Builder> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Row.Builder row =
+          Row.newBuilder()
+              .putColumns(
+                  "status",
+                  Value.newBuilder()
+                      .setValueType(ValueType.STRING)
+                      .setString("status" + random.nextInt(3))
+                      .build())
+              .putColumns(
+                  "calls",
+                  Value.newBuilder()
+                      .setValueType(ValueType.LONG)
+                      .setLong(random.nextInt(5))
+                      .build());
+      if (random.nextInt(10) > 0) {
+        row.putColumns(
+            "latency",
+            Value.newBuilder()
+                .setValueType(ValueType.DOUBLE)
+                .setDouble(random.nextInt(4) / 2.0)
+                .build());
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private OrderByExpression createOrderByExpression(
+      String columnName, SortOrder sortOrder, boolean isFunctionType) {
+    Expression.Builder expressionBuilder;
+    if (isFunctionType) {
+      expressionBuilder =
+          Expression.newBuilder().setFunction(FunctionExpression.newBuilder().setAlias(columnName));
+    } else {
+      expressionBuilder =
+          Expression.newBuilder()
+              .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName));
+    }
+
+    return OrderByExpression.newBuilder()
+        .setOrder(sortOrder)
+        .setExpression(expressionBuilder)
+        .build();
+  }
+}